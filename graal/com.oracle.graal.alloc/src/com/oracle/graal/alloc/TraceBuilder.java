@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.alloc;
+
+import java.util.*;
+
+import com.oracle.graal.compiler.common.cfg.*;
+
+/**
+ * Partitions the blocks of a method into traces. A trace is a sequence of blocks that are connected
+ * by their most likely control flow edges. Traces are built greedily, starting with the most likely
+ * block whose forward predecessors have all been placed, and following the most likely successor
+ * for which the current block is also the most likely predecessor.
+ *
+ * Concatenating the traces in the order they are built yields a block order in which every block
+ * comes after all of its forward predecessors, and therefore after its dominator. The most likely
+ * paths through the method end up in the first traces, while blocks that are only reached by
+ * unlikely edges start their own, later traces.
+ */
+public final class TraceBuilder<T extends AbstractBlock<T>> {
+
+    /**
+     * The initial capacity of the worklist of trace heads.
+     */
+    private static final int INITIAL_WORKLIST_CAPACITY = 10;
+
+    /**
+     * Computes the traces of a control flow graph.
+     *
+     * @return the traces in the order they were built, each as a list of blocks in control flow
+     *         order
+     */
+    public static <T extends AbstractBlock<T>> List<List<T>> computeTraces(int blockCount, T startBlock) {
+        TraceBuilder<T> builder = new TraceBuilder<>(blockCount);
+        builder.build(startBlock);
+        assert checkTraces(builder.traces, blockCount);
+        return builder.traces;
+    }
+
+    private final List<List<T>> traces;
+
+    /**
+     * Blocks that have been placed in a trace or added to the worklist, indexed by block id.
+     */
+    private final BitSet visited;
+
+    /**
+     * Blocks that have been placed in a trace, indexed by block id.
+     */
+    private final BitSet scheduled;
+
+    private final PriorityQueue<T> worklist;
+
+    private TraceBuilder(int blockCount) {
+        this.traces = new ArrayList<>();
+        this.visited = new BitSet(blockCount);
+        this.scheduled = new BitSet(blockCount);
+        this.worklist = new PriorityQueue<>(INITIAL_WORKLIST_CAPACITY, TraceBuilder::compareHeads);
+    }
+
+    private void build(T startBlock) {
+        visited.set(startBlock.getId());
+        worklist.add(startBlock);
+        while (!worklist.isEmpty()) {
+            traces.add(buildTrace(worklist.poll()));
+        }
+    }
+
+    private List<T> buildTrace(T head) {
+        List<T> trace = new ArrayList<>();
+        T block = head;
+        while (block != null) {
+            scheduled.set(block.getId());
+            trace.add(block);
+            T next = null;
+            for (T successor : block.getSuccessors()) {
+                if (!visited.get(successor.getId()) && isReady(successor)) {
+                    visited.set(successor.getId());
+                    if (next == null && isMostLikelyPredecessor(block, successor)) {
+                        next = successor;
+                    } else if (next != null && successor.probability() > next.probability() && isMostLikelyPredecessor(block, successor)) {
+                        worklist.add(next);
+                        next = successor;
+                    } else {
+                        worklist.add(successor);
+                    }
+                }
+            }
+            block = next;
+        }
+        return trace;
+    }
+
+    /**
+     * Determines if all predecessors of a block, except for those reaching it over a loop back
+     * edge, have been placed in a trace.
+     */
+    private boolean isReady(T block) {
+        for (T pred : block.getPredecessors()) {
+            if (!scheduled.get(pred.getId()) && !isBackEdge(pred, block)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T extends AbstractBlock<T>> boolean isBackEdge(T pred, T block) {
+        return block.isLoopHeader() && pred.isLoopEnd() && pred.getLoop().getHeader() == block;
+    }
+
+    /**
+     * Determines if {@code pred} is the most likely forward predecessor of {@code block}, which
+     * makes the edge between them a candidate for continuing a trace.
+     */
+    private static <T extends AbstractBlock<T>> boolean isMostLikelyPredecessor(T pred, T block) {
+        for (T other : block.getPredecessors()) {
+            if (other != pred && !isBackEdge(other, block) && other.probability() > pred.probability()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders trace heads by decreasing probability, using the block id to break ties.
+     */
+    private static <T extends AbstractBlock<T>> int compareHeads(T a, T b) {
+        int result = Double.compare(b.probability(), a.probability());
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(a.getId(), b.getId());
+    }
+
+    private static <T extends AbstractBlock<T>> boolean checkTraces(List<List<T>> traces, int expectedBlockCount) {
+        int blocks = 0;
+        for (List<T> trace : traces) {
+            blocks += trace.size();
+        }
+        assert blocks == expectedBlockCount : String.format("Number of blocks in traces (%d) does not match expected block count (%d)", blocks, expectedBlockCount);
+        return true;
+    }
+}
@@ -88,6 +88,23 @@ public final class NamedLocationIdentity implements LocationIdentity, FormatWith
         return id;
     }
 
+    /**
+     * Gets a location identity that is {@linkplain #equals(Object) equal} to the location identity
+     * previously created with a given name, e.g. when reading a serialized graph. In contrast to
+     * {@link #mutable(String)} and {@link #immutable(String)}, the name is not required to be
+     * unique.
+     *
+     * @param name the name of the location identity
+     * @param immutable true if the location is immutable
+     */
+    public static NamedLocationIdentity reconstruct(String name, boolean immutable) {
+        return new NamedLocationIdentity(name, immutable);
+    }
+
+    public String getName() {
+        return name;
+    }
+
     @Override
     public int hashCode() {
         return name.hashCode();
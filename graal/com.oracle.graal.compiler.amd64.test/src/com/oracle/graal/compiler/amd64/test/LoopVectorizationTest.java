@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.amd64.test;
+
+import static org.junit.Assume.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.amd64.*;
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.lir.amd64.*;
+import com.oracle.graal.loop.phases.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.tiers.*;
+
+public class LoopVectorizationTest extends GraalCompilerTest {
+
+    @Before
+    public void checkAMD64() {
+        assumeTrue("skipping AMD64 specific test", getTarget().arch instanceof AMD64);
+    }
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super HighTierContext>> position = suites.getHighTier().findPhase(LoopRangeCheckEliminationPhase.class);
+        Assert.assertNotNull(position);
+        position.add(new LoopVectorizationPhase(AMD64VectorizedLoopOp.VECTOR_SIZE, (kind, operation) -> AMD64VectorizedLoopOp.supports(getTarget(), kind, operation)));
+        return suites;
+    }
+
+    public static int[] addSnippet(int[] a, int[] b) {
+        int[] c = new int[a.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = a[i] + b[i];
+        }
+        return c;
+    }
+
+    public static long[] subSnippet(long[] a, long b) {
+        long[] c = new long[a.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = b - a[i];
+        }
+        return c;
+    }
+
+    public static float[] scaleSnippet(float[] a, float factor, int from, int to) {
+        float[] c = new float[a.length];
+        for (int i = from; i < to; i++) {
+            c[i] = a[i] * factor;
+        }
+        return c;
+    }
+
+    public static double[] divSnippet(double[] a, double[] b) {
+        double[] c = new double[a.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = a[i] / b[i];
+        }
+        return c;
+    }
+
+    public static int[] fillSnippet(int length, int value) {
+        int[] c = new int[length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = value;
+        }
+        return c;
+    }
+
+    public static double[] copySnippet(double[] a) {
+        double[] c = new double[a.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = a[i];
+        }
+        return c;
+    }
+
+    public static int sumSnippet(int[] a, int init) {
+        int sum = init;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static long xorSnippet(long[] a) {
+        long hash = 0;
+        for (int i = 0; i < a.length; i++) {
+            hash = a[i] ^ hash;
+        }
+        return hash;
+    }
+
+    private static int[] ints(int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 31 - 7;
+        }
+        return array;
+    }
+
+    private static long[] longs(int length) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 0x1234567890L - 3;
+        }
+        return array;
+    }
+
+    private static float[] floats(int length) {
+        float[] array = new float[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 1.5f - 2;
+        }
+        return array;
+    }
+
+    private static double[] doubles(int length) {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 0.25 + 1;
+        }
+        return array;
+    }
+
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 17, 100};
+
+    @Test
+    public void testAdd() {
+        for (int length : LENGTHS) {
+            test("addSnippet", ints(length), ints(length + 1));
+        }
+    }
+
+    @Test
+    public void testSub() {
+        for (int length : LENGTHS) {
+            test("subSnippet", longs(length), 42L);
+        }
+    }
+
+    @Test
+    public void testScale() {
+        for (int length : LENGTHS) {
+            test("scaleSnippet", floats(length), 3.5f, 0, length);
+            test("scaleSnippet", floats(length), 3.5f, length / 3, length);
+        }
+    }
+
+    @Test
+    public void testDiv() {
+        for (int length : LENGTHS) {
+            test("divSnippet", doubles(length), doubles(length));
+        }
+    }
+
+    @Test
+    public void testFill() {
+        for (int length : LENGTHS) {
+            test("fillSnippet", length, 0x12345678);
+        }
+    }
+
+    @Test
+    public void testCopy() {
+        for (int length : LENGTHS) {
+            test("copySnippet", doubles(length));
+        }
+    }
+
+    @Test
+    public void testSum() {
+        for (int length : LENGTHS) {
+            test("sumSnippet", ints(length), 11);
+        }
+    }
+
+    @Test
+    public void testXor() {
+        for (int length : LENGTHS) {
+            test("xorSnippet", longs(length));
+        }
+    }
+}
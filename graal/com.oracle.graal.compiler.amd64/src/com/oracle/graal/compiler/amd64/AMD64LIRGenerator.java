@@ -1089,6 +1089,19 @@ public abstract class AMD64LIRGenerator extends LIRGenerator {
         return result;
     }
 
+    @Override
+    public void emitVectorizedLoop(Kind kind, VectorOperation operation, Value destination, Value x, Value y, Value start, Value count) {
+        Value yOperand = y == null ? Value.ILLEGAL : asAllocatable(y);
+        append(new AMD64VectorizedLoopOp(this, kind, operation, Value.ILLEGAL, asAllocatable(destination), asAllocatable(x), yOperand, asAllocatable(start), asAllocatable(count), Value.ILLEGAL));
+    }
+
+    @Override
+    public Value emitVectorizedReduction(Kind kind, VectorOperation operation, Value array, Value start, Value count, Value accumulator) {
+        Variable result = newVariable(LIRKind.value(kind));
+        append(new AMD64VectorizedLoopOp(this, kind, operation, result, Value.ILLEGAL, asAllocatable(array), Value.ILLEGAL, asAllocatable(start), asAllocatable(count), asAllocatable(accumulator)));
+        return result;
+    }
+
     @Override
     public void emitReturn(Value input) {
         AllocatableValue operand = Value.ILLEGAL;
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.common;
+
+import static com.oracle.graal.compiler.common.GraalOptions.*;
+import static com.oracle.graal.compiler.common.UnsafeAccess.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Keeps the storage of large auxiliary data structures such as node maps and register allocator
+ * tables so that it can be reused by later compilations on the same thread instead of being
+ * allocated again. Each thread has its own recycler, so no synchronization is required.
+ * <p>
+ * Lengths are rounded up to the next power of two, so an array returned by this class may be
+ * longer than requested. Arrays handed back with {@code release} must not be used by the caller
+ * anymore. The total size of the arrays kept per thread is bounded by
+ * {@link GraalOptions#RecycledArraysMaxSize}.
+ */
+public final class ArrayRecycler {
+
+    /**
+     * Arrays shorter than this are cheap enough to allocate and are not recycled.
+     */
+    private static final int MIN_LENGTH = 64;
+
+    private static final int ARRAYS_PER_SIZE_CLASS = 4;
+
+    private static final ThreadLocal<ArrayRecycler> recyclers = ThreadLocal.withInitial(ArrayRecycler::new);
+
+    /**
+     * The recycled arrays of one array type, indexed by the base 2 logarithm of their length.
+     */
+    private static final class Pool {
+
+        final Object[][] arrays = new Object[Integer.SIZE][];
+        final int[] counts = new int[Integer.SIZE];
+        final int elementSize;
+
+        Pool(Class<?> arrayClass) {
+            elementSize = unsafe.arrayIndexScale(arrayClass);
+        }
+    }
+
+    private final Map<Class<?>, Pool> pools = new HashMap<>();
+    private long retainedBytes;
+
+    private ArrayRecycler() {
+    }
+
+    private static int sizeClass(int length) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    private static boolean isRecycled(int length) {
+        return length >= MIN_LENGTH && length <= (1 << (Integer.SIZE - 2)) && RecycleCompilerArrays.getValue();
+    }
+
+    private Object take(Class<?> arrayClass, int sizeClass) {
+        Pool pool = pools.get(arrayClass);
+        if (pool == null || pool.counts[sizeClass] == 0) {
+            return null;
+        }
+        int index = --pool.counts[sizeClass];
+        Object array = pool.arrays[sizeClass][index];
+        pool.arrays[sizeClass][index] = null;
+        retainedBytes -= (long) pool.elementSize << sizeClass;
+        return array;
+    }
+
+    private void put(Object array, int length) {
+        if (length < MIN_LENGTH || Integer.bitCount(length) != 1) {
+            // not allocated by this class
+            return;
+        }
+        Class<?> arrayClass = array.getClass();
+        Pool pool = pools.get(arrayClass);
+        if (pool == null) {
+            pool = new Pool(arrayClass);
+            pools.put(arrayClass, pool);
+        }
+        int sizeClass = sizeClass(length);
+        long bytes = (long) pool.elementSize << sizeClass;
+        if (pool.counts[sizeClass] == ARRAYS_PER_SIZE_CLASS || retainedBytes + bytes > RecycledArraysMaxSize.getValue() * 1024L) {
+            return;
+        }
+        if (array instanceof long[]) {
+            Arrays.fill((long[]) array, 0);
+        } else {
+            Arrays.fill((Object[]) array, null);
+        }
+        if (pool.arrays[sizeClass] == null) {
+            pool.arrays[sizeClass] = new Object[ARRAYS_PER_SIZE_CLASS];
+        }
+        pool.arrays[sizeClass][pool.counts[sizeClass]++] = array;
+        retainedBytes += bytes;
+    }
+
+    /**
+     * Gets a zeroed {@code long} array with at least {@code length} elements.
+     */
+    public static long[] newLongArray(int length) {
+        if (!isRecycled(length)) {
+            return new long[length];
+        }
+        int sizeClass = sizeClass(length);
+        long[] array = (long[]) recyclers.get().take(long[].class, sizeClass);
+        return array != null ? array : new long[1 << sizeClass];
+    }
+
+    /**
+     * Gets an array of type {@code arrayClass} with at least {@code length} elements which are all
+     * {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T[] newArray(Class<T[]> arrayClass, int length) {
+        if (!isRecycled(length)) {
+            return (T[]) Array.newInstance(arrayClass.getComponentType(), length);
+        }
+        int sizeClass = sizeClass(length);
+        T[] array = (T[]) recyclers.get().take(arrayClass, sizeClass);
+        return array != null ? array : (T[]) Array.newInstance(arrayClass.getComponentType(), 1 << sizeClass);
+    }
+
+    /**
+     * Returns a copy of {@code original} with at least {@code length} elements and releases
+     * {@code original}.
+     */
+    public static long[] copyOf(long[] original, int length) {
+        long[] copy = newLongArray(length);
+        System.arraycopy(original, 0, copy, 0, Math.min(original.length, length));
+        release(original);
+        return copy;
+    }
+
+    /**
+     * Returns a copy of {@code original} with at least {@code length} elements and releases
+     * {@code original}.
+     */
+    public static <T> T[] copyOf(T[] original, int length) {
+        @SuppressWarnings("unchecked")
+        T[] copy = newArray((Class<T[]>) original.getClass(), length);
+        System.arraycopy(original, 0, copy, 0, Math.min(original.length, length));
+        release(original);
+        return copy;
+    }
+
+    /**
+     * Hands an array obtained from {@link #newLongArray} back for reuse. The array is cleared if it
+     * is kept.
+     */
+    public static void release(long[] array) {
+        if (isRecycled(array.length)) {
+            recyclers.get().put(array, array.length);
+        }
+    }
+
+    /**
+     * Hands an array obtained from {@link #newArray} back for reuse. The array is cleared if it is
+     * kept.
+     */
+    public static void release(Object[] array) {
+        if (isRecycled(array.length)) {
+            recyclers.get().put(array, array.length);
+        }
+    }
+}
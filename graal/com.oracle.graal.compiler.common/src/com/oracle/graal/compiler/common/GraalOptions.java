@@ -92,6 +92,16 @@ public final class GraalOptions {
     // graph caching
     @Option(help = "")
     public static final OptionValue<Boolean> CacheGraphs = new OptionValue<>(false);
+    @Option(help = "File with preprocessed snippet and method substitution graphs that are loaded instead of being built")
+    public static final OptionValue<String> SnippetImage = new OptionValue<>(null);
+    @Option(help = "Print the number of graphs loaded from the SnippetImage and the preparation time saved at shutdown")
+    public static final OptionValue<Boolean> PrintSnippetImageStatistics = new OptionValue<>(false);
+
+    // memory recycling
+    @Option(help = "Reuse the storage of node maps, node bit maps and register allocator tables in later compilations on the same thread")
+    public static final OptionValue<Boolean> RecycleCompilerArrays = new OptionValue<>(true);
+    @Option(help = "Maximum size in kilobytes of the recycled arrays kept by each compiler thread")
+    public static final OptionValue<Integer> RecycledArraysMaxSize = new OptionValue<>(4 * 1024);
 
     //loop transform settings TODO (gd) tune
     @Option(help = "")
@@ -106,6 +116,16 @@ public final class GraalOptions {
     public static final OptionValue<Integer> FullUnrollMaxNodes = new OptionValue<>(300);
     @Option(help = "")
     public static final OptionValue<Integer> ExactFullUnrollMaxNodes = new OptionValue<>(1200);
+    @Option(help = "Partially unroll counted loops that are too large to be unrolled fully")
+    public static final OptionValue<Boolean> PartialUnroll = new OptionValue<>(false);
+    @Option(help = "Maximum number of iterations of the original loop executed by one iteration of a partially unrolled loop")
+    public static final OptionValue<Integer> PartialUnrollMaxFactor = new OptionValue<>(4);
+    @Option(help = "Maximum number of nodes in the body of a partially unrolled loop")
+    public static final OptionValue<Integer> PartialUnrollMaxNodes = new OptionValue<>(200);
+    @Option(help = "Replace bounds checks of array accesses in counted loops by a guard in front of the loop")
+    public static final OptionValue<Boolean> LoopRangeCheckElimination = new OptionValue<>(true);
+    @Option(help = "Execute simple counted loops over arrays with packed instructions where the backend supports it")
+    public static final OptionValue<Boolean> VectorizeLoops = new OptionValue<>(false);
     @Option(help = "")
     public static final OptionValue<Float> MinimumPeelProbability = new OptionValue<>(0.35f);
     @Option(help = "")
@@ -170,6 +190,12 @@ public final class GraalOptions {
     public static final OptionValue<Boolean> ExitVMOnBailout = new OptionValue<>(false);
     @Option(help = "")
     public static final OptionValue<Boolean> ExitVMOnException = new OptionValue<>(true);
+    @Option(help = "Maximum wall clock time in milliseconds a compilation may take before it bails out (0 = no limit)")
+    public static final OptionValue<Integer> CompilationTimeBudget = new OptionValue<>(0);
+    @Option(help = "Maximum number of bytes a compilation may allocate before it bails out (0 = no limit)")
+    public static final OptionValue<Long> CompilationMemoryBudget = new OptionValue<>(0L);
+    @Option(help = "Number of budget bailouts after which a method is no longer compiled by Graal")
+    public static final OptionValue<Integer> CompilationBudgetBailoutLimit = new OptionValue<>(2);
     @Option(help = "")
     public static final OptionValue<Boolean> PrintStackTraceOnException = new OptionValue<>(false);
     @Option(help = "Set a phase after which the decompiler dumps the graph, -G:Dump= required")
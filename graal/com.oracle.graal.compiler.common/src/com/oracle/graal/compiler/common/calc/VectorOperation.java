@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.common.calc;
+
+import com.oracle.graal.api.meta.*;
+
+/**
+ * Element-wise arithmetic operations that can be applied to packed array elements.
+ */
+public enum VectorOperation {
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+    AND,
+    OR,
+    XOR;
+
+    /**
+     * Determines whether this operation is defined for Java values of the given kind.
+     */
+    public boolean isDefinedFor(Kind kind) {
+        switch (this) {
+            case DIV:
+                return kind == Kind.Float || kind == Kind.Double;
+            case AND:
+            case OR:
+            case XOR:
+                return kind == Kind.Int || kind == Kind.Long;
+            default:
+                return kind == Kind.Int || kind == Kind.Long || kind == Kind.Float || kind == Kind.Double;
+        }
+    }
+
+    /**
+     * Determines whether this operation can be used to combine the elements of an array in any
+     * order without changing the result.
+     */
+    public boolean isAssociative(Kind kind) {
+        switch (this) {
+            case ADD:
+            case MUL:
+                return kind == Kind.Int || kind == Kind.Long;
+            case AND:
+            case OR:
+            case XOR:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.oracle.graal.compiler.common.*;
+
+public class ArrayRecyclerTest {
+
+    /**
+     * Runs a test on a new thread so that it starts with an empty recycler.
+     */
+    private static void runOnNewThread(Runnable test) throws Throwable {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(test).get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReuse() throws Throwable {
+        runOnNewThread(() -> {
+            long[] longs = ArrayRecycler.newLongArray(1000);
+            ArrayRecycler.release(longs);
+            assertSame(longs, ArrayRecycler.newLongArray(1000));
+
+            String[] strings = ArrayRecycler.newArray(String[].class, 1000);
+            ArrayRecycler.release(strings);
+            assertSame(strings, ArrayRecycler.newArray(String[].class, 1000));
+
+            // arrays of another type are not reused
+            ArrayRecycler.release(strings);
+            assertNotSame(strings, ArrayRecycler.newArray(Object[].class, 1000));
+        });
+    }
+
+    @Test
+    public void testSizeClasses() throws Throwable {
+        runOnNewThread(() -> {
+            assertEquals(1024, ArrayRecycler.newLongArray(1000).length);
+            assertEquals(1024, ArrayRecycler.newLongArray(1024).length);
+            assertEquals(2048, ArrayRecycler.newLongArray(1025).length);
+            assertEquals(128, ArrayRecycler.newArray(String[].class, 100).length);
+
+            // small arrays are allocated with the exact length and never recycled
+            long[] small = ArrayRecycler.newLongArray(10);
+            assertEquals(10, small.length);
+            ArrayRecycler.release(small);
+            assertNotSame(small, ArrayRecycler.newLongArray(10));
+
+            // a released array is handed out for any length in its size class
+            long[] longs = ArrayRecycler.newLongArray(600);
+            assertEquals(1024, longs.length);
+            ArrayRecycler.release(longs);
+            assertNotSame(longs, ArrayRecycler.newLongArray(1025));
+            assertSame(longs, ArrayRecycler.newLongArray(513));
+        });
+    }
+
+    @Test
+    public void testCleared() throws Throwable {
+        runOnNewThread(() -> {
+            long[] longs = ArrayRecycler.newLongArray(1000);
+            longs[0] = 1;
+            longs[longs.length - 1] = 2;
+            ArrayRecycler.release(longs);
+            long[] reused = ArrayRecycler.newLongArray(1000);
+            assertSame(longs, reused);
+            for (long value : reused) {
+                assertEquals(0L, value);
+            }
+
+            String[] strings = ArrayRecycler.newArray(String[].class, 1000);
+            strings[0] = "a";
+            strings[strings.length - 1] = "b";
+            String[] copy = ArrayRecycler.copyOf(strings, 2000);
+            assertEquals("a", copy[0]);
+            assertNull(copy[1500]);
+            String[] recycled = ArrayRecycler.newArray(String[].class, 1000);
+            assertSame(strings, recycled);
+            for (String value : recycled) {
+                assertNull(value);
+            }
+        });
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.io.*;
+
+/**
+ * Class loader that finds a different class file for one class than its parent does. Used to test
+ * that persisted graphs are rejected when a class file they were built from changed.
+ */
+public class ChangedClassFileLoader extends ClassLoader {
+
+    private final String classFile;
+
+    public ChangedClassFileLoader(ClassLoader parent, Class<?> changedClass) {
+        super(parent);
+        this.classFile = changedClass.getName().replace('.', '/') + ".class";
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        if (name.equals(classFile)) {
+            return new ByteArrayInputStream(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+        }
+        return super.getResourceAsStream(name);
+    }
+}
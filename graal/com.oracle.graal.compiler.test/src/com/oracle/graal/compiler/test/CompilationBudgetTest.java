@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.tiers.*;
+
+public class CompilationBudgetTest extends GraalCompilerTest {
+
+    public static int snippet(int a) {
+        return a * 2 + 1;
+    }
+
+    @Test
+    public void testTimeBudget() throws InterruptedException {
+        StructuredGraph graph = parseEager("snippet");
+        try (CompilationBudget budget = CompilationBudget.open(1, 0)) {
+            Thread.sleep(10);
+            new CanonicalizerPhase(true).apply(graph, new PhaseContext(getProviders(), new Assumptions(false)));
+            Assert.fail("expected " + CompilationBudget.ExceededException.class.getSimpleName());
+        } catch (CompilationBudget.ExceededException e) {
+            Assert.assertEquals("Canonicalizer", e.getPhase());
+            Assert.assertFalse(e.isPermanent());
+        }
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        StructuredGraph graph = parseEager("snippet");
+        try (CompilationBudget budget = CompilationBudget.open(0, 1)) {
+            new CanonicalizerPhase(true).apply(graph, new PhaseContext(getProviders(), new Assumptions(false)));
+            Assert.fail("expected " + CompilationBudget.ExceededException.class.getSimpleName());
+        } catch (CompilationBudget.ExceededException e) {
+            Assert.assertEquals("Canonicalizer", e.getPhase());
+        }
+    }
+
+    @Test
+    public void testNoBudget() {
+        StructuredGraph graph = parseEager("snippet");
+        try (CompilationBudget budget = CompilationBudget.open(0, 0)) {
+            Assert.assertNull(budget);
+            new CanonicalizerPhase(true).apply(graph, new PhaseContext(getProviders(), new Assumptions(false)));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import com.oracle.graal.compiler.*;
+
+public class CompilationPriorityQueueTest {
+
+    private static final Runnable NOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    private static class TestTask extends CompilationPriorityQueue.Task {
+
+        int count;
+        boolean obsolete;
+
+        TestTask(int count) {
+            super(NOP);
+            this.count = count;
+        }
+
+        @Override
+        protected int getCount() {
+            return count;
+        }
+
+        @Override
+        protected boolean isObsolete() {
+            return obsolete || super.isObsolete();
+        }
+    }
+
+    private static CompilationPriorityQueue createQueue(int halfLifeMillis, int capacity) {
+        return new CompilationPriorityQueue("TestCompilationQueue", halfLifeMillis, capacity);
+    }
+
+    @Test
+    public void testOrdering() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        TestTask cold = new TestTask(1);
+        TestTask hot = new TestTask(100);
+        TestTask warm = new TestTask(10);
+        queue.offer(cold);
+        queue.offer(hot);
+        queue.offer(warm);
+        assertSame(hot, queue.poll());
+        assertSame(warm, queue.poll());
+        assertSame(cold, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testGrowthWhileQueued() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        TestTask first = new TestTask(100);
+        TestTask second = new TestTask(80);
+        queue.offer(first);
+        queue.offer(second);
+        second.count = 120;
+        assertSame(second, queue.poll());
+        assertSame(first, queue.poll());
+    }
+
+    @Test
+    public void testOtherElementsFirst() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        TestTask task = new TestTask(100);
+        queue.offer(task);
+        queue.offer(NOP);
+        assertSame(NOP, queue.poll());
+        assertSame(task, queue.poll());
+    }
+
+    @Test
+    public void testDecay() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        TestTask task = new TestTask(1000);
+        queue.offer(task);
+        double halfLifeNanos = 1e9;
+        long now = System.nanoTime();
+        double priority = task.getPriority(now, halfLifeNanos);
+        assertTrue(priority <= 1000);
+        assertEquals(priority / 2, task.getPriority(now + (long) halfLifeNanos, halfLifeNanos), 1e-6);
+        assertEquals(priority / 4, task.getPriority(now + 2 * (long) halfLifeNanos, halfLifeNanos), 1e-6);
+    }
+
+    @Test
+    public void testDecayedTaskOvertaken() throws InterruptedException {
+        CompilationPriorityQueue queue = createQueue(1, 10);
+        TestTask old = new TestTask(1000);
+        queue.offer(old);
+        Thread.sleep(50);
+        TestTask recent = new TestTask(10);
+        queue.offer(recent);
+        assertSame(recent, queue.poll());
+        assertSame(old, queue.poll());
+    }
+
+    @Test
+    public void testObsoleteDropped() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        TestTask obsolete = new TestTask(100);
+        TestTask live = new TestTask(1);
+        queue.offer(obsolete);
+        queue.offer(live);
+        obsolete.obsolete = true;
+        assertSame(live, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(obsolete.isCancelled());
+        assertEquals(0, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testCancelledDropped() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        TestTask task = new TestTask(100);
+        queue.offer(task);
+        task.cancel(false);
+        assertNull(queue.poll());
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testCapacity() {
+        CompilationPriorityQueue queue = createQueue(60000, 2);
+        TestTask warm = new TestTask(10);
+        TestTask cold = new TestTask(1);
+        TestTask hot = new TestTask(100);
+        assertTrue(queue.offer(warm));
+        assertTrue(queue.offer(cold));
+        assertTrue(queue.offer(hot));
+        assertEquals(2, queue.size());
+        assertTrue(cold.isCancelled());
+        assertSame(hot, queue.poll());
+        assertSame(warm, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testEquivalentNotQueued() {
+        CompilationPriorityQueue queue = createQueue(60000, 10);
+        class KeyedTask extends TestTask {
+            final Object key;
+
+            KeyedTask(Object key, int count) {
+                super(count);
+                this.key = key;
+            }
+
+            @Override
+            protected boolean isEquivalent(CompilationPriorityQueue.Task other) {
+                return other instanceof KeyedTask && ((KeyedTask) other).key.equals(key);
+            }
+        }
+        KeyedTask first = new KeyedTask("a", 1);
+        KeyedTask duplicate = new KeyedTask("a", 2);
+        queue.offer(first);
+        assertTrue(queue.offer(duplicate));
+        assertEquals(1, queue.size());
+        assertTrue(duplicate.isCancelled());
+        assertSame(first, queue.poll());
+    }
+}
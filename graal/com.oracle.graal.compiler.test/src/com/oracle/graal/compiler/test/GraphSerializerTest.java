@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.io.*;
+
+import org.junit.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.util.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.tiers.*;
+
+public class GraphSerializerTest extends GraalCompilerTest {
+
+    public static int loopSnippet(int[] array, int n) {
+        int sum = 0;
+        for (int i = 0; i < n && i < array.length; i++) {
+            sum += array[i] * 3;
+        }
+        return sum;
+    }
+
+    public static double mixedSnippet(String s, double d) {
+        if (s == null) {
+            return d / 2;
+        }
+        return s.length() + d;
+    }
+
+    @Test
+    public void testLoop() throws IOException {
+        test("loopSnippet");
+    }
+
+    @Test
+    public void testMixed() throws IOException {
+        test("mixedSnippet");
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void testObjectConstant() throws IOException {
+        StructuredGraph graph = parseEager("mixedSnippet");
+        ConstantNode.forConstant(getSnippetReflection().forObject("constant"), getMetaAccess(), graph);
+        serialize(graph);
+    }
+
+    @Test
+    public void testNodeClassLayoutHash() {
+        Assert.assertEquals(GraphSerializer.nodeClassLayoutHash(IfNode.class), GraphSerializer.nodeClassLayoutHash(IfNode.class));
+        Assert.assertTrue(GraphSerializer.nodeClassLayoutHash(IfNode.class) != GraphSerializer.nodeClassLayoutHash(ReturnNode.class));
+    }
+
+    private void test(String snippet) throws IOException {
+        StructuredGraph graph = parseEager(snippet);
+        new CanonicalizerPhase(true).apply(graph, new PhaseContext(getProviders(), new Assumptions(false)));
+
+        StructuredGraph copy = GraphSerializer.read(new DataInputStream(new ByteArrayInputStream(serialize(graph))), getMetaAccess(), getClass().getClassLoader());
+        Assert.assertEquals(graph.method(), copy.method());
+        Assert.assertEquals(graph.getNodeCount(), copy.getNodeCount());
+        Assert.assertTrue(copy.verify());
+        assertEquals(graph, copy);
+    }
+
+    private static byte[] serialize(StructuredGraph graph) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        GraphSerializer.write(graph, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
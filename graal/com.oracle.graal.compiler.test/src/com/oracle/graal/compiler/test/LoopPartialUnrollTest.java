@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.loop.phases.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.tiers.*;
+
+public class LoopPartialUnrollTest extends GraalCompilerTest {
+
+    public static int upSnippet() {
+        int sum = 0;
+        for (int i = 0; i < 1003; i++) {
+            sum = sum * 31 + i;
+        }
+        return sum;
+    }
+
+    public static int stridedSnippet(int start) {
+        int sum = 0;
+        for (int i = start; i <= 1000; i += 3) {
+            sum = sum * 31 + i;
+        }
+        return sum;
+    }
+
+    public static long downSnippet(int end) {
+        long sum = 0;
+        for (int i = 1000; i > end; i -= 2) {
+            sum = sum * 17 + i;
+        }
+        return sum;
+    }
+
+    public static int arraySnippet(int[] array) {
+        for (int i = 0; i < 1000; i++) {
+            array[i] = array[i] * 2 + i;
+        }
+        return array[999];
+    }
+
+    public static int nearMaxSnippet(int start) {
+        int sum = 0;
+        for (int i = start; i < Integer.MAX_VALUE - 2; i++) {
+            sum = sum * 31 + i;
+        }
+        return sum;
+    }
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super HighTierContext>> iter = suites.getHighTier().findPhase(RemoveValueProxyPhase.class);
+        iter.previous();
+        iter.add(new LoopPartialUnrollPhase(new CanonicalizerPhase(true)));
+        return suites;
+    }
+
+    @Test
+    public void testUp() {
+        test("upSnippet");
+    }
+
+    @Test
+    public void testStrided() {
+        for (int start = 0; start < 4; start++) {
+            test("stridedSnippet", start);
+        }
+    }
+
+    @Test
+    public void testDown() {
+        for (int end = 0; end < 8; end++) {
+            test("downSnippet", end);
+        }
+        test("downSnippet", 2000);
+    }
+
+    @Test
+    public void testArray() {
+        test("arraySnippet", new int[1000]);
+    }
+
+    @Test
+    public void testNearMax() {
+        test("nearMaxSnippet", Integer.MAX_VALUE - 1000);
+        test("nearMaxSnippet", Integer.MAX_VALUE - 1);
+    }
+
+    @Test
+    public void testUnrolled() {
+        StructuredGraph graph = parseEager("upSnippet");
+        Assumptions assumptions = new Assumptions(false);
+        HighTierContext context = new HighTierContext(getProviders(), assumptions, null, getDefaultGraphBuilderSuite(), OptimisticOptimizations.ALL);
+        new CanonicalizerPhase(true).apply(graph, context);
+        new LoopPartialUnrollPhase(new CanonicalizerPhase(true)).apply(graph, context);
+        Assert.assertEquals(2, graph.getNodes(LoopBeginNode.class).count());
+        for (LoopBeginNode loopBegin : graph.getNodes(LoopBeginNode.class)) {
+            Assert.assertTrue(loopBegin.isUnrolled());
+        }
+        Assert.assertTrue(graph.verify());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.loop.phases.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.java.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.tiers.*;
+
+public class LoopRangeCheckEliminationTest extends GraalCompilerTest {
+
+    public static int sumSnippet(int[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    public static int shiftSnippet(int[] array, int n) {
+        for (int i = 0; i < n; i++) {
+            array[i] = array[i + 1];
+        }
+        return array[0];
+    }
+
+    public static int reverseSnippet(int[] array, int n) {
+        int sum = 0;
+        for (int i = n; i > 0; i--) {
+            sum = sum * 31 + array[i - 1];
+        }
+        return sum;
+    }
+
+    public static int conditionalSnippet(int[] array, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            if (i < array.length) {
+                sum += array[i];
+            }
+        }
+        return sum;
+    }
+
+    public static int stridedSnippet(int[] array, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i += 2) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    public static int reverseStridedSnippet(int[] array, int n, int m) {
+        int sum = 0;
+        for (int i = n; i > m; i -= 2) {
+            sum = sum * 31 + array[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void testSum() {
+        test("sumSnippet", new int[]{1, 2, 3, 4, 5});
+        test("sumSnippet", new int[0]);
+        test("sumSnippet", (Object) null);
+    }
+
+    @Test
+    public void testShift() {
+        int[] array = {1, 2, 3, 4, 5};
+        test("shiftSnippet", array, 4);
+        test("shiftSnippet", array, 5);
+        test("shiftSnippet", array, 0);
+        test("shiftSnippet", array, -1);
+    }
+
+    @Test
+    public void testReverse() {
+        int[] array = {1, 2, 3, 4, 5};
+        test("reverseSnippet", array, 5);
+        test("reverseSnippet", array, 6);
+        test("reverseSnippet", array, 0);
+    }
+
+    @Test
+    public void testConditional() {
+        test("conditionalSnippet", new int[]{1, 2, 3}, 5);
+    }
+
+    @Test
+    public void testStrided() {
+        test("stridedSnippet", new int[]{1, 2, 3, 4, 5}, 5);
+        // the last iteration accesses index 4
+        test("stridedSnippet", new int[]{1, 2, 3, 4}, 5);
+        test("stridedSnippet", new int[]{1, 2, 3, 4}, 4);
+    }
+
+    @Test
+    public void testReverseStrided() {
+        int[] array = {1, 2, 3, 4};
+        test("reverseStridedSnippet", array, 3, -1);
+        // the last iteration accesses index -1
+        test("reverseStridedSnippet", array, 3, -2);
+        test("reverseStridedSnippet", array, 4, 0);
+    }
+
+    @Test
+    public void testHoisted() {
+        Assert.assertEquals(1, hoistedAccesses("sumSnippet"));
+        Assert.assertEquals(2, hoistedAccesses("shiftSnippet"));
+        Assert.assertEquals(1, hoistedAccesses("reverseSnippet"));
+        Assert.assertEquals(0, hoistedAccesses("conditionalSnippet"));
+        Assert.assertEquals(0, hoistedAccesses("stridedSnippet"));
+        Assert.assertEquals(0, hoistedAccesses("reverseStridedSnippet"));
+    }
+
+    private int hoistedAccesses(String snippet) {
+        StructuredGraph graph = parseEager(snippet);
+        HighTierContext context = new HighTierContext(getProviders(), new Assumptions(false), null, getDefaultGraphBuilderSuite(), OptimisticOptimizations.ALL);
+        new CanonicalizerPhase(true).apply(graph, context);
+        new LoopRangeCheckEliminationPhase().apply(graph, context);
+        Assert.assertTrue(graph.verify());
+        return graph.getNodes().filter(AccessIndexedNode.class).filter(access -> ((AccessIndexedNode) access).getBoundsCheck() != null).count();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import org.junit.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.lir.framemap.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+public class StackSlotColoringTest extends GraalCompilerTest {
+
+    /**
+     * The loaded values are live across the calls and therefore spilled. The values of the first
+     * group are dead before the values of the second group are loaded.
+     */
+    public static long sequentialSnippet(long[] v, Object o) {
+        long x0 = v[0];
+        long x1 = v[1];
+        long x2 = v[2];
+        long x3 = v[3];
+        long x4 = v[4];
+        long x5 = v[5];
+        long h = o.hashCode();
+        v[12] = x0 + x1 * 3 + x2 * 5 + x3 * 7 + x4 * 11 + x5 * 13;
+
+        long y0 = v[6];
+        long y1 = v[7];
+        long y2 = v[8];
+        long y3 = v[9];
+        long y4 = v[10];
+        long y5 = v[11];
+        h += o.hashCode();
+        return y0 + y1 * 3 + y2 * 5 + y3 * 7 + y4 * 11 + y5 * 13 + h;
+    }
+
+    @Test
+    public void testFrameSize() {
+        ResolvedJavaMethod method = getResolvedJavaMethod("sequentialSnippet");
+        int simpleFrameSize;
+        try (OverrideScope s = OptionValue.override(FrameMapBuilderImpl.Options.StackSlotColoring, false)) {
+            simpleFrameSize = compile(method, null).getTotalFrameSize();
+        }
+        int coloredFrameSize;
+        try (OverrideScope s = OptionValue.override(FrameMapBuilderImpl.Options.StackSlotColoring, true)) {
+            coloredFrameSize = compile(method, null).getTotalFrameSize();
+        }
+        Assert.assertTrue("frame size " + coloredFrameSize + " must be smaller than " + simpleFrameSize, coloredFrameSize < simpleFrameSize);
+    }
+
+    @Test
+    public void testExecution() {
+        long[] values = new long[13];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0x1234567L;
+        }
+        try (OverrideScope s = OptionValue.override(FrameMapBuilderImpl.Options.StackSlotColoring, true)) {
+            test("sequentialSnippet", values, "string");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.alloc.*;
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.alloc.*;
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.cfg.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+public class TraceAllocationTest extends GraalCompilerTest {
+
+    public static int branchesSnippet(int a, int b, int c) {
+        int x = a * b;
+        int y = b + c;
+        int z = a - c;
+        if (a > 100) {
+            x = x * y + z;
+        } else if (b < -100) {
+            y = foo(x, y, z);
+        }
+        return x ^ y ^ z;
+    }
+
+    private static int foo(int x, int y, int z) {
+        return x + 2 * y + 3 * z;
+    }
+
+    public static long loopSnippet(int[] array, long seed) {
+        long sum = seed;
+        long product = 1;
+        for (int i = 0; i < array.length; i++) {
+            int value = array[i];
+            if (value < 0) {
+                product *= value;
+            } else {
+                sum += value;
+            }
+            if (value == Integer.MIN_VALUE) {
+                sum = foo((int) sum, (int) product, value);
+            }
+        }
+        return sum * 31 + product;
+    }
+
+    public static double pressureSnippet(double a, double b, int n) {
+        double s0 = a;
+        double s1 = b;
+        double s2 = a * b;
+        double s3 = a + b;
+        double s4 = a - b;
+        double s5 = a / (b + 1);
+        for (int i = 0; i < n; i++) {
+            s0 += s1 * i;
+            s1 += s2;
+            s2 += s3 * s4;
+            s3 -= s5;
+            if (i == 1000) {
+                s4 = foo((int) s0, (int) s1, (int) s2);
+            }
+            s5 += s0;
+        }
+        return s0 + s1 + s2 + s3 + s4 + s5;
+    }
+
+    @Test
+    public void testBranches() {
+        testAllocators("branchesSnippet", 1000, 2, 3);
+        testAllocators("branchesSnippet", 1, -1000, 3);
+        testAllocators("branchesSnippet", 1, 2, 3);
+    }
+
+    @Test
+    public void testLoop() {
+        testAllocators("loopSnippet", new int[]{1, -2, 3, Integer.MIN_VALUE, 5}, 7L);
+        testAllocators("loopSnippet", new int[0], 7L);
+    }
+
+    @Test
+    public void testPressure() {
+        testAllocators("pressureSnippet", 1.5, 2.5, 0);
+        testAllocators("pressureSnippet", 1.5, 2.5, 2000);
+    }
+
+    @Override
+    protected InstalledCode getCode(ResolvedJavaMethod installedCodeOwner, StructuredGraph graph) {
+        // each allocator configuration must compile the snippet again
+        return getCode(installedCodeOwner, graph, true);
+    }
+
+    /**
+     * Compiles a snippet with trace allocation, once with the default cold trace probability and
+     * once with all traces being allocated as cold code.
+     */
+    private void testAllocators(String snippet, Object... args) {
+        try (OverrideScope s = OptionValue.override(LinearScan.Options.LSRATraceAllocation, true)) {
+            test(snippet, args);
+        }
+        try (OverrideScope s = OptionValue.override(LinearScan.Options.LSRATraceAllocation, true, LinearScan.Options.LSRATraceColdProbability, Double.MAX_VALUE)) {
+            test(snippet, args);
+        }
+    }
+
+    @Test
+    public void testTraceOrder() {
+        for (String snippet : new String[]{"branchesSnippet", "loopSnippet", "pressureSnippet"}) {
+            StructuredGraph graph = parseEager(snippet);
+            ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, true, true);
+            List<List<Block>> traces = TraceBuilder.computeTraces(cfg.getBlocks().size(), cfg.getStartBlock());
+
+            Assert.assertSame(cfg.getStartBlock(), traces.get(0).get(0));
+            Set<Block> placed = new HashSet<>();
+            for (List<Block> trace : traces) {
+                for (int i = 0; i < trace.size(); i++) {
+                    Block block = trace.get(i);
+                    if (i > 0) {
+                        Assert.assertTrue(block.getPredecessors().contains(trace.get(i - 1)));
+                    }
+                    for (Block pred : block.getPredecessors()) {
+                        if (!(block.isLoopHeader() && pred.isLoopEnd())) {
+                            Assert.assertTrue(placed.contains(pred));
+                        }
+                    }
+                    Assert.assertTrue(placed.add(block));
+                }
+            }
+            Assert.assertEquals(cfg.getBlocks().size(), placed.size());
+        }
+    }
+}
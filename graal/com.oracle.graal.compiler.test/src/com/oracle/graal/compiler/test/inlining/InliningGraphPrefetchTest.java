@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.inlining;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.common.inlining.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Checks that building inlining candidates on helper threads (see
+ * {@link InliningPhase.Options#PrefetchInliningGraphs}) does not change the inlining result.
+ */
+public class InliningGraphPrefetchTest extends GraalCompilerTest {
+
+    public static int square(int x) {
+        return x * x;
+    }
+
+    public static int sumOfSquares(int x, int y) {
+        return square(x) + square(y);
+    }
+
+    public static int clamp(int x, int max) {
+        return x > max ? max : x;
+    }
+
+    public int bias = 3;
+
+    public final int biased(int x) {
+        return x + bias;
+    }
+
+    public static int callChainSnippet(int a, int b) {
+        return clamp(sumOfSquares(a, b), 1000) + square(a);
+    }
+
+    public int mixedCallsSnippet(int a) {
+        int result = 0;
+        for (int i = 0; i < a; i++) {
+            result += biased(clamp(i, 10));
+        }
+        return result;
+    }
+
+    @Test
+    public void testCallChain() {
+        compareInlining("callChainSnippet");
+        try (OverrideScope s = OptionValue.override(InliningPhase.Options.PrefetchInliningGraphs, true)) {
+            test("callChainSnippet", 3, 4);
+            test("callChainSnippet", 40, 1);
+        }
+    }
+
+    @Test
+    public void testMixedCalls() {
+        compareInlining("mixedCallsSnippet");
+        try (OverrideScope s = OptionValue.override(InliningPhase.Options.PrefetchInliningGraphs, true)) {
+            test("mixedCallsSnippet", 0);
+            test("mixedCallsSnippet", 20);
+        }
+    }
+
+    @Test
+    public void testGraphCache() {
+        Map<ResolvedJavaMethod, StructuredGraph> graphCache = createGraphCache();
+        StructuredGraph expected = inline("callChainSnippet", false, null);
+        // the second round finds the graphs of the first one in the cache
+        for (int i = 0; i < 2; i++) {
+            StructuredGraph actual = inline("callChainSnippet", true, graphCache);
+            Assert.assertEquals(countInvokes(expected), countInvokes(actual));
+            Assert.assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        }
+        Assert.assertNotNull(graphCache.get(getResolvedJavaMethod("square")));
+    }
+
+    /**
+     * Creates the graph cache used by {@link #testGraphCache()}.
+     */
+    protected Map<ResolvedJavaMethod, StructuredGraph> createGraphCache() {
+        return new HashMap<>();
+    }
+
+    private void compareInlining(String snippet) {
+        StructuredGraph expected = inline(snippet, false, null);
+        StructuredGraph actual = inline(snippet, true, null);
+        Assert.assertEquals(countInvokes(expected), countInvokes(actual));
+        Assert.assertEquals(expected.getNodeCount(), actual.getNodeCount());
+    }
+
+    private static int countInvokes(StructuredGraph graph) {
+        int count = 0;
+        for (@SuppressWarnings("unused") Invoke invoke : graph.getInvokes()) {
+            count++;
+        }
+        return count;
+    }
+
+    private StructuredGraph inline(String snippet, boolean prefetch, Map<ResolvedJavaMethod, StructuredGraph> graphCache) {
+        try (Scope s = Debug.scope("InliningGraphPrefetchTest", new DebugDumpScope(snippet))) {
+            StructuredGraph graph = parseEager(snippet);
+            HighTierContext context = new HighTierContext(getProviders(), new Assumptions(true), graphCache, getDefaultGraphBuilderSuite(), OptimisticOptimizations.ALL);
+            try (OverrideScope o = OptionValue.override(InliningPhase.Options.PrefetchInliningGraphs, prefetch)) {
+                new InliningPhase(new CanonicalizerPhase(true)).apply(graph, context);
+            }
+            new CanonicalizerPhase(true).apply(graph, context);
+            new DeadCodeEliminationPhase().apply(graph);
+            return graph;
+        } catch (Throwable e) {
+            throw Debug.handle(e);
+        }
+    }
+}
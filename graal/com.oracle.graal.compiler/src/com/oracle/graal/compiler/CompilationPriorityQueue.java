@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import com.oracle.graal.debug.*;
+import com.oracle.graal.debug.internal.*;
+
+/**
+ * Work queue for compiler threads that hands out the queued {@link Task} with the highest
+ * {@linkplain Task#getPriority(long, double) priority} instead of the oldest one. Priorities are
+ * computed from the {@linkplain Task#getCount() execution count} of the compiled code at the time
+ * of dequeuing, so code that keeps getting hotter while it waits overtakes code that has not been
+ * executed since it was queued.
+ * <p>
+ * Tasks that are {@linkplain Task#isObsolete() obsolete} are dropped when they are encountered and
+ * never handed out. When the queue holds more tasks than its capacity, the task with the lowest
+ * priority is dropped. Dropped tasks are cancelled. Elements that are not {@link Task}s are handed
+ * out in arrival order before any task.
+ */
+public class CompilationPriorityQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /**
+     * A queued compilation.
+     */
+    public abstract static class Task extends FutureTask<Void> {
+
+        private long queuedTimestamp;
+        private int queuedCount;
+
+        public Task(Runnable runnable) {
+            super(runnable, null);
+        }
+
+        /**
+         * Gets the execution count of the code to be compiled.
+         */
+        protected abstract int getCount();
+
+        /**
+         * Determines if this task no longer needs to run, e.g. because the code was compiled in the
+         * meantime.
+         */
+        protected boolean isObsolete() {
+            return isCancelled();
+        }
+
+        /**
+         * Determines if this task and {@code other} compile the same code. A task is not queued if
+         * an equivalent task is already pending.
+         */
+        protected boolean isEquivalent(@SuppressWarnings("unused") Task other) {
+            return false;
+        }
+
+        void queued(long now) {
+            queuedTimestamp = now;
+            queuedCount = getCount();
+        }
+
+        /**
+         * Computes the priority of this task. The current {@linkplain #getCount() count} is the base
+         * priority. Executions counted while the task was queued are counted twice, and the result
+         * decays by half every {@code halfLifeNanos} since the task was queued.
+         */
+        public double getPriority(long now, double halfLifeNanos) {
+            int count = getCount();
+            int growth = Math.max(count - queuedCount, 0);
+            double age = Math.max(now - queuedTimestamp, 0L);
+            return ((double) count + growth) * Math.pow(0.5, age / halfLifeNanos);
+        }
+    }
+
+    private final String name;
+    private final double halfLifeNanos;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayList<Runnable> elements = new ArrayList<>();
+
+    /**
+     * Histograms of the queue length seen by new tasks and of the milliseconds tasks waited until
+     * they were handed out, both rounded down to a power of two. Guarded by {@link #lock}.
+     */
+    private final DebugHistogram queueLength;
+    private final DebugHistogram waitTime;
+    private long dropped;
+
+    /**
+     * Creates a queue.
+     *
+     * @param name name of this queue, also used as prefix of the names of its histograms
+     * @param halfLifeMillis time in milliseconds after which the priority of a queued task has
+     *            halved
+     * @param capacity maximum number of pending tasks
+     */
+    public CompilationPriorityQueue(String name, int halfLifeMillis, int capacity) {
+        this.name = name;
+        this.halfLifeNanos = Math.max(halfLifeMillis, 1) * 1e6;
+        this.capacity = Math.max(capacity, 1);
+        this.queueLength = Debug.createHistogram(name + "Length");
+        this.waitTime = Debug.createHistogram(name + "WaitMillis");
+    }
+
+    /**
+     * Removes and returns the element with the highest priority. Must be called with {@link #lock}
+     * held.
+     */
+    private Runnable dequeue() {
+        long now = System.nanoTime();
+        int bestIndex = -1;
+        double bestPriority = Double.NEGATIVE_INFINITY;
+        int i = 0;
+        while (i < elements.size()) {
+            Runnable element = elements.get(i);
+            if (!(element instanceof Task)) {
+                bestIndex = i;
+                break;
+            }
+            Task task = (Task) element;
+            if (task.isObsolete()) {
+                elements.remove(i);
+                drop(task);
+                continue;
+            }
+            double priority = task.getPriority(now, halfLifeNanos);
+            if (priority > bestPriority) {
+                bestPriority = priority;
+                bestIndex = i;
+            }
+            i++;
+        }
+        if (bestIndex == -1) {
+            return null;
+        }
+        Runnable result = elements.remove(bestIndex);
+        if (result instanceof Task) {
+            waitTime.add(Long.highestOneBit((now - ((Task) result).queuedTimestamp) / 1000000));
+        }
+        return result;
+    }
+
+    private void drop(Task task) {
+        task.cancel(false);
+        dropped++;
+    }
+
+    /**
+     * Drops the task with the lowest priority. Must be called with {@link #lock} held.
+     */
+    private void removeLowestPriority() {
+        long now = System.nanoTime();
+        int worstIndex = -1;
+        double worstPriority = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < elements.size(); i++) {
+            Runnable element = elements.get(i);
+            if (element instanceof Task) {
+                double priority = ((Task) element).getPriority(now, halfLifeNanos);
+                if (priority < worstPriority) {
+                    worstPriority = priority;
+                    worstIndex = i;
+                }
+            }
+        }
+        if (worstIndex != -1) {
+            drop((Task) elements.remove(worstIndex));
+        }
+    }
+
+    /**
+     * Adds an element to the queue. A {@link Task} that is equivalent to a pending task is
+     * cancelled instead of being added. This method always returns {@code true} so that an executor
+     * using this queue never rejects a task.
+     */
+    @Override
+    public boolean offer(Runnable e) {
+        Objects.requireNonNull(e);
+        lock.lock();
+        try {
+            queueLength.add(Long.highestOneBit(elements.size()));
+            if (e instanceof Task) {
+                Task task = (Task) e;
+                for (Runnable element : elements) {
+                    if (element instanceof Task && task.isEquivalent((Task) element)) {
+                        drop(task);
+                        return true;
+                    }
+                }
+                task.queued(System.nanoTime());
+            }
+            elements.add(e);
+            if (elements.size() > capacity) {
+                removeLowestPriority();
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Runnable result;
+            while ((result = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Runnable result;
+            while ((result = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            Runnable result = dequeue();
+            if (result != null) {
+                elements.add(0, result);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return elements.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            return elements.remove(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = 0;
+            Runnable element;
+            while (n < maxElements && (element = dequeue()) != null) {
+                c.add(element);
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued elements. Removal through the iterator
+     * removes the element from this queue.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final Runnable[] snapshot;
+        lock.lock();
+        try {
+            snapshot = elements.toArray(new Runnable[elements.size()]);
+        } finally {
+            lock.unlock();
+        }
+        return new Iterator<Runnable>() {
+            private int index;
+
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            public Runnable next() {
+                if (index >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[index++];
+            }
+
+            @Override
+            public void remove() {
+                if (index == 0) {
+                    throw new IllegalStateException();
+                }
+                CompilationPriorityQueue.this.remove(snapshot[index - 1]);
+            }
+        };
+    }
+
+    /**
+     * Gets the number of tasks that were dropped because they were obsolete, equivalent to a
+     * pending task or had the lowest priority in a full queue.
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Prints the number of pending and dropped tasks and the histograms of this queue.
+     */
+    public void printStatistics() {
+        lock.lock();
+        try {
+            TTY.println("%s: %d pending, %d dropped", name, elements.size(), dropped);
+            DebugHistogramAsciiPrinter printer = new DebugHistogramAsciiPrinter(TTY.cachedOut);
+            printer.print(queueLength);
+            printer.print(waitTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
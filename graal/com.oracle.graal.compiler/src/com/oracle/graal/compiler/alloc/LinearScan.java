@@ -41,6 +41,7 @@ import com.oracle.graal.compiler.common.cfg.*;
 import com.oracle.graal.compiler.gen.*;
 import com.oracle.graal.debug.*;
 import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.debug.internal.*;
 import com.oracle.graal.lir.*;
 import com.oracle.graal.lir.LIRInstruction.OperandFlag;
 import com.oracle.graal.lir.LIRInstruction.OperandMode;
@@ -75,6 +76,10 @@ public final class LinearScan {
         // @formatter:off
         @Option(help = "Enable spill position optimization")
         public static final OptionValue<Boolean> LSRAOptimizeSpillPosition = new OptionValue<>(true);
+        @Option(help = "Allocate registers along traces of likely blocks instead of the linear scan block order")
+        public static final OptionValue<Boolean> LSRATraceAllocation = new OptionValue<>(false);
+        @Option(help = "Traces starting at a block with a lower probability are allocated with a cheaper strategy")
+        public static final OptionValue<Double> LSRATraceColdProbability = new OptionValue<>(0.01);
         // @formatter:on
     }
 
@@ -117,6 +122,12 @@ public final class LinearScan {
      */
     final List<? extends AbstractBlock<?>> sortedBlocks;
 
+    /**
+     * Blocks, indexed by {@linkplain AbstractBlock#getId() id}, that belong to a cold trace when
+     * {@linkplain Options#LSRATraceAllocation allocating along traces}, or {@code null} otherwise.
+     */
+    private final BitSet coldBlocks;
+
     /**
      * Map from {@linkplain #operandNumber(Value) operand numbers} to intervals.
      */
@@ -163,11 +174,16 @@ public final class LinearScan {
     private final int firstVariableNumber;
 
     public LinearScan(TargetDescription target, LIRGenerationResult res) {
+        this(target, res, res.getLIR().linearScanOrder(), null);
+    }
+
+    private LinearScan(TargetDescription target, LIRGenerationResult res, List<? extends AbstractBlock<?>> sortedBlocks, BitSet coldBlocks) {
         this.target = target;
         this.res = res;
         this.ir = res.getLIR();
         this.frameMapBuilder = res.getFrameMapBuilder();
-        this.sortedBlocks = ir.linearScanOrder();
+        this.sortedBlocks = sortedBlocks;
+        this.coldBlocks = coldBlocks;
         this.registerAttributes = frameMapBuilder.getRegisterConfig().getAttributesMap();
 
         this.registers = target.arch.getRegisters();
@@ -298,7 +314,7 @@ public final class LinearScan {
             firstDerivedIntervalIndex = intervalsSize;
         }
         if (intervalsSize == intervals.length) {
-            intervals = Arrays.copyOf(intervals, intervals.length + (intervals.length >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
+            intervals = ArrayRecycler.copyOf(intervals, intervals.length + (intervals.length >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
         }
         intervalsSize++;
         Variable variable = new Variable(source.kind(), ir.nextVariable());
@@ -394,6 +410,14 @@ public final class LinearScan {
         return opIdToBlockMap[opIdToIndex(opId)];
     }
 
+    /**
+     * Determines if a block belongs to a cold trace. Cold code is allocated with a cheaper
+     * strategy that avoids evicting other intervals from their registers.
+     */
+    boolean isColdBlock(AbstractBlock<?> block) {
+        return coldBlocks != null && coldBlocks.get(block.getId());
+    }
+
     boolean isBlockBegin(int opId) {
         return opId == 0 || blockForId(opId) != blockForId(opId - 1);
     }
@@ -573,6 +597,7 @@ public final class LinearScan {
                                 assert isStackSlotValue(toLocation) : "to operand must be a stack slot";
 
                                 insertionBuffer.append(j + 1, ir.getSpillMoveFactory().createMove(toLocation, fromLocation));
+                                SpillStores.increment();
 
                                 Debug.log("inserting move after definition of interval %d to stack slot %s at opId %d", interval.operandNumber, interval.spillSlot(), opId);
                             }
@@ -618,7 +643,7 @@ public final class LinearScan {
     void numberInstructions() {
 
         intervalsSize = operandSize();
-        intervals = new Interval[intervalsSize + (intervalsSize >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT)];
+        intervals = ArrayRecycler.newArray(Interval[].class, intervalsSize + (intervalsSize >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
 
         ValueConsumer setVariableConsumer = (value, mode, flags) -> {
             if (isVariable(value)) {
@@ -1838,8 +1863,74 @@ public final class LinearScan {
 
     }
 
+    private static final DebugTimer AllocationTimer = Debug.timer("LinearScan");
+    private static final DebugMetric SpillStores = Debug.metric("LSRASpillStores");
+
     public static void allocate(TargetDescription target, LIRGenerationResult res) {
-        new LinearScan(target, res).allocate();
+        try (TimerCloseable t = AllocationTimer.start()) {
+            if (Options.LSRATraceAllocation.getValue()) {
+                allocateAlongTraces(target, res, res.getLIR().getControlFlowGraph());
+            } else {
+                allocate(new LinearScan(target, res));
+            }
+        }
+    }
+
+    private static void allocate(LinearScan allocator) {
+        try {
+            allocator.allocate();
+        } finally {
+            allocator.releaseTables();
+        }
+    }
+
+    /**
+     * Allocates registers with the blocks laid out along {@linkplain TraceBuilder traces}, so that
+     * the intervals of the likely paths are allocated first and split positions and resolution
+     * moves end up at the boundaries to unlikely code. Blocks of traces that start below
+     * {@link Options#LSRATraceColdProbability} are allocated without evicting other intervals.
+     */
+    private static <T extends AbstractBlock<T>> void allocateAlongTraces(TargetDescription target, LIRGenerationResult res, AbstractControlFlowGraph<T> cfg) {
+        List<T> blocks = cfg.getBlocks();
+        List<List<T>> traces = TraceBuilder.computeTraces(blocks.size(), cfg.getStartBlock());
+        List<T> order = new ArrayList<>(blocks.size());
+        BitSet coldBlocks = new BitSet(blocks.size());
+        double coldProbability = Options.LSRATraceColdProbability.getValue();
+        for (List<T> trace : traces) {
+            boolean cold = trace.get(0).probability() < coldProbability;
+            for (T block : trace) {
+                block.setLinearScanNumber(order.size());
+                order.add(block);
+                if (cold) {
+                    coldBlocks.set(block.getId());
+                }
+            }
+        }
+        Debug.log("allocating along %d traces, %d of %d blocks are cold", traces.size(), coldBlocks.cardinality(), blocks.size());
+        try {
+            allocate(new LinearScan(target, res, order, coldBlocks));
+        } finally {
+            // later phases expect the numbering of the LIR's linear scan order
+            List<? extends AbstractBlock<?>> linearScanOrder = res.getLIR().linearScanOrder();
+            for (int i = 0; i < linearScanOrder.size(); i++) {
+                linearScanOrder.get(i).setLinearScanNumber(i);
+            }
+        }
+    }
+
+    /**
+     * Hands the large tables of this allocator back to the {@link ArrayRecycler} so that they can
+     * be reused by the next compilation on this thread.
+     */
+    private void releaseTables() {
+        if (intervals != null) {
+            ArrayRecycler.release(intervals);
+            intervals = null;
+        }
+        if (intervalInLoop != null) {
+            intervalInLoop.release();
+            intervalInLoop = null;
+        }
     }
 
     private void allocate() {
@@ -1885,6 +1976,8 @@ public final class LinearScan {
                 printIntervals("After register allocation");
                 printLir("After register allocation", true);
 
+                recordSpillSlotLiveRanges();
+
                 // register interval mapper
                 frameMapBuilder.requireMapping(new Mapper());
                 // build frame map
@@ -1922,6 +2015,24 @@ public final class LinearScan {
         }
     }
 
+    /**
+     * Records the live ranges of the spill slots with the {@link FrameMapBuilder} so that spill
+     * slots that are never live at the same time can share a frame location. The contents of a
+     * spill slot are only needed while its variable is live, i.e., within the ranges of the split
+     * parent and of all split children, which share the spill slot of the parent.
+     */
+    private void recordSpillSlotLiveRanges() {
+        for (int i = 0; i < intervalsSize; i++) {
+            Interval interval = intervals[i];
+            if (interval != null && interval.spillSlot() != null && isVirtualStackSlot(interval.spillSlot())) {
+                VirtualStackSlot slot = asVirtualStackSlot(interval.spillSlot());
+                for (Range range = interval.first(); range != Range.EndMarker; range = range.next) {
+                    frameMapBuilder.recordLiveRange(slot, range.from, range.to);
+                }
+            }
+        }
+    }
+
     private DebugMetric betterSpillPos = Debug.metric("BetterSpillPosition");
     private DebugMetric betterSpillPosWithLowerProbability = Debug.metric("BetterSpillPositionWithLowerProbability");
 
@@ -2000,6 +2111,7 @@ public final class LinearScan {
                                  * at position 1.
                                  */
                                 insertionBuffer.append(1, move);
+                                SpillStores.increment();
 
                                 betterSpillPosWithLowerProbability.increment();
                                 interval.setSpillDefinitionPos(spillOpId);
@@ -745,6 +745,26 @@ class LinearScanWalker extends IntervalWalker {
         }
     }
 
+    /**
+     * Spills an interval that starts in a {@linkplain LinearScan#isColdBlock cold} block and does
+     * not need a register right away, instead of searching for active intervals that could be
+     * evicted from their registers. The part starting before its first use that requires a
+     * register is allocated again when it is activated.
+     *
+     * @return {@code true} if the interval was spilled
+     */
+    boolean spillColdInterval(Interval interval) {
+        if (!allocator.isColdBlock(allocator.blockForId(interval.from()))) {
+            return false;
+        }
+        if (interval.firstUsage(RegisterPriority.MustHaveRegister) <= interval.from() + 1) {
+            return false;
+        }
+        Debug.log("spilling interval %s that starts in cold code", interval);
+        splitAndSpillInterval(interval);
+        return true;
+    }
+
     boolean noAllocationPossible(Interval interval) {
         if (allocator.callKillsRegisters) {
             // fast calculation of intervals that can never get a register because the
@@ -868,9 +888,15 @@ class LinearScanWalker extends IntervalWalker {
 
                     initVarsForAlloc(interval);
                     if (noAllocationPossible(interval) || !allocFreeRegister(interval)) {
-                        // no empty register available.
-                        // split and spill another interval so that this interval gets a register
-                        allocLockedRegister(interval);
+                        if (spillColdInterval(interval)) {
+                            // interval starts in cold code and is spilled instead of evicting
+                            // other intervals
+                        } else {
+                            // no empty register available.
+                            // split and spill another interval so that this interval gets a
+                            // register
+                            allocLockedRegister(interval);
+                        }
                     }
 
                     // spilled intervals need not be move to active-list
@@ -35,6 +35,8 @@ import com.oracle.graal.lir.*;
  */
 final class MoveResolver {
 
+    private static final DebugMetric ResolvedMoves = Debug.metric("LSRAResolvedMoves");
+
     private final LinearScan allocator;
 
     private int insertIdx;
@@ -204,6 +206,7 @@ final class MoveResolver {
         AllocatableValue toOpr = toInterval.operand;
 
         insertionBuffer.append(insertIdx, allocator.ir.getSpillMoveFactory().createMove(toOpr, fromOpr));
+        ResolvedMoves.increment();
 
         Debug.log("insert move from %s to %s at %d", fromInterval, toInterval, insertIdx);
     }
@@ -214,6 +217,7 @@ final class MoveResolver {
 
         AllocatableValue toOpr = toInterval.operand;
         insertionBuffer.append(insertIdx, allocator.ir.getSpillMoveFactory().createMove(toOpr, fromOpr));
+        ResolvedMoves.increment();
 
         Debug.log("insert move from value %s to %s at %d", fromOpr, toInterval, insertIdx);
     }
@@ -74,7 +74,9 @@ public class OptimizingLinearScanWalker extends LinearScanWalker {
     void walk() {
         try (Scope s = Debug.scope("OptimizingLinearScanWalker")) {
             for (AbstractBlock<?> block : allocator.sortedBlocks) {
-                optimizeBlock(block);
+                if (!allocator.isColdBlock(block)) {
+                    optimizeBlock(block);
+                }
             }
         }
         super.walk();
@@ -94,6 +94,14 @@ public class HighTier extends PhaseSuite<HighTierContext> {
             appendPhase(new LoopTransformHighPhase());
             appendPhase(new LoopTransformLowPhase());
         }
+
+        if (LoopRangeCheckElimination.getValue()) {
+            appendPhase(new LoopRangeCheckEliminationPhase());
+        }
+
+        if (PartialUnroll.getValue()) {
+            appendPhase(new LoopPartialUnrollPhase(canonicalizer));
+        }
         appendPhase(new RemoveValueProxyPhase());
 
         if (OptCanonicalizer.getValue()) {
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.debug.test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.oracle.graal.debug.internal.*;
+
+public class ThreadLocalDebugValuesTest {
+
+    private static int newIndex(String name) {
+        return new MetricImpl("ThreadLocalDebugValuesTest" + name, false).getIndex();
+    }
+
+    private static ThreadLocalDebugValues find(String threadName) {
+        for (ThreadLocalDebugValues values : ThreadLocalDebugValues.getAll()) {
+            if (values.getThreadName().equals(threadName)) {
+                return values;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testAggregation() throws Exception {
+        int index = newIndex("Aggregation");
+        int threadCount = 4;
+        CountDownLatch recorded = new CountDownLatch(threadCount);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final int amount = i + 1;
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    ThreadLocalDebugValues.add(index, amount);
+                }
+                recorded.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }, "ThreadLocalDebugValuesTest-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            recorded.await();
+            for (int i = 0; i < threadCount; i++) {
+                ThreadLocalDebugValues values = find("ThreadLocalDebugValuesTest-" + i);
+                Assert.assertNotNull(values);
+                Assert.assertEquals(1000L * (i + 1), values.getValue(index));
+            }
+            Assert.assertEquals(10000L, ThreadLocalDebugValues.getTotal(index));
+        } finally {
+            done.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        // the values of terminated threads are still included in the total
+        Assert.assertNull(find("ThreadLocalDebugValuesTest-0"));
+        Assert.assertEquals(10000L, ThreadLocalDebugValues.getTotal(index));
+    }
+
+    @Test
+    public void testResetBySnapshot() {
+        int index = newIndex("Reset");
+        ThreadLocalDebugValues.add(index, 5);
+        Assert.assertEquals(5L, ThreadLocalDebugValues.get(index));
+
+        ThreadLocalDebugValues.reset();
+        Assert.assertEquals(0L, ThreadLocalDebugValues.get(index));
+        Assert.assertEquals(0L, ThreadLocalDebugValues.getTotal(index));
+
+        ThreadLocalDebugValues.add(index, 3);
+        Assert.assertEquals(3L, ThreadLocalDebugValues.get(index));
+        Assert.assertEquals(3L, ThreadLocalDebugValues.getTotal(index));
+
+        // a value that is set is relative to the snapshot too
+        ThreadLocalDebugValues.set(index, 7);
+        Assert.assertEquals(7L, ThreadLocalDebugValues.get(index));
+        Assert.assertEquals(7L, ThreadLocalDebugValues.getTotal(index));
+    }
+}
@@ -40,12 +40,19 @@ public abstract class DebugValue implements Comparable<DebugValue> {
 
     public long getCurrentValue() {
         ensureInitialized();
+        if (ThreadLocalDebugValues.isEnabled()) {
+            return ThreadLocalDebugValues.get(index);
+        }
         return DebugScope.getInstance().getCurrentValue(index);
     }
 
     protected void setCurrentValue(long l) {
         ensureInitialized();
-        DebugScope.getInstance().setCurrentValue(index, l);
+        if (ThreadLocalDebugValues.isEnabled()) {
+            ThreadLocalDebugValues.set(index, l);
+        } else {
+            DebugScope.getInstance().setCurrentValue(index, l);
+        }
     }
 
     public void setConditional(boolean flag) {
@@ -63,7 +70,12 @@ public abstract class DebugValue implements Comparable<DebugValue> {
     }
 
     protected void addToCurrentValue(long value) {
-        setCurrentValue(getCurrentValue() + value);
+        if (ThreadLocalDebugValues.isEnabled()) {
+            ensureInitialized();
+            ThreadLocalDebugValues.add(index, value);
+        } else {
+            setCurrentValue(getCurrentValue() + value);
+        }
     }
 
     /**
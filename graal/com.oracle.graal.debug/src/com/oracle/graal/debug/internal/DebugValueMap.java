@@ -23,13 +23,14 @@
 package com.oracle.graal.debug.internal;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * A node in a tree of {@link DebugValue}s.
  */
 public class DebugValueMap {
 
-    private static List<DebugValueMap> topLevelMaps = new ArrayList<>();
+    private static final List<DebugValueMap> topLevelMaps = new CopyOnWriteArrayList<>();
 
     private long[] values;
     private List<DebugValueMap> children;
@@ -107,11 +108,11 @@ public class DebugValueMap {
         return "DebugValueMap<" + getName() + ">";
     }
 
-    public static synchronized void registerTopLevel(DebugValueMap map) {
+    public static void registerTopLevel(DebugValueMap map) {
         topLevelMaps.add(map);
     }
 
-    public static synchronized List<DebugValueMap> getTopLevelMaps() {
+    public static List<DebugValueMap> getTopLevelMaps() {
         return topLevelMaps;
     }
 
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.debug.internal;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.oracle.graal.debug.*;
+
+/**
+ * Flat per-thread storage for the values of {@link DebugValue}s. It is used instead of the
+ * {@link DebugValueMap}s of the {@link DebugScope}s when the {@value #PROPERTY_NAME} system property
+ * is {@code true}.
+ * <p>
+ * Each thread only ever updates its own array of counters, so recording a value neither takes a
+ * lock nor needs a {@link DebugScope}. The values of all threads are only summed up when they are
+ * {@linkplain #getTotal(int) read} for printing. Values recorded concurrently with reading may or
+ * may not be included.
+ * <p>
+ * {@linkplain #reset() Resetting} never writes to the arrays of other threads, which could undo
+ * their concurrent updates. Instead, it takes a snapshot of each array that is subtracted from the
+ * values when they are read.
+ * <p>
+ * The values of a thread refer to it only weakly. Once the thread terminated, its values are added
+ * to those of all other terminated threads so that they no longer need to be kept separately.
+ */
+public final class ThreadLocalDebugValues {
+
+    public static final String PROPERTY_NAME = "graal.debug.threadLocalValues";
+
+    private static final boolean ENABLED = Boolean.getBoolean(PROPERTY_NAME);
+
+    /**
+     * The values of all live threads that recorded a value and of threads that terminated but were
+     * not {@linkplain #foldTerminated() folded} yet. Entries are only removed with {@code all}
+     * locked.
+     */
+    private static final Queue<ThreadLocalDebugValues> all = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The sum of the values of terminated threads. Only updated with {@link #all} locked.
+     */
+    private static final ThreadLocalDebugValues terminated = new ThreadLocalDebugValues(null, "terminated threads");
+
+    private static final ThreadLocal<ThreadLocalDebugValues> current = new ThreadLocal<ThreadLocalDebugValues>() {
+
+        @Override
+        protected ThreadLocalDebugValues initialValue() {
+            Thread thread = Thread.currentThread();
+            ThreadLocalDebugValues values = new ThreadLocalDebugValues(thread, thread.getName());
+            synchronized (all) {
+                foldTerminated();
+                all.add(values);
+            }
+            return values;
+        }
+    };
+
+    private final WeakReference<Thread> thread;
+    private final String threadName;
+
+    /**
+     * Only written by the owning thread. A new array is published when the values need to grow.
+     */
+    private volatile long[] values = new long[16];
+
+    /**
+     * The values at the last {@linkplain #reset() reset}. Only written by the thread resetting the
+     * values, never updated in place.
+     */
+    private volatile long[] baseline = new long[0];
+
+    private ThreadLocalDebugValues(Thread thread, String threadName) {
+        this.thread = new WeakReference<>(thread);
+        this.threadName = threadName;
+    }
+
+    /**
+     * Determines if values are stored in this flat form instead of in {@link DebugValueMap}s.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Gets the value the current thread recorded for the {@link DebugValue} with a given
+     * {@linkplain DebugValue#getIndex() index}.
+     */
+    public static long get(int index) {
+        return current.get().getValue(index);
+    }
+
+    /**
+     * Sets the value the current thread recorded for the {@link DebugValue} with a given
+     * {@linkplain DebugValue#getIndex() index}.
+     */
+    public static void set(int index, long value) {
+        ThreadLocalDebugValues values = current.get();
+        long[] base = values.baseline;
+        values.ensureSize(index)[index] = index < base.length ? value + base[index] : value;
+    }
+
+    /**
+     * Adds to the value the current thread recorded for the {@link DebugValue} with a given
+     * {@linkplain DebugValue#getIndex() index}.
+     */
+    public static void add(int index, long value) {
+        current.get().ensureSize(index)[index] += value;
+    }
+
+    private long[] ensureSize(int index) {
+        long[] array = values;
+        if (index >= array.length) {
+            array = Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+            values = array;
+        }
+        return array;
+    }
+
+    private boolean isTerminated() {
+        Thread t = thread.get();
+        return t == null || !t.isAlive();
+    }
+
+    /**
+     * Adds the values of terminated threads to {@link #terminated} and forgets them. Must be called
+     * with {@link #all} locked.
+     */
+    private static void foldTerminated() {
+        for (Iterator<ThreadLocalDebugValues> iterator = all.iterator(); iterator.hasNext();) {
+            ThreadLocalDebugValues values = iterator.next();
+            if (values.isTerminated()) {
+                iterator.remove();
+                long[] array = values.values;
+                for (int i = 0; i < array.length; i++) {
+                    long value = values.getValue(i);
+                    if (value != 0) {
+                        terminated.ensureSize(i)[i] += value;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the thread that recorded these values.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Gets the value recorded by this thread since the last {@linkplain #reset() reset} for the
+     * {@link DebugValue} with a given {@linkplain DebugValue#getIndex() index}.
+     */
+    public long getValue(int index) {
+        long[] array = values;
+        long[] base = baseline;
+        long value = index < array.length ? array[index] : 0L;
+        return index < base.length ? value - base[index] : value;
+    }
+
+    /**
+     * Gets the values of all live threads that recorded a value, followed by the sum of the values
+     * of all terminated threads.
+     */
+    public static List<ThreadLocalDebugValues> getAll() {
+        synchronized (all) {
+            foldTerminated();
+            List<ThreadLocalDebugValues> result = new ArrayList<>(all);
+            result.add(terminated);
+            return result;
+        }
+    }
+
+    /**
+     * Gets the sum of the values recorded by all threads for the {@link DebugValue} with a given
+     * {@linkplain DebugValue#getIndex() index}.
+     */
+    public static long getTotal(int index) {
+        synchronized (all) {
+            foldTerminated();
+            long total = terminated.getValue(index);
+            for (ThreadLocalDebugValues values : all) {
+                total += values.getValue(index);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Clears the values of all threads. Values that other threads record concurrently may be counted
+     * before or after the reset.
+     */
+    public static void reset() {
+        synchronized (all) {
+            foldTerminated();
+            terminated.baseline = terminated.values.clone();
+            for (ThreadLocalDebugValues values : all) {
+                values.baseline = values.values.clone();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import com.oracle.graal.api.runtime.*;
+import com.oracle.graal.graph.*;
+import com.oracle.graal.graph.Node.ValueNumberable;
+import com.oracle.graal.nodeinfo.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+public class ValueNumberingTableTest {
+
+    @NodeInfo
+    static class Def extends Node {
+        protected Def() {
+        }
+
+        public static Def create() {
+            return new Def();
+        }
+    }
+
+    @NodeInfo
+    static class Op extends Node implements ValueNumberable {
+        @Input Def x;
+        @Input Def y;
+        final int data;
+
+        public static Op create(Def x, Def y, int data) {
+            return new Op(x, y, data);
+        }
+
+        protected Op(Def x, Def y, int data) {
+            this.x = x;
+            this.y = y;
+            this.data = data;
+        }
+
+        void setX(Def x) {
+            updateUsages(this.x, x);
+            this.x = x;
+        }
+    }
+
+    private OverrideScope scope;
+    private Graph graph;
+    private Def a;
+    private Def b;
+    private Def c;
+
+    @Before
+    public void before() {
+        // Need to initialize HotSpotGraalRuntime before any Node class is initialized.
+        Graal.getRuntime();
+
+        scope = OptionValue.override(Graph.Options.GraphValueNumberingTable, true);
+        graph = new Graph();
+        a = graph.add(Def.create());
+        b = graph.add(Def.create());
+        c = graph.add(Def.create());
+    }
+
+    @After
+    public void after() {
+        scope.close();
+    }
+
+    @Test
+    public void testUnique() {
+        Op op = graph.unique(Op.create(a, b, 1));
+        assertSame(op, graph.unique(Op.create(a, b, 1)));
+        assertNotSame(op, graph.unique(Op.create(a, b, 2)));
+        assertNotSame(op, graph.unique(Op.create(b, a, 1)));
+        assertNotSame(op, graph.unique(Op.create(a, null, 1)));
+    }
+
+    @Test
+    public void testAddWithoutUnique() {
+        Op op = graph.addWithoutUnique(Op.create(a, b, 1));
+        assertSame(op, graph.findDuplicate(Op.create(a, b, 1)));
+    }
+
+    @Test
+    public void testInputChanged() {
+        Op op = graph.unique(Op.create(a, b, 1));
+        op.replaceFirstInput(a, c);
+        assertSame(op, graph.unique(Op.create(c, b, 1)));
+        assertNotSame(op, graph.unique(Op.create(a, b, 1)));
+
+        Op duplicate = graph.addWithoutUnique(Op.create(b, b, 1));
+        duplicate.replaceFirstInput(b, c);
+        assertSame(op, graph.findDuplicate(duplicate));
+    }
+
+    @Test
+    public void testInputChangedBySetter() {
+        Op op = graph.unique(Op.create(a, b, 1));
+        op.setX(c);
+        assertSame(op, graph.unique(Op.create(c, b, 1)));
+        assertNotSame(op, graph.unique(Op.create(a, b, 1)));
+
+        Op duplicate = graph.addWithoutUnique(Op.create(b, b, 1));
+        duplicate.setX(c);
+        assertSame(op, graph.findDuplicate(duplicate));
+    }
+
+    @Test
+    public void testDeleted() {
+        Op op = graph.unique(Op.create(a, b, 1));
+        op.safeDelete();
+        Op other = graph.unique(Op.create(a, b, 1));
+        assertNotSame(op, other);
+        assertTrue(other.isAlive());
+    }
+}
@@ -39,9 +39,12 @@ import com.oracle.graal.options.*;
  */
 public class Graph {
 
-    static class Options {
+    public static class Options {
         @Option(help = "Verify graphs often during compilation when assertions are turned on")//
         public static final OptionValue<Boolean> VerifyGraalGraphs = new OptionValue<>(true);
+
+        @Option(help = "Use a hash table to global value number nodes that are not leaf nodes instead of scanning the usages of their inputs")//
+        public static final OptionValue<Boolean> GraphValueNumberingTable = new OptionValue<>(false);
     }
 
     public final String name;
@@ -86,6 +89,12 @@ public class Graph {
      */
     private final HashMap<CacheEntry, Node> cachedLeafNodes = new HashMap<>();
 
+    /**
+     * Used to global value number {@link ValueNumberable} nodes that are not leaf nodes if
+     * {@link Options#GraphValueNumberingTable} is enabled, otherwise {@code null}.
+     */
+    private final ValueNumberingTable valueNumberingTable;
+
     /*
      * Indicates that the graph should no longer be modified. Frozen graphs can be used my multiple
      * threads so it's only safe to read them.
@@ -160,6 +169,12 @@ public class Graph {
             nodeModCounts = new int[INITIAL_NODES_SIZE];
             nodeUsageModCounts = new int[INITIAL_NODES_SIZE];
         }
+        if (Options.GraphValueNumberingTable.getValue()) {
+            valueNumberingTable = new ValueNumberingTable();
+            nodeEventListener = valueNumberingTable;
+        } else {
+            valueNumberingTable = null;
+        }
     }
 
     int extractOriginalNodeId(Node node) {
@@ -490,6 +505,8 @@ public class Graph {
             } else {
                 return null;
             }
+        } else if (valueNumberingTable != null) {
+            return valueNumberingTable.findDuplicate(node);
         } else {
             // Non-leaf node: look for another usage of the node's inputs that
             // has the same data, inputs and successors as the node. To reduce
@@ -676,6 +693,9 @@ public class Graph {
         compressions++;
         nodesDeletedBeforeLastCompression += nodesDeletedSinceLastCompression;
         nodesDeletedSinceLastCompression = 0;
+        if (valueNumberingTable != null) {
+            valueNumberingTable.removeDeleted();
+        }
         return true;
     }
 
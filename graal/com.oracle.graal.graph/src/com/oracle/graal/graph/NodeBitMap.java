@@ -24,6 +24,7 @@ package com.oracle.graal.graph;
 
 import java.util.*;
 
+import com.oracle.graal.compiler.common.*;
 import com.oracle.graal.graph.iterators.*;
 
 public final class NodeBitMap implements NodeIterable<Node> {
@@ -35,7 +36,7 @@ public final class NodeBitMap implements NodeIterable<Node> {
 
     public NodeBitMap(Graph graph) {
         nodeCount = graph.nodeIdCount();
-        bits = new long[sizeForNodeCount(nodeCount)];
+        bits = ArrayRecycler.newLongArray(sizeForNodeCount(nodeCount));
         this.nodeIdAccessor = new NodeIdAccessor(graph);
     }
 
@@ -44,7 +45,8 @@ public final class NodeBitMap implements NodeIterable<Node> {
     }
 
     private NodeBitMap(NodeBitMap other) {
-        this.bits = other.bits.clone();
+        this.bits = ArrayRecycler.newLongArray(other.bits.length);
+        System.arraycopy(other.bits, 0, bits, 0, other.bits.length);
         this.nodeCount = other.nodeCount;
         this.nodeIdAccessor = other.nodeIdAccessor;
     }
@@ -126,10 +128,19 @@ public final class NodeBitMap implements NodeIterable<Node> {
         int newLength = sizeForNodeCount(nodeCount);
         if (newLength > bits.length) {
             newLength = Math.max(newLength, (bits.length * 3 / 2) + 1);
-            bits = Arrays.copyOf(bits, newLength);
+            bits = ArrayRecycler.copyOf(bits, newLength);
         }
     }
 
+    /**
+     * Hands the storage of this bit map back to the {@link ArrayRecycler}. The bit map must not be
+     * used after this call.
+     */
+    public void release() {
+        ArrayRecycler.release(bits);
+        bits = null;
+    }
+
     private boolean check(Node node, boolean grow) {
         assert node.graph() == graph() : "this node is not part of the graph";
         assert grow || !isNew(node) : "node was added to the graph after creating the node bitmap: " + node;
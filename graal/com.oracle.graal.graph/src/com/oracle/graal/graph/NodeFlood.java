@@ -55,6 +55,16 @@ public class NodeFlood implements Iterable<Node> {
         return visited.isNew(node);
     }
 
+    /**
+     * Hands the storage of this flood back to the recycler. The flood must not be used after this
+     * call.
+     *
+     * @see NodeBitMap#release()
+     */
+    public void release() {
+        visited.release();
+    }
+
     private static class QueueConsumingIterator implements Iterator<Node> {
 
         private final Queue<Node> queue;
@@ -26,20 +26,31 @@ import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
 import java.util.Map.Entry;
 
+import com.oracle.graal.compiler.common.*;
+
 public class NodeMap<T> extends NodeIdAccessor {
 
     private static final int MIN_REALLOC_SIZE = 16;
 
     protected Object[] values;
 
+    /**
+     * The number of entries in {@link #values} that are in use. The array may be longer if it was
+     * obtained from the {@link ArrayRecycler}.
+     */
+    private int size;
+
     public NodeMap(Graph graph) {
         super(graph);
-        this.values = new Object[graph.nodeIdCount()];
+        this.size = graph.nodeIdCount();
+        this.values = ArrayRecycler.newArray(Object[].class, size);
     }
 
     public NodeMap(NodeMap<T> copyFrom) {
         super(copyFrom.graph);
-        this.values = Arrays.copyOf(copyFrom.values, copyFrom.values.length);
+        this.size = copyFrom.size;
+        this.values = ArrayRecycler.newArray(Object[].class, size);
+        System.arraycopy(copyFrom.values, 0, values, 0, size);
     }
 
     @SuppressWarnings("unchecked")
@@ -56,7 +67,11 @@ public class NodeMap<T> extends NodeIdAccessor {
 
     private void checkAndGrow(Node node) {
         if (isNew(node)) {
-            this.values = Arrays.copyOf(values, Math.max(MIN_REALLOC_SIZE, graph.nodeIdCount() * 3 / 2));
+            int newSize = Math.max(MIN_REALLOC_SIZE, graph.nodeIdCount() * 3 / 2);
+            if (newSize > values.length) {
+                this.values = ArrayRecycler.copyOf(values, newSize);
+            }
+            this.size = newSize;
         }
         assert check(node);
     }
@@ -76,8 +91,8 @@ public class NodeMap<T> extends NodeIdAccessor {
     }
 
     public boolean containsValue(Object value) {
-        for (Object o : values) {
-            if (o == value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
                 return true;
             }
         }
@@ -99,7 +114,7 @@ public class NodeMap<T> extends NodeIdAccessor {
     }
 
     public int size() {
-        return values.length;
+        return size;
     }
 
     public boolean isNew(Node node) {
@@ -113,7 +128,16 @@ public class NodeMap<T> extends NodeIdAccessor {
     }
 
     public void clear() {
-        Arrays.fill(values, null);
+        Arrays.fill(values, 0, size, null);
+    }
+
+    /**
+     * Hands the storage of this map back to the {@link ArrayRecycler}. The map must not be used
+     * after this call.
+     */
+    public void release() {
+        ArrayRecycler.release(values);
+        values = null;
     }
 
     public Iterable<Entry<Node, T>> entries() {
@@ -128,7 +152,7 @@ public class NodeMap<T> extends NodeIdAccessor {
                     @Override
                     public boolean hasNext() {
                         forward();
-                        return i < NodeMap.this.values.length;
+                        return i < NodeMap.this.size;
                     }
 
                     @SuppressWarnings("unchecked")
@@ -158,7 +182,7 @@ public class NodeMap<T> extends NodeIdAccessor {
                     }
 
                     private void forward() {
-                        while (i < NodeMap.this.values.length && (NodeMap.this.graph.getNode(i) == null || NodeMap.this.values[i] == null)) {
+                        while (i < NodeMap.this.size && (NodeMap.this.graph.getNode(i) == null || NodeMap.this.values[i] == null)) {
                             i++;
                         }
                     }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph;
+
+import static com.oracle.graal.graph.Edges.Type.*;
+
+import java.util.*;
+
+import com.oracle.graal.graph.Graph.NodeEventListener;
+import com.oracle.graal.graph.Node.ValueNumberable;
+
+/**
+ * Hash table used by {@link Graph#findDuplicate(Node)} to global value number
+ * {@link ValueNumberable} nodes that are not {@linkplain NodeClass#isLeafNode() leaf} nodes. Without
+ * it, a lookup scans the usages of one of the node's inputs, which is linear in the number of usages
+ * of popular inputs such as parameters.
+ * <p>
+ * Nodes are hashed on their {@link NodeClass} and the identities of their inputs. The table is kept
+ * up to date as a {@link NodeEventListener} of the graph. A node whose inputs changed is only
+ * marked as dirty and rehashed before the next lookup, since {@link Node#updateUsages(Node, Node)}
+ * sends the notification before the input field is written. Data fields are compared when looking
+ * up a node but are not part of the hash as they can change without an event, e.g. when a stamp is
+ * updated. Deleted nodes are removed lazily when they are encountered during a lookup or when the
+ * graph is compressed.
+ */
+final class ValueNumberingTable implements NodeEventListener {
+
+    /**
+     * Maps a hash to the nodes with that hash.
+     */
+    private final HashMap<Integer, ArrayList<Node>> buckets = new HashMap<>();
+
+    /**
+     * The hash under which each node in {@link #buckets} is stored.
+     */
+    private final HashMap<Node, Integer> hashes = new HashMap<>();
+
+    /**
+     * Nodes whose inputs changed since they were last hashed.
+     */
+    private final HashSet<Node> dirty = new HashSet<>();
+
+    private static boolean isTracked(Node node) {
+        NodeClass nodeClass = node.getNodeClass();
+        return nodeClass.valueNumberable() && !nodeClass.isLeafNode();
+    }
+
+    private static int hash(Node node) {
+        int hash = node.getNodeClass().hashCode();
+        for (Node input : node.inputs()) {
+            hash = hash * 31 + input.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public void nodeAdded(Node node) {
+        if (isTracked(node)) {
+            insert(node, hash(node));
+        }
+    }
+
+    @Override
+    public void inputChanged(Node node) {
+        if (hashes.containsKey(node)) {
+            dirty.add(node);
+        }
+    }
+
+    /**
+     * Moves the {@linkplain #dirty dirty} nodes to the buckets of their current inputs.
+     */
+    private void rehashDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        for (Node node : dirty) {
+            Integer oldHash = hashes.get(node);
+            if (oldHash != null) {
+                if (node.isDeleted()) {
+                    remove(node, oldHash);
+                } else {
+                    int newHash = hash(node);
+                    if (newHash != oldHash) {
+                        remove(node, oldHash);
+                        insert(node, newHash);
+                    }
+                }
+            }
+        }
+        dirty.clear();
+    }
+
+    private void insert(Node node, int hash) {
+        ArrayList<Node> bucket = buckets.get(hash);
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            buckets.put(hash, bucket);
+        }
+        bucket.add(node);
+        hashes.put(node, hash);
+    }
+
+    private void remove(Node node, int hash) {
+        ArrayList<Node> bucket = buckets.get(hash);
+        if (bucket != null) {
+            bucket.remove(node);
+            if (bucket.isEmpty()) {
+                buckets.remove(hash);
+            }
+        }
+        hashes.remove(node);
+    }
+
+    /**
+     * Finds a live node other than {@code node} that has the same class, data, inputs and
+     * successors as {@code node}.
+     */
+    Node findDuplicate(Node node) {
+        rehashDirty();
+        int hash = hash(node);
+        ArrayList<Node> bucket = buckets.get(hash);
+        if (bucket == null) {
+            return null;
+        }
+        NodeClass nodeClass = node.getNodeClass();
+        Node result = null;
+        Iterator<Node> iter = bucket.iterator();
+        while (iter.hasNext()) {
+            Node other = iter.next();
+            if (other.isDeleted()) {
+                iter.remove();
+                hashes.remove(other);
+            } else if (result == null && other != node && nodeClass == other.getNodeClass() && node.valueEquals(other) && nodeClass.getEdges(Inputs).areEqualIn(node, other) &&
+                            nodeClass.getEdges(Successors).areEqualIn(node, other)) {
+                result = other;
+            }
+        }
+        if (bucket.isEmpty()) {
+            buckets.remove(hash);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all deleted nodes from the table.
+     */
+    void removeDeleted() {
+        rehashDirty();
+        Iterator<ArrayList<Node>> buckets = this.buckets.values().iterator();
+        while (buckets.hasNext()) {
+            ArrayList<Node> bucket = buckets.next();
+            Iterator<Node> iter = bucket.iterator();
+            while (iter.hasNext()) {
+                Node node = iter.next();
+                if (node.isDeleted()) {
+                    iter.remove();
+                    hashes.remove(node);
+                }
+            }
+            if (bucket.isEmpty()) {
+                buckets.remove();
+            }
+        }
+    }
+}
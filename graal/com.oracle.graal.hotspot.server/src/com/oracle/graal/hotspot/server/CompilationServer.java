@@ -24,22 +24,44 @@ package com.oracle.graal.hotspot.server;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
-
-import javax.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import com.oracle.graal.hotspot.*;
 import com.oracle.graal.hotspot.bridge.*;
 import com.oracle.graal.hotspot.logging.*;
 
 /**
- * Server side of the client/server compilation model. The server listens for connections on the
- * hardcoded port 1199.
+ * Server side of the client/server compilation model. The server listens for connections on a
+ * configurable port ({@value #DEFAULT_PORT} by default) and serves any number of clients
+ * concurrently.
+ * <p>
+ * All socket I/O is done by a single thread that multiplexes the connections with a
+ * {@link Selector}. Complete frames are handed to the thread that runs the session of the
+ * connection, and frames sent by a session are written by the selector thread as the socket
+ * becomes writable. Since invocations through an {@link InvocationSocket} block until the result
+ * arrives, each session still occupies a thread while it waits, but no thread blocks on a socket.
  */
 public class CompilationServer implements Runnable {
 
+    public static final int DEFAULT_PORT = 1199;
+
+    /**
+     * Upper bound on the size of a single frame. Larger frames indicate a corrupted stream.
+     */
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Starts a server that serves consecutive and concurrent connections until the VM is killed.
+     *
+     * @param args optionally, the port to listen on
+     */
     public static void main(String[] args) throws Exception {
-        new CompilationServer(false).run();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        new CompilationServer(true, port).run();
     }
 
     public interface ConnectionObserver {
@@ -50,18 +72,53 @@ public class CompilationServer implements Runnable {
     }
 
     private final boolean multiple;
-    private final ArrayList<ConnectionObserver> observers = new ArrayList<>();
+    private final int port;
+    private final List<ConnectionObserver> observers = new CopyOnWriteArrayList<>();
+
+    private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * Work that has to be performed on the selector thread, such as changing the interest set of a
+     * key.
+     */
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+
+    private final ExecutorService sessions = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CompilationServer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile Selector selector;
+    private volatile int localPort = -1;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new Compilation server listening on {@link #DEFAULT_PORT}.
+     *
+     * @see #CompilationServer(boolean, int)
+     */
+    public CompilationServer(boolean multiple) {
+        this(multiple, DEFAULT_PORT);
+    }
 
     /**
      * Creates a new Compilation server. The server is activated by calling {@link #run()} directly
      * or via a new {@link Thread}.
      *
-     * @param multiple true if the server should server should serve an infinite amount of
-     *            consecutive connections, false if it should terminate after the first connection
+     * @param multiple true if the server should serve an infinite amount of consecutive or
+     *            concurrent connections, false if it should terminate after the first connection
      *            ends.
+     * @param port the port to listen on or 0 to use an ephemeral port (see {@link #getLocalPort()})
      */
-    public CompilationServer(boolean multiple) {
+    public CompilationServer(boolean multiple, int port) {
         this.multiple = multiple;
+        this.port = port;
     }
 
     public void addConnectionObserver(ConnectionObserver observer) {
@@ -72,51 +129,134 @@ public class CompilationServer implements Runnable {
         observers.remove(observer);
     }
 
+    /**
+     * Waits until the server is listening and returns the port it listens on.
+     *
+     * @return the port or -1 if the server could not be started
+     */
+    public int getLocalPort() throws InterruptedException {
+        started.await();
+        return localPort;
+    }
+
+    /**
+     * Stops accepting connections and closes all open connections.
+     */
+    public void shutdown() {
+        shutdown = true;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    private void runOnSelectorThread(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
     public void run() {
-        final ServerSocket serverSocket;
-        try {
-            serverSocket = ServerSocketFactory.getDefault().createServerSocket(1199);
+        try (Selector s = Selector.open(); ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            SelectionKey acceptKey = serverChannel.register(s, SelectionKey.OP_ACCEPT);
+            selector = s;
+            localPort = serverChannel.socket().getLocalPort();
+            started.countDown();
+            Logger.log("Compilation server ready on port " + localPort + ", waiting for clients to connect...");
+
+            while (!shutdown) {
+                s.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = s.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(serverChannel, s);
+                        if (!multiple) {
+                            // serve only the first connection
+                            acceptKey.cancel();
+                        }
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.readable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.writable();
+                            }
+                        } catch (IOException e) {
+                            connection.failed(e);
+                        }
+                    }
+                }
+            }
+            for (Connection connection : connections) {
+                connection.failed(new ClosedChannelException());
+            }
         } catch (IOException e) {
             throw new RuntimeException("Couldn't create compilation server", e);
+        } finally {
+            started.countDown();
+            sessions.shutdown();
         }
-        do {
-            Socket socket = null;
-            try {
-                Logger.log("Compilation server ready, waiting for client to connect...");
-                socket = serverSocket.accept();
-                Logger.log("Connected to " + socket.getRemoteSocketAddress());
+    }
 
-                ReplacingStreams streams = new ReplacingStreams(socket.getOutputStream(), socket.getInputStream());
+    private void accept(ServerSocketChannel serverChannel, Selector s) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(s, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        sessions.execute(() -> serve(connection));
+    }
 
-                // get the CompilerToVM proxy from the client
-                CompilerToVM toVM = (CompilerToVM) streams.getInvocation().waitForResult(false);
+    /**
+     * Runs the session of one client.
+     */
+    private void serve(Connection connection) {
+        try {
+            Logger.log("Connected to " + connection.channel.getRemoteAddress());
+            InvocationSocket invocation = new InvocationSocket(connection);
 
-                // return the initialized compiler to the client
-                HotSpotGraalRuntimeProvider compiler = initializeServer(toVM);
-                streams.getInvocation().sendResult(compiler);
+            // get the CompilerToVM proxy from the client
+            CompilerToVM toVM = (CompilerToVM) invocation.waitForResult(false);
 
-                for (ConnectionObserver observer : observers) {
-                    observer.connectionStarted(compiler);
-                }
+            // return the initialized compiler to the client
+            HotSpotGraalRuntimeProvider compiler = initializeServer(toVM);
+            invocation.sendResult(compiler);
 
-                streams.getInvocation().waitForResult(true);
+            for (ConnectionObserver observer : observers) {
+                observer.connectionStarted(compiler);
+            }
 
-                for (ConnectionObserver observer : observers) {
-                    observer.connectionFinished(compiler);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException(e);
-            } finally {
-                if (socket != null) {
-                    try {
-                        socket.close();
-                    } catch (IOException e) {
-                    }
-                }
+            invocation.waitForResult(true);
+
+            for (ConnectionObserver observer : observers) {
+                observer.connectionFinished(compiler);
             }
-        } while (multiple);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        } finally {
+            connection.close();
+            if (!multiple) {
+                shutdown();
+            }
+        }
     }
 
     @SuppressWarnings("unused")
@@ -124,4 +264,138 @@ public class CompilationServer implements Runnable {
         // TODO(thomaswue): Fix creation of compiler instances on server side.
         return null;
     }
+
+    /**
+     * The server side of a connection. The {@code readable}, {@code writable} and {@code failed}
+     * methods are only called on the selector thread, the {@link FrameChannel} methods only on the
+     * thread running the session.
+     */
+    private final class Connection implements FrameChannel {
+
+        /**
+         * Marks the end of the incoming frames.
+         */
+        private final byte[] eof = new byte[0];
+
+        final SocketChannel channel;
+        SelectionKey key;
+
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private ByteBuffer body;
+        private final BlockingQueue<byte[]> incoming = new LinkedBlockingQueue<>();
+        private final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+        private boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void readable() throws IOException {
+            while (true) {
+                if (body == null) {
+                    if (channel.read(header) < 0) {
+                        failed(null);
+                        return;
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    header.flip();
+                    int length = header.getInt();
+                    header.clear();
+                    if (length < 0 || length > MAX_FRAME_LENGTH) {
+                        throw new StreamCorruptedException("invalid frame length " + length);
+                    }
+                    body = ByteBuffer.allocate(length);
+                }
+                if (channel.read(body) < 0) {
+                    failed(null);
+                    return;
+                }
+                if (body.hasRemaining()) {
+                    return;
+                }
+                incoming.add(body.array());
+                body = null;
+            }
+        }
+
+        void writable() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = outgoing.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                outgoing.poll();
+            }
+            if (closing) {
+                failed(null);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Closes the channel and wakes up the session.
+         *
+         * @param e the exception that caused the connection to fail or null if the peer or the
+         *            session closed the connection
+         */
+        void failed(IOException e) {
+            if (e != null) {
+                Logger.log("Connection failed: " + e);
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+            }
+            connections.remove(this);
+            incoming.add(eof);
+        }
+
+        @Override
+        public void send(byte[] frame, int length) throws IOException {
+            if (!channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+            buffer.putInt(length);
+            buffer.put(frame, 0, length);
+            buffer.flip();
+            outgoing.add(buffer);
+            runOnSelectorThread(() -> {
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+
+        @Override
+        public byte[] receive() throws IOException {
+            byte[] frame;
+            try {
+                frame = incoming.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (frame == eof) {
+                // keep reporting the end of the stream
+                incoming.add(eof);
+                return null;
+            }
+            return frame;
+        }
+
+        @Override
+        public void close() {
+            runOnSelectorThread(() -> {
+                if (key.isValid()) {
+                    closing = true;
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+    }
 }
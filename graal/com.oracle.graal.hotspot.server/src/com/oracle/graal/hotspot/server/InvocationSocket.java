@@ -22,6 +22,8 @@
  */
 package com.oracle.graal.hotspot.server;
 
+import static com.oracle.graal.hotspot.server.ValueCodec.*;
+
 import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
@@ -30,18 +32,33 @@ import com.oracle.graal.debug.*;
 import com.oracle.graal.hotspot.logging.*;
 
 /**
- * A collection of java.lang.reflect proxies that communicate over a socket connection.
+ * A collection of java.lang.reflect proxies that communicate over a {@link FrameChannel}.
+ * 
+ * Calling a method sends the method and the parameters as one frame. Afterwards this class waits
+ * for a result. While waiting for a result three types of frames can arrive: a method invocation, a
+ * method result or an exception. Method invocation can thus be recursive.
+ * 
+ * The values in a frame are encoded by a {@link ValueCodec}. Methods are sent as an index into a
+ * per-connection table; only the first invocation of a method transfers its declaring interface,
+ * name and parameter types.
  * 
- * Calling a method sends the method name and the parameters through the socket. Afterwards this
- * class waits for a result. While waiting for a result three types of objects can arrive through
- * the socket: a method invocation, a method result or an exception. Method invocation can thus be
- * recursive.
+ * Encoding a frame may add entries to the per-connection tables of methods and known objects. If
+ * encoding fails, these entries are removed again so that both ends keep agreeing on the indexes;
+ * a result that cannot be encoded is reported to the caller as an exception. If a frame cannot be
+ * sent, the connection is closed.
+ * 
+ * An instance of this class is not thread safe. All invocations on a connection must be made from
+ * the thread that currently waits for results on it.
  */
 public class InvocationSocket {
 
     private static final boolean DEBUG = false;
     private static final boolean COUNT_CALLS = false;
 
+    private static final byte INVOCATION = 1;
+    private static final byte RESULT = 2;
+    private static final byte EXCEPTION = 3;
+
     private static final HashSet<String> cachedMethodNames = new HashSet<>();
     private static final HashSet<String> forbiddenMethodNames = new HashSet<>();
 
@@ -55,14 +72,24 @@ public class InvocationSocket {
         forbiddenMethodNames.add("javaClass");
     }
 
-    private final ObjectOutputStream output;
-    private final ObjectInputStream input;
+    private final FrameChannel channel;
+    private final ValueCodec codec;
+
+    /**
+     * Methods sent through this socket, mapped to their index in the peer's {@link #methods}.
+     */
+    private final Map<Method, Integer> methodIds = new HashMap<>();
+
+    /**
+     * Methods received through this socket, in the order in which they were first received.
+     */
+    private final ArrayList<Method> methods = new ArrayList<>();
 
     private final Map<String, Integer> counts = new HashMap<>();
 
-    public InvocationSocket(ObjectOutputStream output, ObjectInputStream input) {
-        this.output = output;
-        this.input = input;
+    public InvocationSocket(FrameChannel channel) {
+        this.channel = channel;
+        this.codec = new ValueCodec(this);
 
         if (COUNT_CALLS) {
             Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -81,49 +108,102 @@ public class InvocationSocket {
         }
     }
 
+    private void incCount(String name, Object[] args) {
+        if (COUNT_CALLS) {
+            String nameAndArgCount = name + (args == null ? 0 : args.length);
+            if (counts.get(nameAndArgCount) != null) {
+                counts.put(nameAndArgCount, counts.get(nameAndArgCount) + 1);
+            } else {
+                counts.put(nameAndArgCount, 1);
+            }
+        }
+    }
+
     /**
-     * Represents one invocation of a method that is transferred via the socket connection.
-     * 
+     * Buffer in which outgoing frames are assembled.
      */
-    private static class Invocation implements Serializable {
+    private static final class FrameBuffer extends ByteArrayOutputStream {
 
-        private static final long serialVersionUID = -799162779226626066L;
-
-        public Object receiver;
-        public String methodName;
-        public Object[] args;
+        FrameBuffer(byte type) {
+            super(64);
+            write(type);
+        }
 
-        public Invocation(Object receiver, String methodName, Object[] args) {
-            this.receiver = receiver;
-            this.methodName = methodName;
-            this.args = args;
+        void send(FrameChannel channel) throws IOException {
+            channel.send(buf, count);
         }
     }
 
     /**
-     * Represents the result of an invocation that is transferred via the socket connection.
-     * 
+     * Encodes the content of a frame.
      */
-    private static class Result implements Serializable {
+    private interface FrameWriter {
 
-        private static final long serialVersionUID = -7496058356272415814L;
+        void write(DataOutputStream out) throws IOException;
+    }
 
-        public Object result;
+    /**
+     * Assembles a frame and sends it. If encoding the frame fails, the objects and methods that
+     * were entered into the tables while encoding it are removed again as the peer never sees the
+     * frame. If sending the frame fails, the connection is closed as the peer may have received
+     * part of it.
+     */
+    private void sendFrame(byte type, FrameWriter writer) throws IOException {
+        FrameBuffer frame = new FrameBuffer(type);
+        int objectMark = codec.mark();
+        int methodMark = methodIds.size();
+        try {
+            writer.write(new DataOutputStream(frame));
+        } catch (IOException | RuntimeException | Error e) {
+            codec.reset(objectMark);
+            methodIds.values().removeIf(id -> id >= methodMark);
+            throw e;
+        }
+        try {
+            frame.send(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
 
-        public Result(Object result) {
-            this.result = result;
+    private void writeMethod(DataOutputStream out, Method method) throws IOException {
+        Integer id = methodIds.get(method);
+        if (id != null) {
+            out.writeInt(id);
+            return;
+        }
+        methodIds.put(method, methodIds.size());
+        out.writeInt(-1);
+        writeString(out, method.getDeclaringClass().getName());
+        writeString(out, method.getName());
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        out.writeByte(parameterTypes.length);
+        for (Class<?> type : parameterTypes) {
+            writeString(out, type.getName());
         }
     }
 
-    private void incCount(String name, Object[] args) {
-        if (COUNT_CALLS) {
-            String nameAndArgCount = name + (args == null ? 0 : args.length);
-            if (counts.get(nameAndArgCount) != null) {
-                counts.put(nameAndArgCount, counts.get(nameAndArgCount) + 1);
-            } else {
-                counts.put(nameAndArgCount, 1);
-            }
+    private Method readMethod(DataInputStream in) throws IOException, ClassNotFoundException {
+        int id = in.readInt();
+        if (id != -1) {
+            return methods.get(id);
+        }
+        Class<?> declaringClass = codec.lookupClass(readString(in));
+        String name = readString(in);
+        Class<?>[] parameterTypes = new Class<?>[in.readUnsignedByte()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = codec.lookupClass(readString(in));
         }
+        Method method;
+        try {
+            method = declaringClass.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            method = null;
+        }
+        // unknown methods still occupy an index so that later indexes agree
+        methods.add(method);
+        return method;
     }
 
     /**
@@ -134,18 +214,21 @@ public class InvocationSocket {
      */
     public class Handler implements InvocationHandler {
 
-        private final Object receiver;
+        private final int receiverId;
         private final HashMap<String, Object> cache = new HashMap<>();
 
-        public Handler(Object receiver) {
-            this.receiver = receiver;
+        /**
+         * @param receiverId the index of the receiver in the peer's table of known objects
+         */
+        public Handler(int receiverId) {
+            this.receiverId = receiverId;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
             // only interface methods can be transferred, java.lang.Object methods
             if (method.getDeclaringClass() == Object.class) {
-                return method.invoke(receiver, args);
+                return method.invoke(this, args);
             }
             String methodName = method.getName();
             // check if the result of this zero-arg method was cached
@@ -164,8 +247,14 @@ public class InvocationSocket {
                 }
                 incCount(methodName, args);
 
-                output.writeObject(new Invocation(receiver, methodName, args));
-                output.flush();
+                sendFrame(INVOCATION, out -> {
+                    out.writeInt(receiverId);
+                    writeMethod(out, method);
+                    int argCount = args == null ? 0 : args.length;
+                    for (int i = 0; i < argCount; i++) {
+                        codec.write(out, args[i]);
+                    }
+                });
                 result = waitForResult(false);
 
                 // result caching for selected methods
@@ -187,89 +276,91 @@ public class InvocationSocket {
     /**
      * Waits for the result of a remote method invocation. Invocations that should be executed in
      * this VM might arrive while waiting for the result, and these invocations will be executed
-     * before again waiting fort he result.
+     * before again waiting for the result.
      */
-    @SuppressWarnings("unused")
     public Object waitForResult(boolean eofExpected) throws IOException, ClassNotFoundException {
         while (true) {
-            Object in;
-            try {
-                in = input.readObject();
-            } catch (EOFException e) {
+            byte[] frame = channel.receive();
+            if (frame == null) {
                 if (eofExpected) {
                     return null;
                 }
-                throw e;
+                throw new EOFException();
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+            byte type = in.readByte();
+            if (type == RESULT) {
+                return codec.read(in);
+            } else if (type == EXCEPTION) {
+                Throwable t = (Throwable) codec.read(in);
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                }
+                throw new RuntimeException(t);
+            } else if (type != INVOCATION) {
+                throw new StreamCorruptedException("unknown frame type " + type);
+            }
+
+            Object receiver = codec.getObject(in.readInt());
+            Method method = readMethod(in);
+            if (method == null) {
+                Exception e = new UnsupportedOperationException("unknown method");
+                e.printStackTrace();
+                sendException(e);
+                continue;
             }
-            if (in instanceof Result) {
-                return ((Result) in).result;
-            } else if (in instanceof RuntimeException) {
-                throw (RuntimeException) in;
-            } else if (in instanceof Throwable) {
-                throw new RuntimeException((Throwable) in);
+            Object[] args = new Object[method.getParameterCount()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = codec.read(in);
             }
 
-            Invocation invoke = (Invocation) in;
-            Method method = null;
-            for (Class<?> clazz = invoke.receiver.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
-                for (Method m : clazz.getDeclaredMethods()) {
-                    if (invoke.methodName.equals(m.getName())) {
-                        method = m;
-                        break;
+            Throwable exception = null;
+            Object result = null;
+            try {
+                if (Logger.ENABLED && DEBUG) {
+                    StringBuilder str = new StringBuilder();
+                    str.append("invoking local " + method.getName() + "(");
+                    for (int i = 0; i < args.length; i++) {
+                        str.append(i == 0 ? "" : ", ");
+                        str.append(Logger.pretty(args[i]));
                     }
+                    str.append(")");
+                    Logger.startScope(str.toString());
                 }
-            }
-            if (method == null) {
-                Exception e = new UnsupportedOperationException("unknown method " + invoke.methodName);
+                result = method.invoke(receiver, args);
+            } catch (InvocationTargetException e) {
+                TTY.println("error while invoking " + method.getName());
+                e.getCause().printStackTrace();
+                exception = e.getCause();
+            } catch (IllegalArgumentException | IllegalAccessException e) {
+                TTY.println("error while invoking " + method.getName());
                 e.printStackTrace();
-                output.writeObject(e);
-                output.flush();
-            } else {
-                Object result = null;
+                exception = e;
+            } finally {
+                if (DEBUG) {
+                    Logger.endScope(" = " + (exception != null ? exception : result));
+                }
+            }
+            if (exception == null) {
                 try {
-                    if (invoke.args == null) {
-                        if (DEBUG) {
-                            Logger.startScope("invoking local " + invoke.methodName);
-                        }
-                        result = method.invoke(invoke.receiver);
-                    } else {
-                        if (Logger.ENABLED && DEBUG) {
-                            StringBuilder str = new StringBuilder();
-                            str.append("invoking local " + invoke.methodName + "(");
-                            for (int i = 0; i < invoke.args.length; i++) {
-                                str.append(i == 0 ? "" : ", ");
-                                str.append(Logger.pretty(invoke.args[i]));
-                            }
-                            str.append(")");
-                            Logger.startScope(str.toString());
-                        }
-                        result = method.invoke(invoke.receiver, invoke.args);
-                    }
-                    result = new Result(result);
-                } catch (IllegalArgumentException e) {
-                    TTY.println("error while invoking " + invoke.methodName);
-                    e.getCause().printStackTrace();
-                    result = e.getCause();
-                } catch (InvocationTargetException e) {
-                    TTY.println("error while invoking " + invoke.methodName);
-                    e.getCause().printStackTrace();
-                    result = e.getCause();
-                } catch (IllegalAccessException e) {
-                    TTY.println("error while invoking " + invoke.methodName);
-                    e.getCause().printStackTrace();
-                    result = e.getCause();
-                } finally {
-                    if (DEBUG) {
-                        if (result instanceof Result) {
-                            Logger.endScope(" = " + ((Result) result).result);
-                        } else {
-                            Logger.endScope(" = " + result);
-                        }
-                    }
+                    sendResult(result);
+                    continue;
+                } catch (ObjectStreamException | RuntimeException e) {
+                    // the result could not be encoded, report that to the caller instead
+                    exception = e;
                 }
-                output.writeObject(result);
-                output.flush();
             }
+            sendException(exception);
+        }
+    }
+
+    private void sendException(Throwable t) throws IOException {
+        try {
+            sendFrame(EXCEPTION, out -> codec.write(out, t));
+        } catch (ObjectStreamException | RuntimeException e) {
+            RuntimeException replacement = new RuntimeException(t.toString());
+            replacement.setStackTrace(t.getStackTrace());
+            sendFrame(EXCEPTION, out -> codec.write(out, replacement));
         }
     }
 
@@ -277,8 +368,13 @@ public class InvocationSocket {
      * Sends a result without invoking a method, used by CompilationServer startup code.
      */
     public void sendResult(Object obj) throws IOException {
-        output.writeObject(new Result(obj));
-        output.flush();
+        sendFrame(RESULT, out -> codec.write(out, obj));
+    }
+
+    /**
+     * Closes the underlying {@link FrameChannel}.
+     */
+    public void close() throws IOException {
+        channel.close();
     }
-    // CheckStyle: resume system..print check
 }
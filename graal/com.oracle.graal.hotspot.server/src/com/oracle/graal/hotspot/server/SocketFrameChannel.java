@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.server;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * A {@link FrameChannel} over a blocking {@link Socket}, used on the client side of the
+ * client/server compilation model.
+ */
+public class SocketFrameChannel implements FrameChannel {
+
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+
+    public SocketFrameChannel(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Connects to a {@link CompilationServer}.
+     */
+    public static SocketFrameChannel connect(String host, int port) throws IOException {
+        return new SocketFrameChannel(new Socket(host, port));
+    }
+
+    @Override
+    public void send(byte[] frame, int length) throws IOException {
+        output.writeInt(length);
+        output.write(frame, 0, length);
+        output.flush();
+    }
+
+    @Override
+    public byte[] receive() throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte[] frame = new byte[length];
+        input.readFully(frame);
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
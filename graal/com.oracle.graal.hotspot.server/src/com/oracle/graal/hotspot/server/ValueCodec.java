@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.server;
+
+import static com.oracle.graal.graph.util.CollectionsAccess.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.hotspot.logging.*;
+
+/**
+ * Compact binary encoding of the values exchanged through an {@link InvocationSocket}.
+ * <p>
+ * Objects that implement {@link Remote} are never copied. They are entered into a table of known
+ * objects and the peer creates a proxy that forwards all calls back through the socket. Known
+ * objects, including proxies for objects of the peer, are encoded as their index in this table.
+ * Both ends of a connection add objects to the table in the same order, so the indexes agree.
+ * Primitives, strings, enums and arrays have a dedicated encoding; any other value falls back to
+ * Java serialization.
+ */
+public class ValueCodec {
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte ENUM = 11;
+    private static final byte BYTES = 12;
+    private static final byte ARRAY = 13;
+    private static final byte KNOWN = 14;
+    private static final byte NEW_REMOTE = 15;
+    private static final byte SERIALIZED = 16;
+
+    private static final Map<String, Class<?>> primitiveClasses = new HashMap<>();
+
+    static {
+        for (Class<?> c : new Class<?>[]{boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class, void.class}) {
+            primitiveClasses.put(c.getName(), c);
+        }
+    }
+
+    private final Map<Object, Integer> objectIds = newIdentityMap();
+    private final ArrayList<Object> objects = new ArrayList<>();
+
+    private final InvocationSocket invocation;
+    private final ClassLoader loader;
+
+    public ValueCodec(InvocationSocket invocation) {
+        this.invocation = invocation;
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        this.loader = contextLoader != null ? contextLoader : ValueCodec.class.getClassLoader();
+
+        addStaticObject(Value.ILLEGAL);
+    }
+
+    private void addStaticObject(Object obj) {
+        objectIds.put(obj, objects.size());
+        objects.add(obj);
+    }
+
+    /**
+     * Gets the number of entries in the table of known objects, to be passed to {@link #reset(int)}.
+     */
+    public int mark() {
+        return objects.size();
+    }
+
+    /**
+     * Removes the entries that were added to the table of known objects since {@link #mark()}
+     * returned {@code mark}. This must be done when encoding a frame fails so that the table stays
+     * in sync with the peer, which never sees the frame.
+     */
+    public void reset(int mark) {
+        while (objects.size() > mark) {
+            objectIds.remove(objects.remove(objects.size() - 1));
+        }
+    }
+
+    /**
+     * Gets the object with a given index in the table of known objects.
+     */
+    public Object getObject(int id) {
+        return objects.get(id);
+    }
+
+    /**
+     * Resolves a class name as returned by {@link Class#getName()}, including primitive types.
+     */
+    public Class<?> lookupClass(String name) throws ClassNotFoundException {
+        Class<?> c = primitiveClasses.get(name);
+        if (c != null) {
+            return c;
+        }
+        return Class.forName(name, false, loader);
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 encoding. Unlike
+     * {@link DataOutput#writeUTF(String)} this has no limit on the length of the string.
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isRemote(Object obj) {
+        return obj instanceof Remote || obj instanceof com.oracle.graal.api.meta.Remote;
+    }
+
+    /**
+     * Enters a {@link Remote} object into the table and returns the names of the interfaces the
+     * proxy on the other side of the connection implements.
+     */
+    private String[] export(Object obj) {
+        objectIds.put(obj, objects.size());
+        objects.add(obj);
+        Class<?>[] interfaces = ProxyUtil.getAllInterfaces(obj.getClass());
+        String[] names = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            names[i] = interfaces[i].getName();
+        }
+        return names;
+    }
+
+    private Object createProxy(String[] interfaceNames) throws ClassNotFoundException {
+        Class<?>[] interfaces = new Class<?>[interfaceNames.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = lookupClass(interfaceNames[i]);
+        }
+        int id = objects.size();
+        Object proxy = Proxy.newProxyInstance(loader, interfaces, invocation.new Handler(id));
+        objectIds.put(proxy, id);
+        objects.add(proxy);
+        return proxy;
+    }
+
+    public void write(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        Integer id = objectIds.get(value);
+        if (id != null) {
+            out.writeByte(KNOWN);
+            out.writeInt(id);
+        } else if (isRemote(value)) {
+            String[] interfaces = export(value);
+            out.writeByte(NEW_REMOTE);
+            out.writeShort(interfaces.length);
+            for (String name : interfaces) {
+                writeString(out, name);
+            }
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Enum) {
+            Enum<?> e = (Enum<?>) value;
+            out.writeByte(ENUM);
+            writeString(out, e.getDeclaringClass().getName());
+            out.writeShort(e.ordinal());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            writeString(out, array.getClass().getComponentType().getName());
+            out.writeInt(array.length);
+            for (Object element : array) {
+                write(out, element);
+            }
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ReplacingOutputStream oos = new ReplacingOutputStream(bytes)) {
+                oos.writeObject(value);
+            }
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    public Object read(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case KNOWN:
+                return objects.get(in.readInt());
+            case NEW_REMOTE: {
+                String[] interfaces = new String[in.readUnsignedShort()];
+                for (int i = 0; i < interfaces.length; i++) {
+                    interfaces[i] = readString(in);
+                }
+                return createProxy(interfaces);
+            }
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case CHAR:
+                return in.readChar();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return readString(in);
+            case ENUM:
+                return lookupClass(readString(in)).getEnumConstants()[in.readUnsignedShort()];
+            case BYTES: {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            }
+            case ARRAY: {
+                Class<?> componentType = lookupClass(readString(in));
+                Object[] array = (Object[]) Array.newInstance(componentType, in.readInt());
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = read(in);
+                }
+                return array;
+            }
+            case SERIALIZED: {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (ReplacingInputStream ois = new ReplacingInputStream(new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                }
+            }
+            default:
+                throw new StreamCorruptedException("unknown value tag " + tag);
+        }
+    }
+
+    /**
+     * Stands in for a known object inside a serialized value.
+     */
+    private static class Placeholder implements Serializable {
+
+        private static final long serialVersionUID = 6071894297788156945L;
+        final int id;
+
+        Placeholder(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Stands in for a newly exported {@link Remote} object inside a serialized value.
+     */
+    private static class NewRemotePlaceholder implements Serializable {
+
+        private static final long serialVersionUID = 3084101671389500206L;
+        final String[] interfaces;
+
+        NewRemotePlaceholder(String[] interfaces) {
+            this.interfaces = interfaces;
+        }
+    }
+
+    /**
+     * Replaces known and {@link Remote} objects nested in a serialized value.
+     */
+    private class ReplacingOutputStream extends ObjectOutputStream {
+
+        ReplacingOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            Integer id = objectIds.get(obj);
+            if (id != null) {
+                return new Placeholder(id);
+            }
+            if (isRemote(obj)) {
+                return new NewRemotePlaceholder(export(obj));
+            }
+            // Remote object constants must implement Remote
+            assert !(obj instanceof JavaConstant) || ((JavaConstant) obj).getKind() != Kind.Object;
+            return obj;
+        }
+    }
+
+    /**
+     * Resolves the placeholders written by {@link ReplacingOutputStream}.
+     */
+    private class ReplacingInputStream extends ObjectInputStream {
+
+        ReplacingInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return lookupClass(desc.getName());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof Placeholder) {
+                return objects.get(((Placeholder) obj).id);
+            }
+            if (obj instanceof NewRemotePlaceholder) {
+                try {
+                    return createProxy(((NewRemotePlaceholder) obj).interfaces);
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidClassException(e.getMessage());
+                }
+            }
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.oracle.graal.hotspot.*;
+import com.oracle.graal.hotspot.server.*;
+import com.oracle.graal.hotspot.server.CompilationServer.ConnectionObserver;
+
+/**
+ * Tests {@link CompilationServer} and {@link InvocationSocket} with clients on localhost.
+ */
+public class CompilationServerTest {
+
+    public interface Calculator {
+
+        int add(int a, int b);
+
+        String describe(Object[] values, TimeUnit unit, byte[] bytes);
+
+        Calculator self();
+
+        Calculator create();
+
+        Object[] unserializable();
+    }
+
+    public static class OtherRemote implements Runnable, Remote {
+
+        public void run() {
+        }
+    }
+
+    public static class CalculatorImpl implements Calculator, Remote {
+
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public String describe(Object[] values, TimeUnit unit, byte[] bytes) {
+            return Arrays.toString(values) + " " + unit + " " + Arrays.toString(bytes);
+        }
+
+        public Calculator self() {
+            return this;
+        }
+
+        public Calculator create() {
+            return new CalculatorImpl();
+        }
+
+        public Object[] unserializable() {
+            // exports a new remote object before failing on a value that cannot be serialized
+            return new Object[]{new OtherRemote(), new Object()};
+        }
+    }
+
+    private interface ServerSide {
+
+        void run(Calculator calculator) throws Exception;
+    }
+
+    /**
+     * Connects a client that exports a {@link CalculatorImpl} and runs {@code test} with the proxy
+     * for it.
+     */
+    private static void runWithClient(ServerSide test) throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            AtomicReference<Throwable> clientError = new AtomicReference<>();
+            Thread client = new Thread(() -> {
+                try {
+                    InvocationSocket invocation = new InvocationSocket(SocketFrameChannel.connect(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort()));
+                    invocation.sendResult(new CalculatorImpl());
+                    invocation.waitForResult(true);
+                    invocation.close();
+                } catch (Throwable t) {
+                    clientError.set(t);
+                }
+            });
+            client.start();
+
+            InvocationSocket invocation = new InvocationSocket(new SocketFrameChannel(serverSocket.accept()));
+            test.run((Calculator) invocation.waitForResult(false));
+            invocation.close();
+
+            client.join();
+            Assert.assertNull(clientError.get());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testInvocation() throws Exception {
+        runWithClient(calculator -> {
+            Assert.assertEquals(5, calculator.add(2, 3));
+            Assert.assertEquals(-1, calculator.add(Integer.MAX_VALUE, Integer.MIN_VALUE));
+            Assert.assertEquals("[1, a, null, 2.5] SECONDS [1, 2]", calculator.describe(new Object[]{1, "a", null, 2.5d}, TimeUnit.SECONDS, new byte[]{1, 2}));
+            Assert.assertSame(calculator, calculator.self());
+        });
+    }
+
+    @Test(timeout = 30000)
+    public void testUnserializableResult() throws Exception {
+        runWithClient(calculator -> {
+            try {
+                calculator.unserializable();
+                Assert.fail("expected the result to be reported as an exception");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            // the remote object exported by the failed reply must not shift the object tables
+            Calculator created = calculator.create();
+            Assert.assertNotSame(calculator, created);
+            Assert.assertEquals(7, created.add(3, 4));
+            Assert.assertSame(created, created.self());
+        });
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentClients() throws Exception {
+        final int clientCount = 4;
+        CompilationServer server = new CompilationServer(true, 0);
+        CountDownLatch started = new CountDownLatch(clientCount);
+        CountDownLatch finished = new CountDownLatch(clientCount);
+        server.addConnectionObserver(new ConnectionObserver() {
+
+            public void connectionStarted(HotSpotGraalRuntimeProvider compiler) {
+                started.countDown();
+            }
+
+            public void connectionFinished(HotSpotGraalRuntimeProvider compiler) {
+                finished.countDown();
+            }
+        });
+        Thread serverThread = new Thread(server);
+        serverThread.setDaemon(true);
+        serverThread.start();
+        int port = server.getLocalPort();
+        Assert.assertTrue(port > 0);
+
+        // keep all connections open at the same time
+        List<InvocationSocket> clients = new ArrayList<>();
+        for (int i = 0; i < clientCount; i++) {
+            InvocationSocket client = new InvocationSocket(SocketFrameChannel.connect("localhost", port));
+            client.sendResult(null);
+            Assert.assertNull(client.waitForResult(false));
+            clients.add(client);
+        }
+        started.await();
+        for (InvocationSocket client : clients) {
+            client.close();
+        }
+        finished.await();
+
+        server.shutdown();
+        serverThread.join();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.hotspot.*;
+import com.oracle.graal.hotspot.meta.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.common.inlining.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Tests the lookup, invalidation and eviction of {@link HotSpotGraphCache} entries.
+ */
+public class HotSpotGraphCacheTest extends GraalCompilerTest {
+
+    /**
+     * A cache whose class redefinition count and profile epoch are controlled by the test.
+     */
+    private static class TestGraphCache extends HotSpotGraphCache {
+
+        int redefinitions;
+        int epoch;
+
+        TestGraphCache(long capacity) {
+            super(capacity);
+        }
+
+        @Override
+        protected int redefinedCount(HotSpotResolvedJavaMethod method) {
+            return redefinitions;
+        }
+
+        @Override
+        protected int profileEpoch(HotSpotResolvedJavaMethod method) {
+            return epoch;
+        }
+    }
+
+    public static int plus1(int x) {
+        return x + 1;
+    }
+
+    public static int plus2(int x) {
+        return x + 2;
+    }
+
+    public static int plus3(int x) {
+        return x + 3;
+    }
+
+    public abstract static class Base {
+    }
+
+    public static final class Impl extends Base {
+    }
+
+    public static boolean isImpl(Base b) {
+        return b instanceof Impl;
+    }
+
+    public static int inliningSnippet(Base b, int x) {
+        return isImpl(b) ? plus1(x) : x;
+    }
+
+    @Test
+    public void testHit() {
+        TestGraphCache cache = new TestGraphCache(Long.MAX_VALUE);
+        Map<ResolvedJavaMethod, StructuredGraph> view = cache.forCompilation(OptimisticOptimizations.ALL);
+        ResolvedJavaMethod method = getResolvedJavaMethod("plus1");
+        StructuredGraph graph = parseEager(method);
+        view.put(method, graph);
+
+        Assert.assertSame(graph, view.get(method));
+        Assert.assertTrue(view.containsKey(method));
+        Assert.assertEquals(1, view.size());
+        Assert.assertEquals(1, view.entrySet().size());
+
+        Map<ResolvedJavaMethod, StructuredGraph> otherCompilation = cache.forCompilation(OptimisticOptimizations.ALL);
+        Assert.assertSame(graph, otherCompilation.get(method));
+    }
+
+    @Test
+    public void testMissForOtherOptimisticOptimizations() {
+        TestGraphCache cache = new TestGraphCache(Long.MAX_VALUE);
+        ResolvedJavaMethod method = getResolvedJavaMethod("plus1");
+        cache.forCompilation(OptimisticOptimizations.ALL).put(method, parseEager(method));
+
+        Map<ResolvedJavaMethod, StructuredGraph> view = cache.forCompilation(OptimisticOptimizations.NONE);
+        Assert.assertNull(view.get(method));
+        Assert.assertFalse(view.containsKey(method));
+        Assert.assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void testMissAfterRedefinition() {
+        TestGraphCache cache = new TestGraphCache(Long.MAX_VALUE);
+        Map<ResolvedJavaMethod, StructuredGraph> view = cache.forCompilation(OptimisticOptimizations.ALL);
+        ResolvedJavaMethod method = getResolvedJavaMethod("plus1");
+        view.put(method, parseEager(method));
+
+        cache.redefinitions++;
+        Assert.assertFalse(view.containsKey(method));
+        Assert.assertNull(view.get(method));
+        Assert.assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void testMissAfterProfileChange() {
+        TestGraphCache cache = new TestGraphCache(Long.MAX_VALUE);
+        Map<ResolvedJavaMethod, StructuredGraph> view = cache.forCompilation(OptimisticOptimizations.ALL);
+        ResolvedJavaMethod method = getResolvedJavaMethod("plus1");
+        view.put(method, parseEager(method));
+
+        cache.epoch++;
+        Assert.assertNull(view.get(method));
+
+        StructuredGraph graph = parseEager(method);
+        view.put(method, graph);
+        Assert.assertSame(graph, view.get(method));
+    }
+
+    @Test
+    public void testGraphWithAssumptionsNotCached() {
+        TestGraphCache cache = new TestGraphCache(Long.MAX_VALUE);
+        Map<ResolvedJavaMethod, StructuredGraph> view = cache.forCompilation(OptimisticOptimizations.ALL);
+        StructuredGraph graph = parseEager("inliningSnippet");
+        Assumptions assumptions = new Assumptions(true);
+        HighTierContext context = new HighTierContext(getProviders(), assumptions, view, getDefaultGraphBuilderSuite(), OptimisticOptimizations.ALL);
+        new InliningPhase(new CanonicalizerPhase(true)).apply(graph, context);
+
+        Assert.assertFalse(graph.getInvokes().iterator().hasNext());
+        Assert.assertTrue(view.containsKey(getResolvedJavaMethod("plus1")));
+        Assert.assertFalse(view.containsKey(getResolvedJavaMethod("isImpl")));
+        Assert.assertFalse(assumptions.isEmpty());
+    }
+
+    @Test
+    public void testClockEviction() {
+        ResolvedJavaMethod method1 = getResolvedJavaMethod("plus1");
+        ResolvedJavaMethod method2 = getResolvedJavaMethod("plus2");
+        ResolvedJavaMethod method3 = getResolvedJavaMethod("plus3");
+        StructuredGraph graph1 = parseEager(method1);
+        StructuredGraph graph2 = parseEager(method2);
+        StructuredGraph graph3 = parseEager(method3);
+        Assert.assertEquals(graph1.getNodeCount(), graph2.getNodeCount());
+        Assert.assertEquals(graph1.getNodeCount(), graph3.getNodeCount());
+
+        // room for two of the three graphs
+        long weight = graph1.getNodeCount() * 128L;
+        TestGraphCache cache = new TestGraphCache(2 * weight);
+        Map<ResolvedJavaMethod, StructuredGraph> view = cache.forCompilation(OptimisticOptimizations.ALL);
+        view.put(method1, graph1);
+        view.put(method2, graph2);
+        Assert.assertSame(graph1, view.get(method1));
+
+        view.put(method3, graph3);
+        Assert.assertEquals(2, view.size());
+        Assert.assertTrue("referenced entry gets a second chance", view.containsKey(method1));
+        Assert.assertFalse("unreferenced entry is evicted", view.containsKey(method2));
+        Assert.assertTrue(view.containsKey(method3));
+    }
+}
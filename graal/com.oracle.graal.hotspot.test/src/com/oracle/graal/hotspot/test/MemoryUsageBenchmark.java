@@ -22,6 +22,7 @@
  */
 package com.oracle.graal.hotspot.test;
 
+import static com.oracle.graal.compiler.common.GraalOptions.*;
 import static com.oracle.graal.debug.internal.MemUseTrackerImpl.*;
 import static com.oracle.graal.hotspot.CompileTheWorld.*;
 import static com.oracle.graal.hotspot.CompileTheWorld.Options.*;
@@ -34,6 +35,8 @@ import com.oracle.graal.debug.internal.*;
 import com.oracle.graal.hotspot.*;
 import com.oracle.graal.hotspot.CompileTheWorld.Config;
 import com.oracle.graal.hotspot.meta.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.options.OptionValue.OverrideScope;
 import com.oracle.graal.printer.*;
 
 /**
@@ -172,6 +175,11 @@ public class MemoryUsageBenchmark extends HotSpotGraalCompilerTest {
         }
 
         doCompilation(methodName, methodName);
+
+        // Compare against a compilation that does not reuse arrays recycled by earlier compilations
+        try (OverrideScope s = OptionValue.override(RecycleCompilerArrays, false)) {
+            doCompilation(methodName, methodName + "[without-recycling]");
+        }
     }
 
     public void run() {
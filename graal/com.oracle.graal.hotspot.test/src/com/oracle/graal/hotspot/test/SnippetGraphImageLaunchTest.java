@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import static com.oracle.graal.hotspot.HotSpotGraalRuntime.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.replacements.*;
+
+/**
+ * Tests that a {@link SnippetGraphImage} written by one VM is accepted and fully usable in another
+ * launch of the same VM, whose heap and stubs will generally be at different addresses.
+ */
+public class SnippetGraphImageLaunchTest {
+
+    private static final int EXIT_REJECTED = 2;
+    private static final int EXIT_UNREADABLE_GRAPHS = 3;
+
+    private static ReplacementsImpl replacements() {
+        return (ReplacementsImpl) runtime().getHostProviders().getReplacements();
+    }
+
+    /**
+     * Entry point of the second VM. Reports the outcome of loading the image in its exit code.
+     */
+    public static void main(String[] args) {
+        SnippetGraphImage image = replacements().openGraphImage(Paths.get(args[0]));
+        if (image == null || image.size() == 0) {
+            System.exit(EXIT_REJECTED);
+        }
+        if (image.materializeAll() != 0) {
+            System.exit(EXIT_UNREADABLE_GRAPHS);
+        }
+        System.exit(0);
+    }
+
+    @Test
+    public void testLoadInOtherVM() throws IOException, InterruptedException {
+        Path path = Files.createTempFile("snippets", ".image");
+        try {
+            replacements().writeGraphImage(path);
+
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                // a second VM cannot attach to the same debugger or agent port
+                if (!arg.startsWith("-agentlib:") && !arg.startsWith("-Xrunjdwp") && !arg.equals("-Xdebug")) {
+                    command.add(arg);
+                }
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(SnippetGraphImageLaunchTest.class.getName());
+            command.add(path.toString());
+
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream in = process.getInputStream()) {
+                byte[] buf = new byte[4096];
+                for (int n; (n = in.read(buf)) != -1;) {
+                    output.write(buf, 0, n);
+                }
+            }
+            int exitCode = process.waitFor();
+            Assert.assertEquals("image rejected (" + EXIT_REJECTED + ") or not readable (" + EXIT_UNREADABLE_GRAPHS + ") in other VM:\n" + output, 0, exitCode);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
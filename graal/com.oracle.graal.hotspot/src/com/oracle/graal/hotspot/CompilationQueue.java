@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot;
+
+import static com.oracle.graal.hotspot.CompilationQueue.Options.*;
+import static com.oracle.graal.hotspot.HotSpotGraalRuntime.*;
+
+import java.util.concurrent.*;
+
+import com.oracle.graal.compiler.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.hotspot.meta.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.printer.*;
+
+/**
+ * Java side queue for the compilations requested by the VM. The VM's compile queue hands out
+ * requests in arrival order, so a method whose counters kept growing while it waited gets no
+ * preference. When {@link Options#PriorityCompilationQueue} is enabled, the VM's compiler threads
+ * only {@linkplain #enqueue enqueue} non-blocking requests in a {@link CompilationPriorityQueue}
+ * and a pool of Java threads compiles the hottest pending request first. Blocking requests are
+ * still compiled by the requesting compiler thread.
+ * <p>
+ * A request is dropped when code at its compilation level or above was installed for its method
+ * and entry BCI in the meantime, or when the queue is full and it has the lowest priority. Dropping
+ * is safe as the method keeps being interpreted and the VM requests its compilation again should it
+ * stay hot.
+ * <p>
+ * The queue is not meant to be used together with bootstrapping.
+ */
+public final class CompilationQueue {
+
+    public static class Options {
+
+        // @formatter:off
+        @Option(help = "Compile the hottest pending compilation request first instead of compiling requests in arrival order")
+        public static final OptionValue<Boolean> PriorityCompilationQueue = new OptionValue<>(false);
+
+        @Option(help = "Number of threads compiling the requests of the priority compilation queue (0 for one per processor)")
+        public static final OptionValue<Integer> CompilationQueueThreads = new OptionValue<>(0);
+
+        @Option(help = "Time in milliseconds after which the priority of a queued compilation request has halved")
+        public static final OptionValue<Integer> CompilationQueueHalfLife = new OptionValue<>(1000);
+
+        @Option(help = "Maximum number of pending requests in the priority compilation queue")
+        public static final OptionValue<Integer> CompilationQueueCapacity = new OptionValue<>(1000);
+
+        @Option(help = "Print histograms of the priority compilation queue length and of the time requests waited in it at shutdown")
+        public static final OptionValue<Boolean> PrintCompilationQueueStatistics = new OptionValue<>(false);
+        // @formatter:on
+    }
+
+    /**
+     * A pending compilation.
+     */
+    static final class Request extends CompilationPriorityQueue.Task {
+
+        final HotSpotResolvedJavaMethod method;
+        final int entryBCI;
+        final int compLevel;
+
+        Request(HotSpotResolvedJavaMethod method, int entryBCI, int compLevel) {
+            super(() -> compile(method, entryBCI));
+            this.method = method;
+            this.entryBCI = entryBCI;
+            this.compLevel = compLevel;
+        }
+
+        /**
+         * Gets the invocation count of the method or, for an OSR compilation, its backedge count.
+         */
+        @Override
+        protected int getCount() {
+            return entryBCI == StructuredGraph.INVOCATION_ENTRY_BCI ? method.getInvocationCount() : method.getBackedgeCount();
+        }
+
+        /**
+         * Determines if code for the method and entry BCI at the requested level or above has been
+         * installed, whether by Graal or by another tier.
+         */
+        @Override
+        protected boolean isObsolete() {
+            if (isCancelled()) {
+                return true;
+            }
+            for (int level = compLevel; level <= runtime().getConfig().compilationLevelFullOptimization; level++) {
+                if (method.hasCodeAtLevel(entryBCI, level)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean isEquivalent(CompilationPriorityQueue.Task other) {
+            if (other instanceof Request) {
+                Request request = (Request) other;
+                return request.method.equals(method) && request.entryBCI == entryBCI;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return method.format("%H.%n(%p)") + (entryBCI == StructuredGraph.INVOCATION_ENTRY_BCI ? "" : "@" + entryBCI);
+        }
+    }
+
+    private static void compile(HotSpotResolvedJavaMethod method, int entryBCI) {
+        int id = method.allocateCompileId(entryBCI);
+        new CompilationTask(runtime().getHostBackend(), method, entryBCI, 0L, id, true).runCompilation();
+    }
+
+    private static CompilationQueue instance;
+
+    /**
+     * Gets the queue, starting its compiler threads on first use.
+     */
+    public static synchronized CompilationQueue instance() {
+        if (instance == null) {
+            int threads = CompilationQueueThreads.getValue();
+            instance = new CompilationQueue(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    private final CompilationPriorityQueue queue;
+    private final ThreadPoolExecutor executor;
+
+    private CompilationQueue(int threads) {
+        queue = new CompilationPriorityQueue("CompilationQueue", CompilationQueueHalfLife.getValue(), CompilationQueueCapacity.getValue());
+        CompilerThreadFactory factory = new CompilerThreadFactory("GraalCompilationQueue", new CompilerThreadFactory.DebugConfigAccess() {
+            public GraalDebugConfig getDebugConfig() {
+                if (Debug.isEnabled()) {
+                    return DebugEnvironment.initialize(TTY.cachedOut);
+                } else {
+                    return null;
+                }
+            }
+        });
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, factory);
+    }
+
+    /**
+     * Adds a compilation request to the queue unless an equal request is already pending.
+     *
+     * @param compLevel the compilation level requested by the VM
+     */
+    public void enqueue(HotSpotResolvedJavaMethod method, int entryBCI, int compLevel) {
+        executor.execute(new Request(method, entryBCI, compLevel));
+    }
+
+    /**
+     * Prints the statistics of the queue if {@link Options#PrintCompilationQueueStatistics} is
+     * enabled and the queue was used.
+     */
+    public static void printStatistics() {
+        CompilationQueue queue;
+        synchronized (CompilationQueue.class) {
+            queue = instance;
+        }
+        if (queue != null && PrintCompilationQueueStatistics.getValue()) {
+            queue.queue.printStatistics();
+        }
+    }
+}
@@ -73,6 +73,7 @@ public class CompilationTask {
     }
 
     private static final DebugMetric BAILOUTS = Debug.metric("Bailouts");
+    private static final DebugMetric BUDGET_BAILOUTS = Debug.metric("BudgetBailouts");
 
     private final HotSpotBackend backend;
     private final HotSpotResolvedJavaMethod method;
@@ -99,6 +100,11 @@ public class CompilationTask {
      */
     private final long ctask;
 
+    /**
+     * The size of the machine code produced by this task or -1 if it did not produce any code.
+     */
+    private int targetCodeSize = -1;
+
     public CompilationTask(HotSpotBackend backend, HotSpotResolvedJavaMethod method, int entryBCI, long ctask, int id, boolean installAsDefault) {
         this.backend = backend;
         this.method = method;
@@ -125,6 +131,14 @@ public class CompilationTask {
         return entryBCI;
     }
 
+    /**
+     * Returns the size of the machine code produced by this task or -1 if the task has not run yet
+     * or did not produce any code.
+     */
+    public int getTargetCodeSize() {
+        return targetCodeSize;
+    }
+
     /**
      * Time spent in compilation.
      */
@@ -187,7 +201,8 @@ public class CompilationTask {
             final long start = System.currentTimeMillis();
             final long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
 
-            try (Scope s = Debug.scope("Compiling", new DebugDumpScope(String.valueOf(id), true))) {
+            try (Scope s = Debug.scope("Compiling", new DebugDumpScope(String.valueOf(id), true));
+                            CompilationBudget budget = CompilationBudget.open(CompilationTimeBudget.getValue(), CompilationMemoryBudget.getValue())) {
                 // Begin the compilation event.
                 compilationEvent.begin();
 
@@ -197,10 +212,6 @@ public class CompilationTask {
                     OptimisticOptimizations optimisticOpts = OptimisticOptimizations.ALL;
                     result = baselineCompiler.generate(method, -1, backend, new CompilationResult(), method, CompilationResultBuilderFactory.Default, optimisticOpts);
                 } else {
-                    Map<ResolvedJavaMethod, StructuredGraph> graphCache = null;
-                    if (GraalOptions.CacheGraphs.getValue()) {
-                        graphCache = new HashMap<>();
-                    }
 
                     HotSpotProviders providers = backend.getProviders();
                     Replacements replacements = providers.getReplacements();
@@ -223,11 +234,20 @@ public class CompilationTask {
                     Suites suites = getSuites(providers);
                     ProfilingInfo profilingInfo = getProfilingInfo();
                     OptimisticOptimizations optimisticOpts = getOptimisticOpts(profilingInfo);
+                    Map<ResolvedJavaMethod, StructuredGraph> graphCache = null;
+                    if (GraalOptions.CacheGraphs.getValue()) {
+                        if (HotSpotGraphCache.Options.GlobalGraphCache.getValue()) {
+                            graphCache = HotSpotGraphCache.instance().forCompilation(optimisticOpts);
+                        } else {
+                            graphCache = new HashMap<>();
+                        }
+                    }
                     result = compileGraph(graph, null, cc, method, providers, backend, backend.getTarget(), graphCache, getGraphBuilderSuite(providers), optimisticOpts, profilingInfo,
                                     method.getSpeculationLog(), suites, new CompilationResult(), CompilationResultBuilderFactory.Default);
                 }
                 result.setId(getId());
                 result.setEntryBCI(entryBCI);
+                targetCodeSize = result.getTargetCodeSize();
             } catch (Throwable e) {
                 throw Debug.handle(e);
             } finally {
@@ -261,6 +281,9 @@ public class CompilationTask {
             stats.finish(method, installedCode);
         } catch (BailoutException bailout) {
             BAILOUTS.increment();
+            if (bailout instanceof CompilationBudget.ExceededException) {
+                budgetExceeded(isOSR);
+            }
             if (ExitVMOnBailout.getValue()) {
                 TTY.cachedOut.println(method.format("Bailout in %H.%n(%p)"));
                 bailout.printStackTrace(TTY.cachedOut);
@@ -313,6 +336,28 @@ public class CompilationTask {
         }
     }
 
+    /**
+     * Records that the compilation of {@link #method} ran out of its budget. The count is kept in the
+     * {@linkplain HotSpotResolvedJavaMethod#getSpeculationLog() speculation log} of the method so that
+     * it does not keep the method alive. Once this happened
+     * {@link GraalOptions#CompilationBudgetBailoutLimit} times, the method is no longer queued for
+     * compilation by Graal and is left to the lower tiers or the interpreter.
+     */
+    private void budgetExceeded(boolean isOSR) {
+        BUDGET_BAILOUTS.increment();
+        SpeculationLog log = method.getSpeculationLog();
+        if (!(log instanceof HotSpotSpeculationLog)) {
+            return;
+        }
+        int count = ((HotSpotSpeculationLog) log).recordBudgetBailout();
+        if (count == CompilationBudgetBailoutLimit.getValue()) {
+            method.setNotCompilable(isOSR);
+            if (PrintBailout.getValue()) {
+                TTY.cachedOut.println(method.format("Not compiling %H.%n(%p) any more after " + count + " budget bailouts"));
+            }
+        }
+    }
+
     private String getMethodDescription() {
         return String.format("%-6d Graal %-70s %-45s %-50s %s", id, method.getDeclaringClass().getName(), method.getName(), method.getSignature().toMethodDescriptor(),
                         entryBCI == StructuredGraph.INVOCATION_ENTRY_BCI ? "" : "(OSR@" + entryBCI + ") ");
@@ -360,9 +405,18 @@ public class CompilationTask {
     }
 
     /**
-     * Compiles a method to machine code.
+     * Compiles a method to machine code. With {@link CompilationQueue.Options#PriorityCompilationQueue}
+     * enabled, a request the VM does not wait for is only queued. A blocking request is compiled
+     * right away as the VM expects code to be installed once its task completes.
      */
     static void compileMethod(HotSpotResolvedJavaMethod method, int entryBCI, long ctask, int id) {
+        if (CompilationQueue.Options.PriorityCompilationQueue.getValue() && ctask != 0L) {
+            HotSpotVMConfig config = runtime().getConfig();
+            if (unsafe.getByte(ctask + config.compileTaskIsBlockingOffset) == 0) {
+                CompilationQueue.instance().enqueue(method, entryBCI, unsafe.getInt(ctask + config.compileTaskCompLevelOffset));
+                return;
+            }
+        }
         HotSpotBackend backend = runtime().getHostBackend();
         CompilationTask task = new CompilationTask(backend, method, entryBCI, ctask, id, true);
         task.runCompilation();
@@ -31,6 +31,8 @@ import java.io.*;
 import java.lang.reflect.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.jar.*;
 
 import com.oracle.graal.api.meta.*;
@@ -70,6 +72,11 @@ public final class CompileTheWorld {
                        "to disable inlining and partial escape analysis specify '-PartialEscapeAnalysis -Inline'. " +
                        "The format for each option is the same as on the command line just without the '-G:' prefix.")
         public static final OptionValue<String> CompileTheWorldConfig = new OptionValue<>(null);
+        @Option(help = "Number of threads used to compile the classes during compile the world")
+        public static final OptionValue<Integer> CompileTheWorldThreads = new OptionValue<>(1);
+        @Option(help = "File to which a CSV line with compile time, allocated bytes and code size of " +
+                       "each method compiled during compile the world is written")
+        public static final OptionValue<String> CompileTheWorldReportFile = new OptionValue<>(null);
         // @formatter:on
 
         /**
@@ -154,26 +161,50 @@ public final class CompileTheWorld {
     /** Class index to stop compilation at (see {@link Options#CompileTheWorldStopAt}). */
     private final int stopAt;
 
+    /** Number of compiler threads (see {@link Options#CompileTheWorldThreads}). */
+    private final int threads;
+
+    /** File the per-method report is written to (see {@link Options#CompileTheWorldReportFile}). */
+    private final String reportFile;
+
     // Counters
     private int classFileCounter = 0;
-    private int compiledMethodsCounter = 0;
-    private long compileTime = 0;
-    private long memoryUsed = 0;
+    private final AtomicInteger compiledMethodsCounter = new AtomicInteger();
+    private final AtomicLong compileTime = new AtomicLong();
+    private final AtomicLong memoryUsed = new AtomicLong();
+
+    /** Per-method results, only collected if there is a {@link #reportFile}. */
+    private final Queue<MethodResult> results = new ConcurrentLinkedQueue<>();
 
     private boolean verbose;
     private final Config config;
 
     /**
-     * Creates a compile-the-world instance.
+     * Creates a single threaded compile-the-world instance.
      *
      * @param files {@link File#pathSeparator} separated list of Zip/Jar files to compile
      * @param startAt index of the class file to start compilation at
      * @param stopAt index of the class file to stop compilation at
      */
     public CompileTheWorld(String files, Config config, int startAt, int stopAt, boolean verbose) {
+        this(files, config, startAt, stopAt, 1, null, verbose);
+    }
+
+    /**
+     * Creates a compile-the-world instance.
+     *
+     * @param files {@link File#pathSeparator} separated list of Zip/Jar files to compile
+     * @param startAt index of the class file to start compilation at
+     * @param stopAt index of the class file to stop compilation at
+     * @param threads number of threads the classes are compiled on
+     * @param reportFile file to which the per-method report is written or null
+     */
+    public CompileTheWorld(String files, Config config, int startAt, int stopAt, int threads, String reportFile, boolean verbose) {
         this.files = files;
         this.startAt = startAt;
         this.stopAt = stopAt;
+        this.threads = Math.max(threads, 1);
+        this.reportFile = reportFile;
         this.verbose = verbose;
         this.config = config;
 
@@ -235,6 +266,19 @@ public final class CompileTheWorld {
      */
     private void compile(String fileList) throws Throwable {
         final String[] entries = fileList.split(File.pathSeparator);
+        final long wallClockStart = System.currentTimeMillis();
+        ExecutorService executor = null;
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CompileTheWorld-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
 
         try (AutoCloseable s = config.apply()) {
             for (int i = 0; i < entries.length; i++) {
@@ -251,7 +295,7 @@ public final class CompileTheWorld {
                 println();
 
                 URL url = new URL("jar", "", "file:" + entry + "!/");
-                ClassLoader loader = new URLClassLoader(new URL[]{url});
+                final ClassLoader loader = new URLClassLoader(new URL[]{url});
 
                 JarFile jarFile = new JarFile(entry);
                 Enumeration<JarEntry> e = jarFile.entries();
@@ -267,54 +311,82 @@ public final class CompileTheWorld {
                         break;
                     }
 
-                    String className = je.getName().substring(0, je.getName().length() - ".class".length());
-                    classFileCounter++;
-
-                    try {
-                        // Load and initialize class
-                        Class<?> javaClass = Class.forName(className.replace('/', '.'), true, loader);
+                    final String className = je.getName().substring(0, je.getName().length() - ".class".length());
+                    final int classFileIndex = ++classFileCounter;
 
-                        // Pre-load all classes in the constant pool.
-                        try {
-                            HotSpotResolvedObjectType objectType = HotSpotResolvedObjectTypeImpl.fromObjectClass(javaClass);
-                            ConstantPool constantPool = objectType.constantPool();
-                            for (int cpi = 1; cpi < constantPool.length(); cpi++) {
-                                constantPool.loadReferencedType(cpi, Bytecodes.LDC);
+                    if (executor == null) {
+                        compileClass(loader, className, classFileIndex);
+                    } else {
+                        // Option overrides are thread local so they have to be applied again
+                        executor.execute(() -> {
+                            try (OverrideScope scope = OptionValue.override(config)) {
+                                compileClass(loader, className, classFileIndex);
                             }
-                        } catch (Throwable t) {
-                            // If something went wrong during pre-loading we just ignore it.
-                            println("Preloading failed for (%d) %s: %s", classFileCounter, className, t);
-                        }
-
-                        // Are we compiling this class?
-                        MetaAccessProvider metaAccess = runtime.getHostProviders().getMetaAccess();
-                        if (classFileCounter >= startAt) {
-                            println("CompileTheWorld (%d) : %s", classFileCounter, className);
-
-                            // Compile each constructor/method in the class.
-                            for (Constructor<?> constructor : javaClass.getDeclaredConstructors()) {
-                                HotSpotResolvedJavaMethod javaMethod = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaMethod(constructor);
-                                if (canBeCompiled(javaMethod, constructor.getModifiers())) {
-                                    compileMethod(javaMethod);
-                                }
-                            }
-                            for (Method method : javaClass.getDeclaredMethods()) {
-                                HotSpotResolvedJavaMethod javaMethod = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaMethod(method);
-                                if (canBeCompiled(javaMethod, method.getModifiers())) {
-                                    compileMethod(javaMethod);
-                                }
-                            }
-                        }
-                    } catch (Throwable t) {
-                        println("CompileTheWorld (%d) : Skipping %s", classFileCounter, className);
+                        });
                     }
                 }
                 jarFile.close();
             }
+
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
         }
 
         println();
-        println("CompileTheWorld : Done (%d classes, %d methods, %d ms, %d bytes of memory used)", classFileCounter, compiledMethodsCounter, compileTime, memoryUsed);
+        println("CompileTheWorld : Done (%d classes, %d methods, %d ms, %d bytes of memory used)", classFileCounter, compiledMethodsCounter.get(), compileTime.get(), memoryUsed.get());
+        if (threads > 1) {
+            println("CompileTheWorld : %d threads, %d ms elapsed", threads, System.currentTimeMillis() - wallClockStart);
+        }
+        if (reportFile != null) {
+            writeReport();
+        }
+    }
+
+    /**
+     * Loads and initializes a class and compiles all its methods if the class index is at or after
+     * {@link #startAt}.
+     */
+    private void compileClass(ClassLoader loader, String className, int classFileIndex) {
+        try {
+            // Load and initialize class
+            Class<?> javaClass = Class.forName(className.replace('/', '.'), true, loader);
+
+            // Pre-load all classes in the constant pool.
+            try {
+                HotSpotResolvedObjectType objectType = HotSpotResolvedObjectTypeImpl.fromObjectClass(javaClass);
+                ConstantPool constantPool = objectType.constantPool();
+                for (int cpi = 1; cpi < constantPool.length(); cpi++) {
+                    constantPool.loadReferencedType(cpi, Bytecodes.LDC);
+                }
+            } catch (Throwable t) {
+                // If something went wrong during pre-loading we just ignore it.
+                println("Preloading failed for (%d) %s: %s", classFileIndex, className, t);
+            }
+
+            // Are we compiling this class?
+            MetaAccessProvider metaAccess = runtime.getHostProviders().getMetaAccess();
+            if (classFileIndex >= startAt) {
+                println("CompileTheWorld (%d) : %s", classFileIndex, className);
+
+                // Compile each constructor/method in the class.
+                for (Constructor<?> constructor : javaClass.getDeclaredConstructors()) {
+                    HotSpotResolvedJavaMethod javaMethod = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaMethod(constructor);
+                    if (canBeCompiled(javaMethod, constructor.getModifiers())) {
+                        compileMethod(javaMethod, classFileIndex);
+                    }
+                }
+                for (Method method : javaClass.getDeclaredMethods()) {
+                    HotSpotResolvedJavaMethod javaMethod = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaMethod(method);
+                    if (canBeCompiled(javaMethod, method.getModifiers())) {
+                        compileMethod(javaMethod, classFileIndex);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            println("CompileTheWorld (%d) : Skipping %s", classFileIndex, className);
+        }
     }
 
     class CTWCompilationTask extends CompilationTask {
@@ -336,25 +408,72 @@ public final class CompileTheWorld {
     /**
      * Compiles a method and gathers some statistics.
      */
-    private void compileMethod(HotSpotResolvedJavaMethod method) {
+    private void compileMethod(HotSpotResolvedJavaMethod method, int classFileIndex) {
         try {
-            long start = System.currentTimeMillis();
+            long start = System.nanoTime();
             long allocatedAtStart = getCurrentThreadAllocatedBytes();
 
             HotSpotBackend backend = runtime.getHostBackend();
             CompilationTask task = new CTWCompilationTask(backend, method);
             task.runCompilation();
 
-            memoryUsed += getCurrentThreadAllocatedBytes() - allocatedAtStart;
-            compileTime += (System.currentTimeMillis() - start);
-            compiledMethodsCounter++;
+            long allocated = getCurrentThreadAllocatedBytes() - allocatedAtStart;
+            long time = System.nanoTime() - start;
+            memoryUsed.addAndGet(allocated);
+            compileTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(time));
+            compiledMethodsCounter.incrementAndGet();
+            if (reportFile != null) {
+                results.add(new MethodResult(method, time, allocated, task.getTargetCodeSize()));
+            }
         } catch (Throwable t) {
             // Catch everything and print a message
-            println("CompileTheWorld (%d) : Error compiling method: %s", classFileCounter, method.format("%H.%n(%p):%r"));
+            println("CompileTheWorld (%d) : Error compiling method: %s", classFileIndex, method.format("%H.%n(%p):%r"));
             t.printStackTrace(TTY.cachedOut);
         }
     }
 
+    /**
+     * Statistics for a single method compiled by {@link #compileMethod}.
+     */
+    private static final class MethodResult {
+
+        final String holder;
+        final String name;
+        final String descriptor;
+        final int bytecodeSize;
+        final long timeNanos;
+        final long allocatedBytes;
+        final int targetCodeSize;
+        final String thread;
+
+        MethodResult(HotSpotResolvedJavaMethod method, long timeNanos, long allocatedBytes, int targetCodeSize) {
+            this.holder = method.getDeclaringClass().toJavaName();
+            this.name = method.getName();
+            this.descriptor = method.getSignature().toMethodDescriptor();
+            this.bytecodeSize = method.getCodeSize();
+            this.timeNanos = timeNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.targetCodeSize = targetCodeSize;
+            this.thread = Thread.currentThread().getName();
+        }
+    }
+
+    /**
+     * Writes the per-method results to {@link #reportFile} as comma separated values, slowest
+     * compilation first. A code size of -1 denotes a compilation that did not produce code.
+     */
+    private void writeReport() throws IOException {
+        List<MethodResult> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Long.compare(b.timeNanos, a.timeNanos));
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(reportFile)))) {
+            out.println("class,method,descriptor,bytecodeSize,timeMicros,allocatedBytes,codeSize,thread");
+            for (MethodResult r : sorted) {
+                out.printf("%s,%s,%s,%d,%d,%d,%d,%s%n", r.holder, r.name, r.descriptor, r.bytecodeSize, TimeUnit.NANOSECONDS.toMicros(r.timeNanos), r.allocatedBytes, r.targetCodeSize, r.thread);
+            }
+        }
+        println("CompileTheWorld : Wrote %d method results to %s", sorted.size(), reportFile);
+    }
+
     /**
      * Determines if a method should be compiled (Cf. CompilationPolicy::can_be_compiled).
      *
@@ -33,7 +33,8 @@ import com.oracle.graal.debug.internal.*;
 
 /**
  * Facility for printing the {@linkplain KeyRegistry#getDebugValues() values} collected across all
- * {@link DebugValueMap#getTopLevelMaps() threads}.
+ * {@link DebugValueMap#getTopLevelMaps() threads} or {@linkplain ThreadLocalDebugValues#getAll()
+ * thread local values}.
  */
 public class DebugValuesPrinter {
 
@@ -51,6 +52,12 @@ public class DebugValuesPrinter {
                 if (summary == null) {
                     summary = "Complete";
                 }
+                if (ThreadLocalDebugValues.isEnabled()) {
+                    printThreadLocalValues(summary, sortedValues);
+                    ThreadLocalDebugValues.reset();
+                    TTY.println("</DebugValues>");
+                    return;
+                }
                 switch (summary) {
                     case "Name":
                         printSummary(topLevelMaps, sortedValues);
@@ -98,6 +105,29 @@ public class DebugValuesPrinter {
         TTY.println("</DebugValues>");
     }
 
+    /**
+     * Prints the values recorded in {@link ThreadLocalDebugValues}. These are not attributed to
+     * scopes, so all summaries but "Thread" print the totals over all threads.
+     */
+    private void printThreadLocalValues(String summary, List<DebugValue> debugValues) {
+        if (summary.equals("Thread")) {
+            for (ThreadLocalDebugValues values : ThreadLocalDebugValues.getAll()) {
+                TTY.println("Showing the results for thread: " + values.getThreadName());
+                DebugValueMap map = new DebugValueMap(values.getThreadName());
+                for (DebugValue debugValue : debugValues) {
+                    map.setCurrentValue(debugValue.getIndex(), values.getValue(debugValue.getIndex()));
+                }
+                printMap(new DebugValueScope(null, map), debugValues);
+            }
+        } else {
+            DebugValueMap result = new DebugValueMap("Summary");
+            for (DebugValue debugValue : debugValues) {
+                result.setCurrentValue(debugValue.getIndex(), ThreadLocalDebugValues.getTotal(debugValue.getIndex()));
+            }
+            printMap(new DebugValueScope(null, result), debugValues);
+        }
+    }
+
     private void flattenChildren(DebugValueMap map, DebugValueMap globalMap) {
         globalMap.addChild(map);
         for (DebugValueMap child : map.getChildren()) {
@@ -570,7 +570,7 @@ public final class HotSpotGraalRuntime implements HotSpotGraalRuntimeProvider, R
             getCompilerToVM().resetCompilationStatistics();
             TTY.println("CompileTheWorld : iteration " + i);
             CompileTheWorld ctw = new CompileTheWorld(CompileTheWorldClasspath.getValue(), new Config(CompileTheWorldConfig.getValue()), CompileTheWorldStartAt.getValue(),
-                            CompileTheWorldStopAt.getValue(), CompileTheWorldVerbose.getValue());
+                            CompileTheWorldStopAt.getValue(), CompileTheWorldThreads.getValue(), CompileTheWorldReportFile.getValue(), CompileTheWorldVerbose.getValue());
             ctw.compile();
         }
         System.exit(0);
@@ -587,6 +587,7 @@ public final class HotSpotGraalRuntime implements HotSpotGraalRuntimeProvider, R
             debugValuesPrinter.printDebugValues();
         }
         phaseTransition("final");
+        CompilationQueue.printStatistics();
 
         SnippetCounter.printGroups(TTY.out().out());
         BenchmarkCounters.shutdown(getCompilerToVM(), runtimeStartTime);
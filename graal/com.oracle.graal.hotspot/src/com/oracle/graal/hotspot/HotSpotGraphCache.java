@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot;
+
+import static com.oracle.graal.compiler.common.UnsafeAccess.*;
+import static com.oracle.graal.hotspot.HotSpotGraphCache.Options.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.hotspot.meta.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Cache of parsed graphs that is shared by all compilations of the VM. With
+ * {@link GraalOptions#CacheGraphs} alone, the graphs of inlining candidates are only reused within
+ * a single compilation, so a hot library method is parsed again by every compilation that inlines
+ * it. When {@link Options#GlobalGraphCache} is enabled, the compilations use
+ * {@linkplain #forCompilation views} of this cache instead.
+ * <p>
+ * Graphs are {@linkplain StructuredGraph#freeze() frozen} when they are added since they are
+ * copied concurrently by several compiler threads. An entry is only used by compilations with the
+ * same {@link OptimisticOptimizations} and is dropped when it is looked up after
+ * <ul>
+ * <li>the declaring class of its method was redefined, or</li>
+ * <li>the {@linkplain #profileEpoch profile epoch} of its method changed, i.e. the profile matured,
+ * a deoptimization was recorded or the invocation count grew by a factor of 4.</li>
+ * </ul>
+ * The entries are weighed by an estimate of the memory footprint of their graph and evicted with a
+ * CLOCK (second chance) policy once the total exceeds {@link Options#GlobalGraphCacheSize}.
+ */
+public class HotSpotGraphCache {
+
+    public static class Options {
+
+        // @formatter:off
+        @Option(help = "Share the graphs cached with CacheGraphs between compilations")
+        public static final OptionValue<Boolean> GlobalGraphCache = new OptionValue<>(false);
+
+        @Option(help = "Maximum estimated size in kilobytes of the graphs shared between compilations")
+        public static final OptionValue<Integer> GlobalGraphCacheSize = new OptionValue<>(32 * 1024);
+        // @formatter:on
+    }
+
+    /**
+     * Rough estimate of the memory used by a node of a parsed graph including its input, successor
+     * and usage lists.
+     */
+    private static final int BYTES_PER_NODE = 128;
+
+    private static final DebugMetric GraphCacheHits = Debug.metric("GlobalGraphCacheHits");
+    private static final DebugMetric GraphCacheMisses = Debug.metric("GlobalGraphCacheMisses");
+    private static final DebugMetric GraphCacheInvalidations = Debug.metric("GlobalGraphCacheInvalidations");
+    private static final DebugMetric GraphCacheEvictions = Debug.metric("GlobalGraphCacheEvictions");
+    private static final DebugMetric GraphCacheBytesSaved = Debug.metric("GlobalGraphCacheBytesSaved");
+
+    private static final long classRedefinedCountOffset;
+
+    static {
+        try {
+            classRedefinedCountOffset = unsafe.objectFieldOffset(Class.class.getDeclaredField("classRedefinedCount"));
+        } catch (NoSuchFieldException e) {
+            throw new GraalInternalError(e);
+        }
+    }
+
+    private static final HotSpotGraphCache instance = new HotSpotGraphCache(GlobalGraphCacheSize.getValue() * 1024L);
+
+    public static HotSpotGraphCache instance() {
+        return instance;
+    }
+
+    private static final class Key {
+
+        final ResolvedJavaMethod method;
+        final OptimisticOptimizations optimisticOpts;
+
+        Key(ResolvedJavaMethod method, OptimisticOptimizations optimisticOpts) {
+            this.method = method;
+            this.optimisticOpts = optimisticOpts;
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 31 + optimisticOpts.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return method.equals(other.method) && optimisticOpts.equals(other.optimisticOpts);
+            }
+            return false;
+        }
+    }
+
+    private static final class CacheEntry {
+
+        final Key key;
+        final StructuredGraph graph;
+        final int profileEpoch;
+        final int redefinedCount;
+        final long weight;
+
+        /**
+         * Set on every hit and cleared when the clock hand passes this entry.
+         */
+        volatile boolean referenced;
+
+        CacheEntry(Key key, StructuredGraph graph, int profileEpoch, int redefinedCount) {
+            this.key = key;
+            this.graph = graph;
+            this.profileEpoch = profileEpoch;
+            this.redefinedCount = redefinedCount;
+            this.weight = (long) graph.getNodeCount() * BYTES_PER_NODE;
+        }
+    }
+
+    private final long capacity;
+    private final ConcurrentHashMap<Key, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The entries of {@link #cache} in insertion order, used as the clock of the eviction policy.
+     * Entries that were removed from {@link #cache} are skipped when the hand reaches them.
+     */
+    private final ConcurrentLinkedQueue<CacheEntry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong totalWeight = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    /**
+     * Creates a cache holding graphs with an estimated total size of at most <code>capacity</code>
+     * bytes. Compilations use the VM-wide {@linkplain #instance() instance}.
+     */
+    protected HotSpotGraphCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets a view of this cache for a compilation. The view only contains the entries for
+     * <code>optimisticOpts</code> that are still valid. Its {@linkplain Map#entrySet() entry set}
+     * is a snapshot and cannot be modified.
+     */
+    public Map<ResolvedJavaMethod, StructuredGraph> forCompilation(OptimisticOptimizations optimisticOpts) {
+        return new View(optimisticOpts);
+    }
+
+    private final class View extends AbstractMap<ResolvedJavaMethod, StructuredGraph> implements SharedGraphCache {
+
+        private final OptimisticOptimizations optimisticOpts;
+
+        View(OptimisticOptimizations optimisticOpts) {
+            this.optimisticOpts = optimisticOpts;
+        }
+
+        @Override
+        public StructuredGraph get(Object method) {
+            if (!(method instanceof HotSpotResolvedJavaMethod)) {
+                return null;
+            }
+            return lookup(new Key((ResolvedJavaMethod) method, optimisticOpts));
+        }
+
+        @Override
+        public boolean containsKey(Object method) {
+            if (!(method instanceof HotSpotResolvedJavaMethod)) {
+                return false;
+            }
+            CacheEntry entry = cache.get(new Key((ResolvedJavaMethod) method, optimisticOpts));
+            return entry != null && isValid(entry);
+        }
+
+        @Override
+        public StructuredGraph put(ResolvedJavaMethod method, StructuredGraph graph) {
+            if (method instanceof HotSpotResolvedJavaMethod) {
+                add(new Key(method, optimisticOpts), graph);
+            }
+            return null;
+        }
+
+        @Override
+        public StructuredGraph remove(Object method) {
+            if (!(method instanceof HotSpotResolvedJavaMethod)) {
+                return null;
+            }
+            CacheEntry entry = cache.get(new Key((ResolvedJavaMethod) method, optimisticOpts));
+            if (entry != null && HotSpotGraphCache.this.remove(entry)) {
+                return entry.graph;
+            }
+            return null;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (CacheEntry entry : cache.values()) {
+                if (entry.key.optimisticOpts.equals(optimisticOpts) && isValid(entry)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            for (CacheEntry entry : cache.values()) {
+                if (entry.key.optimisticOpts.equals(optimisticOpts)) {
+                    HotSpotGraphCache.this.remove(entry);
+                }
+            }
+        }
+
+        @Override
+        public Set<Map.Entry<ResolvedJavaMethod, StructuredGraph>> entrySet() {
+            Set<Map.Entry<ResolvedJavaMethod, StructuredGraph>> entries = new HashSet<>();
+            for (CacheEntry entry : cache.values()) {
+                if (entry.key.optimisticOpts.equals(optimisticOpts) && isValid(entry)) {
+                    entries.add(new SimpleImmutableEntry<>(entry.key.method, entry.graph));
+                }
+            }
+            return Collections.unmodifiableSet(entries);
+        }
+    }
+
+    private boolean isValid(CacheEntry entry) {
+        HotSpotResolvedJavaMethod method = (HotSpotResolvedJavaMethod) entry.key.method;
+        return entry.redefinedCount == redefinedCount(method) && entry.profileEpoch == profileEpoch(method);
+    }
+
+    private StructuredGraph lookup(Key key) {
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            GraphCacheMisses.increment();
+            return null;
+        }
+        if (!isValid(entry)) {
+            if (remove(entry)) {
+                GraphCacheInvalidations.increment();
+            }
+            GraphCacheMisses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        GraphCacheHits.increment();
+        GraphCacheBytesSaved.add(entry.weight);
+        return entry.graph;
+    }
+
+    private void add(Key key, StructuredGraph graph) {
+        HotSpotResolvedJavaMethod method = (HotSpotResolvedJavaMethod) key.method;
+        graph.freeze();
+        CacheEntry entry = new CacheEntry(key, graph, profileEpoch(method), redefinedCount(method));
+        CacheEntry existing = cache.put(key, entry);
+        if (existing != null) {
+            totalWeight.addAndGet(-existing.weight);
+        }
+        clock.add(entry);
+        if (totalWeight.addAndGet(entry.weight) > capacity) {
+            evict();
+        }
+    }
+
+    private boolean remove(CacheEntry entry) {
+        if (cache.remove(entry.key, entry)) {
+            totalWeight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advances the clock hand until the total weight of the cache is within its limit again.
+     * Entries that were referenced since the hand last passed them get a second chance.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            CacheEntry entry;
+            while (totalWeight.get() > capacity && (entry = clock.poll()) != null) {
+                if (cache.get(entry.key) != entry) {
+                    // already replaced or invalidated
+                    continue;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.add(entry);
+                } else if (remove(entry)) {
+                    GraphCacheEvictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of times the declaring class of a method was redefined.
+     */
+    protected int redefinedCount(HotSpotResolvedJavaMethod method) {
+        Class<?> holder = ((HotSpotResolvedJavaType) method.getDeclaringClass()).mirror();
+        return unsafe.getInt(holder, classRedefinedCountOffset);
+    }
+
+    /**
+     * Summarizes the parts of the profile of a method that significantly change the graph built
+     * for it: whether the profile is mature, the number of recorded deoptimizations and the
+     * invocation count rounded down to a power of 4.
+     */
+    protected int profileEpoch(HotSpotResolvedJavaMethod method) {
+        ProfilingInfo info = method.getProfilingInfo();
+        int deoptimizations = 0;
+        for (DeoptimizationReason reason : DeoptimizationReason.values()) {
+            deoptimizations += info.getDeoptimizationCount(reason);
+        }
+        int invocations = Math.max(method.getInvocationCount(), 1);
+        int invocationBucket = (31 - Integer.numberOfLeadingZeros(invocations)) / 2;
+        return ((deoptimizations << 4) | invocationBucket) << 1 | (info.isMature() ? 1 : 0);
+    }
+}
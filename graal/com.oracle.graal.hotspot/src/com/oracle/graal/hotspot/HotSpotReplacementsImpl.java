@@ -23,6 +23,7 @@
 package com.oracle.graal.hotspot;
 
 import java.lang.reflect.*;
+import java.util.*;
 
 import com.oracle.graal.api.code.*;
 import com.oracle.graal.api.meta.*;
@@ -31,6 +32,7 @@ import com.oracle.graal.compiler.common.*;
 import com.oracle.graal.hotspot.meta.*;
 import com.oracle.graal.hotspot.replacements.*;
 import com.oracle.graal.hotspot.word.*;
+import com.oracle.graal.hotspotvmconfig.*;
 import com.oracle.graal.nodes.*;
 import com.oracle.graal.phases.util.*;
 import com.oracle.graal.replacements.*;
@@ -103,6 +105,97 @@ public class HotSpotReplacementsImpl extends ReplacementsImpl {
         return super.getMacroSubstitution(method);
     }
 
+    /**
+     * Values of launch specific fields in this range are not treated as addresses, since a graph
+     * constant with such a value is much more likely to be a plain number. They are included in the
+     * fingerprint instead.
+     */
+    private static final long MIN_ADDRESS = 1L << 16;
+
+    private static boolean isAddress(long value) {
+        return value >= MIN_ADDRESS || value <= -MIN_ADDRESS;
+    }
+
+    /**
+     * Determines if a {@link HotSpotVMConfig} field may have a different value in each launch of
+     * the VM, e.g. because it holds the address of a VM data structure or a stub.
+     */
+    private static boolean isLaunchSpecific(Field field) {
+        HotSpotVMField vmField = field.getAnnotation(HotSpotVMField.class);
+        if (vmField != null) {
+            switch (vmField.get()) {
+                case OFFSET:
+                    return false;
+                case ADDRESS:
+                    return true;
+                default:
+                    String type = vmField.type();
+                    return type.endsWith("*") || type.equals("address") || type.equals("intptr_t");
+            }
+        }
+        HotSpotVMValue vmValue = field.getAnnotation(HotSpotVMValue.class);
+        if (vmValue != null) {
+            return vmValue.get() == HotSpotVMValue.Type.ADDRESS || field.getType() == long.class;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the values of the primitive and string fields of {@link HotSpotVMConfig}.
+     *
+     * @param launchSpecific selects the {@linkplain #isLaunchSpecific launch specific} or the other
+     *            fields
+     */
+    private Map<String, Object> getConfigValues(boolean launchSpecific) {
+        Map<String, Object> values = new TreeMap<>();
+        for (Field field : HotSpotVMConfig.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && (field.getType().isPrimitive() || field.getType() == String.class) && isLaunchSpecific(field) == launchSpecific) {
+                try {
+                    field.setAccessible(true);
+                    values.put(field.getName(), field.get(config));
+                } catch (IllegalAccessException e) {
+                    throw new GraalInternalError(e);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Includes the values of the {@link HotSpotVMConfig} fields in the fingerprint since snippets
+     * fold many of them into their graphs. Of the {@linkplain #isLaunchSpecific launch specific}
+     * fields only the values that are not addresses are included. Graphs into which an address was
+     * folded are not written to the image.
+     */
+    @Override
+    protected String getGraphImageFingerprint() {
+        Map<String, Object> values = getConfigValues(false);
+        for (Map.Entry<String, Object> e : getConfigValues(true).entrySet()) {
+            Object value = e.getValue();
+            if (value instanceof Number && isAddress(((Number) value).longValue())) {
+                e.setValue("address");
+            }
+            values.put(e.getKey(), e.getValue());
+        }
+        return super.getGraphImageFingerprint() + " " + Integer.toHexString(values.hashCode());
+    }
+
+    @Override
+    protected Set<Long> getLaunchSpecificValues() {
+        Set<Long> addresses = new HashSet<>();
+        for (Object value : getConfigValues(true).values()) {
+            if (value instanceof Number && isAddress(((Number) value).longValue())) {
+                addresses.add(((Number) value).longValue());
+            }
+        }
+        // computed from the heap configuration rather than read from a field
+        long cardTableStart = config.cardtableStartAddress();
+        if (isAddress(cardTableStart)) {
+            addresses.add(cardTableStart);
+        }
+        return addresses;
+    }
+
     @Override
     protected GraphMaker createGraphMaker(ResolvedJavaMethod substitute, ResolvedJavaMethod original, FrameStateProcessing frameStateProcessing) {
         return new HotSpotGraphMaker(this, substitute, original, frameStateProcessing);
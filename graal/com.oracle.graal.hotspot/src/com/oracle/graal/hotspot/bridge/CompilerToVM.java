@@ -287,6 +287,13 @@ public interface CompilerToVM {
 
     void doNotInlineOrCompile(long metaspaceMethod);
 
+    /**
+     * Marks a method as not compilable at the full optimization level.
+     *
+     * @param osr specifies whether the method is marked as not OSR compilable instead
+     */
+    void setNotCompilable(long metaspaceMethod, boolean osr);
+
     /**
      * Invalidates the profiling information and restarts profiling upon the next invocation.
      *
@@ -162,6 +162,9 @@ public class CompilerToVMImpl implements CompilerToVM {
     @Override
     public native void doNotInlineOrCompile(long metaspaceMethod);
 
+    @Override
+    public native void setNotCompilable(long metaspaceMethod, boolean osr);
+
     @Override
     public Object executeCompiledMethod(Object arg1, Object arg2, Object arg3, InstalledCode hotspotInstalledCode) throws InvalidInstalledCodeException {
         return executeCompiledMethodVarargs(new Object[]{arg1, arg2, arg3}, hotspotInstalledCode);
@@ -60,6 +60,14 @@ public interface HotSpotResolvedJavaMethod extends ResolvedJavaMethod {
      */
     void setNotInlineable();
 
+    /**
+     * Prevents this method from being queued for compilation at the highest tier again. Lower
+     * tiers and the interpreter are not affected.
+     *
+     * @param osr specifies whether OSR compilations or standard compilations are disabled
+     */
+    void setNotCompilable(boolean osr);
+
     /**
      * Returns true if this method is one of the special methods that is ignored by security stack
      * walks.
@@ -87,6 +95,18 @@ public interface HotSpotResolvedJavaMethod extends ResolvedJavaMethod {
 
     ProfilingInfo getCompilationProfilingInfo(boolean isOSR);
 
+    /**
+     * Gets the number of invocations of this method counted by the interpreter and by profiled
+     * code.
+     */
+    int getInvocationCount();
+
+    /**
+     * Gets the number of loop backedges taken in this method as counted by the interpreter and by
+     * profiled code.
+     */
+    int getBackedgeCount();
+
     default boolean isDefault() {
         if (isConstructor()) {
             return false;
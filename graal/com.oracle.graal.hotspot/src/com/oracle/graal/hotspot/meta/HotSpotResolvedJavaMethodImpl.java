@@ -284,6 +284,10 @@ public final class HotSpotResolvedJavaMethodImpl extends HotSpotMethod implement
         runtime().getCompilerToVM().doNotInlineOrCompile(metaspaceMethod);
     }
 
+    public void setNotCompilable(boolean osr) {
+        runtime().getCompilerToVM().setNotCompilable(metaspaceMethod, osr);
+    }
+
     /**
      * Returns true if this method is one of the special methods that is ignored by security stack
      * walks.
@@ -406,6 +410,38 @@ public final class HotSpotResolvedJavaMethodImpl extends HotSpotMethod implement
         return false;
     }
 
+    /**
+     * Gets the number of invocations of this method counted by the interpreter and by profiled
+     * code. Counters that were reset since are not included.
+     */
+    public int getInvocationCount() {
+        HotSpotVMConfig config = runtime().getConfig();
+        return readCounters(config.methodCountersInvocationCounterOffset, config.methodDataInvocationCounterOffset);
+    }
+
+    /**
+     * Gets the number of loop backedges taken in this method as counted by the interpreter and by
+     * profiled code. Counters that were reset since are not included.
+     */
+    public int getBackedgeCount() {
+        HotSpotVMConfig config = runtime().getConfig();
+        return readCounters(config.methodCountersBackedgeCounterOffset, config.methodDataBackedgeCounterOffset);
+    }
+
+    private int readCounters(int methodCountersOffset, int methodDataOffset) {
+        HotSpotVMConfig config = runtime().getConfig();
+        int count = 0;
+        long methodCounters = unsafe.getAddress(metaspaceMethod + config.methodCountersOffset);
+        if (methodCounters != 0) {
+            count += unsafe.getInt(methodCounters + methodCountersOffset + config.invocationCounterCounterOffset) >>> config.invocationCounterShift;
+        }
+        long methodData = unsafe.getAddress(metaspaceMethod + config.methodDataOffset);
+        if (methodData != 0) {
+            count += unsafe.getInt(methodData + methodDataOffset + config.invocationCounterCounterOffset) >>> config.invocationCounterShift;
+        }
+        return count;
+    }
+
     private static final String TraceMethodDataFilter = System.getProperty("graal.traceMethodDataFilter");
 
     @Override
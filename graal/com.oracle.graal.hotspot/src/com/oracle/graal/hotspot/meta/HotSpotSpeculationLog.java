@@ -22,11 +22,28 @@
  */
 package com.oracle.graal.hotspot.meta;
 
+import java.util.concurrent.atomic.*;
+
 import com.oracle.graal.api.code.*;
 import com.oracle.graal.api.meta.*;
 
 public class HotSpotSpeculationLog extends SpeculationLog {
 
+    /**
+     * Number of compilations of the method that exceeded their compilation budget. Kept here so
+     * that it lives exactly as long as the other per-method state of the compiler.
+     */
+    private final AtomicInteger budgetBailouts = new AtomicInteger();
+
+    /**
+     * Records that a compilation of the method exceeded its compilation budget.
+     *
+     * @return the number of such compilations so far
+     */
+    public int recordBudgetBailout() {
+        return budgetBailouts.incrementAndGet();
+    }
+
     @Override
     public JavaConstant speculate(Object reason) {
         addSpeculation(reason);
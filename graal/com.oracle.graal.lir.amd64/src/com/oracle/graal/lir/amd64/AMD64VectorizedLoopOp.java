@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64;
+
+import static com.oracle.graal.api.code.ValueUtil.*;
+import static com.oracle.graal.compiler.common.UnsafeAccess.*;
+import static com.oracle.graal.lir.LIRInstruction.OperandFlag.*;
+
+import java.lang.reflect.*;
+
+import com.oracle.graal.amd64.*;
+import com.oracle.graal.amd64.AMD64.CPUFeature;
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.asm.*;
+import com.oracle.graal.asm.amd64.*;
+import com.oracle.graal.asm.amd64.AMD64Address.Scale;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.compiler.common.*;
+import com.oracle.graal.compiler.common.calc.*;
+import com.oracle.graal.lir.*;
+import com.oracle.graal.lir.asm.*;
+import com.oracle.graal.lir.gen.*;
+
+/**
+ * Emits a loop over array elements that uses packed SSE instructions to process
+ * {@link #VECTOR_SIZE} bytes per iteration. The loop either stores the element-wise result of an
+ * operation into a destination array or combines all elements of an array into a single value. The
+ * number of elements must be a multiple of the number of elements per vector, the remaining
+ * elements are handled by the scalar code following this instruction.
+ */
+@Opcode("VECTORIZED_LOOP")
+public class AMD64VectorizedLoopOp extends AMD64LIRInstruction {
+
+    /**
+     * The number of bytes processed by one packed instruction.
+     */
+    public static final int VECTOR_SIZE = 16;
+
+    private final Kind kind;
+    private final VectorOperation operation;
+    private final int arrayBaseOffset;
+    private final Scale arrayIndexScale;
+
+    @Def({REG, ILLEGAL}) protected Value resultValue;
+    @Alive({REG, ILLEGAL}) protected Value destinationValue;
+    @Alive({REG}) protected Value xValue;
+    @Alive({REG, ILLEGAL}) protected Value yValue;
+    @Alive({REG}) protected Value startValue;
+    @Alive({REG}) protected Value countValue;
+    @Alive({REG, ILLEGAL}) protected Value accumulatorValue;
+    @Temp({REG}) protected Value indexTemp;
+    @Temp({REG}) protected Value endTemp;
+    @Temp({REG}) protected Value vectorTemp1;
+    @Temp({REG}) protected Value vectorTemp2;
+    @Temp({REG}) protected Value vectorTemp3;
+
+    /**
+     * Creates either a loop that stores {@code x} or {@code x operation y} into
+     * {@code destination} or, if {@code result} is legal, a loop that combines the elements of the
+     * array {@code x} and {@code accumulator} into {@code result}.
+     *
+     * @see LIRGeneratorTool#emitVectorizedLoop
+     * @see LIRGeneratorTool#emitVectorizedReduction
+     */
+    public AMD64VectorizedLoopOp(LIRGeneratorTool tool, Kind kind, VectorOperation operation, Value result, Value destination, Value x, Value y, Value start, Value count, Value accumulator) {
+        assert supports(tool.target(), kind, operation);
+        assert isLegal(result) ? operation.isAssociative(kind) && x.getKind() == Kind.Object : isLegal(destination) && (operation == null) == !isLegal(y);
+        this.kind = kind;
+        this.operation = operation;
+
+        Class<?> arrayClass = Array.newInstance(kind.toJavaClass(), 0).getClass();
+        this.arrayBaseOffset = unsafe.arrayBaseOffset(arrayClass);
+        this.arrayIndexScale = Scale.fromInt(unsafe.arrayIndexScale(arrayClass));
+
+        this.resultValue = result;
+        this.destinationValue = destination;
+        this.xValue = x;
+        this.yValue = y;
+        this.startValue = start;
+        this.countValue = count;
+        this.accumulatorValue = accumulator;
+
+        this.indexTemp = tool.newVariable(LIRKind.value(tool.target().wordKind));
+        this.endTemp = tool.newVariable(LIRKind.value(tool.target().wordKind));
+        this.vectorTemp1 = tool.newVariable(LIRKind.value(Kind.Double));
+        this.vectorTemp2 = tool.newVariable(LIRKind.value(Kind.Double));
+        this.vectorTemp3 = tool.newVariable(LIRKind.value(Kind.Double));
+    }
+
+    /**
+     * Determines whether packed instructions for {@code operation} on elements of the given kind
+     * are available on the target. A {@code null} operation stands for copying or filling arrays.
+     */
+    public static boolean supports(TargetDescription target, Kind kind, VectorOperation operation) {
+        if (kind != Kind.Int && kind != Kind.Long && kind != Kind.Float && kind != Kind.Double) {
+            return false;
+        }
+        if (operation == null) {
+            return true;
+        }
+        if (!operation.isDefinedFor(kind)) {
+            return false;
+        }
+        if (operation == VectorOperation.MUL) {
+            if (kind == Kind.Long) {
+                return false;
+            }
+            if (kind == Kind.Int) {
+                return ((AMD64) target.arch).getFeatures().contains(CPUFeature.SSE4_1);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void emitCode(CompilationResultBuilder crb, AMD64MacroAssembler masm) {
+        Register index = asRegister(indexTemp);
+        Register end = asRegister(endTemp);
+
+        masm.movslq(index, asRegister(startValue));
+        masm.movslq(end, asRegister(countValue));
+        masm.addq(end, index);
+
+        if (isLegal(resultValue)) {
+            emitReduction(masm, index, end);
+        } else {
+            emitElementWise(masm, index, end);
+        }
+    }
+
+    private int elementsPerVector() {
+        return VECTOR_SIZE / kind.getByteCount();
+    }
+
+    private AMD64Address elementAddress(Value array, Register index) {
+        return new AMD64Address(asRegister(array), index, arrayIndexScale, arrayBaseOffset);
+    }
+
+    private void emitElementWise(AMD64MacroAssembler masm, Register index, Register end) {
+        Register vector = asRegister(vectorTemp1);
+        Register xBroadcast = asRegister(vectorTemp2);
+        Register yVector = asRegister(vectorTemp3);
+        boolean xIsArray = xValue.getKind() == Kind.Object;
+        boolean yIsArray = isLegal(yValue) && yValue.getKind() == Kind.Object;
+
+        // invariant operands are replicated into all elements once before the loop
+        if (!xIsArray) {
+            emitBroadcast(masm, xBroadcast, xValue);
+        }
+        if (isLegal(yValue) && !yIsArray) {
+            emitBroadcast(masm, yVector, yValue);
+        }
+
+        Label loop = new Label();
+        Label done = new Label();
+        masm.bind(loop);
+        masm.cmpq(index, end);
+        masm.jcc(ConditionFlag.GreaterEqual, done);
+        if (xIsArray) {
+            masm.movdqu(vector, elementAddress(xValue, index));
+        } else {
+            masm.movaps(vector, xBroadcast);
+        }
+        if (operation != null) {
+            if (yIsArray) {
+                masm.movdqu(yVector, elementAddress(yValue, index));
+            }
+            emitOperation(masm, vector, yVector);
+        }
+        masm.movdqu(elementAddress(destinationValue, index), vector);
+        masm.addq(index, elementsPerVector());
+        masm.jmp(loop);
+        masm.bind(done);
+    }
+
+    private void emitReduction(AMD64MacroAssembler masm, Register index, Register end) {
+        Register vector = asRegister(vectorTemp1);
+        Register accumulator = asRegister(vectorTemp2);
+        Register result = asRegister(resultValue);
+
+        Label loop = new Label();
+        Label reduce = new Label();
+        Label done = new Label();
+
+        if (kind == Kind.Long) {
+            masm.movq(result, asRegister(accumulatorValue));
+        } else {
+            masm.movl(result, asRegister(accumulatorValue));
+        }
+        masm.cmpq(index, end);
+        masm.jcc(ConditionFlag.GreaterEqual, done);
+
+        // the first vector provides the initial partial results so no neutral element is needed
+        masm.movdqu(accumulator, elementAddress(xValue, index));
+        masm.addq(index, elementsPerVector());
+        masm.bind(loop);
+        masm.cmpq(index, end);
+        masm.jcc(ConditionFlag.GreaterEqual, reduce);
+        masm.movdqu(vector, elementAddress(xValue, index));
+        emitOperation(masm, accumulator, vector);
+        masm.addq(index, elementsPerVector());
+        masm.jmp(loop);
+
+        // combine the partial results in the elements of the accumulator
+        masm.bind(reduce);
+        masm.pshufd(vector, accumulator, 0x4E);
+        emitOperation(masm, accumulator, vector);
+        if (kind == Kind.Long) {
+            masm.movdq(asRegister(endTemp), accumulator);
+        } else {
+            masm.pshufd(vector, accumulator, 0xB1);
+            emitOperation(masm, accumulator, vector);
+            masm.movdl(asRegister(endTemp), accumulator);
+        }
+        emitScalarOperation(masm, result, asRegister(endTemp));
+        masm.bind(done);
+    }
+
+    /**
+     * Replicates a scalar value into all elements of a vector register.
+     */
+    private void emitBroadcast(AMD64MacroAssembler masm, Register dst, Value value) {
+        switch (kind) {
+            case Int:
+                masm.movdl(dst, asRegister(value));
+                masm.pshufd(dst, dst, 0x00);
+                break;
+            case Long:
+                masm.movdq(dst, asRegister(value));
+                masm.pshufd(dst, dst, 0x44);
+                break;
+            case Float:
+                masm.pshufd(dst, asRegister(value), 0x00);
+                break;
+            case Double:
+                masm.pshufd(dst, asRegister(value), 0x44);
+                break;
+            default:
+                throw GraalInternalError.shouldNotReachHere();
+        }
+    }
+
+    private void emitOperation(AMD64MacroAssembler masm, Register dst, Register src) {
+        switch (operation) {
+            case ADD:
+                if (kind == Kind.Int) {
+                    masm.paddd(dst, src);
+                } else if (kind == Kind.Long) {
+                    masm.paddq(dst, src);
+                } else if (kind == Kind.Float) {
+                    masm.addps(dst, src);
+                } else {
+                    masm.addpd(dst, src);
+                }
+                break;
+            case SUB:
+                if (kind == Kind.Int) {
+                    masm.psubd(dst, src);
+                } else if (kind == Kind.Long) {
+                    masm.psubq(dst, src);
+                } else if (kind == Kind.Float) {
+                    masm.subps(dst, src);
+                } else {
+                    masm.subpd(dst, src);
+                }
+                break;
+            case MUL:
+                if (kind == Kind.Int) {
+                    masm.pmulld(dst, src);
+                } else if (kind == Kind.Float) {
+                    masm.mulps(dst, src);
+                } else {
+                    masm.mulpd(dst, src);
+                }
+                break;
+            case DIV:
+                if (kind == Kind.Float) {
+                    masm.divps(dst, src);
+                } else {
+                    masm.divpd(dst, src);
+                }
+                break;
+            case AND:
+                masm.pand(dst, src);
+                break;
+            case OR:
+                masm.por(dst, src);
+                break;
+            case XOR:
+                masm.pxor(dst, src);
+                break;
+            default:
+                throw GraalInternalError.shouldNotReachHere();
+        }
+    }
+
+    private void emitScalarOperation(AMD64MacroAssembler masm, Register dst, Register src) {
+        boolean isLong = kind == Kind.Long;
+        switch (operation) {
+            case ADD:
+                if (isLong) {
+                    masm.addq(dst, src);
+                } else {
+                    masm.addl(dst, src);
+                }
+                break;
+            case MUL:
+                if (isLong) {
+                    masm.imulq(dst, src);
+                } else {
+                    masm.imull(dst, src);
+                }
+                break;
+            case AND:
+                if (isLong) {
+                    masm.andq(dst, src);
+                } else {
+                    masm.andl(dst, src);
+                }
+                break;
+            case OR:
+                if (isLong) {
+                    masm.orq(dst, src);
+                } else {
+                    masm.orl(dst, src);
+                }
+                break;
+            case XOR:
+                if (isLong) {
+                    masm.xorq(dst, src);
+                } else {
+                    masm.xorl(dst, src);
+                }
+                break;
+            default:
+                throw GraalInternalError.shouldNotReachHere();
+        }
+    }
+}
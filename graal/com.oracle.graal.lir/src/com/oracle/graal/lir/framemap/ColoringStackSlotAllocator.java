@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.framemap;
+
+import java.util.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.debug.*;
+
+/**
+ * A {@link StackSlotAllocator} that maps spill slots with {@linkplain FrameMapBuilder#recordLiveRange
+ * recorded live ranges} to shared frame locations. A spill slot reuses the location of an earlier
+ * spill slot of the same {@link LIRKind} if their live ranges do not overlap. All other virtual
+ * stack slots get their own location, as with {@link SimpleStackSlotAllocator}.
+ */
+public class ColoringStackSlotAllocator extends SimpleStackSlotAllocator {
+
+    private static final DebugMetric SharedSpillSlots = Debug.metric("SharedSpillSlots");
+    private static final DebugMetric SharedSpillSlotBytes = Debug.metric("SharedSpillSlotBytes");
+
+    /**
+     * A frame location together with the union of the live ranges of all spill slots mapped to it.
+     */
+    private static final class SharedSlot {
+
+        final LIRKind kind;
+        final StackSlot slot;
+        final BitSet liveRange;
+
+        SharedSlot(LIRKind kind, StackSlot slot, BitSet liveRange) {
+            this.kind = kind;
+            this.slot = slot;
+            this.liveRange = liveRange;
+        }
+    }
+
+    private final List<SharedSlot> sharedSlots = new ArrayList<>();
+
+    @Override
+    protected StackSlot mapSimpleVirtualStackSlot(FrameMapBuilderImpl builder, SimpleVirtualStackSlot virtualStackSlot) {
+        BitSet liveRange = builder.getLiveRange(virtualStackSlot);
+        if (liveRange == null) {
+            return super.mapSimpleVirtualStackSlot(builder, virtualStackSlot);
+        }
+        LIRKind kind = virtualStackSlot.getLIRKind();
+        for (SharedSlot shared : sharedSlots) {
+            if (shared.kind.equals(kind) && !shared.liveRange.intersects(liveRange)) {
+                shared.liveRange.or(liveRange);
+                SharedSpillSlots.increment();
+                SharedSpillSlotBytes.add(builder.frameMap.spillSlotSize(kind));
+                return shared.slot;
+            }
+        }
+        StackSlot slot = super.mapSimpleVirtualStackSlot(builder, virtualStackSlot);
+        sharedSlots.add(new SharedSlot(kind, slot, (BitSet) liveRange.clone()));
+        return slot;
+    }
+}
@@ -59,6 +59,18 @@ public interface FrameMapBuilder {
      */
     VirtualStackSlot allocateStackSlots(int slots, BitSet objects, List<VirtualStackSlot> outObjectStackSlots);
 
+    /**
+     * Records that the contents of a spill slot are needed from instruction {@code from} up to and
+     * including instruction {@code to}. The positions are instruction ids of a single numbering of
+     * the LIR. A spill slot for which live ranges are recorded may share its frame location with
+     * other spill slots whose live ranges do not overlap. Therefore, the live ranges of all uses of
+     * such a slot must be recorded. A slot without recorded live ranges is assumed to be live in
+     * the whole method.
+     *
+     * @param slot a slot returned by {@link #allocateSpillSlot(LIRKind)}
+     */
+    void recordLiveRange(VirtualStackSlot slot, int from, int to);
+
     RegisterConfig getRegisterConfig();
 
     CodeCacheProvider getCodeCache();
@@ -28,12 +28,20 @@ import com.oracle.graal.api.code.*;
 import com.oracle.graal.api.meta.*;
 import com.oracle.graal.compiler.common.*;
 import com.oracle.graal.lir.gen.*;
+import com.oracle.graal.options.*;
 
 /**
  * A FrameMapBuilder that records allocation.
  */
 public class FrameMapBuilderImpl implements FrameMapBuilder {
 
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Share frame locations between spill slots whose live ranges do not overlap")
+        public static final OptionValue<Boolean> StackSlotColoring = new OptionValue<>(true);
+        // @formatter:on
+    }
+
     private final RegisterConfig registerConfig;
     private final CodeCacheProvider codeCache;
     protected final FrameMap frameMap;
@@ -41,6 +49,13 @@ public class FrameMapBuilderImpl implements FrameMapBuilder {
     private final List<CallingConvention> calls;
     private int numStackSlots;
 
+    /**
+     * The {@linkplain #recordLiveRange recorded} live ranges of the virtual stack slots, indexed by
+     * {@link VirtualStackSlot#getId()}. An entry is {@code null} if no live range was recorded for
+     * the slot.
+     */
+    private BitSet[] liveRanges;
+
     public FrameMapBuilderImpl(FrameMap frameMap, CodeCacheProvider codeCache, RegisterConfig registerConfig) {
         assert registerConfig != null : "No register config!";
         this.registerConfig = registerConfig == null ? codeCache.getRegisterConfig() : registerConfig;
@@ -72,6 +87,33 @@ public class FrameMapBuilderImpl implements FrameMapBuilder {
         return slot;
     }
 
+    public void recordLiveRange(VirtualStackSlot slot, int from, int to) {
+        assert 0 <= from && from <= to : "invalid live range " + from + ".." + to;
+        assert slot.getId() < numStackSlots && stackSlots.get(slot.getId()) == slot && slot instanceof SimpleVirtualStackSlot : "not a spill slot of this frame: " + slot;
+        if (liveRanges == null) {
+            liveRanges = new BitSet[numStackSlots];
+        } else if (liveRanges.length <= slot.getId()) {
+            liveRanges = Arrays.copyOf(liveRanges, numStackSlots);
+        }
+        BitSet range = liveRanges[slot.getId()];
+        if (range == null) {
+            range = new BitSet(to + 1);
+            liveRanges[slot.getId()] = range;
+        }
+        range.set(from, to + 1);
+    }
+
+    /**
+     * Gets the instruction ids at which the contents of a virtual stack slot are needed, or
+     * {@code null} if the slot is live in the whole method.
+     */
+    BitSet getLiveRange(VirtualStackSlot slot) {
+        if (liveRanges == null || liveRanges.length <= slot.getId()) {
+            return null;
+        }
+        return liveRanges[slot.getId()];
+    }
+
     public RegisterConfig getRegisterConfig() {
         return registerConfig;
     }
@@ -93,7 +135,8 @@ public class FrameMapBuilderImpl implements FrameMapBuilder {
     }
 
     public FrameMap buildFrameMap(LIRGenerationResult res) {
-        FrameMappingTool mapper = new SimpleStackSlotAllocator().allocateStackSlots(this);
+        StackSlotAllocator allocator = Options.StackSlotColoring.getValue() ? new ColoringStackSlotAllocator() : new SimpleStackSlotAllocator();
+        FrameMappingTool mapper = allocator.allocateStackSlots(this);
         for (CallingConvention cc : calls) {
             frameMap.callsMethod(cc);
         }
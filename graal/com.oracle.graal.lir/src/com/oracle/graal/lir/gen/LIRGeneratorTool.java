@@ -189,6 +189,34 @@ public interface LIRGeneratorTool extends ArithmeticLIRGenerator {
 
     Value emitArrayEquals(Kind kind, Value array1, Value array2, Value length);
 
+    /**
+     * Emits a loop that processes {@code count} elements starting at index {@code start} with
+     * packed instructions. Each element of {@code destination} is set to {@code x} or, if
+     * {@code operation} is not null, to {@code x operation y}. An operand of kind
+     * {@link Kind#Object} is an array whose element at the same index is used, any other operand is
+     * used for all elements.
+     *
+     * @param count the number of elements, a multiple of the number of elements processed by one
+     *            packed instruction
+     */
+    @SuppressWarnings("unused")
+    default void emitVectorizedLoop(Kind kind, VectorOperation operation, Value destination, Value x, Value y, Value start, Value count) {
+        throw GraalInternalError.unimplemented();
+    }
+
+    /**
+     * Emits a loop that combines {@code count} elements of {@code array} starting at index
+     * {@code start} with {@code accumulator} using packed instructions.
+     *
+     * @param count the number of elements, a multiple of the number of elements processed by one
+     *            packed instruction
+     * @return the combined value
+     */
+    @SuppressWarnings("unused")
+    default Value emitVectorizedReduction(Kind kind, VectorOperation operation, Value array, Value start, Value count, Value accumulator) {
+        throw GraalInternalError.unimplemented();
+    }
+
     @SuppressWarnings("unused")
     default Value emitCountLeadingZeros(Value value) {
         throw GraalInternalError.unimplemented();
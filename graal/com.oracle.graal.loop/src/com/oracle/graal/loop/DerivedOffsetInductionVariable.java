@@ -45,6 +45,10 @@ public class DerivedOffsetInductionVariable extends InductionVariable {
         return base.graph();
     }
 
+    public InductionVariable getBase() {
+        return base;
+    }
+
     @Override
     public Direction direction() {
         return base.direction();
@@ -53,6 +53,18 @@ public class LoopFragmentInside extends LoopFragment {
         }
     };
 
+    private final DuplicationReplacement dataFixWithinLoop = new DuplicationReplacement() {
+
+        @Override
+        public Node replacement(Node oriInput) {
+            LoopBeginNode loopBegin = original().loop().loopBegin();
+            if (loopBegin.isPhiAtMerge(oriInput)) {
+                return ((PhiNode) oriInput).valueAt(loopBegin.loopEnds().first());
+            }
+            return oriInput;
+        }
+    };
+
     public LoopFragmentInside(LoopEx loop) {
         super(loop);
     }
@@ -72,9 +84,56 @@ public class LoopFragmentInside extends LoopFragment {
         return (LoopFragmentInside) super.original();
     }
 
-    @SuppressWarnings("unused")
+    /**
+     * Appends this duplicate to the body of {@code loop} so that each iteration of the loop
+     * executes the original body followed by the duplicate. The loop exits of the duplicate are
+     * removed, so the caller has to make sure that the loop condition checked by the original body
+     * also guarantees that the duplicate does not need to exit the loop. Only loops with a single
+     * back edge and exits that are taken from {@link IfNode}s are supported.
+     */
     public void appendInside(LoopEx loop) {
-        // TODO (gd)
+        assert this.isDuplicate() && this.original().loop() == loop;
+        LoopBeginNode loopBegin = loop.loopBegin();
+        assert loopBegin.loopEnds().count() == 1;
+        LoopEndNode loopEnd = loopBegin.loopEnds().first();
+        StructuredGraph graph = graph();
+
+        patchNodes(dataFixWithinLoop);
+
+        for (LoopExitNode exit : original().exits()) {
+            BeginNode newExit = getDuplicatedNode(exit);
+            if (newExit == null) {
+                continue;
+            }
+            IfNode ifNode = (IfNode) newExit.predecessor();
+            BeginNode survivingSuccessor = ifNode.trueSuccessor() == newExit ? ifNode.falseSuccessor() : ifNode.trueSuccessor();
+            graph.removeSplitPropagate(ifNode, survivingSuccessor);
+        }
+
+        // the values flowing back to the loop header are now the ones computed by the duplicate
+        Map<PhiNode, ValueNode> newBackValues = Node.newIdentityMap();
+        for (PhiNode phi : loopBegin.phis()) {
+            ValueNode backValue = phi.valueAt(loopEnd);
+            ValueNode newBackValue;
+            if (loopBegin.isPhiAtMerge(backValue)) {
+                newBackValue = ((PhiNode) backValue).valueAt(loopEnd);
+            } else {
+                newBackValue = getDuplicatedNode(backValue);
+                if (newBackValue == null) {
+                    newBackValue = backValue;
+                }
+            }
+            newBackValues.put(phi, newBackValue);
+        }
+        for (PhiNode phi : newBackValues.keySet()) {
+            phi.setValueAt(loopEnd, newBackValues.get(phi));
+        }
+
+        BeginNode entry = getDuplicatedNode(loopBegin);
+        AbstractEndNode end = getDuplicatedNode(loopEnd);
+        loopEnd.replaceAtPredecessor(entry);
+        end.replaceAtPredecessor(loopEnd);
+        end.safeDelete();
     }
 
     @Override
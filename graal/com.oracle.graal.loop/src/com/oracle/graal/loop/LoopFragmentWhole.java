@@ -27,6 +27,7 @@ import com.oracle.graal.graph.*;
 import com.oracle.graal.graph.Graph.DuplicationReplacement;
 import com.oracle.graal.nodes.*;
 import com.oracle.graal.nodes.cfg.*;
+import com.oracle.graal.nodes.util.*;
 
 public class LoopFragmentWhole extends LoopFragment {
 
@@ -101,9 +102,36 @@ public class LoopFragmentWhole extends LoopFragment {
         // TODO (gd) ?
     }
 
+    /**
+     * Places this duplicate in front of {@code loop} so that the duplicate runs first and
+     * {@code loop} continues with the values of the loop phis at the point where the duplicate
+     * exits. This requires a loop with a single exit that is taken from the loop header before any
+     * loop phi is updated, as it is the case for counted loops.
+     */
     @Override
     public void insertBefore(LoopEx loop) {
-        // TODO Auto-generated method stub
+        assert this.isDuplicate() && this.original().loop() == loop;
 
+        patchNodes(null);
+
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        assert loopBegin.loopExits().count() == 1;
+        LoopExitNode exit = loopBegin.loopExits().first();
+        LoopExitNode newExit = getDuplicatedNode(exit);
+
+        FixedNode entry = loop.entryPoint();
+        entry.replaceAtPredecessor(entryPoint());
+        newExit.setNext(entry);
+
+        for (PhiNode phi : loopBegin.phis()) {
+            PhiNode newPhi = getDuplicatedNode(phi);
+            phi.setValueAt(loopBegin.forwardEnd(), graph.unique(ValueProxyNode.create(newPhi, newExit)));
+        }
+        for (ProxyNode proxy : newExit.proxies().snapshot()) {
+            if (proxy.usages().isEmpty()) {
+                GraphUtil.killWithUnusedFloatingInputs(proxy);
+            }
+        }
     }
 }
@@ -27,6 +27,7 @@ import static com.oracle.graal.compiler.common.GraalOptions.*;
 import java.util.*;
 import java.util.function.*;
 
+import com.oracle.graal.api.code.*;
 import com.oracle.graal.debug.*;
 import com.oracle.graal.graph.*;
 import com.oracle.graal.nodes.*;
@@ -60,6 +61,40 @@ public abstract class LoopPolicies {
         return size * maxTrips <= maxNodes;
     }
 
+    /**
+     * Determines by how much a counted loop should be {@linkplain LoopTransformations#unroll
+     * partially unrolled}. The factor is limited by the size of the unrolled body and by the
+     * profiled trip count of the loop, which has to allow for at least two iterations of the
+     * unrolled loop.
+     *
+     * @return a power of 2 or 1 if the loop should not be unrolled
+     */
+    public static int partialUnrollFactor(LoopEx loop) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        if (!loop.isCounted() || loopBegin.isUnrolled() || !loop.loop().getChildren().isEmpty() || loopBegin.loopEnds().count() != 1) {
+            return 1;
+        }
+        CountedLoopInfo counted = loop.counted();
+        if (!counted.isExactTripCount() || !counted.getCounter().isConstantStride()) {
+            return 1;
+        }
+        for (PhiNode phi : loopBegin.phis()) {
+            if (!(phi instanceof ValuePhiNode)) {
+                return 1;
+            }
+        }
+        double trips = counted.isConstantMaxTripCount() ? counted.constantMaxTripCount() : loopBegin.loopFrequency();
+        int size = Math.max(1, loop.size() - 1 - loopBegin.phis().count());
+        int maxNodes = Math.min(PartialUnrollMaxNodes.getValue(), MaximumDesiredSize.getValue() - loopBegin.graph().getNodeCount() - size);
+        long maxStride = CodeUtil.maxValue(counted.getStamp().getBits()) / 4;
+        long stride = Math.abs(counted.getCounter().constantStride());
+        int factor = 1;
+        while (factor * 2 <= PartialUnrollMaxFactor.getValue() && size * factor * 2 <= maxNodes && trips >= factor * 4 && stride * factor * 2 <= maxStride) {
+            factor *= 2;
+        }
+        return factor;
+    }
+
     public static boolean shouldTryUnswitch(LoopEx loop) {
         return loop.loopBegin().unswitches() <= LoopMaxUnswitch.getValue();
     }
@@ -23,15 +23,24 @@
 package com.oracle.graal.loop;
 
 import static com.oracle.graal.compiler.common.GraalOptions.*;
+import static com.oracle.graal.nodes.calc.BinaryArithmeticNode.*;
 
 import java.util.*;
 
 import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.cfg.*;
+import com.oracle.graal.compiler.common.type.*;
 import com.oracle.graal.graph.Graph.Mark;
 import com.oracle.graal.graph.*;
+import com.oracle.graal.loop.InductionVariable.Direction;
 import com.oracle.graal.nodeinfo.*;
 import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.calc.*;
+import com.oracle.graal.nodes.cfg.*;
 import com.oracle.graal.nodes.extended.*;
+import com.oracle.graal.nodes.java.*;
+import com.oracle.graal.nodes.util.*;
 import com.oracle.graal.phases.common.*;
 import com.oracle.graal.phases.tiers.*;
 
@@ -121,24 +130,218 @@ public abstract class LoopTransformations {
         // TODO (gd) probabilities need some amount of fixup.. (probably also in other transforms)
     }
 
+    /**
+     * Partially unrolls a counted loop. A copy of the loop that executes {@code factor} iterations
+     * of the original loop per iteration is placed in front of the loop. This main loop runs as
+     * long as at least {@code factor} iterations remain and the original loop then performs the
+     * remaining iterations.
+     *
+     * @param factor a power of 2 greater than 1
+     * @see LoopPolicies#partialUnrollFactor(LoopEx)
+     */
     public static void unroll(LoopEx loop, int factor) {
-        assert loop.isCounted();
-        if (factor > 0) {
-            throw new UnsupportedOperationException();
+        assert loop.isCounted() && factor > 1 && CodeUtil.isPowerOf2(factor);
+        CountedLoopInfo counted = loop.counted();
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        IfNode exitIf = (IfNode) counted.getBody().predecessor();
+        // the main loop relies on the counter not overflowing
+        counted.createOverFlowGuard();
+
+        LoopFragmentWhole main = new LoopFragmentWhole(loop.whole());
+        main.insertBefore(loop);
+        LoopBeginNode mainBegin = main.getDuplicatedNode(loopBegin);
+
+        IfNode mainIf = main.getDuplicatedNode(exitIf);
+        LogicNode oldCondition = mainIf.condition();
+        LogicNode mainCondition = mainLoopCondition(counted, main.getDuplicatedNode(counted.getCounter().valueNode()), factor);
+        if (mainIf.trueSuccessor() == main.getDuplicatedNode(counted.getBody())) {
+            mainIf.setCondition(mainCondition);
+        } else {
+            mainIf.setCondition(graph.unique(LogicNegationNode.create(mainCondition)));
+        }
+        if (oldCondition.usages().isEmpty()) {
+            GraphUtil.killWithUnusedFloatingInputs(oldCondition);
+        }
+
+        for (int copies = 1; copies < factor; copies *= 2) {
+            LoopEx mainLoop = new LoopsData(graph).loop(mainBegin);
+            mainLoop.inside().duplicate().appendInside(mainLoop);
+        }
+
+        double frequency = loopBegin.loopFrequency();
+        mainBegin.setLoopFrequency(Math.max(1, frequency / factor));
+        loopBegin.setLoopFrequency(Math.min(frequency, factor));
+        mainBegin.setUnrolled();
+        loopBegin.setUnrolled();
+    }
+
+    /**
+     * Creates the condition under which the main loop of a partially unrolled loop starts another
+     * iteration, i.e., the condition of the original loop holds for the next {@code factor} values
+     * of the counter. The limit is adjusted instead of the counter so that the comparison cannot
+     * overflow.
+     */
+    private static LogicNode mainLoopCondition(CountedLoopInfo counted, ValueNode counter, int factor) {
+        StructuredGraph graph = counter.graph();
+        IntegerStamp stamp = counted.getStamp();
+        ValueNode limit = counted.getLimit();
+        long span = Math.abs((factor - 1) * counted.getCounter().constantStride());
+        // distance between the exclusive limit of the original loop and the one of the main loop
+        long delta = counted.isLimitIncluded() ? span - 1 : span;
+        if (counted.getDirection() == Direction.Up) {
+            ValueNode bound = limit;
+            if (delta != 0) {
+                long min = CodeUtil.minValue(stamp.getBits());
+                LogicNode underflow = graph.unique(IntegerLessThanNode.create(limit, ConstantNode.forIntegerStamp(stamp, min + delta, graph)));
+                bound = graph.unique(ConditionalNode.create(underflow, ConstantNode.forIntegerStamp(stamp, min, graph), sub(graph, limit, ConstantNode.forIntegerStamp(stamp, delta, graph))));
+            }
+            return graph.unique(IntegerLessThanNode.create(counter, bound));
+        } else {
+            ValueNode bound = limit;
+            if (delta != 0) {
+                long max = CodeUtil.maxValue(stamp.getBits());
+                LogicNode overflow = graph.unique(IntegerLessThanNode.create(ConstantNode.forIntegerStamp(stamp, max - delta, graph), limit));
+                bound = graph.unique(ConditionalNode.create(overflow, ConstantNode.forIntegerStamp(stamp, max, graph), add(graph, limit, ConstantNode.forIntegerStamp(stamp, delta, graph))));
+            }
+            return graph.unique(IntegerLessThanNode.create(bound, counter));
+        }
+    }
+
+    /**
+     * Moves {@link ArrayLengthNode}s of loop invariant arrays that directly follow the loop header
+     * in front of the loop. Such a length is typically the limit of a loop iterating over an array
+     * and the loop can only be recognized as counted once it has been moved out of the loop.
+     *
+     * @return true if any node was moved
+     */
+    public static boolean hoistArrayLengths(LoopEx loop) {
+        StructuredGraph graph = loop.loopBegin().graph();
+        boolean hoisted = false;
+        FixedNode next = loop.loopBegin().next();
+        while (next instanceof ArrayLengthNode && loop.isOutsideLoop(((ArrayLengthNode) next).array())) {
+            ArrayLengthNode length = (ArrayLengthNode) next;
+            next = length.next();
+            graph.removeFixed(length);
+            graph.addBeforeFixed(loop.entryPoint(), length);
+            hoisted = true;
         }
-        // TODO (gd) implement counted loop
-        LoopFragmentWhole main = loop.whole();
-        LoopFragmentWhole prologue = main.duplicate();
-        prologue.insertBefore(loop);
-        // CountedLoopBeginNode counted = prologue.countedLoop();
-        // StructuredGraph graph = (StructuredGraph) counted.graph();
-        // ValueNode tripCountPrologue = counted.tripCount();
-        // ValueNode tripCountMain = counted.tripCount();
-        // graph.replaceFloating(tripCountPrologue, "tripCountPrologue % factor");
-        // graph.replaceFloating(tripCountMain, "tripCountMain - (tripCountPrologue % factor)");
-        LoopFragmentInside inside = loop.inside();
-        for (int i = 0; i < factor; i++) {
-            inside.duplicate().appendInside(loop);
+        return hoisted;
+    }
+
+    /**
+     * Finds the array accesses in a counted loop whose bounds check can be replaced by a single
+     * guard in front of the loop. The index of such an access is the counter of the loop or is
+     * derived from it by a loop invariant offset, the array is loop invariant and the access is
+     * executed in every iteration of the loop. Only loops with a stride of 1 or -1 are handled,
+     * because the {@linkplain CountedLoopInfo#maxTripCountNode() trip count} is rounded down for
+     * other strides and the last index would be underestimated.
+     */
+    public static List<AccessIndexedNode> findHoistableRangeChecks(LoopEx loop) {
+        CountedLoopInfo counted = loop.counted();
+        List<AccessIndexedNode> accesses = new ArrayList<>();
+        InductionVariable counter = counted.getCounter();
+        if (!counted.isExactTripCount() || !counter.isConstantStride() || Math.abs(counter.constantStride()) != 1) {
+            return accesses;
+        }
+        ControlFlowGraph cfg = loop.loopsData().controlFlowGraph();
+        for (AccessIndexedNode access : loop.whole().nodes().filter(AccessIndexedNode.class)) {
+            if (access.getBoundsCheck() != null || !loop.isOutsideLoop(access.array())) {
+                continue;
+            }
+            InductionVariable iv = loop.getInductionVariables().get(access.index());
+            if (iv == null || !iv.isConstantStride()) {
+                continue;
+            }
+            if (iv != counter && !(iv instanceof DerivedOffsetInductionVariable && ((DerivedOffsetInductionVariable) iv).getBase() == counter)) {
+                continue;
+            }
+            Block block = cfg.blockFor(access);
+            boolean everyIteration = true;
+            for (LoopEndNode loopEnd : loop.loopBegin().loopEnds()) {
+                if (!AbstractControlFlowGraph.dominates(block, cfg.blockFor(loopEnd))) {
+                    everyIteration = false;
+                    break;
+                }
+            }
+            if (everyIteration) {
+                accesses.add(access);
+            }
+        }
+        return accesses;
+    }
+
+    /**
+     * Replaces the bounds checks of the given accesses by guards in front of the loop. Each guard
+     * checks that the first and the last index used by an access are within the bounds of the
+     * array. The indices in between are then in bounds too, because the counter of the loop cannot
+     * overflow and the index is checked not to wrap around. The guards are only evaluated if the
+     * loop executes at least one iteration.
+     *
+     * @param accesses array accesses found by {@link #findHoistableRangeChecks(LoopEx)}
+     */
+    public static void hoistRangeChecks(LoopEx loop, List<AccessIndexedNode> accesses, ConstantReflectionProvider constantReflection) {
+        CountedLoopInfo counted = loop.counted();
+        StructuredGraph graph = loop.loopBegin().graph();
+        // the range of the counter is only known if it does not overflow
+        counted.createOverFlowGuard();
+        AnchoringNode anchor = BeginNode.prevBegin(loop.entryPoint());
+        LogicNode entered = loopEntered(counted);
+
+        Map<ValueNode, ValueNode> lengths = Node.newIdentityMap();
+        for (FixedNode node = loop.predecessor(); node instanceof ArrayLengthNode; node = (FixedNode) node.predecessor()) {
+            lengths.put(((ArrayLengthNode) node).array(), (ArrayLengthNode) node);
+        }
+        for (AccessIndexedNode access : accesses) {
+            ValueNode array = access.array();
+            ValueNode length = lengths.get(array);
+            if (length == null) {
+                length = ArrayLengthNode.readArrayLength(array, constantReflection);
+                if (length == null) {
+                    length = graph.add(ArrayLengthNode.create(array));
+                    graph.addBeforeFixed(loop.entryPoint(), (ArrayLengthNode) length);
+                } else if (!length.isAlive()) {
+                    length = graph.addOrUniqueWithInputs(length);
+                }
+                lengths.put(array, length);
+            }
+
+            InductionVariable iv = loop.getInductionVariables().get(access.index());
+            ValueNode first = iv.initNode();
+            ValueNode last = iv.extremumNode(true, iv.valueNode().stamp());
+            LogicNode firstInBounds = graph.unique(IntegerBelowNode.create(first, length));
+            LogicNode lastInBounds = graph.unique(IntegerBelowNode.create(last, length));
+            LogicNode wrapped;
+            if (iv.constantStride() > 0) {
+                wrapped = graph.unique(IntegerLessThanNode.create(last, first));
+            } else {
+                wrapped = graph.unique(IntegerLessThanNode.create(first, last));
+            }
+            double slowPath = BranchProbabilityNode.SLOW_PATH_PROBABILITY;
+            LogicNode outOfBounds = graph.unique(ShortCircuitOrNode.create(graph.unique(ShortCircuitOrNode.create(firstInBounds, true, lastInBounds, true, slowPath)), false, wrapped, false, slowPath));
+            LogicNode condition = graph.unique(ShortCircuitOrNode.create(entered, true, outOfBounds, true, slowPath));
+            GuardNode guard = graph.unique(GuardNode.create(condition, anchor, DeoptimizationReason.LoopLimitCheck, DeoptimizationAction.InvalidateRecompile, false, JavaConstant.NULL_POINTER));
+            access.setBoundsCheck(guard);
+        }
+    }
+
+    /**
+     * Creates the condition under which a counted loop executes at least one iteration.
+     */
+    private static LogicNode loopEntered(CountedLoopInfo counted) {
+        StructuredGraph graph = counted.getLimit().graph();
+        ValueNode start = counted.getStart();
+        ValueNode limit = counted.getLimit();
+        if (counted.getDirection() == Direction.Up) {
+            if (counted.isLimitIncluded()) {
+                return graph.unique(LogicNegationNode.create(graph.unique(IntegerLessThanNode.create(limit, start))));
+            }
+            return graph.unique(IntegerLessThanNode.create(start, limit));
+        } else {
+            if (counted.isLimitIncluded()) {
+                return graph.unique(LogicNegationNode.create(graph.unique(IntegerLessThanNode.create(start, limit))));
+            }
+            return graph.unique(IntegerLessThanNode.create(limit, start));
         }
     }
 
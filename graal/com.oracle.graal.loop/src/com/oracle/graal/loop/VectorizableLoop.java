@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop;
+
+import java.util.*;
+import java.util.function.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.calc.*;
+import com.oracle.graal.graph.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.calc.*;
+import com.oracle.graal.nodes.java.*;
+
+/**
+ * A counted loop whose body can be executed with packed instructions. The loop counts up by one
+ * and its body consists of array accesses at the counter whose bounds checks have been
+ * {@linkplain LoopTransformations#hoistRangeChecks hoisted} and of at most one arithmetic
+ * operation. The body either stores into one array:
+ *
+ * <pre>
+ * a[i] = c;            a[i] = b[i];            a[i] = b[i] op c[i];            a[i] = b[i] op c;
+ * </pre>
+ *
+ * or combines the elements of one array with an associative operation:
+ *
+ * <pre>
+ * sum = sum op b[i];
+ * </pre>
+ *
+ * {@link #vectorize(int)} inserts a {@link VectorizedLoopNode} in front of the loop that performs
+ * as many iterations as fill whole vectors and leaves the remaining iterations to the original
+ * loop.
+ */
+public final class VectorizableLoop {
+
+    private final LoopEx loop;
+    private final ValuePhiNode counter;
+    private final Kind kind;
+    private final VectorOperation operation;
+    private final StoreIndexedNode store;
+    private final ValuePhiNode reduction;
+    private final ValueNode x;
+    private final ValueNode y;
+    private final List<AccessIndexedNode> accesses;
+
+    private VectorizableLoop(LoopEx loop, ValuePhiNode counter, Kind kind, VectorOperation operation, StoreIndexedNode store, ValuePhiNode reduction, ValueNode x, ValueNode y,
+                    List<AccessIndexedNode> accesses) {
+        this.loop = loop;
+        this.counter = counter;
+        this.kind = kind;
+        this.operation = operation;
+        this.store = store;
+        this.reduction = reduction;
+        this.x = x;
+        this.y = y;
+        this.accesses = accesses;
+    }
+
+    /**
+     * Checks whether a loop can be vectorized.
+     *
+     * @param supported determines whether the target provides packed instructions for an
+     *            operation on elements of a kind, a {@code null} operation stands for plain copies
+     * @return the vectorizable loop or null if {@code loop} cannot be vectorized
+     */
+    public static VectorizableLoop analyze(LoopEx loop, BiPredicate<Kind, VectorOperation> supported) {
+        if (!loop.isCounted() || !loop.loop().getChildren().isEmpty()) {
+            return null;
+        }
+        CountedLoopInfo counted = loop.counted();
+        LoopBeginNode loopBegin = loop.loopBegin();
+        if (!counted.isExactTripCount() || !(counted.getCounter() instanceof BasicInductionVariable) || !counted.getCounter().isConstantStride() ||
+                        counted.getCounter().constantStride() != 1 || loopBegin.loopEnds().count() != 1) {
+            return null;
+        }
+        FrameState loopState = loopBegin.stateAfter();
+        if (loopState == null || loopState.virtualObjectMappings().isNotEmpty() || loopBegin.next() != counted.getBody().predecessor()) {
+            return null;
+        }
+        ValuePhiNode counter = (ValuePhiNode) counted.getCounter().valueNode();
+
+        List<AccessIndexedNode> accesses = new ArrayList<>();
+        StoreIndexedNode store = null;
+        Kind kind = null;
+        FixedNode node = counted.getBody().next();
+        while (!(node instanceof LoopEndNode)) {
+            if (node instanceof StoreIndexedNode && store == null) {
+                store = (StoreIndexedNode) node;
+            } else if (!(node instanceof LoadIndexedNode)) {
+                return null;
+            }
+            AccessIndexedNode access = (AccessIndexedNode) node;
+            if (access.index() != counter || access.getBoundsCheck() == null || !loop.isOutsideLoop(access.array()) || (kind != null && access.elementKind() != kind)) {
+                return null;
+            }
+            kind = access.elementKind();
+            accesses.add(access);
+            node = access.next();
+        }
+        if (kind == null || !supported.test(kind, null)) {
+            return null;
+        }
+
+        ValuePhiNode reduction = null;
+        for (PhiNode phi : loopBegin.phis()) {
+            if (phi != counter) {
+                if (!(phi instanceof ValuePhiNode) || reduction != null) {
+                    return null;
+                }
+                reduction = (ValuePhiNode) phi;
+            }
+        }
+
+        VectorOperation operation;
+        ValueNode x;
+        ValueNode y;
+        ValueNode result;
+        if (store != null && reduction == null) {
+            result = store.value();
+            if (result instanceof LoadIndexedNode || loop.isOutsideLoop(result)) {
+                operation = null;
+                x = result;
+                y = null;
+            } else {
+                operation = operationOf(result);
+                if (operation == null) {
+                    return null;
+                }
+                x = ((BinaryNode) result).getX();
+                y = ((BinaryNode) result).getY();
+                if (!isOperand(loop, x, accesses) || !isOperand(loop, y, accesses)) {
+                    return null;
+                }
+            }
+        } else if (store == null && reduction != null) {
+            result = reduction.singleBackValue();
+            operation = operationOf(result);
+            if (operation == null || !operation.isAssociative(kind)) {
+                return null;
+            }
+            BinaryNode binary = (BinaryNode) result;
+            x = binary.getX() == reduction ? binary.getY() : binary.getX();
+            y = null;
+            if ((binary.getX() == reduction) == (binary.getY() == reduction) || !(x instanceof LoadIndexedNode) || !hasOnlyUses(reduction, result)) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        if (result.getKind() != kind || (operation != null && !(operation.isDefinedFor(kind) && supported.test(kind, operation)))) {
+            return null;
+        }
+
+        // every load must be an operand of the single operation or be stored directly
+        for (AccessIndexedNode access : accesses) {
+            if (access instanceof LoadIndexedNode && ((access != x && access != y) || !hasOnlyUses(access, access == result ? store : result))) {
+                return null;
+            }
+        }
+        if (result != x && !hasOnlyUses(result, store != null ? store : reduction)) {
+            return null;
+        }
+        return new VectorizableLoop(loop, counter, kind, operation, store, reduction, x, y, accesses);
+    }
+
+    private static VectorOperation operationOf(ValueNode node) {
+        if (node instanceof AddNode) {
+            return VectorOperation.ADD;
+        } else if (node instanceof SubNode) {
+            return VectorOperation.SUB;
+        } else if (node instanceof MulNode) {
+            return VectorOperation.MUL;
+        } else if (node instanceof DivNode) {
+            return VectorOperation.DIV;
+        } else if (node instanceof AndNode) {
+            return VectorOperation.AND;
+        } else if (node instanceof OrNode) {
+            return VectorOperation.OR;
+        } else if (node instanceof XorNode) {
+            return VectorOperation.XOR;
+        }
+        return null;
+    }
+
+    private static boolean isOperand(LoopEx loop, ValueNode value, List<AccessIndexedNode> accesses) {
+        return loop.isOutsideLoop(value) || (value instanceof LoadIndexedNode && accesses.contains(value));
+    }
+
+    /**
+     * Checks that {@code node} is only used by {@code user}, by frame states or by proxies at the
+     * loop exit.
+     */
+    private static boolean hasOnlyUses(ValueNode node, Node user) {
+        for (Node usage : node.usages()) {
+            if (usage != user && !(usage instanceof FrameState) && !(usage instanceof ProxyNode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts a {@link VectorizedLoopNode} in front of the loop that performs the leading
+     * iterations in multiples of the number of elements in a vector. The original loop then
+     * continues with the remaining iterations.
+     *
+     * @param vectorSize the size of a vector in bytes
+     */
+    public void vectorize(int vectorSize) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        CountedLoopInfo counted = loop.counted();
+        counted.createOverFlowGuard();
+        int lanes = vectorSize / kind.getByteCount();
+
+        ValueNode start = counter.valueAt(loopBegin.forwardEnd());
+        ValueNode count = graph.unique(AndNode.create(counted.maxTripCountNode(), ConstantNode.forInt(-lanes, graph)));
+        Set<ValueNode> guards = new LinkedHashSet<>();
+        for (AccessIndexedNode access : accesses) {
+            guards.add((ValueNode) access.getBoundsCheck().asNode());
+        }
+        ValueNode[] guardArray = guards.toArray(new ValueNode[guards.size()]);
+
+        VectorizedLoopNode vectorized;
+        if (reduction != null) {
+            vectorized = VectorizedLoopNode.createReduction(kind, operation, ((AccessIndexedNode) x).array(), start, count, reduction.valueAt(loopBegin.forwardEnd()), guardArray);
+        } else {
+            vectorized = VectorizedLoopNode.createElementWise(kind, operation, store.array(), operand(x), operand(y), start, count, guardArray);
+        }
+        graph.add(vectorized);
+        graph.addBeforeFixed(loop.entryPoint(), vectorized);
+
+        counter.setValueAt(loopBegin.forwardEnd(), BinaryArithmeticNode.add(graph, start, count));
+        if (reduction != null) {
+            reduction.setValueAt(loopBegin.forwardEnd(), vectorized);
+        } else {
+            // a deoptimization after the stores resumes at the loop header
+            FrameState state = loopBegin.stateAfter().duplicate();
+            for (int i = 0; i < state.values().size(); i++) {
+                ValueNode value = state.values().get(i);
+                if (value instanceof PhiNode && ((PhiNode) value).merge() == loopBegin) {
+                    state.values().set(i, ((PhiNode) value).valueAt(loopBegin.forwardEnd()));
+                }
+            }
+            vectorized.setStateAfter(state);
+        }
+        loopBegin.setLoopFrequency(Math.min(loopBegin.loopFrequency(), lanes));
+    }
+
+    private ValueNode operand(ValueNode value) {
+        if (value instanceof LoadIndexedNode && accesses.contains(value)) {
+            return ((LoadIndexedNode) value).array();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.*;
+
+import com.oracle.graal.debug.*;
+import com.oracle.graal.loop.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.java.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Replaces the per-iteration bounds checks of array accesses in counted loops by guards in front of
+ * the loop. Like the {@linkplain CountedLoopInfo#createOverFlowGuard() loop limit checks} they rely
+ * on, these guards are only emitted while loop limit check speculation is enabled.
+ */
+public class LoopRangeCheckEliminationPhase extends BasePhase<HighTierContext> {
+
+    private static final DebugMetric HOISTED_RANGE_CHECKS = Debug.metric("HoistedRangeChecks");
+
+    @Override
+    protected void run(StructuredGraph graph, HighTierContext context) {
+        if (graph.hasLoops() && context.getOptimisticOptimizations().useLoopLimitChecks()) {
+            LoopsData data = new LoopsData(graph);
+            boolean hoisted = false;
+            for (LoopEx loop : data.loops()) {
+                hoisted |= LoopTransformations.hoistArrayLengths(loop);
+            }
+            if (hoisted) {
+                data = new LoopsData(graph);
+            }
+            data.detectedCountedLoops();
+            for (LoopEx loop : data.countedLoops()) {
+                List<AccessIndexedNode> accesses = LoopTransformations.findHoistableRangeChecks(loop);
+                if (!accesses.isEmpty()) {
+                    Debug.log("Hoisting %d range checks out of %s", accesses.size(), loop);
+                    LoopTransformations.hoistRangeChecks(loop, accesses, context.getConstantReflection());
+                    HOISTED_RANGE_CHECKS.add(accesses.size());
+                }
+            }
+            data.deleteUnusedNodes();
+        }
+    }
+}
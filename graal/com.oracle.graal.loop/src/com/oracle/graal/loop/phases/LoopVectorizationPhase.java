@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.function.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.calc.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.loop.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Executes simple counted loops over arrays with packed instructions, see
+ * {@link VectorizableLoop}. This phase must run after {@link LoopRangeCheckEliminationPhase} since
+ * it only handles array accesses whose bounds checks have been moved in front of the loop.
+ */
+public class LoopVectorizationPhase extends BasePhase<HighTierContext> {
+
+    private static final DebugMetric VECTORIZED_LOOPS = Debug.metric("VectorizedLoops");
+
+    private final int vectorSize;
+    private final BiPredicate<Kind, VectorOperation> supported;
+
+    /**
+     * @param vectorSize the size of a vector in bytes
+     * @param supported determines whether the target provides packed instructions for an
+     *            operation on elements of a kind
+     */
+    public LoopVectorizationPhase(int vectorSize, BiPredicate<Kind, VectorOperation> supported) {
+        this.vectorSize = vectorSize;
+        this.supported = supported;
+    }
+
+    @Override
+    protected void run(StructuredGraph graph, HighTierContext context) {
+        if (graph.hasLoops() && context.getOptimisticOptimizations().useLoopLimitChecks()) {
+            LoopsData data = new LoopsData(graph);
+            data.detectedCountedLoops();
+            for (LoopEx loop : data.countedLoops()) {
+                VectorizableLoop vectorizable = VectorizableLoop.analyze(loop, supported);
+                if (vectorizable != null) {
+                    Debug.log("Vectorizing %s", loop);
+                    vectorizable.vectorize(vectorSize);
+                    VECTORIZED_LOOPS.increment();
+                }
+            }
+            data.deleteUnusedNodes();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import java.lang.management.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Counts the bytes allocated by the measured part of a benchmark. The count is reported next to
+ * the primary result, i.e. as bytes per second for throughput benchmarks. Benchmarks bracket the
+ * phase they measure with {@link #start()} and {@link #stop()} so that the allocations of
+ * per-invocation setup (e.g. copying the input graph) are not counted.
+ */
+@State(Scope.Thread)
+@AuxCounters
+public class AllocationCounters {
+
+    private static final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public long allocatedBytes;
+
+    private long threadId;
+    private long start;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        allocatedBytes = 0;
+        threadId = Thread.currentThread().getId();
+    }
+
+    public void start() {
+        start = threadMXBean.getThreadAllocatedBytes(threadId);
+    }
+
+    public void stop() {
+        allocatedBytes += threadMXBean.getThreadAllocatedBytes(threadId) - start;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.compiler.*;
+import com.oracle.graal.lir.asm.*;
+import com.oracle.graal.lir.gen.*;
+
+/**
+ * Measures emitting machine code for the register allocated LIR of a corpus method with the host
+ * backend (AMD64 on the usual benchmark machines).
+ */
+public class CodeEmissionBenchmark {
+
+    public static class EmissionState extends FrontEndState {
+
+        public LIRGenerationResult lirGenRes;
+
+        @Setup(Level.Invocation)
+        public void generateLIR() {
+            lirGenRes = GraalCompiler.emitLIR(graal.backend, graal.backend.getTarget(), schedule, original, null, cc, null);
+        }
+    }
+
+    @Benchmark
+    public CompilationResult emitCode(EmissionState state, AllocationCounters counters) {
+        CompilationResult compilationResult = new CompilationResult();
+        counters.start();
+        GraalCompiler.emitCode(state.graal.backend, state.assumptions, state.lirGenRes, compilationResult, state.original.method(), CompilationResultBuilderFactory.Default);
+        counters.stop();
+        return compilationResult;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import static com.oracle.graal.api.code.CodeUtil.*;
+import static com.oracle.graal.compiler.common.GraalOptions.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.code.CallingConvention.Type;
+import com.oracle.graal.compiler.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.schedule.*;
+
+/**
+ * Runs the complete front end on a corpus graph so that the back end phases can be measured on
+ * the resulting {@linkplain #schedule schedule}.
+ */
+public class FrontEndState extends GraphState {
+
+    public SchedulePhase schedule;
+    public CallingConvention cc;
+
+    @Override
+    protected void prepare(StructuredGraph corpusGraph) {
+        assumptions = new Assumptions(OptAssumptions.getValue());
+        schedule = GraalCompiler.emitFrontEnd(graal.providers, graal.backend.getTarget(), corpusGraph, assumptions, null, GraphCorpus.getGraphBuilderSuite(graal.backend),
+                        OptimisticOptimizations.ALL, GraalCompiler.getProfilingInfo(corpusGraph), null, graal.suites);
+        cc = getCallingConvention(graal.providers.getCodeCache(), Type.JavaCallee, corpusGraph.method(), false);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.api.runtime.*;
+import com.oracle.graal.compiler.common.*;
+import com.oracle.graal.compiler.target.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.util.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.tiers.*;
+import com.oracle.graal.runtime.*;
+
+/**
+ * The graphs the phase benchmarks operate on. A corpus method is named by its declaring class and
+ * its name (e.g. {@code java.util.HashMap.putVal}); if the class declares several methods with
+ * this name, the one with the most bytecodes is used.
+ * <p>
+ * By default the graph of a corpus method is built by parsing the method when a benchmark is set
+ * up. Graphs can also be captured once with {@link #main} and loaded from the resulting file by
+ * setting the system property {@value #CORPUS_FILE_PROPERTY}, so that all runs operate on exactly
+ * the same graphs even when profiles differ.
+ */
+public final class GraphCorpus {
+
+    public static final String CORPUS_FILE_PROPERTY = "graal.microbenchmarks.corpus";
+
+    private static final int MAGIC = 0x47434f52;
+
+    private static Map<String, byte[]> captured;
+
+    private GraphCorpus() {
+    }
+
+    public static ResolvedJavaMethod lookupMethod(MetaAccessProvider metaAccess, String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot == -1) {
+            throw new IllegalArgumentException("not a qualified method name: " + name);
+        }
+        Class<?> holder;
+        try {
+            holder = Class.forName(name.substring(0, dot));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("class of corpus method not found: " + name, e);
+        }
+        String methodName = name.substring(dot + 1);
+        ResolvedJavaMethod result = null;
+        for (Method m : holder.getDeclaredMethods()) {
+            if (m.getName().equals(methodName)) {
+                ResolvedJavaMethod method = metaAccess.lookupJavaMethod(m);
+                if (result == null || method.getCodeSize() > result.getCodeSize()) {
+                    result = method;
+                }
+            }
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("corpus method not found: " + name);
+        }
+        return result;
+    }
+
+    public static PhaseSuite<HighTierContext> getGraphBuilderSuite(Backend backend) {
+        return backend.getSuites().getDefaultGraphBuilderSuite().copy();
+    }
+
+    /**
+     * Builds the graph of a method with the default graph builder suite of a backend.
+     */
+    public static StructuredGraph parse(Backend backend, ResolvedJavaMethod method) {
+        try (Scope s = Debug.scope("Parsing", method)) {
+            StructuredGraph graph = new StructuredGraph(method);
+            PhaseSuite<HighTierContext> graphBuilderSuite = getGraphBuilderSuite(backend);
+            graphBuilderSuite.apply(graph, new HighTierContext(backend.getProviders(), null, null, graphBuilderSuite, OptimisticOptimizations.ALL));
+            return graph;
+        } catch (Throwable e) {
+            throw Debug.handle(e);
+        }
+    }
+
+    /**
+     * Gets the graph of a corpus method, either from the captured corpus or by parsing it.
+     */
+    public static StructuredGraph load(Backend backend, String name) {
+        String fileName = System.getProperty(CORPUS_FILE_PROPERTY);
+        if (fileName == null) {
+            return parse(backend, lookupMethod(backend.getProviders().getMetaAccess(), name));
+        }
+        try {
+            byte[] payload = readCorpus(fileName).get(name);
+            if (payload == null) {
+                throw new IllegalArgumentException(name + " is not in the corpus " + fileName);
+            }
+            return GraphSerializer.read(new DataInputStream(new ByteArrayInputStream(payload)), backend.getProviders().getMetaAccess(), GraphCorpus.class.getClassLoader());
+        } catch (IOException e) {
+            throw new GraalInternalError(e);
+        }
+    }
+
+    private static synchronized Map<String, byte[]> readCorpus(String fileName) throws IOException {
+        if (captured == null) {
+            Map<String, byte[]> entries = new HashMap<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(fileName + " is not a graph corpus");
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    byte[] payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                    entries.put(name, payload);
+                }
+            }
+            captured = entries;
+        }
+        return captured;
+    }
+
+    /**
+     * Captures the graphs of corpus methods in a file.
+     *
+     * @param args the name of the file followed by the names of the corpus methods
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GraphCorpus <file> <method>...");
+            System.exit(1);
+        }
+        Backend backend = Graal.getRequiredCapability(RuntimeProvider.class).getHostBackend();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            StructuredGraph graph = parse(backend, lookupMethod(backend.getProviders().getMetaAccess(), args[i]));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                GraphSerializer.write(graph, out);
+            } catch (NotSerializableException e) {
+                TTY.println("skipping " + args[i] + ": " + e.getMessage());
+                continue;
+            }
+            entries.put(args[i], bytes.toByteArray());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        TTY.println("captured " + entries.size() + " graphs in " + args[0]);
+    }
+}
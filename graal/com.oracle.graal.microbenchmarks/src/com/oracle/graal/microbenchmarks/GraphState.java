@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import static com.oracle.graal.compiler.common.GraalOptions.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Provides a fresh copy of the graph of a {@linkplain GraphCorpus corpus} method for every
+ * invocation of a benchmark. Subclasses {@linkplain #prepare prepare} the corpus graph once per
+ * trial so that it has the shape the measured phase expects.
+ */
+@State(Scope.Thread)
+public class GraphState {
+
+    @Param({"java.util.HashMap.putVal", "java.util.TreeMap.put", "java.lang.String.indexOf", "java.lang.Integer.parseInt", "java.util.concurrent.ConcurrentHashMap.putVal"})
+    public String method;
+
+    public final GraalState graal = new GraalState();
+
+    /**
+     * The prepared corpus graph. It is never modified by a benchmark.
+     */
+    public StructuredGraph original;
+
+    /**
+     * A copy of {@link #original} for the current invocation.
+     */
+    public StructuredGraph graph;
+
+    public Assumptions assumptions;
+
+    @Setup(Level.Trial)
+    public void loadGraph() {
+        original = GraphCorpus.load(graal.backend, method);
+        prepare(original);
+    }
+
+    /**
+     * Brings the corpus graph into the shape the measured phase expects.
+     */
+    protected void prepare(@SuppressWarnings("unused") StructuredGraph corpusGraph) {
+    }
+
+    @Setup(Level.Invocation)
+    public void copyGraph() {
+        graph = original.copy();
+        assumptions = new Assumptions(OptAssumptions.getValue());
+    }
+
+    public HighTierContext highTierContext() {
+        return new HighTierContext(graal.providers, assumptions, null, GraphCorpus.getGraphBuilderSuite(graal.backend), OptimisticOptimizations.ALL);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.oracle.graal.alloc.*;
+import com.oracle.graal.compiler.alloc.*;
+import com.oracle.graal.compiler.target.*;
+import com.oracle.graal.lir.*;
+import com.oracle.graal.lir.constopt.*;
+import com.oracle.graal.lir.framemap.*;
+import com.oracle.graal.lir.gen.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.cfg.*;
+import com.oracle.graal.nodes.spi.*;
+import com.oracle.graal.options.*;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Measures linear scan register allocation of the LIR of a corpus method.
+ */
+public class LinearScanBenchmark {
+
+    public static class AllocationState extends FrontEndState {
+
+        @Param({"false", "true"})
+        public boolean traceAllocation;
+
+        public LIRGenerationResult lirGenRes;
+
+        /**
+         * Generates the LIR like {@link com.oracle.graal.compiler.GraalCompiler#emitLIR} does up to
+         * register allocation.
+         */
+        @Setup(Level.Invocation)
+        public void generateLIR() {
+            Backend backend = graal.backend;
+            ControlFlowGraph cfg = schedule.getCFG();
+            Block startBlock = cfg.getStartBlock();
+            List<Block> codeEmittingOrder = ComputeBlockOrder.computeCodeEmittingOrder(cfg.getBlocks().size(), startBlock);
+            List<Block> linearScanOrder = ComputeBlockOrder.computeLinearScanOrder(cfg.getBlocks().size(), startBlock);
+            LIR lir = new LIR(cfg, linearScanOrder, codeEmittingOrder);
+
+            FrameMapBuilder frameMapBuilder = backend.newFrameMapBuilder(null);
+            frameMapBuilder.requireMapping(lir);
+            lirGenRes = backend.newLIRGenerationResult(lir, frameMapBuilder, original.method(), null);
+            LIRGeneratorTool lirGen = backend.newLIRGenerator(cc, lirGenRes);
+            NodeLIRBuilderTool nodeLirGen = backend.newNodeLIRBuilder(original, lirGen);
+            for (Block b : linearScanOrder) {
+                emitBlock(nodeLirGen, b);
+            }
+            lirGen.beforeRegisterAllocation();
+            if (ConstantLoadOptimization.Options.ConstantLoadOptimization.getValue()) {
+                ConstantLoadOptimization.optimize(lir, lirGen);
+            }
+        }
+
+        private void emitBlock(NodeLIRBuilderTool nodeLirGen, Block b) {
+            if (lirGenRes.getLIR().getLIRforBlock(b) == null) {
+                for (Block pred : b.getPredecessors()) {
+                    if (!b.isLoopHeader() || !pred.isLoopEnd()) {
+                        emitBlock(nodeLirGen, pred);
+                    }
+                }
+                nodeLirGen.doBlock(b, original, schedule.getBlockToNodesMap());
+            }
+        }
+    }
+
+    @Benchmark
+    public LIRGenerationResult allocate(AllocationState state, AllocationCounters counters) {
+        try (OverrideScope s = OptionValue.override(LinearScan.Options.LSRATraceAllocation, state.traceAllocation)) {
+            counters.start();
+            LinearScan.allocate(state.graal.backend.getTarget(), state.lirGenRes);
+            counters.stop();
+        }
+        return state.lirGenRes;
+    }
+}
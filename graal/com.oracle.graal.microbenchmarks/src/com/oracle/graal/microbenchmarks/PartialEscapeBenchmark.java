@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import static com.oracle.graal.compiler.common.GraalOptions.*;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.tiers.*;
+import com.oracle.graal.virtual.phases.ea.*;
+
+/**
+ * Measures partial escape analysis of a corpus graph that went through the high tier phases
+ * preceding partial escape analysis, in particular inlining.
+ */
+public class PartialEscapeBenchmark {
+
+    public static class PartialEscapeState extends GraphState {
+
+        @Override
+        protected void prepare(StructuredGraph corpusGraph) {
+            PhaseSuite<HighTierContext> prefix = graal.suites.getHighTier().copy();
+            ListIterator<BasePhase<? super HighTierContext>> iter = prefix.findPhase(PartialEscapePhase.class);
+            if (iter != null) {
+                iter.remove();
+                while (iter.hasNext()) {
+                    iter.next();
+                    iter.remove();
+                }
+            }
+            assumptions = new Assumptions(OptAssumptions.getValue());
+            prefix.apply(corpusGraph, highTierContext());
+        }
+    }
+
+    @Benchmark
+    public StructuredGraph partialEscape(PartialEscapeState state, AllocationCounters counters) {
+        PhaseContext context = new PhaseContext(state.graal.providers, state.assumptions);
+        PartialEscapePhase partialEscape = new PartialEscapePhase(true, new CanonicalizerPhase(!ImmutableCode.getValue()));
+        counters.start();
+        partialEscape.apply(state.graph, context);
+        counters.stop();
+        return state.graph;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.oracle.truffle.api.object.*;
+import com.oracle.truffle.object.*;
+import com.oracle.truffle.object.Locations.DeclaredLocation;
+
+/**
+ * Measures lookups and copying updates of the {@link PropertyMap} of a Truffle shape against the
+ * number of properties in the map.
+ */
+public class PropertyMapBenchmark {
+
+    @State(Scope.Thread)
+    public static class PropertyMapState {
+
+        @Param({"4", "16", "64", "256", "1024"})
+        public int propertyCount;
+
+        public PropertyMap map;
+        public Object[] keys;
+        public Property added;
+        public Property middle;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void buildMap() {
+            map = PropertyMap.empty();
+            keys = new Object[propertyCount];
+            for (int i = 0; i < propertyCount; i++) {
+                keys[i] = "property" + i;
+                map = map.putCopy(newProperty(keys[i]));
+            }
+            added = newProperty("added");
+            middle = map.get(keys[propertyCount / 2]);
+        }
+
+        /**
+         * Cycles through all keys so that lookups are not biased towards recently added properties.
+         */
+        public Object nextKey() {
+            Object key = keys[next];
+            next = next + 1 == keys.length ? 0 : next + 1;
+            return key;
+        }
+
+        private static Property newProperty(Object key) {
+            return new PropertyImpl(key, new DeclaredLocation(key), 0);
+        }
+    }
+
+    @Benchmark
+    public Property lookup(PropertyMapState state) {
+        return state.map.get(state.nextKey());
+    }
+
+    @Benchmark
+    public PropertyMap putCopy(PropertyMapState state) {
+        return state.map.putCopy(state.added);
+    }
+
+    @Benchmark
+    public PropertyMap removeCopy(PropertyMapState state) {
+        return state.map.removeCopy(state.middle);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks;
+
+import static com.oracle.graal.compiler.common.GraalOptions.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.compiler.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.*;
+import com.oracle.graal.phases.schedule.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Measures scheduling a corpus graph that went through all tiers of the front end.
+ */
+public class ScheduleBenchmark {
+
+    public static class ScheduleState extends GraphState {
+
+        @Override
+        protected void prepare(StructuredGraph corpusGraph) {
+            assumptions = new Assumptions(OptAssumptions.getValue());
+            TargetDescription target = graal.backend.getTarget();
+            graal.suites.getHighTier().apply(corpusGraph, highTierContext());
+            graal.suites.getMidTier().apply(corpusGraph, new MidTierContext(graal.providers, assumptions, target, OptimisticOptimizations.ALL, GraalCompiler.getProfilingInfo(corpusGraph), null));
+            graal.suites.getLowTier().apply(corpusGraph, new LowTierContext(graal.providers, assumptions, target));
+        }
+    }
+
+    @Benchmark
+    public SchedulePhase schedule(ScheduleState state, AllocationCounters counters) {
+        SchedulePhase schedule = new SchedulePhase();
+        counters.start();
+        schedule.apply(state.graph);
+        counters.stop();
+        return schedule;
+    }
+}
@@ -42,6 +42,7 @@ public class LoopBeginNode extends MergeNode implements IterableNodeType, LIRLow
     protected double loopFrequency;
     protected int nextEndIndex;
     protected int unswitches;
+    protected boolean unrolled;
     @OptionalInput(InputType.Guard) GuardingNode overflowGuard;
 
     public static LoopBeginNode create() {
@@ -181,6 +182,18 @@ public class LoopBeginNode extends MergeNode implements IterableNodeType, LIRLow
         unswitches++;
     }
 
+    /**
+     * Determines if this loop is the main loop or the remainder loop created by partially unrolling
+     * a loop, in which case it is not unrolled again.
+     */
+    public boolean isUnrolled() {
+        return unrolled;
+    }
+
+    public void setUnrolled() {
+        unrolled = true;
+    }
+
     @Override
     public void simplify(SimplifierTool tool) {
         removeDeadPhis();
@@ -103,6 +103,10 @@ public class StructuredGraph extends Graph {
         this(null, method, uniqueGraphIds.incrementAndGet(), entryBCI);
     }
 
+    public StructuredGraph(String name, ResolvedJavaMethod method, int entryBCI) {
+        this(name, method, uniqueGraphIds.incrementAndGet(), entryBCI);
+    }
+
     private StructuredGraph(String name, ResolvedJavaMethod method, long graphId, int entryBCI) {
         super(name);
         this.setStart(add(StartNode.create()));
@@ -26,6 +26,7 @@ import com.oracle.graal.api.meta.*;
 import com.oracle.graal.compiler.common.type.*;
 import com.oracle.graal.nodeinfo.*;
 import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.extended.*;
 import com.oracle.graal.nodes.spi.*;
 
 /**
@@ -36,12 +37,27 @@ import com.oracle.graal.nodes.spi.*;
 public abstract class AccessIndexedNode extends AccessArrayNode implements Lowerable {
 
     @Input protected ValueNode index;
+    @OptionalInput(InputType.Guard) protected GuardingNode boundsCheck;
     protected final Kind elementKind;
 
     public ValueNode index() {
         return index;
     }
 
+    /**
+     * Gets the guard that already ensures that {@link #index()} is within the bounds of
+     * {@link #array()}. If this is {@code null}, the bounds check is emitted when this node is
+     * lowered.
+     */
+    public GuardingNode getBoundsCheck() {
+        return boundsCheck;
+    }
+
+    public void setBoundsCheck(GuardingNode boundsCheck) {
+        updateUsagesInterface(this.boundsCheck, boundsCheck);
+        this.boundsCheck = boundsCheck;
+    }
+
     /**
      * Create an new AccessIndexedNode.
      *
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.nodes.java;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.calc.*;
+import com.oracle.graal.compiler.common.type.*;
+import com.oracle.graal.graph.*;
+import com.oracle.graal.nodeinfo.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.extended.*;
+import com.oracle.graal.nodes.spi.*;
+
+/**
+ * Executes the leading iterations of a simple counted loop over arrays with packed instructions.
+ * The node processes {@link #count()} elements starting at index {@link #start()}. It either
+ * stores {@code x} or {@code x operation y} into the elements of {@link #destination()}, or, if it
+ * is a {@linkplain #isReduction() reduction}, combines the elements of the array {@code x} with
+ * {@link #accumulator()} and produces the result. An operand that is an array contributes its
+ * element at the same index, any other operand is used for all elements.
+ *
+ * The indices are not checked. The bounds checks are established by the {@link #guards()} of this
+ * node.
+ */
+@NodeInfo(nameTemplate = "VectorizedLoop {p#operation}")
+public class VectorizedLoopNode extends AbstractStateSplit implements LIRLowerable, MemoryCheckpoint.Single {
+
+    protected final Kind elementKind;
+    protected final VectorOperation operation;
+
+    @OptionalInput ValueNode destination;
+    @Input ValueNode x;
+    @OptionalInput ValueNode y;
+    @Input ValueNode start;
+    @Input ValueNode count;
+    @OptionalInput ValueNode accumulator;
+    @Input(InputType.Guard) NodeInputList<ValueNode> guards;
+
+    public static VectorizedLoopNode createElementWise(Kind elementKind, VectorOperation operation, ValueNode destination, ValueNode x, ValueNode y, ValueNode start, ValueNode count,
+                    ValueNode[] guards) {
+        return new VectorizedLoopNode(StampFactory.forVoid(), elementKind, operation, destination, x, y, start, count, null, guards);
+    }
+
+    public static VectorizedLoopNode createReduction(Kind elementKind, VectorOperation operation, ValueNode array, ValueNode start, ValueNode count, ValueNode accumulator, ValueNode[] guards) {
+        return new VectorizedLoopNode(StampFactory.forKind(elementKind), elementKind, operation, null, array, null, start, count, accumulator, guards);
+    }
+
+    protected VectorizedLoopNode(Stamp stamp, Kind elementKind, VectorOperation operation, ValueNode destination, ValueNode x, ValueNode y, ValueNode start, ValueNode count,
+                    ValueNode accumulator, ValueNode[] guards) {
+        super(stamp);
+        assert (destination == null) != (accumulator == null);
+        assert (operation == null) == (y == null) || accumulator != null;
+        this.elementKind = elementKind;
+        this.operation = operation;
+        this.destination = destination;
+        this.x = x;
+        this.y = y;
+        this.start = start;
+        this.count = count;
+        this.accumulator = accumulator;
+        this.guards = new NodeInputList<>(this, guards);
+    }
+
+    public Kind elementKind() {
+        return elementKind;
+    }
+
+    /**
+     * Gets the operation applied to the elements, or {@code null} if the elements of
+     * {@link #destination()} are simply set to {@code x}.
+     */
+    public VectorOperation operation() {
+        return operation;
+    }
+
+    public boolean isReduction() {
+        return accumulator != null;
+    }
+
+    public ValueNode destination() {
+        return destination;
+    }
+
+    public ValueNode x() {
+        return x;
+    }
+
+    public ValueNode y() {
+        return y;
+    }
+
+    public ValueNode start() {
+        return start;
+    }
+
+    /**
+     * Gets the number of processed elements, which is a multiple of the number of elements in one
+     * vector.
+     */
+    public ValueNode count() {
+        return count;
+    }
+
+    public ValueNode accumulator() {
+        return accumulator;
+    }
+
+    public NodeInputList<ValueNode> guards() {
+        return guards;
+    }
+
+    @Override
+    public boolean hasSideEffect() {
+        return !isReduction();
+    }
+
+    public LocationIdentity getLocationIdentity() {
+        return NamedLocationIdentity.getArrayLocation(elementKind);
+    }
+
+    @Override
+    public void generate(NodeLIRBuilderTool gen) {
+        if (isReduction()) {
+            gen.setResult(this, gen.getLIRGeneratorTool().emitVectorizedReduction(elementKind, operation, gen.operand(x), gen.operand(start), gen.operand(count), gen.operand(accumulator)));
+        } else {
+            gen.getLIRGeneratorTool().emitVectorizedLoop(elementKind, operation, gen.operand(destination), gen.operand(x), y == null ? null : gen.operand(y), gen.operand(start), gen.operand(count));
+        }
+    }
+}
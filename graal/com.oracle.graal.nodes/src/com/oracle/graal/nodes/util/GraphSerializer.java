@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.nodes.util;
+
+import static com.oracle.graal.graph.util.CollectionsAccess.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.*;
+import com.oracle.graal.compiler.common.type.*;
+import com.oracle.graal.graph.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.StructuredGraph.GuardsStage;
+
+/**
+ * Writes {@link StructuredGraph}s to a compact binary format and reads them back, so that graphs
+ * can be persisted across VM runs.
+ * <p>
+ * Nodes are written with their {@linkplain NodeClass#getData() data fields} followed by their
+ * {@linkplain NodeClass#getEdges(Edges.Type) edges} as indexes into the node list. References to
+ * types, methods and fields are written symbolically and resolved with a {@link MetaAccessProvider}
+ * when the graph is read. Only values that have a VM independent representation can be written:
+ * primitive constants other than {@link VMConstant}s, null constants, the common {@link Stamp}s,
+ * {@link NamedLocationIdentity named location identities}, enums, strings and arrays of such
+ * values. Writing a graph that contains other values (e.g. object constants) fails with a
+ * {@link NotSerializableException}.
+ */
+public final class GraphSerializer {
+
+    private static final int MAGIC = 0x47524150;
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte CHAR = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte STRING = 9;
+    private static final byte ENUM = 10;
+    private static final byte CLASS = 11;
+    private static final byte TYPE = 12;
+    private static final byte METHOD = 13;
+    private static final byte FIELD = 14;
+    private static final byte PRIMITIVE_CONSTANT = 15;
+    private static final byte NULL_CONSTANT = 16;
+    private static final byte INTEGER_STAMP = 17;
+    private static final byte FLOAT_STAMP = 18;
+    private static final byte OBJECT_STAMP = 19;
+    private static final byte VOID_STAMP = 20;
+    private static final byte ILLEGAL_STAMP = 21;
+    private static final byte NAMED_LOCATION = 22;
+    private static final byte ARRAY = 23;
+
+    private GraphSerializer() {
+    }
+
+    /**
+     * Writes a graph to a stream.
+     *
+     * @throws NotSerializableException if the graph contains a value that cannot be written
+     */
+    public static void write(StructuredGraph graph, DataOutputStream out) throws IOException {
+        Map<Node, Integer> ids = newNodeIdentityMap(graph.getNodeCount());
+        List<Node> nodes = new ArrayList<>(graph.getNodeCount());
+        for (Node node : graph.getNodes()) {
+            ids.put(node, nodes.size());
+            nodes.add(node);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeValue(out, graph.name);
+        writeValue(out, graph.method());
+        out.writeInt(graph.getEntryBCI());
+        writeValue(out, graph.getGuardsStage());
+        out.writeBoolean(graph.isAfterFloatingReadPhase());
+        out.writeBoolean(graph.hasValueProxies());
+
+        out.writeInt(nodes.size());
+        out.writeInt(ids.get(graph.start()));
+        for (Node node : nodes) {
+            NodeClass nodeClass = node.getNodeClass();
+            out.writeUTF(node.getClass().getName());
+            Fields data = nodeClass.getData();
+            for (int i = 0; i < data.getCount(); i++) {
+                writeValue(out, data.get(node, i));
+            }
+        }
+        for (Node node : nodes) {
+            writeEdges(out, node, node.getNodeClass().getEdges(Edges.Type.Inputs), ids);
+            writeEdges(out, node, node.getNodeClass().getEdges(Edges.Type.Successors), ids);
+        }
+    }
+
+    private static void writeEdges(DataOutputStream out, Node node, Edges edges, Map<Node, Integer> ids) throws IOException {
+        for (int i = 0; i < edges.getDirectCount(); i++) {
+            writeNodeId(out, edges.getNode(node, i), ids);
+        }
+        for (int i = edges.getDirectCount(); i < edges.getCount(); i++) {
+            NodeList<Node> list = edges.getNodeList(node, i);
+            out.writeInt(list.size());
+            for (int j = 0; j < list.size(); j++) {
+                writeNodeId(out, list.get(j), ids);
+            }
+        }
+    }
+
+    private static void writeNodeId(DataOutputStream out, Node node, Map<Node, Integer> ids) throws IOException {
+        if (node == null) {
+            out.writeInt(-1);
+        } else {
+            Integer id = ids.get(node);
+            if (id == null) {
+                throw new NotSerializableException("edge to node outside of the graph: " + node);
+            }
+            out.writeInt(id);
+        }
+    }
+
+    /**
+     * Reads a graph from a stream.
+     *
+     * @param metaAccess used to resolve the types, methods and fields referenced by the graph
+     * @param loader used to look up the classes referenced by the graph
+     * @throws IOException if the stream is malformed or a referenced element cannot be resolved
+     */
+    public static StructuredGraph read(DataInputStream in, MetaAccessProvider metaAccess, ClassLoader loader) throws IOException {
+        Reader reader = new Reader(in, metaAccess, loader);
+        try {
+            return reader.readGraph();
+        } catch (ClassCastException | IllegalArgumentException | InstantiationException | ClassNotFoundException e) {
+            throw new IOException("malformed graph", e);
+        }
+    }
+
+    /**
+     * Reads a graph from the remaining bytes of a buffer, typically a slice of a memory mapped
+     * file.
+     *
+     * @see #read(DataInputStream, MetaAccessProvider, ClassLoader)
+     */
+    public static StructuredGraph read(ByteBuffer buffer, MetaAccessProvider metaAccess, ClassLoader loader) throws IOException {
+        return read(new DataInputStream(new ByteBufferInputStream(buffer)), metaAccess, loader);
+    }
+
+    /**
+     * Gets a hash of the names and types of the data fields and edges of a node class in the order
+     * in which they are written. A persisted graph cannot be read back if the layout of one of its
+     * node classes changed.
+     */
+    public static long nodeClassLayoutHash(Class<? extends Node> nodeClass) {
+        NodeClass nc = NodeClass.get(nodeClass);
+        StringBuilder sb = new StringBuilder(nodeClass.getName());
+        appendLayout(sb, nc.getData());
+        appendLayout(sb, nc.getEdges(Edges.Type.Inputs));
+        sb.append(" ").append(nc.getEdges(Edges.Type.Inputs).getDirectCount());
+        appendLayout(sb, nc.getEdges(Edges.Type.Successors));
+        sb.append(" ").append(nc.getEdges(Edges.Type.Successors).getDirectCount());
+        MessageDigest digest = newDigest();
+        digest.update(sb.toString().getBytes());
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private static void appendLayout(StringBuilder sb, Fields fields) {
+        sb.append(" {");
+        for (int i = 0; i < fields.getCount(); i++) {
+            sb.append(' ').append(fields.getName(i)).append(':').append(fields.getType(i).getName());
+        }
+        sb.append(" }");
+    }
+
+    /**
+     * Gets the name, size and modification time of the jar file a class was loaded from, or an
+     * empty string if it was not loaded from a jar file. Persisted graphs should be discarded when
+     * the stamp of the jar containing the compiler changes.
+     */
+    public static String jarStamp(Class<?> c) {
+        URL url = c.getResource("/" + c.getName().replace('.', '/') + ".class");
+        if (url != null && url.getProtocol().equals("jar")) {
+            try {
+                Path jar = Paths.get(((JarURLConnection) url.openConnection()).getJarFileURL().toURI());
+                return " " + jar.getFileName() + ":" + Files.size(jar) + ":" + Files.getLastModifiedTime(jar).toMillis();
+            } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                // cannot identify the jar file
+            }
+        }
+        return "";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new GraalInternalError(e);
+        }
+    }
+
+    /**
+     * Gets a hash of the class file of a class or 0 if the class file cannot be found. Graphs that
+     * are persisted should be discarded when the hash of a class they were built from changes.
+     *
+     * @param className the {@linkplain Class#getName() name} of the class
+     * @param loader the loader used to find the class file or {@code null} for the system class
+     *            loader
+     */
+    public static long classFileHash(String className, ClassLoader loader) {
+        ClassLoader cl = loader == null ? ClassLoader.getSystemClassLoader() : loader;
+        try (InputStream in = cl.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (in == null) {
+                return 0;
+            }
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Stream over the remaining bytes of a buffer, e.g. of a memory mapped file. Reading advances
+     * the position of the buffer.
+     */
+    public static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Enum) {
+            out.writeByte(ENUM);
+            out.writeUTF(((Enum<?>) value).getDeclaringClass().getName());
+            out.writeUTF(((Enum<?>) value).name());
+        } else if (value instanceof Class) {
+            out.writeByte(CLASS);
+            out.writeUTF(((Class<?>) value).getName());
+        } else if (value instanceof ResolvedJavaType) {
+            out.writeByte(TYPE);
+            out.writeUTF(((ResolvedJavaType) value).getName());
+        } else if (value instanceof ResolvedJavaMethod) {
+            ResolvedJavaMethod method = (ResolvedJavaMethod) value;
+            out.writeByte(METHOD);
+            out.writeUTF(method.getDeclaringClass().getName());
+            out.writeUTF(method.getName());
+            out.writeUTF(method.getSignature().toMethodDescriptor());
+        } else if (value instanceof ResolvedJavaField) {
+            ResolvedJavaField field = (ResolvedJavaField) value;
+            out.writeByte(FIELD);
+            out.writeUTF(field.getDeclaringClass().getName());
+            out.writeUTF(field.getName());
+            out.writeBoolean(field.isStatic());
+        } else if (value == JavaConstant.NULL_POINTER) {
+            out.writeByte(NULL_CONSTANT);
+        } else if (value instanceof VMConstant) {
+            // e.g. a metaspace pointer, which is only valid in the VM that created it
+            throw new NotSerializableException(value.getClass().getName() + ": " + value);
+        } else if (value instanceof PrimitiveConstant) {
+            PrimitiveConstant constant = (PrimitiveConstant) value;
+            out.writeByte(PRIMITIVE_CONSTANT);
+            writeValue(out, constant.getKind());
+            if (constant.getKind() != Kind.Illegal) {
+                writeValue(out, constant.asBoxedPrimitive());
+            }
+        } else if (value instanceof IntegerStamp) {
+            IntegerStamp stamp = (IntegerStamp) value;
+            out.writeByte(INTEGER_STAMP);
+            out.writeInt(stamp.getBits());
+            out.writeLong(stamp.lowerBound());
+            out.writeLong(stamp.upperBound());
+            out.writeLong(stamp.downMask());
+            out.writeLong(stamp.upMask());
+        } else if (value instanceof FloatStamp) {
+            FloatStamp stamp = (FloatStamp) value;
+            out.writeByte(FLOAT_STAMP);
+            out.writeInt(stamp.getBits());
+            out.writeDouble(stamp.lowerBound());
+            out.writeDouble(stamp.upperBound());
+            out.writeBoolean(stamp.isNonNaN());
+        } else if (value.getClass() == ObjectStamp.class) {
+            ObjectStamp stamp = (ObjectStamp) value;
+            out.writeByte(OBJECT_STAMP);
+            writeValue(out, stamp.type());
+            out.writeBoolean(stamp.isExactType());
+            out.writeBoolean(stamp.nonNull());
+            out.writeBoolean(stamp.alwaysNull());
+        } else if (value == StampFactory.forVoid()) {
+            out.writeByte(VOID_STAMP);
+        } else if (value == StampFactory.illegal()) {
+            out.writeByte(ILLEGAL_STAMP);
+        } else if (value instanceof NamedLocationIdentity) {
+            NamedLocationIdentity location = (NamedLocationIdentity) value;
+            out.writeByte(NAMED_LOCATION);
+            out.writeUTF(location.getName());
+            out.writeBoolean(location.isImmutable());
+        } else if (value.getClass().isArray()) {
+            out.writeByte(ARRAY);
+            out.writeUTF(value.getClass().getComponentType().getName());
+            int length = Array.getLength(value);
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                writeValue(out, Array.get(value, i));
+            }
+        } else {
+            throw new NotSerializableException(value.getClass().getName() + ": " + value);
+        }
+    }
+
+    private static final class Reader {
+
+        private final DataInputStream in;
+        private final MetaAccessProvider metaAccess;
+        private final ClassLoader loader;
+
+        Reader(DataInputStream in, MetaAccessProvider metaAccess, ClassLoader loader) {
+            this.in = in;
+            this.metaAccess = metaAccess;
+            this.loader = loader;
+        }
+
+        StructuredGraph readGraph() throws IOException, InstantiationException, ClassNotFoundException {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a serialized graph");
+            }
+            String name = (String) readValue();
+            ResolvedJavaMethod method = (ResolvedJavaMethod) readValue();
+            int entryBCI = in.readInt();
+            StructuredGraph graph = new StructuredGraph(name, method, entryBCI);
+            graph.setGuardsStage((GuardsStage) readValue());
+            graph.setAfterFloatingReadPhase(in.readBoolean());
+            graph.setHasValueProxies(in.readBoolean());
+
+            int nodeCount = in.readInt();
+            int startId = in.readInt();
+            Node[] nodes = new Node[nodeCount];
+            for (int id = 0; id < nodeCount; id++) {
+                Class<?> nodeClass = Class.forName(in.readUTF(), false, loader);
+                if (!Node.class.isAssignableFrom(nodeClass)) {
+                    throw new IOException("not a node class: " + nodeClass.getName());
+                }
+                Node node = id == startId ? graph.start() : (Node) UnsafeAccess.unsafe.allocateInstance(nodeClass);
+                NodeClass nc = NodeClass.get(nodeClass);
+                Fields data = nc.getData();
+                for (int i = 0; i < data.getCount(); i++) {
+                    data.set(node, i, readValue());
+                }
+                if (id != startId) {
+                    nc.initRawNode(node);
+                    graph.addWithoutUnique(node);
+                }
+                nodes[id] = node;
+            }
+            for (Node node : nodes) {
+                readEdges(node, node.getNodeClass().getEdges(Edges.Type.Inputs), nodes);
+                readEdges(node, node.getNodeClass().getEdges(Edges.Type.Successors), nodes);
+            }
+            return graph;
+        }
+
+        private void readEdges(Node node, Edges edges, Node[] nodes) throws IOException {
+            for (int i = 0; i < edges.getDirectCount(); i++) {
+                edges.setNode(node, i, readNode(nodes));
+            }
+            for (int i = edges.getDirectCount(); i < edges.getCount(); i++) {
+                int size = in.readInt();
+                NodeList<Node> list = edges.type() == Edges.Type.Inputs ? new NodeInputList<>(node, size) : new NodeSuccessorList<>(node, size);
+                edges.initializeList(node, i, list);
+                for (int j = 0; j < size; j++) {
+                    Node element = readNode(nodes);
+                    if (element != null) {
+                        list.set(j, element);
+                    }
+                }
+            }
+        }
+
+        private Node readNode(Node[] nodes) throws IOException {
+            int id = in.readInt();
+            return id == -1 ? null : nodes[id];
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readValue() throws IOException, ClassNotFoundException {
+            byte tag = in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case BOOLEAN:
+                    return in.readBoolean();
+                case BYTE:
+                    return in.readByte();
+                case SHORT:
+                    return in.readShort();
+                case CHAR:
+                    return in.readChar();
+                case INT:
+                    return in.readInt();
+                case LONG:
+                    return in.readLong();
+                case FLOAT:
+                    return in.readFloat();
+                case DOUBLE:
+                    return in.readDouble();
+                case STRING:
+                    return in.readUTF();
+                case ENUM: {
+                    Class enumClass = Class.forName(in.readUTF(), false, loader);
+                    return Enum.valueOf(enumClass, in.readUTF());
+                }
+                case CLASS:
+                    return lookupClass(in.readUTF());
+                case TYPE:
+                    return lookupType(in.readUTF());
+                case METHOD:
+                    return lookupMethod(lookupType(in.readUTF()), in.readUTF(), in.readUTF());
+                case FIELD:
+                    return lookupField(lookupType(in.readUTF()), in.readUTF(), in.readBoolean());
+                case NULL_CONSTANT:
+                    return JavaConstant.NULL_POINTER;
+                case PRIMITIVE_CONSTANT: {
+                    Kind kind = (Kind) readValue();
+                    return kind == Kind.Illegal ? JavaConstant.forIllegal() : JavaConstant.forBoxedPrimitive(readValue());
+                }
+                case INTEGER_STAMP:
+                    return new IntegerStamp(in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                case FLOAT_STAMP:
+                    return new FloatStamp(in.readInt(), in.readDouble(), in.readDouble(), in.readBoolean());
+                case OBJECT_STAMP:
+                    return new ObjectStamp((ResolvedJavaType) readValue(), in.readBoolean(), in.readBoolean(), in.readBoolean());
+                case VOID_STAMP:
+                    return StampFactory.forVoid();
+                case ILLEGAL_STAMP:
+                    return StampFactory.illegal();
+                case NAMED_LOCATION:
+                    return NamedLocationIdentity.reconstruct(in.readUTF(), in.readBoolean());
+                case ARRAY: {
+                    Class<?> componentType = lookupClass(in.readUTF());
+                    int length = in.readInt();
+                    Object array = Array.newInstance(componentType, length);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, readValue());
+                    }
+                    return array;
+                }
+                default:
+                    throw new IOException("unknown tag " + tag);
+            }
+        }
+
+        private Class<?> lookupClass(String className) throws ClassNotFoundException {
+            for (Kind kind : Kind.values()) {
+                if (kind.isPrimitive() && kind.getJavaName().equals(className)) {
+                    return kind.toJavaClass();
+                }
+            }
+            return Class.forName(className, false, loader);
+        }
+
+        private ResolvedJavaType lookupType(String internalName) throws ClassNotFoundException {
+            if (internalName.length() == 1) {
+                return metaAccess.lookupJavaType(Kind.fromPrimitiveOrVoidTypeChar(internalName.charAt(0)).toJavaClass());
+            }
+            String className = internalName.replace('/', '.');
+            if (className.charAt(0) == 'L') {
+                className = className.substring(1, className.length() - 1);
+            }
+            return metaAccess.lookupJavaType(Class.forName(className, false, loader));
+        }
+
+        private static ResolvedJavaMethod lookupMethod(ResolvedJavaType type, String name, String descriptor) throws IOException {
+            ResolvedJavaMethod[] candidates;
+            if (name.equals("<init>")) {
+                candidates = type.getDeclaredConstructors();
+            } else if (name.equals("<clinit>")) {
+                candidates = new ResolvedJavaMethod[]{type.getClassInitializer()};
+            } else {
+                candidates = type.getDeclaredMethods();
+            }
+            for (ResolvedJavaMethod method : candidates) {
+                if (method != null && method.getName().equals(name) && method.getSignature().toMethodDescriptor().equals(descriptor)) {
+                    return method;
+                }
+            }
+            throw new IOException("method not found: " + type.toJavaName() + "." + name + descriptor);
+        }
+
+        private static ResolvedJavaField lookupField(ResolvedJavaType type, String name, boolean isStatic) throws IOException {
+            for (ResolvedJavaField field : isStatic ? type.getStaticFields() : type.getInstanceFields(false)) {
+                if (field.getName().equals(name)) {
+                    return field;
+                }
+            }
+            throw new IOException("field not found: " + type.toJavaName() + "." + name);
+        }
+    }
+}
@@ -77,6 +77,7 @@ public class DeadCodeEliminationPhase extends Phase {
         disconnectCFGNodes(flood, graph);
         iterateInputs(flood, graph);
         deleteNodes(flood, graph);
+        flood.release();
 
         // remove chained Merges
         for (MergeNode merge : graph.getNodes(MergeNode.class)) {
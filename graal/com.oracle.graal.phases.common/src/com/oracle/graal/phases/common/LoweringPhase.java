@@ -266,7 +266,9 @@ public class LoweringPhase extends BasePhase<PhaseContext> {
         @Override
         public void run(StructuredGraph graph) {
             schedule.apply(graph, false);
-            processBlock(schedule.getCFG().getStartBlock(), graph.createNodeBitMap(), null);
+            NodeBitMap activeGuards = graph.createNodeBitMap();
+            processBlock(schedule.getCFG().getStartBlock(), activeGuards, null);
+            activeGuards.release();
         }
 
         private void processBlock(Block block, NodeBitMap activeGuards, AnchoringNode parentAnchor) {
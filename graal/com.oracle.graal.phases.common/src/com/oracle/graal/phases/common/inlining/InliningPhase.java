@@ -39,6 +39,10 @@ public class InliningPhase extends AbstractInliningPhase {
         // @formatter:off
         @Option(help = "Unconditionally inline intrinsics")
         public static final OptionValue<Boolean> AlwaysInlineIntrinsics = new OptionValue<>(false);
+        @Option(help = "Build the graphs of statically bound inlining candidates on helper threads as soon as their callsites are discovered")
+        public static final OptionValue<Boolean> PrefetchInliningGraphs = new OptionValue<>(false);
+        @Option(help = "Maximum number of helper threads shared by all compilations for PrefetchInliningGraphs")
+        public static final OptionValue<Integer> InliningGraphPrefetchThreads = new OptionValue<>(2);
         // @formatter:on
     }
 
@@ -81,13 +85,17 @@ public class InliningPhase extends AbstractInliningPhase {
     protected void run(final StructuredGraph graph, final HighTierContext context) {
         final InliningData data = new InliningData(graph, context, maxMethodPerInlining, canonicalizer, inliningPolicy);
 
-        assert data.repOK();
-        while (data.hasUnprocessedGraphs()) {
-            boolean wasInlined = data.moveForward();
+        try {
             assert data.repOK();
-            if (wasInlined) {
-                inliningCount++;
+            while (data.hasUnprocessedGraphs()) {
+                boolean wasInlined = data.moveForward();
+                assert data.repOK();
+                if (wasInlined) {
+                    inliningCount++;
+                }
             }
+        } finally {
+            data.cancelPrefetches();
         }
 
         assert data.inliningDepth() == 0;
@@ -83,7 +83,7 @@ public interface InlineInfo {
 
     boolean shouldInline();
 
-    void populateInlinableElements(HighTierContext context, Assumptions calleeAssumptions, CanonicalizerPhase canonicalizer);
+    void populateInlinableElements(HighTierContext context, Assumptions calleeAssumptions, CanonicalizerPhase canonicalizer, InliningGraphPrefetcher prefetcher);
 
     int determineNodeCount();
 }
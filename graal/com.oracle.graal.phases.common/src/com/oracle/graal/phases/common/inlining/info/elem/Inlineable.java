@@ -31,14 +31,14 @@ import com.oracle.graal.phases.tiers.HighTierContext;
 
 public interface Inlineable {
 
-    static Inlineable getInlineableElement(final ResolvedJavaMethod method, Invoke invoke, HighTierContext context, CanonicalizerPhase canonicalizer) {
+    static Inlineable getInlineableElement(final ResolvedJavaMethod method, Invoke invoke, HighTierContext context, CanonicalizerPhase canonicalizer, InliningGraphPrefetcher prefetcher) {
         assert method != null;
         assert invoke != null;
         Class<? extends FixedWithNextNode> macroNodeClass = InliningUtil.getMacroNodeClass(context.getReplacements(), method);
         if (macroNodeClass != null) {
             return new InlineableMacroNode(macroNodeClass);
         } else {
-            return new InlineableGraph(method, invoke, context, canonicalizer);
+            return new InlineableGraph(method, invoke, context, canonicalizer, prefetcher);
         }
     }
 
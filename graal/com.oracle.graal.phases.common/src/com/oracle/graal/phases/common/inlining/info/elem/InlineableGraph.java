@@ -27,6 +27,7 @@ import static com.oracle.graal.phases.common.DeadCodeEliminationPhase.Optionalit
 
 import java.util.*;
 
+import com.oracle.graal.api.code.*;
 import com.oracle.graal.api.meta.*;
 import com.oracle.graal.compiler.common.type.*;
 import com.oracle.graal.debug.*;
@@ -58,19 +59,19 @@ public class InlineableGraph implements Inlineable {
 
     private FixedNodeProbabilityCache probabilites = new FixedNodeProbabilityCache();
 
-    public InlineableGraph(final ResolvedJavaMethod method, final Invoke invoke, final HighTierContext context, CanonicalizerPhase canonicalizer) {
-        StructuredGraph original = getOriginalGraph(method, context, canonicalizer);
+    public InlineableGraph(final ResolvedJavaMethod method, final Invoke invoke, final HighTierContext context, CanonicalizerPhase canonicalizer, InliningGraphPrefetcher prefetcher) {
+        StructuredGraph original = getOriginalGraph(method, context, canonicalizer, prefetcher);
         // TODO copying the graph is only necessary if it is modified or if it contains any invokes
         this.graph = original.copy();
         specializeGraphToArguments(invoke, context, canonicalizer);
     }
 
     /**
-     * This method looks up in a cache the graph for the argument, if not found bytecode is parsed.
-     * The graph thus obtained is returned, ie the caller is responsible for cloning before
-     * modification.
+     * This method looks up in a cache the graph for the argument, if not found it is taken from the
+     * <code>prefetcher</code> (if any) or bytecode is parsed. The graph thus obtained is returned,
+     * ie the caller is responsible for cloning before modification.
      */
-    private static StructuredGraph getOriginalGraph(final ResolvedJavaMethod method, final HighTierContext context, CanonicalizerPhase canonicalizer) {
+    private static StructuredGraph getOriginalGraph(final ResolvedJavaMethod method, final HighTierContext context, CanonicalizerPhase canonicalizer, InliningGraphPrefetcher prefetcher) {
         StructuredGraph result = InliningUtil.getIntrinsicGraph(context.getReplacements(), method);
         if (result != null) {
             return result;
@@ -79,6 +80,15 @@ public class InlineableGraph implements Inlineable {
         if (result != null) {
             return result;
         }
+        if (prefetcher != null) {
+            result = prefetcher.take(method);
+            if (result != null) {
+                if (context.getGraphCache() != null) {
+                    context.getGraphCache().put(method, result);
+                }
+                return result;
+            }
+        }
         return parseBytecodes(method, context, canonicalizer);
     }
 
@@ -238,23 +248,50 @@ public class InlineableGraph implements Inlineable {
      * This method builds the IR nodes for the given <code>method</code> and canonicalizes them.
      * Provided profiling info is mature, the resulting graph is cached. The caller is responsible
      * for cloning before modification.</p>
+     * <p>
+     * If the graph cache is a {@link SharedGraphCache}, graphs that depend on assumptions are not
+     * cached.</p>
      */
     private static StructuredGraph parseBytecodes(ResolvedJavaMethod method, HighTierContext context, CanonicalizerPhase canonicalizer) {
+        HighTierContext parseContext = context;
+        if (context.getGraphCache() instanceof SharedGraphCache) {
+            parseContext = context.replaceAssumptions(new Assumptions(context.getAssumptions().useOptimisticAssumptions()));
+        }
+        StructuredGraph newGraph = buildGraph(method, parseContext, OptCanonicalizer.getValue() ? canonicalizer : null);
+
+        if (parseContext == context) {
+            if (context.getGraphCache() != null) {
+                context.getGraphCache().put(newGraph.method(), newGraph);
+            }
+        } else {
+            Assumptions parseAssumptions = parseContext.getAssumptions();
+            if (parseAssumptions.isEmpty()) {
+                context.getGraphCache().put(newGraph.method(), newGraph);
+            } else {
+                context.getAssumptions().record(parseAssumptions);
+            }
+        }
+        return newGraph;
+    }
+
+    /**
+     * Builds the IR nodes for the given <code>method</code> and, if a <code>canonicalizer</code> is
+     * given, canonicalizes them. Any assumptions made are recorded in <code>parseContext</code>.
+     * This method does not touch the graph cache and may thus also be called by
+     * {@link InliningGraphPrefetcher} helper threads.
+     */
+    static StructuredGraph buildGraph(ResolvedJavaMethod method, HighTierContext parseContext, CanonicalizerPhase canonicalizer) {
         StructuredGraph newGraph = new StructuredGraph(method);
         try (Debug.Scope s = Debug.scope("InlineGraph", newGraph)) {
-            if (context.getGraphBuilderSuite() != null) {
-                context.getGraphBuilderSuite().apply(newGraph, context);
+            if (parseContext.getGraphBuilderSuite() != null) {
+                parseContext.getGraphBuilderSuite().apply(newGraph, parseContext);
             }
             assert newGraph.start().next() != null : "graph needs to be populated by the GraphBuilderSuite";
 
             new DeadCodeEliminationPhase(Optional).apply(newGraph);
 
-            if (OptCanonicalizer.getValue()) {
-                canonicalizer.apply(newGraph, context);
-            }
-
-            if (context.getGraphCache() != null) {
-                context.getGraphCache().put(newGraph.method(), newGraph);
+            if (canonicalizer != null) {
+                canonicalizer.apply(newGraph, parseContext);
             }
             return newGraph;
         } catch (Throwable e) {
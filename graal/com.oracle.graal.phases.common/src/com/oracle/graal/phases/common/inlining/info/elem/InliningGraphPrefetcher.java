@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.common.inlining.info.elem;
+
+import static com.oracle.graal.phases.common.inlining.InliningPhase.Options.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.phases.common.*;
+import com.oracle.graal.phases.tiers.*;
+
+/**
+ * Speculatively builds the graphs of inlining candidates on helper threads while the inlining
+ * walker is still busy with other callsites. A graph is requested via
+ * {@link #prefetch(Invoke, ResolvedJavaMethod)} as soon as a callsite is discovered and is picked up
+ * by {@link InlineableGraph} if the callsite is later explored. Each prefetch is tied to the
+ * callsites that requested it and is cancelled once all of them have been
+ * {@linkplain #release(Invoke) released} without using it.
+ *
+ * <p>
+ * Helper threads are shared by all compilations and capped at
+ * {@link com.oracle.graal.phases.common.inlining.InliningPhase.Options#InliningGraphPrefetchThreads}.
+ * Only graphs built without recording any assumption are handed out; for all others (and for
+ * prefetches that failed or have not started yet) the consumer simply parses the callee itself.
+ * </p>
+ */
+public class InliningGraphPrefetcher {
+
+    private static final DebugMetric metricPrefetchRequested = Debug.metric("InliningGraphPrefetchRequested");
+    private static final DebugMetric metricPrefetchUsed = Debug.metric("InliningGraphPrefetchUsed");
+    private static final DebugMetric metricPrefetchCancelled = Debug.metric("InliningGraphPrefetchCancelled");
+
+    private static ExecutorService executor;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, InliningGraphPrefetchThreads.getValue()), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "InliningGraphPrefetcher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * A graph being built in the background, together with the number of unprocessed callsites
+     * that may still consume it.
+     */
+    private static final class Prefetch {
+
+        final Future<StructuredGraph> future;
+        int users;
+
+        Prefetch(Future<StructuredGraph> future) {
+            this.future = future;
+        }
+    }
+
+    private final HighTierContext context;
+    private final CanonicalizerPhase canonicalizer;
+    private final Map<ResolvedJavaMethod, Prefetch> prefetches = new HashMap<>();
+    private final Map<Invoke, ResolvedJavaMethod> callsites = new HashMap<>();
+
+    public InliningGraphPrefetcher(HighTierContext context, CanonicalizerPhase canonicalizer) {
+        this.context = context;
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Starts building the graph of <code>method</code> on behalf of <code>invoke</code>, unless a
+     * prefetch of that method is already under way.
+     */
+    public void prefetch(Invoke invoke, ResolvedJavaMethod method) {
+        if (callsites.containsKey(invoke)) {
+            return;
+        }
+        Prefetch prefetch = prefetches.get(method);
+        if (prefetch == null) {
+            final HighTierContext parseContext = context.replaceAssumptions(new Assumptions(context.getAssumptions().useOptimisticAssumptions()));
+            // option overrides are thread local, so decide on the consumer thread
+            final boolean canonicalize = GraalOptions.OptCanonicalizer.getValue();
+            prefetch = new Prefetch(getExecutor().submit(() -> build(method, parseContext, canonicalize)));
+            prefetches.put(method, prefetch);
+            metricPrefetchRequested.increment();
+        }
+        prefetch.users++;
+        callsites.put(invoke, method);
+    }
+
+    private StructuredGraph build(ResolvedJavaMethod method, HighTierContext parseContext, boolean canonicalize) {
+        try (Debug.Scope s = Debug.sandbox("InliningGraphPrefetch", null)) {
+            StructuredGraph graph = InlineableGraph.buildGraph(method, parseContext, canonicalize ? canonicalizer : null);
+            return parseContext.getAssumptions().isEmpty() ? graph : null;
+        } catch (Throwable e) {
+            // the consumer re-parses the method and reports the failure in its own context
+            return null;
+        }
+    }
+
+    /**
+     * Gets the prefetched graph of <code>method</code>, waiting for it if it is being built right
+     * now.
+     *
+     * @return the graph or null if the caller has to build it itself
+     */
+    StructuredGraph take(ResolvedJavaMethod method) {
+        Prefetch prefetch = prefetches.get(method);
+        if (prefetch == null || prefetch.future.cancel(false)) {
+            // not requested or not started yet: parsing it here is faster than waiting
+            return null;
+        }
+        try {
+            StructuredGraph graph = prefetch.future.get();
+            if (graph != null) {
+                metricPrefetchUsed.increment();
+            }
+            return graph;
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Notifies this prefetcher that <code>invoke</code> has been processed or abandoned. Prefetches
+     * that are no longer needed by any callsite are cancelled.
+     */
+    public void release(Invoke invoke) {
+        ResolvedJavaMethod method = callsites.remove(invoke);
+        if (method != null) {
+            Prefetch prefetch = prefetches.get(method);
+            if (--prefetch.users == 0) {
+                prefetches.remove(method);
+                cancel(prefetch);
+            }
+        }
+    }
+
+    /**
+     * Cancels all outstanding prefetches.
+     */
+    public void cancelAll() {
+        for (Prefetch prefetch : prefetches.values()) {
+            cancel(prefetch);
+        }
+        prefetches.clear();
+        callsites.clear();
+    }
+
+    private static void cancel(Prefetch prefetch) {
+        if (prefetch.future.cancel(false)) {
+            metricPrefetchCancelled.increment();
+        }
+    }
+}
@@ -167,6 +167,13 @@ public final class CallsiteHolderExplorable extends CallsiteHolder {
         remainingInvokes.push(invoke);
     }
 
+    /**
+     * Gets the callsites that have not been {@linkplain #popInvoke() popped} yet.
+     */
+    public Iterable<Invoke> getRemainingInvokes() {
+        return remainingInvokes;
+    }
+
     public static boolean allArgsNonNull(Invoke invoke) {
         for (ValueNode arg : invoke.callTarget().arguments()) {
             if (arg == null) {
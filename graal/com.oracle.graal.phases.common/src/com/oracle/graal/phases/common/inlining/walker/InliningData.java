@@ -89,6 +89,7 @@ public class InliningData {
     private final int maxMethodPerInlining;
     private final CanonicalizerPhase canonicalizer;
     private final InliningPolicy inliningPolicy;
+    private final InliningGraphPrefetcher prefetcher;
 
     private int maxGraphs;
 
@@ -99,10 +100,13 @@ public class InliningData {
         this.canonicalizer = canonicalizer;
         this.inliningPolicy = inliningPolicy;
         this.maxGraphs = 1;
+        this.prefetcher = InliningPhase.Options.PrefetchInliningGraphs.getValue() ? new InliningGraphPrefetcher(context, canonicalizer) : null;
 
         Assumptions rootAssumptions = context.getAssumptions();
         invocationQueue.push(new MethodInvocation(null, rootAssumptions, 1.0, 1.0, null));
-        graphQueue.push(new CallsiteHolderExplorable(rootGraph, 1.0, 1.0, null));
+        CallsiteHolder root = new CallsiteHolderExplorable(rootGraph, 1.0, 1.0, null);
+        graphQueue.push(root);
+        prefetchGraphs(root);
     }
 
     public static boolean isFreshInstantiation(ValueNode arg) {
@@ -129,6 +133,55 @@ public class InliningData {
         }
     }
 
+    /**
+     * Requests the graphs of the statically bound targets of the remaining callsites in
+     * <code>callsiteHolder</code> from the {@link InliningGraphPrefetcher}, if enabled.
+     */
+    private void prefetchGraphs(CallsiteHolder callsiteHolder) {
+        if (prefetcher != null && callsiteHolder instanceof CallsiteHolderExplorable) {
+            for (Invoke invoke : ((CallsiteHolderExplorable) callsiteHolder).getRemainingInvokes()) {
+                prefetchGraph(invoke);
+            }
+        }
+    }
+
+    private void prefetchGraph(Invoke invoke) {
+        if (InliningUtil.checkInvokeConditions(invoke) != null) {
+            return;
+        }
+        MethodCallTargetNode callTarget = (MethodCallTargetNode) invoke.callTarget();
+        ResolvedJavaMethod targetMethod = callTarget.targetMethod();
+        if (callTarget.invokeKind() != CallTargetNode.InvokeKind.Special && !targetMethod.canBeStaticallyBound()) {
+            return;
+        }
+        if (checkTargetConditionsHelper(targetMethod) != null || InliningUtil.canIntrinsify(context.getReplacements(), targetMethod)) {
+            return;
+        }
+        // containsKey does not count as a cache hit or miss
+        if (context.getGraphCache() != null && context.getGraphCache().containsKey(targetMethod)) {
+            return;
+        }
+        prefetcher.prefetch(invoke, targetMethod);
+    }
+
+    private void releasePrefetchedGraphs(CallsiteHolder callsiteHolder) {
+        if (prefetcher != null && callsiteHolder instanceof CallsiteHolderExplorable) {
+            for (Invoke invoke : ((CallsiteHolderExplorable) callsiteHolder).getRemainingInvokes()) {
+                prefetcher.release(invoke);
+            }
+        }
+    }
+
+    /**
+     * Cancels the graph prefetches still outstanding, e.g., because inlining was stopped before all
+     * callsites were explored.
+     */
+    public void cancelPrefetches() {
+        if (prefetcher != null) {
+            prefetcher.cancelAll();
+        }
+    }
+
     private boolean checkTargetConditions(Invoke invoke, ResolvedJavaMethod method) {
         final String failureMessage = checkTargetConditionsHelper(method);
         if (failureMessage == null) {
@@ -376,6 +429,9 @@ public class InliningData {
                     for (Node newNode : callerGraph.getNewNodes(markBeforeCanonicalization)) {
                         if (newNode instanceof Invoke) {
                             callerCallsiteHolder.pushInvoke((Invoke) newNode);
+                            if (prefetcher != null) {
+                                prefetchGraph((Invoke) newNode);
+                            }
                         }
                     }
                 }
@@ -462,12 +518,15 @@ public class InliningData {
 
         if (info != null) {
             Assumptions calleeAssumptions = new Assumptions(parentAssumptions.useOptimisticAssumptions());
-            info.populateInlinableElements(context, calleeAssumptions, canonicalizer);
+            info.populateInlinableElements(context, calleeAssumptions, canonicalizer, prefetcher);
             double invokeProbability = callsiteHolder.invokeProbability(invoke);
             double invokeRelevance = callsiteHolder.invokeRelevance(invoke);
             MethodInvocation methodInvocation = new MethodInvocation(info, calleeAssumptions, invokeProbability, invokeRelevance, freshlyInstantiatedArguments(invoke, callsiteHolder.getFixedParams()));
             pushInvocationAndGraphs(methodInvocation);
         }
+        if (prefetcher != null) {
+            prefetcher.release(invoke);
+        }
     }
 
     /**
@@ -526,14 +585,14 @@ public class InliningData {
     }
 
     private void popGraph() {
-        graphQueue.pop();
+        releasePrefetchedGraphs(graphQueue.pop());
         assert graphQueue.size() <= maxGraphs;
     }
 
     private void popGraphs(int count) {
         assert count >= 0;
         for (int i = 0; i < count; i++) {
-            graphQueue.pop();
+            releasePrefetchedGraphs(graphQueue.pop());
         }
     }
 
@@ -568,6 +627,7 @@ public class InliningData {
             assert (ch == DUMMY_CALLSITE_HOLDER) || !contains(ch.graph());
             graphQueue.push(ch);
             assert graphQueue.size() <= maxGraphs;
+            prefetchGraphs(ch);
         }
     }
 
@@ -101,6 +101,7 @@ public abstract class BasePhase<C> {
                 Debug.dump(BEFORE_PHASE_DUMP_LEVEL, graph, "Before phase %s", getName());
             }
             this.run(graph, context);
+            CompilationBudget.check(getName());
             executionCount.increment();
             inputNodesCount.add(graph.getNodeCount());
             if (dumpGraph && Debug.isDumpEnabled(PHASE_DUMP_LEVEL)) {
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases;
+
+import com.oracle.graal.api.code.*;
+import com.oracle.graal.debug.internal.*;
+
+/**
+ * A limit on the wall clock time and the memory a compilation may use. A budget is opened for the
+ * current thread by the code driving a compilation and is {@linkplain #check(CharSequence) checked}
+ * after each {@link BasePhase}. A compilation that is over budget is aborted with an
+ * {@link ExceededException} naming the phase after which the budget was found to be exhausted.
+ *
+ * <pre>
+ *     try (CompilationBudget budget = CompilationBudget.open(timeMillis, memoryBytes)) {
+ *         // perform a Graal compilation
+ *     }
+ * </pre>
+ */
+public final class CompilationBudget implements AutoCloseable {
+
+    private static final ThreadLocal<CompilationBudget> current = new ThreadLocal<>();
+
+    /**
+     * Bailout thrown when a compilation exceeds its {@link CompilationBudget}.
+     */
+    public static final class ExceededException extends BailoutException {
+
+        private static final long serialVersionUID = -3519468563429573214L;
+
+        private final String phase;
+
+        ExceededException(String phase, String format, Object... args) {
+            super(false, format, args);
+            this.phase = phase;
+        }
+
+        /**
+         * Gets the name of the phase after which the budget was exhausted.
+         */
+        public String getPhase() {
+            return phase;
+        }
+    }
+
+    private final long startNanos;
+    private final long timeLimitNanos;
+    private final long startAllocatedBytes;
+    private final long memoryLimit;
+    private final CompilationBudget previous;
+
+    private CompilationBudget(long timeLimitMillis, long memoryLimit) {
+        this.startNanos = System.nanoTime();
+        this.timeLimitNanos = timeLimitMillis * 1000000L;
+        this.startAllocatedBytes = memoryLimit > 0 ? MemUseTrackerImpl.getCurrentThreadAllocatedBytes() : 0;
+        this.memoryLimit = memoryLimit;
+        this.previous = current.get();
+    }
+
+    /**
+     * Opens a budget for the current thread. The budget is in effect until {@link #close()} is
+     * called on the returned object.
+     *
+     * @param timeLimitMillis the maximum wall clock time in milliseconds or 0 for no limit
+     * @param memoryLimit the maximum number of bytes the current thread may allocate or 0 for no
+     *            limit
+     * @return the budget or {@code null} if neither a time nor a memory limit is given
+     */
+    public static CompilationBudget open(long timeLimitMillis, long memoryLimit) {
+        if (timeLimitMillis <= 0 && memoryLimit <= 0) {
+            return null;
+        }
+        CompilationBudget budget = new CompilationBudget(timeLimitMillis, memoryLimit);
+        current.set(budget);
+        return budget;
+    }
+
+    /**
+     * Checks the budget of the current thread, if any.
+     *
+     * @param phase the name of the phase that just finished
+     * @throws ExceededException if the budget is exhausted
+     */
+    public static void check(CharSequence phase) {
+        CompilationBudget budget = current.get();
+        if (budget != null) {
+            budget.checkLimits(phase);
+        }
+    }
+
+    private void checkLimits(CharSequence phase) {
+        if (timeLimitNanos > 0) {
+            long elapsed = System.nanoTime() - startNanos;
+            if (elapsed > timeLimitNanos) {
+                throw new ExceededException(phase.toString(), "compilation exceeded time budget of %d ms after phase %s (%d ms)", timeLimitNanos / 1000000L, phase, elapsed / 1000000L);
+            }
+        }
+        if (memoryLimit > 0) {
+            long allocated = MemUseTrackerImpl.getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+            if (allocated > memoryLimit) {
+                throw new ExceededException(phase.toString(), "compilation exceeded memory budget of %d bytes after phase %s (%d bytes)", memoryLimit, phase, allocated);
+            }
+        }
+    }
+
+    public void close() {
+        assert current.get() == this;
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+}
@@ -307,6 +307,8 @@ public final class SchedulePhase extends Phase {
             assignBlockToNodes(graph, selectedStrategy);
             sortNodesWithinBlocks(graph, selectedStrategy);
         }
+        earliestCache.release();
+        earliestCache = null;
     }
 
     private Block blockForMemoryNode(MemoryNode memory) {
@@ -831,6 +833,8 @@ public final class SchedulePhase extends Phase {
             sortNodesWithinBlock(b, visited, beforeLastLocation, strategy);
             assert noDuplicatedNodesInBlock(b) : "duplicated nodes in " + b;
         }
+        visited.release();
+        beforeLastLocation.release();
     }
 
     private boolean noDuplicatedNodesInBlock(Block b) {
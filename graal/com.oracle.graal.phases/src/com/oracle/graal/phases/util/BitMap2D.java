@@ -24,12 +24,18 @@ package com.oracle.graal.phases.util;
 
 import java.util.*;
 
+import com.oracle.graal.compiler.common.*;
+
 /**
- * This class implements a two-dimensional bitmap.
+ * This class implements a two-dimensional bitmap. The storage is obtained from the
+ * {@link ArrayRecycler} and can be handed back with {@link #release()}.
  */
 public final class BitMap2D {
 
-    private BitSet map;
+    private static final int SHIFT = 6;
+
+    private long[] map;
+    private int sizeInWords;
     private final int bitsPerSlot;
 
     private int bitIndex(int slotIndex, int bitWithinSlotIndex) {
@@ -41,18 +47,23 @@ public final class BitMap2D {
         return true;
     }
 
+    private static int wordsForBits(int bits) {
+        return (bits + Long.SIZE - 1) >> SHIFT;
+    }
+
     public BitMap2D(int sizeInSlots, int bitsPerSlot) {
-        map = new BitSet(sizeInSlots * bitsPerSlot);
+        sizeInWords = wordsForBits(sizeInSlots * bitsPerSlot);
+        map = ArrayRecycler.newLongArray(sizeInWords);
         this.bitsPerSlot = bitsPerSlot;
     }
 
     public int sizeInBits() {
-        return map.size();
+        return sizeInWords << SHIFT;
     }
 
     // Returns number of full slots that have been allocated
     public int sizeInSlots() {
-        return map.size() / bitsPerSlot;
+        return sizeInBits() / bitsPerSlot;
     }
 
     public boolean isValidIndex(int slotIndex, int bitWithinSlotIndex) {
@@ -62,28 +73,43 @@ public final class BitMap2D {
 
     public boolean at(int slotIndex, int bitWithinSlotIndex) {
         assert verifyBitWithinSlotIndex(bitWithinSlotIndex);
-        return map.get(bitIndex(slotIndex, bitWithinSlotIndex));
+        int index = bitIndex(slotIndex, bitWithinSlotIndex);
+        int word = index >> SHIFT;
+        return word < sizeInWords && (map[word] & (1L << index)) != 0;
     }
 
     public void setBit(int slotIndex, int bitWithinSlotIndex) {
         assert verifyBitWithinSlotIndex(bitWithinSlotIndex);
-        map.set(bitIndex(slotIndex, bitWithinSlotIndex));
+        int index = bitIndex(slotIndex, bitWithinSlotIndex);
+        ensureWords((index >> SHIFT) + 1);
+        map[index >> SHIFT] |= 1L << index;
     }
 
     public void clearBit(int slotIndex, int bitWithinSlotIndex) {
         assert verifyBitWithinSlotIndex(bitWithinSlotIndex);
-        map.clear(bitIndex(slotIndex, bitWithinSlotIndex));
+        int index = bitIndex(slotIndex, bitWithinSlotIndex);
+        if ((index >> SHIFT) < sizeInWords) {
+            map[index >> SHIFT] &= ~(1L << index);
+        }
+    }
+
+    private void ensureWords(int words) {
+        if (words > sizeInWords) {
+            int newSize = Math.max(words, sizeInWords * 2);
+            if (newSize > map.length) {
+                map = ArrayRecycler.copyOf(map, newSize);
+            }
+            sizeInWords = newSize;
+        }
     }
 
     public void atPutGrow(int slotIndex, int bitWithinSlotIndex, boolean value) {
-        int size = sizeInSlots();
+        int size = Math.max(sizeInSlots(), 1);
         if (size <= slotIndex) {
             while (size <= slotIndex) {
                 size *= 2;
             }
-            BitSet newBitMap = new BitSet(size * bitsPerSlot);
-            newBitMap.or(map);
-            map = newBitMap;
+            ensureWords(wordsForBits(size * bitsPerSlot));
         }
 
         if (value) {
@@ -94,6 +120,15 @@ public final class BitMap2D {
     }
 
     public void clear() {
-        map.clear();
+        Arrays.fill(map, 0);
+    }
+
+    /**
+     * Hands the storage of this bitmap back to the {@link ArrayRecycler}. The bitmap must not be
+     * used after this call.
+     */
+    public void release() {
+        ArrayRecycler.release(map);
+        map = null;
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements.test;
+
+import java.io.*;
+import java.nio.file.*;
+
+import org.junit.*;
+
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.replacements.*;
+
+/**
+ * Tests writing graphs to a {@link SnippetGraphImage} and loading them back.
+ */
+public class SnippetGraphImageTest extends GraalCompilerTest {
+
+    public static int sumSnippet(int[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    public static long maxSnippet(long a, long b) {
+        return a > b ? a : b;
+    }
+
+    public static String objectSnippet() {
+        return "constant";
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = Files.createTempFile("snippets", ".img");
+        try {
+            SnippetGraphImage.Builder builder = new SnippetGraphImage.Builder("test", getClass().getClassLoader());
+            StructuredGraph sum = parseEager("sumSnippet");
+            StructuredGraph max = parseEager("maxSnippet");
+            Assert.assertTrue(builder.add(sum.method(), sum, 1000));
+            Assert.assertTrue(builder.add(max.method(), max, 1000));
+            // object constants cannot be written
+            StructuredGraph object = parseEager("objectSnippet");
+            Assert.assertFalse(builder.add(object.method(), object, 1000));
+            Assert.assertEquals(1, builder.getNotSerializable().size());
+            Assert.assertEquals(2, builder.write(file));
+
+            SnippetGraphImage image = SnippetGraphImage.load(file, "test", getMetaAccess(), getClass().getClassLoader());
+            Assert.assertNotNull(image);
+            for (StructuredGraph graph : new StructuredGraph[]{sum, max}) {
+                StructuredGraph loaded = image.lookup(graph.method());
+                Assert.assertNotNull(loaded);
+                Assert.assertEquals(graph.getNodeCount(), loaded.getNodeCount());
+                assertEquals(graph, loaded);
+            }
+            Assert.assertNull(image.lookup(object.method()));
+
+            Assert.assertNull(SnippetGraphImage.load(file, "other", getMetaAccess(), getClass().getClassLoader()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRejectChangedClass() throws IOException {
+        Path file = Files.createTempFile("snippets", ".img");
+        try {
+            SnippetGraphImage.Builder builder = new SnippetGraphImage.Builder("test", getClass().getClassLoader());
+            StructuredGraph max = parseEager("maxSnippet");
+            Assert.assertTrue(builder.add(max.method(), max, 1000));
+            builder.write(file);
+            Assert.assertNotNull(SnippetGraphImage.load(file, "test", getMetaAccess(), getClass().getClassLoader()));
+
+            // a loader that sees a different class file for the snippet class
+            ClassLoader changed = new ChangedClassFileLoader(getClass().getClassLoader(), getClass());
+            Assert.assertNull(SnippetGraphImage.load(file, "test", getMetaAccess(), changed));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -682,6 +682,9 @@ public abstract class DefaultJavaLoweringProvider implements LoweringProvider {
     }
 
     protected GuardingNode createBoundsCheck(AccessIndexedNode n, LoweringTool tool) {
+        if (n.getBoundsCheck() != null) {
+            return n.getBoundsCheck();
+        }
         StructuredGraph graph = n.graph();
         ValueNode array = n.array();
         ValueNode arrayLength = readArrayLength(array, tool.getConstantReflection());
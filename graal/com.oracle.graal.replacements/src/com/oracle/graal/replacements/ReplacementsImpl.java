@@ -27,7 +27,9 @@ import static com.oracle.graal.compiler.GraalCompiler.*;
 import static com.oracle.graal.compiler.common.GraalOptions.*;
 import static com.oracle.graal.phases.common.DeadCodeEliminationPhase.Optionality.*;
 
+import java.io.*;
 import java.lang.reflect.*;
+import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
@@ -50,6 +52,7 @@ import com.oracle.graal.nodes.*;
 import com.oracle.graal.nodes.CallTargetNode.InvokeKind;
 import com.oracle.graal.nodes.java.*;
 import com.oracle.graal.nodes.spi.*;
+import com.oracle.graal.nodes.util.*;
 import com.oracle.graal.phases.*;
 import com.oracle.graal.phases.common.*;
 import com.oracle.graal.phases.common.inlining.*;
@@ -199,6 +202,18 @@ public class ReplacementsImpl implements Replacements {
 
     private final Map<Class<? extends SnippetTemplateCache>, SnippetTemplateCache> snippetTemplateCache;
 
+    /**
+     * The snippets registered with {@link #registerSnippet(ResolvedJavaMethod)}.
+     */
+    private final Set<ResolvedJavaMethod> registeredSnippets = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * The {@link GraalOptions#SnippetImage} graphs are loaded from. Loaded on first use since the
+     * {@linkplain #getGraphImageFingerprint() fingerprint} may depend on subclass state.
+     */
+    private SnippetGraphImage graphImage;
+    private boolean graphImageLoaded;
+
     public ReplacementsImpl(Providers providers, SnippetReflectionProvider snippetReflection, Assumptions assumptions, TargetDescription target) {
         this.providers = providers.copyWith(this);
         this.classReplacements = new HashMap<>();
@@ -241,24 +256,116 @@ public class ReplacementsImpl implements Replacements {
 
         StructuredGraph graph = UseSnippetGraphCache ? graphs.get(method) : null;
         if (graph == null) {
-            try (TimerCloseable a = SnippetPreparationTime.start()) {
-                FrameStateProcessing frameStateProcessing = method.getAnnotation(Snippet.class).removeAllFrameStates() ? FrameStateProcessing.Removal
-                                : FrameStateProcessing.CollapseFrameForSingleSideEffect;
-                StructuredGraph newGraph = makeGraph(method, recursiveEntry, inliningPolicy(method), frameStateProcessing);
-                Debug.metric("SnippetNodeCount[%#s]", method).add(newGraph.getNodeCount());
-                if (!UseSnippetGraphCache) {
-                    return newGraph;
+            SnippetGraphImage image = getGraphImage();
+            StructuredGraph newGraph = image == null ? null : image.lookup(method);
+            if (newGraph == null) {
+                try (TimerCloseable a = SnippetPreparationTime.start()) {
+                    newGraph = makeSnippetGraph(method, recursiveEntry);
+                    Debug.metric("SnippetNodeCount[%#s]", method).add(newGraph.getNodeCount());
                 }
-                graphs.putIfAbsent(method, newGraph);
-                graph = graphs.get(method);
             }
+            if (!UseSnippetGraphCache) {
+                return newGraph;
+            }
+            graphs.putIfAbsent(method, newGraph);
+            graph = graphs.get(method);
         }
         return graph;
     }
 
+    private StructuredGraph makeSnippetGraph(ResolvedJavaMethod method, ResolvedJavaMethod recursiveEntry) {
+        FrameStateProcessing frameStateProcessing = method.getAnnotation(Snippet.class).removeAllFrameStates() ? FrameStateProcessing.Removal : FrameStateProcessing.CollapseFrameForSingleSideEffect;
+        return makeGraph(method, recursiveEntry, inliningPolicy(method), frameStateProcessing);
+    }
+
     @Override
     public void registerSnippet(ResolvedJavaMethod method) {
-        // No initialization needed as snippet graphs are created on demand in getSnippet
+        // No initialization needed as snippet graphs are created on demand in getSnippet. The
+        // snippet is only recorded so that its graph can be written to a snippet image.
+        registeredSnippets.add(method);
+    }
+
+    private synchronized SnippetGraphImage getGraphImage() {
+        if (!graphImageLoaded) {
+            graphImageLoaded = true;
+            String file = SnippetImage.getValue();
+            if (file != null) {
+                graphImage = openGraphImage(Paths.get(file));
+            }
+        }
+        return graphImage;
+    }
+
+    /**
+     * Gets a string that identifies everything the replacement graphs depend on besides the class
+     * files of the snippets and substitutions, which the image checks itself. This includes the
+     * size and modification time of the jar files the replacements were loaded from, so that
+     * changes to helper methods inlined into snippets are detected as well. A snippet image is only
+     * used if it was built with the same fingerprint.
+     */
+    protected String getGraphImageFingerprint() {
+        return getClass().getName() + " " + target.arch.getName() + " " + target.wordSize + " " + System.getProperty("java.vm.version") + GraphSerializer.jarStamp(getClass()) + GraphSerializer.jarStamp(ReplacementsImpl.class);
+    }
+
+    /**
+     * Gets the values that are only valid in the current VM process, such as addresses of VM data
+     * structures and stubs. Graphs into which one of them was folded are not written to a snippet
+     * image, and the values must not be part of the {@linkplain #getGraphImageFingerprint()
+     * fingerprint}.
+     */
+    protected Set<Long> getLaunchSpecificValues() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Maps a snippet image for use by this object, without making it the image graphs are loaded
+     * from.
+     *
+     * @return the image or {@code null} if it cannot be read or does not match the fingerprint of
+     *         this object
+     */
+    public SnippetGraphImage openGraphImage(Path path) {
+        return SnippetGraphImage.load(path, getGraphImageFingerprint(), providers.getMetaAccess(), getClass().getClassLoader());
+    }
+
+    /**
+     * Builds the graphs of all registered snippets and method substitutions and writes them to a
+     * {@link SnippetGraphImage}. Graphs that cannot be written are reported and omitted; they will
+     * be built on demand as usual when the image is used.
+     *
+     * @return a summary of what was written
+     */
+    public String writeGraphImage(Path path) throws IOException {
+        SnippetGraphImage.Builder builder = new SnippetGraphImage.Builder(getGraphImageFingerprint(), getClass().getClassLoader(), getLaunchSpecificValues());
+        int total = 0;
+        long totalNanos = 0;
+        for (ResolvedJavaMethod method : registeredSnippets) {
+            long start = System.nanoTime();
+            StructuredGraph graph = makeSnippetGraph(method, null);
+            long time = System.nanoTime() - start;
+            builder.add(method, graph, time);
+            totalNanos += time;
+            total++;
+        }
+        for (String internalName : internalNameToSubstitutionClasses.keySet()) {
+            ClassReplacements cr = getClassReplacements(internalName);
+            for (Map.Entry<ResolvedJavaMethod, ResolvedJavaMethod> e : cr.methodSubstitutions.entrySet()) {
+                ResolvedJavaMethod substitute = e.getValue();
+                long start = System.nanoTime();
+                StructuredGraph graph = makeGraph(substitute, e.getKey(), inliningPolicy(substitute), FrameStateProcessing.None);
+                long time = System.nanoTime() - start;
+                builder.add(substitute, graph, time);
+                totalNanos += time;
+                total++;
+            }
+        }
+        int written = builder.write(path);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("wrote %d of %d replacement graphs to %s (%d ms to build)%n", written, total, path, totalNanos / 1000000L));
+        for (String s : builder.getNotSerializable()) {
+            sb.append(String.format("  not written: %s%n", s));
+        }
+        return sb.toString();
     }
 
     @Override
@@ -284,7 +391,11 @@ public class ReplacementsImpl implements Replacements {
         }
         StructuredGraph graph = graphs.get(substitute);
         if (graph == null) {
-            graph = makeGraph(substitute, original, inliningPolicy(substitute), FrameStateProcessing.None);
+            SnippetGraphImage image = getGraphImage();
+            graph = image == null ? null : image.lookup(substitute);
+            if (graph == null) {
+                graph = makeGraph(substitute, original, inliningPolicy(substitute), FrameStateProcessing.None);
+            }
             graph.freeze();
             graphs.putIfAbsent(substitute, graph);
             graph = graphs.get(substitute);
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements;
+
+import static com.oracle.graal.compiler.common.GraalOptions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.debug.internal.*;
+import com.oracle.graal.graph.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.java.*;
+import com.oracle.graal.nodes.util.*;
+
+/**
+ * A file of preprocessed snippet and method substitution graphs. The file starts with an index
+ * (preceded by its length) that maps methods to the location of their graph in the rest of the
+ * file. It is written ahead of time by a {@link Builder} and memory mapped by {@link #load}. Only
+ * the index is read when the file is loaded; a graph is
+ * {@linkplain GraphSerializer#read(ByteBuffer, MetaAccessProvider, ClassLoader) materialized} the
+ * first time it is {@linkplain #lookup looked up}.
+ * <p>
+ * The graphs depend on the target and on VM configuration values that were folded into them, so
+ * each image carries a fingerprint and is ignored if it does not match the fingerprint of the
+ * loading VM. The graphs also depend on the bytecodes they were built from. The image therefore
+ * records a {@linkplain GraphSerializer#classFileHash hash} of the class file of each snippet,
+ * substitution and inlined method. It is ignored if any of these class files changed. Each entry
+ * records how long it took to build the graph, which is used to report the preparation time saved
+ * by loading it instead.
+ * <p>
+ * Values that differ between launches of the same VM, such as the addresses of the heap top or of
+ * stubs, must be left out of the fingerprint so that an image can be used by other VMs. Graphs into
+ * which such a value was folded are therefore not written to the image at all.
+ */
+public final class SnippetGraphImage {
+
+    private static final int MAGIC = 0x534E4950;
+    private static final int VERSION = 2;
+
+    private static final DebugTimer SnippetImageLoadTime = Debug.timer("SnippetImageLoadTime");
+    private static final DebugMetric SnippetImageGraphs = Debug.metric("SnippetImageGraphs");
+
+    private static final class Entry {
+
+        final int offset;
+        final int length;
+        final long preparationNanos;
+
+        Entry(int offset, int length, long preparationNanos) {
+            this.offset = offset;
+            this.length = length;
+            this.preparationNanos = preparationNanos;
+        }
+    }
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final Map<String, Entry> entries;
+    private final MetaAccessProvider metaAccess;
+    private final ClassLoader loader;
+
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    private SnippetGraphImage(Path path, ByteBuffer buffer, Map<String, Entry> entries, MetaAccessProvider metaAccess, ClassLoader loader) {
+        this.path = path;
+        this.buffer = buffer;
+        this.entries = entries;
+        this.metaAccess = metaAccess;
+        this.loader = loader;
+    }
+
+    /**
+     * Gets the key under which the graph of a snippet or substitute method is stored.
+     */
+    static String key(ResolvedJavaMethod method) {
+        return method.getDeclaringClass().toJavaName() + "." + method.getName() + method.getSignature().toMethodDescriptor();
+    }
+
+    /**
+     * Maps an image file.
+     *
+     * @param fingerprint identifies the target and VM configuration the graphs must have been built
+     *            for
+     * @return the image or {@code null} if the file cannot be read or was built for a different
+     *         fingerprint
+     */
+    public static SnippetGraphImage load(Path path, String fingerprint, MetaAccessProvider metaAccess, ClassLoader loader) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            byte[] index = new byte[buffer.getInt()];
+            buffer.get(index);
+            // graph offsets in the index are relative to the end of the index
+            ByteBuffer graphs = buffer.slice();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                TTY.println("ignoring snippet image " + path + ": not a snippet image");
+                return null;
+            }
+            String imageFingerprint = in.readUTF();
+            if (!imageFingerprint.equals(fingerprint)) {
+                TTY.println("ignoring snippet image " + path + ": built for " + imageFingerprint + ", expected " + fingerprint);
+                return null;
+            }
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                String className = in.readUTF();
+                if (in.readLong() != GraphSerializer.classFileHash(className, loader)) {
+                    TTY.println("ignoring snippet image " + path + ": class file of " + className + " changed");
+                    return null;
+                }
+            }
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                entries.put(key, new Entry(in.readInt(), in.readInt(), in.readLong()));
+            }
+            SnippetGraphImage image = new SnippetGraphImage(path, graphs, entries, metaAccess, loader);
+            if (PrintSnippetImageStatistics.getValue()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> TTY.println(image.getStatistics())));
+            }
+            return image;
+        } catch (IOException | BufferUnderflowException e) {
+            TTY.println("ignoring snippet image " + path + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Materializes the graph for a snippet or substitute method.
+     *
+     * @return the graph or {@code null} if the image contains no usable graph for {@code method}
+     */
+    public StructuredGraph lookup(ResolvedJavaMethod method) {
+        String key = key(method);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        return materialize(key, entry);
+    }
+
+    /**
+     * Materializes all graphs in the image, e.g. to check that the image can be used by this VM.
+     *
+     * @return the number of graphs that could not be read
+     */
+    public int materializeAll() {
+        int failures = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (materialize(e.getKey(), e.getValue()) == null) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Gets the number of graphs in the image.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private StructuredGraph materialize(String key, Entry entry) {
+        long start = System.nanoTime();
+        try (TimerCloseable a = SnippetImageLoadTime.start()) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(entry.offset);
+            slice.limit(entry.offset + entry.length);
+            StructuredGraph graph = GraphSerializer.read(slice.slice(), metaAccess, loader);
+            long time = System.nanoTime() - start;
+            loadNanos.addAndGet(time);
+            savedNanos.addAndGet(entry.preparationNanos - time);
+            loaded.incrementAndGet();
+            SnippetImageGraphs.increment();
+            return graph;
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            TTY.println("could not load " + key + " from snippet image " + path + ": " + e);
+            return null;
+        }
+    }
+
+    public String getStatistics() {
+        return String.format("Snippet image %s: %d of %d graphs loaded (%d failed) in %d ms, %d ms of graph preparation saved", path, loaded.get(), entries.size(), failed.get(),
+                        loadNanos.get() / 1000000L, savedNanos.get() / 1000000L);
+    }
+
+    /**
+     * Collects graphs and writes them to an image file.
+     */
+    public static final class Builder {
+
+        private final String fingerprint;
+        private final ClassLoader loader;
+        private final Set<Long> launchSpecificValues;
+        private final Map<String, Long> classHashes = new TreeMap<>();
+        private final Map<String, byte[]> graphs = new TreeMap<>();
+        private final Map<String, Long> preparationTimes = new HashMap<>();
+        private final List<String> notSerializable = new ArrayList<>();
+
+        /**
+         * @param loader the loader used to find the class files the graphs are built from
+         */
+        public Builder(String fingerprint, ClassLoader loader) {
+            this(fingerprint, loader, Collections.<Long> emptySet());
+        }
+
+        /**
+         * @param loader the loader used to find the class files the graphs are built from
+         * @param launchSpecificValues values such as VM addresses that are only valid in the
+         *            current VM process. Graphs that contain one of them as a constant are not added.
+         */
+        public Builder(String fingerprint, ClassLoader loader, Set<Long> launchSpecificValues) {
+            this.fingerprint = fingerprint;
+            this.loader = loader;
+            this.launchSpecificValues = launchSpecificValues;
+        }
+
+        /**
+         * Adds the graph for a snippet or substitute method.
+         *
+         * @param preparationNanos the time it took to build the graph
+         * @return {@code false} if the graph contains values that cannot be written to an image or
+         *         that are only valid in the current VM process
+         */
+        public boolean add(ResolvedJavaMethod method, StructuredGraph graph, long preparationNanos) throws IOException {
+            for (ConstantNode constant : graph.getNodes().filter(ConstantNode.class)) {
+                Constant value = constant.getValue();
+                if (value instanceof PrimitiveConstant && ((PrimitiveConstant) value).getKind().isNumericInteger() && launchSpecificValues.contains(((PrimitiveConstant) value).asLong())) {
+                    notSerializable.add(key(method) + ": contains the launch specific value 0x" + Long.toHexString(((PrimitiveConstant) value).asLong()));
+                    return false;
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                GraphSerializer.write(graph, out);
+            } catch (NotSerializableException e) {
+                notSerializable.add(key(method) + ": " + e.getMessage());
+                return false;
+            }
+            graphs.put(key(method), bytes.toByteArray());
+            preparationTimes.put(key(method), preparationNanos);
+            addClass(method);
+            for (Node node : graph.getNodes()) {
+                if (node instanceof FrameState && ((FrameState) node).method() != null) {
+                    addClass(((FrameState) node).method());
+                } else if (node instanceof MethodCallTargetNode) {
+                    addClass(((MethodCallTargetNode) node).targetMethod());
+                }
+            }
+            return true;
+        }
+
+        private void addClass(ResolvedJavaMethod method) {
+            String className = method.getDeclaringClass().toJavaName();
+            if (!classHashes.containsKey(className)) {
+                classHashes.put(className, GraphSerializer.classFileHash(className, loader));
+            }
+        }
+
+        /**
+         * Gets the methods whose graphs could not be added, with the reason.
+         */
+        public List<String> getNotSerializable() {
+            return notSerializable;
+        }
+
+        /**
+         * Writes the image. The file is replaced atomically.
+         *
+         * @return the number of graphs written
+         */
+        public int write(Path path) throws IOException {
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            index.writeInt(MAGIC);
+            index.writeInt(VERSION);
+            index.writeUTF(fingerprint);
+            index.writeInt(classHashes.size());
+            for (Map.Entry<String, Long> e : classHashes.entrySet()) {
+                index.writeUTF(e.getKey());
+                index.writeLong(e.getValue());
+            }
+            index.writeInt(graphs.size());
+            int offset = 0;
+            for (Map.Entry<String, byte[]> e : graphs.entrySet()) {
+                index.writeUTF(e.getKey());
+                index.writeInt(offset);
+                index.writeInt(e.getValue().length);
+                index.writeLong(preparationTimes.get(e.getKey()));
+                offset += e.getValue().length;
+            }
+            index.flush();
+
+            Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(indexBytes.size());
+                indexBytes.writeTo(out);
+                for (byte[] graph : graphs.values()) {
+                    out.write(graph);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return graphs.size();
+        }
+    }
+}
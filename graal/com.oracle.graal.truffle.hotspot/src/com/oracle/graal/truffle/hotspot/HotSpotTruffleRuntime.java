@@ -24,7 +24,6 @@ package com.oracle.graal.truffle.hotspot;
 
 import static com.oracle.graal.api.code.CodeUtil.*;
 import static com.oracle.graal.compiler.GraalCompiler.*;
-import static com.oracle.graal.graph.util.CollectionsAccess.*;
 import static com.oracle.graal.hotspot.meta.HotSpotSuitesProvider.*;
 import static com.oracle.graal.truffle.TruffleCompilerOptions.*;
 
@@ -69,7 +68,7 @@ public final class HotSpotTruffleRuntime extends GraalTruffleRuntime {
 
     private TruffleCompilerImpl truffleCompiler;
     private Replacements truffleReplacements;
-    private Map<OptimizedCallTarget, Future<?>> compilations = newIdentityMap();
+    private final Map<OptimizedCallTarget, Future<?>> compilations = new ConcurrentHashMap<>();
     private final ThreadPoolExecutor compileQueue;
 
     private final Map<RootCallTarget, Void> callTargets = Collections.synchronizedMap(new WeakHashMap<RootCallTarget, Void>());
@@ -93,7 +92,8 @@ public final class HotSpotTruffleRuntime extends GraalTruffleRuntime {
                 }
             }
         });
-        compileQueue = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+        int compilerThreads = Math.max(TruffleCompilerThreads.getValue(), 1);
+        compileQueue = new ThreadPoolExecutor(compilerThreads, compilerThreads, 0L, TimeUnit.MILLISECONDS, new TruffleCompilationQueue(), factory);
 
     }
 
@@ -216,13 +216,17 @@ public final class HotSpotTruffleRuntime extends GraalTruffleRuntime {
                 }
             }
         };
-        Future<?> future = compileQueue.submit(r);
+        TruffleCompilationQueue.Task future = new TruffleCompilationQueue.Task(optimizedCallTarget, r);
+        compileQueue.execute(future);
         this.compilations.put(optimizedCallTarget, future);
         getCompilationNotify().notifyCompilationQueued(optimizedCallTarget);
 
         if (!mayBeAsynchronous) {
             try {
                 future.get();
+            } catch (CancellationException e) {
+                // the queue dropped the task because the target no longer needs to be compiled
+                this.compilations.remove(optimizedCallTarget, future);
             } catch (ExecutionException e) {
                 if (TruffleCompilationExceptionsAreThrown.getValue() && !(e.getCause() instanceof BailoutException) && !((BailoutException) e.getCause()).isPermanent()) {
                     throw new RuntimeException(e.getCause());
@@ -253,6 +257,9 @@ public final class HotSpotTruffleRuntime extends GraalTruffleRuntime {
         if (codeTask != null && isCompiling(optimizedCallTarget)) {
             try {
                 codeTask.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (CancellationException e) {
+                // the queue dropped the task because the target no longer needs to be compiled
+                this.compilations.remove(optimizedCallTarget, codeTask);
             } catch (InterruptedException e) {
                 // ignore interrupted
             }
@@ -261,7 +268,9 @@ public final class HotSpotTruffleRuntime extends GraalTruffleRuntime {
 
     @Override
     public Collection<OptimizedCallTarget> getQueuedCallTargets() {
-        return compilations.keySet().stream().filter(e -> !compilations.get(e).isDone()).collect(Collectors.toList());
+        // forget the tasks the queue dropped
+        compilations.values().removeIf(Future::isCancelled);
+        return compilations.entrySet().stream().filter(e -> !e.getValue().isDone()).map(e -> e.getKey()).collect(Collectors.toList());
     }
 
     @Override
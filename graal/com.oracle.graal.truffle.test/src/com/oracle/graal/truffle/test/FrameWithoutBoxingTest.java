@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.truffle.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import com.oracle.graal.truffle.*;
+import com.oracle.truffle.api.frame.*;
+
+public class FrameWithoutBoxingTest {
+
+    private static final Object DEFAULT = "default";
+
+    private FrameDescriptor descriptor;
+    private FrameSlot objectSlot;
+    private FrameSlot intSlot;
+    private FrameSlot illegalSlot;
+
+    @Before
+    public void setUp() {
+        descriptor = new FrameDescriptor(DEFAULT);
+        objectSlot = descriptor.addFrameSlot("object", FrameSlotKind.Object);
+        intSlot = descriptor.addFrameSlot("int", FrameSlotKind.Int);
+        illegalSlot = descriptor.addFrameSlot("illegal");
+    }
+
+    @Test
+    public void testPackedLayout() {
+        FrameLayout layout = descriptor.getLayout();
+        assertEquals(1, layout.getObjectCount());
+        assertEquals(1, layout.getPrimitiveCount());
+        assertEquals(0, layout.getObjectIndex(objectSlot.getIndex()));
+        assertEquals(-1, layout.getPrimitiveIndex(objectSlot.getIndex()));
+        assertEquals(-1, layout.getObjectIndex(intSlot.getIndex()));
+        assertEquals(0, layout.getPrimitiveIndex(intSlot.getIndex()));
+        assertEquals(-1, layout.getObjectIndex(illegalSlot.getIndex()));
+        assertEquals(-1, layout.getPrimitiveIndex(illegalSlot.getIndex()));
+    }
+
+    @Test
+    public void testDefaultValues() {
+        FrameWithoutBoxing frame = new FrameWithoutBoxing(descriptor, new Object[0]);
+        assertEquals(DEFAULT, frame.getValue(objectSlot));
+        assertEquals(DEFAULT, frame.getValue(intSlot));
+        assertEquals(DEFAULT, frame.getValue(illegalSlot));
+        assertTrue(frame.isObject(intSlot));
+    }
+
+    @Test
+    public void testTags() throws FrameSlotTypeException {
+        FrameWithoutBoxing frame = new FrameWithoutBoxing(descriptor, new Object[0]);
+        frame.setInt(intSlot, 42);
+        assertEquals(42, frame.getInt(intSlot));
+        assertTrue(frame.isInt(intSlot));
+        frame.setObject(objectSlot, "value");
+        assertEquals("value", frame.getObject(objectSlot));
+        try {
+            frame.getObject(intSlot);
+            fail();
+        } catch (FrameSlotTypeException e) {
+            // expected
+        }
+        try {
+            frame.getInt(objectSlot);
+            fail();
+        } catch (FrameSlotTypeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMigration() {
+        FrameWithoutBoxing frame = new FrameWithoutBoxing(descriptor, new Object[0]);
+        frame.setInt(intSlot, 42);
+        frame.setObject(objectSlot, "value");
+
+        frame.setDouble(illegalSlot, 1.5);
+        frame.setObject(intSlot, "object");
+        frame.setLong(objectSlot, 7L);
+        assertEquals(1.5, frame.getValue(illegalSlot));
+        assertEquals("object", frame.getValue(intSlot));
+        assertEquals(7L, frame.getValue(objectSlot));
+
+        FrameSlot addedSlot = descriptor.addFrameSlot("added");
+        assertEquals(DEFAULT, frame.getValue(addedSlot));
+        frame.setBoolean(addedSlot, true);
+        assertEquals(true, frame.getValue(addedSlot));
+        assertEquals(1.5, frame.getValue(illegalSlot));
+    }
+
+    @Test
+    public void testSetKind() {
+        FrameLayout oldLayout = descriptor.getLayout();
+        illegalSlot.setKind(FrameSlotKind.Double);
+        FrameLayout newLayout = descriptor.getLayout();
+        assertTrue(oldLayout.isCompatibleWith(newLayout));
+        assertEquals(oldLayout.getPrimitiveCount() + 1, newLayout.getPrimitiveCount());
+        assertEquals(-1, newLayout.getObjectIndex(illegalSlot.getIndex()));
+
+        FrameWithoutBoxing frame = new FrameWithoutBoxing(descriptor, new Object[0]);
+        frame.setDouble(illegalSlot, 2.0);
+        assertEquals(2.0, frame.getValue(illegalSlot));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.truffle.test;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.graal.compiler.test.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.truffle.*;
+
+public class PersistentTruffleCacheTest extends GraalCompilerTest {
+
+    public static int addSnippet(int a, int b) {
+        return a + b;
+    }
+
+    private PersistentTruffleCache open(Path file, ClassLoader loader) {
+        return new PersistentTruffleCache(file.toString(), getMetaAccess(), loader);
+    }
+
+    @Test
+    public void testRejectChangedClass() throws IOException {
+        Path file = Files.createTempFile("truffle", ".cache");
+        Files.delete(file);
+        try {
+            ClassLoader loader = getClass().getClassLoader();
+            Set<String> dependencies = Collections.singleton(getClass().getName());
+            PersistentTruffleCache cache = open(file, loader);
+            cache.record("addSnippet", parseEager("addSnippet"), dependencies);
+            cache.save();
+
+            Set<String> found = new HashSet<>();
+            StructuredGraph graph = open(file, loader).lookup("addSnippet", found);
+            Assert.assertNotNull(graph);
+            Assert.assertEquals(dependencies, found);
+
+            // a loader that sees a different class file for the class the graph was built from
+            PersistentTruffleCache changed = open(file, new ChangedClassFileLoader(loader, getClass()));
+            found.clear();
+            Assert.assertNull(changed.lookup("addSnippet", found));
+            Assert.assertTrue(found.isEmpty());
+            changed.save();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testRecordedAgain() throws IOException {
+        Path file = Files.createTempFile("truffle", ".cache");
+        Files.delete(file);
+        try {
+            ClassLoader loader = getClass().getClassLoader();
+            Set<String> dependencies = Collections.singleton(getClass().getName());
+            PersistentTruffleCache cache = open(file, loader);
+            cache.record("addSnippet", parseEager("addSnippet"), dependencies);
+            cache.record("addSnippet", parseEager("addSnippet"), dependencies);
+            cache.save();
+            cache.record("other", parseEager("addSnippet"), dependencies);
+            cache.save();
+
+            PersistentTruffleCache reopened = open(file, loader);
+            Assert.assertNotNull(reopened.lookup("addSnippet", new HashSet<String>()));
+            Assert.assertNotNull(reopened.lookup("other", new HashSet<String>()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testPruneStaleEntries() throws IOException {
+        Path file = Files.createTempFile("truffle", ".cache");
+        Files.delete(file);
+        try {
+            ClassLoader loader = getClass().getClassLoader();
+            PersistentTruffleCache cache = open(file, loader);
+            cache.record("changed", parseEager("addSnippet"), Collections.singleton(getClass().getName()));
+            cache.record("unchanged", parseEager("addSnippet"), Collections.singleton(PersistentTruffleCache.class.getName()));
+            cache.save();
+            long size = Files.size(file);
+
+            // nothing was looked up or recorded, but the stale entry is dropped from the file
+            open(file, new ChangedClassFileLoader(loader, getClass())).save();
+            Assert.assertTrue(Files.size(file) < size);
+
+            PersistentTruffleCache reopened = open(file, loader);
+            Assert.assertNull(reopened.lookup("changed", new HashSet<String>()));
+            Assert.assertNotNull(reopened.lookup("unchanged", new HashSet<String>()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
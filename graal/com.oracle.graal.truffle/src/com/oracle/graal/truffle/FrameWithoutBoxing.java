@@ -33,6 +33,10 @@ import com.oracle.truffle.api.frame.*;
  * More efficient implementation of the Truffle frame that has no safety checks for frame accesses
  * and therefore is much faster. Should not be used during debugging as potential misuses of the
  * frame object would show up very late and would be hard to identify.
+ *
+ * The storage of the frame is packed according to the {@link FrameLayout} of the descriptor version
+ * it was created for: slots only take space in the object or primitive storage if they have held
+ * values of that kind, and only slots with primitive storage have a tag.
  */
 public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame {
     private static final long OBJECT_BASE_OFFSET = Unsafe.ARRAY_OBJECT_BASE_OFFSET;
@@ -40,8 +44,13 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     private static final long PRIMITIVE_BASE_OFFSET = Unsafe.ARRAY_LONG_BASE_OFFSET;
     private static final long PRIMITIVE_INDEX_SCALE = Unsafe.ARRAY_LONG_INDEX_SCALE;
 
+    private static final Object[] EMPTY_OBJECT_ARRAY = {};
+    private static final long[] EMPTY_LONG_ARRAY = {};
+    private static final byte[] EMPTY_BYTE_ARRAY = {};
+
     private final FrameDescriptor descriptor;
     private final Object[] arguments;
+    private FrameLayout layout;
     private Object[] locals;
     private long[] primitiveLocals;
     private byte[] tags;
@@ -49,11 +58,22 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     public FrameWithoutBoxing(FrameDescriptor descriptor, Object[] arguments) {
         this.descriptor = descriptor;
         this.arguments = arguments;
-        int size = descriptor.getSize();
-        this.locals = new Object[size];
-        Arrays.fill(locals, descriptor.getDefaultValue());
-        this.primitiveLocals = new long[size];
-        this.tags = new byte[size];
+        this.layout = descriptor.getLayout();
+        int objectCount = layout.getObjectCount();
+        if (objectCount == 0) {
+            this.locals = EMPTY_OBJECT_ARRAY;
+        } else {
+            this.locals = new Object[objectCount];
+            Arrays.fill(locals, descriptor.getDefaultValue());
+        }
+        int primitiveCount = layout.getPrimitiveCount();
+        if (primitiveCount == 0) {
+            this.primitiveLocals = EMPTY_LONG_ARRAY;
+            this.tags = EMPTY_BYTE_ARRAY;
+        } else {
+            this.primitiveLocals = new long[primitiveCount];
+            this.tags = new byte[primitiveCount];
+        }
     }
 
     @Override
@@ -72,6 +92,10 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
         return getObjectUnsafe(slot);
     }
 
+    private FrameLayout getLayout() {
+        return CompilerDirectives.unsafeCast(layout, FrameLayout.class, true, true);
+    }
+
     private Object[] getLocals() {
         return CompilerDirectives.unsafeCast(locals, Object[].class, true, true);
     }
@@ -84,9 +108,21 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
         return CompilerDirectives.unsafeCast(tags, byte[].class, true, true);
     }
 
+    private long primitiveOffset(FrameSlot slot) {
+        return PRIMITIVE_BASE_OFFSET + getLayout().getPrimitiveIndex(slot.getIndex()) * PRIMITIVE_INDEX_SCALE;
+    }
+
+    private boolean hasTag(FrameSlot slot, FrameSlotKind kind) {
+        return getTag(slot) == kind.ordinal();
+    }
+
     private Object getObjectUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetObject(getLocals(), OBJECT_BASE_OFFSET + slotIndex * OBJECT_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Object.ordinal(), slot);
+        int objectIndex = getLayout().getObjectIndex(slot.getIndex());
+        if (objectIndex < 0) {
+            // the slot has never held an object value in this frame
+            return descriptor.getDefaultValue();
+        }
+        return CompilerDirectives.unsafeGetObject(getLocals(), OBJECT_BASE_OFFSET + objectIndex * OBJECT_INDEX_SCALE, hasTag(slot, FrameSlotKind.Object), slot);
     }
 
     @Override
@@ -96,7 +132,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setObjectUnsafe(FrameSlot slot, Object value) {
-        CompilerDirectives.unsafePutObject(getLocals(), OBJECT_BASE_OFFSET + slot.getIndex() * OBJECT_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutObject(getLocals(), OBJECT_BASE_OFFSET + getLayout().getObjectIndex(slot.getIndex()) * OBJECT_INDEX_SCALE, value, slot);
     }
 
     @Override
@@ -106,8 +142,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private byte getByteUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetByte(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slotIndex * PRIMITIVE_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Byte.ordinal(), slot);
+        return CompilerDirectives.unsafeGetByte(getPrimitiveLocals(), primitiveOffset(slot), hasTag(slot, FrameSlotKind.Byte), slot);
     }
 
     @Override
@@ -117,7 +152,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setByteUnsafe(FrameSlot slot, byte value) {
-        CompilerDirectives.unsafePutByte(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slot.getIndex() * PRIMITIVE_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutByte(getPrimitiveLocals(), primitiveOffset(slot), value, slot);
     }
 
     @Override
@@ -127,8 +162,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private boolean getBooleanUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetBoolean(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slotIndex * PRIMITIVE_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Boolean.ordinal(), slot);
+        return CompilerDirectives.unsafeGetBoolean(getPrimitiveLocals(), primitiveOffset(slot), hasTag(slot, FrameSlotKind.Boolean), slot);
     }
 
     @Override
@@ -138,7 +172,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setBooleanUnsafe(FrameSlot slot, boolean value) {
-        CompilerDirectives.unsafePutBoolean(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slot.getIndex() * PRIMITIVE_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutBoolean(getPrimitiveLocals(), primitiveOffset(slot), value, slot);
     }
 
     @Override
@@ -148,8 +182,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private float getFloatUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetFloat(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slotIndex * PRIMITIVE_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Float.ordinal(), slot);
+        return CompilerDirectives.unsafeGetFloat(getPrimitiveLocals(), primitiveOffset(slot), hasTag(slot, FrameSlotKind.Float), slot);
     }
 
     @Override
@@ -159,7 +192,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setFloatUnsafe(FrameSlot slot, float value) {
-        CompilerDirectives.unsafePutFloat(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slot.getIndex() * PRIMITIVE_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutFloat(getPrimitiveLocals(), primitiveOffset(slot), value, slot);
     }
 
     @Override
@@ -169,8 +202,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private long getLongUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetLong(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slotIndex * PRIMITIVE_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Long.ordinal(), slot);
+        return CompilerDirectives.unsafeGetLong(getPrimitiveLocals(), primitiveOffset(slot), hasTag(slot, FrameSlotKind.Long), slot);
     }
 
     @Override
@@ -180,7 +212,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setLongUnsafe(FrameSlot slot, long value) {
-        CompilerDirectives.unsafePutLong(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slot.getIndex() * PRIMITIVE_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutLong(getPrimitiveLocals(), primitiveOffset(slot), value, slot);
     }
 
     @Override
@@ -190,8 +222,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private int getIntUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetInt(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slotIndex * PRIMITIVE_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Int.ordinal(), slot);
+        return CompilerDirectives.unsafeGetInt(getPrimitiveLocals(), primitiveOffset(slot), hasTag(slot, FrameSlotKind.Int), slot);
     }
 
     @Override
@@ -201,7 +232,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setIntUnsafe(FrameSlot slot, int value) {
-        CompilerDirectives.unsafePutInt(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slot.getIndex() * PRIMITIVE_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutInt(getPrimitiveLocals(), primitiveOffset(slot), value, slot);
     }
 
     @Override
@@ -211,8 +242,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private double getDoubleUnsafe(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        return CompilerDirectives.unsafeGetDouble(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slotIndex * PRIMITIVE_INDEX_SCALE, this.getTags()[slotIndex] == FrameSlotKind.Double.ordinal(), slot);
+        return CompilerDirectives.unsafeGetDouble(getPrimitiveLocals(), primitiveOffset(slot), hasTag(slot, FrameSlotKind.Double), slot);
     }
 
     @Override
@@ -222,7 +252,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
     }
 
     private void setDoubleUnsafe(FrameSlot slot, double value) {
-        CompilerDirectives.unsafePutDouble(getPrimitiveLocals(), PRIMITIVE_BASE_OFFSET + slot.getIndex() * PRIMITIVE_INDEX_SCALE, value, slot);
+        CompilerDirectives.unsafePutDouble(getPrimitiveLocals(), primitiveOffset(slot), value, slot);
     }
 
     @Override
@@ -232,25 +262,27 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
 
     private void verifySet(FrameSlot slot, FrameSlotKind accessKind) {
         int slotIndex = slot.getIndex();
-        if (slotIndex >= getTags().length) {
-            CompilerDirectives.transferToInterpreter();
-            if (!resize()) {
-                throw new IllegalArgumentException(String.format("The frame slot '%s' is not known by the frame descriptor.", slot));
+        FrameLayout currentLayout = getLayout();
+        if (accessKind == FrameSlotKind.Object) {
+            if (currentLayout.getObjectIndex(slotIndex) < 0) {
+                CompilerDirectives.transferToInterpreter();
+                currentLayout = relayout(slot, accessKind);
             }
+            int primitiveIndex = currentLayout.getPrimitiveIndex(slotIndex);
+            if (primitiveIndex >= 0) {
+                getTags()[primitiveIndex] = (byte) accessKind.ordinal();
+            }
+        } else {
+            if (currentLayout.getPrimitiveIndex(slotIndex) < 0) {
+                CompilerDirectives.transferToInterpreter();
+                currentLayout = relayout(slot, accessKind);
+            }
+            getTags()[currentLayout.getPrimitiveIndex(slotIndex)] = (byte) accessKind.ordinal();
         }
-        getTags()[slotIndex] = (byte) accessKind.ordinal();
     }
 
     private void verifyGet(FrameSlot slot, FrameSlotKind accessKind) throws FrameSlotTypeException {
-        int slotIndex = slot.getIndex();
-        if (slotIndex >= getTags().length) {
-            CompilerDirectives.transferToInterpreter();
-            if (!resize()) {
-                throw new IllegalArgumentException(String.format("The frame slot '%s' is not known by the frame descriptor.", slot));
-            }
-        }
-        byte tag = this.getTags()[slotIndex];
-        if (tag != accessKind.ordinal()) {
+        if (!hasTag(slot, accessKind)) {
             CompilerDirectives.transferToInterpreter();
             throw new FrameSlotTypeException();
         }
@@ -258,12 +290,7 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
 
     @Override
     public Object getValue(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        if (slotIndex >= getTags().length) {
-            CompilerDirectives.transferToInterpreter();
-            resize();
-        }
-        byte tag = getTags()[slotIndex];
+        byte tag = getTag(slot);
         if (tag == FrameSlotKind.Boolean.ordinal()) {
             return getBooleanUnsafe(slot);
         } else if (tag == FrameSlotKind.Byte.ordinal()) {
@@ -282,26 +309,40 @@ public final class FrameWithoutBoxing implements VirtualFrame, MaterializedFrame
         }
     }
 
-    private boolean resize() {
-        int oldSize = tags.length;
-        int newSize = descriptor.getSize();
-        if (newSize > oldSize) {
-            locals = Arrays.copyOf(locals, newSize);
-            Arrays.fill(locals, oldSize, newSize, descriptor.getDefaultValue());
-            primitiveLocals = Arrays.copyOf(primitiveLocals, newSize);
-            tags = Arrays.copyOf(tags, newSize);
-            return true;
+    /**
+     * Migrates this frame to a layout of its descriptor that has storage for values of the given
+     * kind in the slot. Since layouts only grow, this only needs to grow the storage arrays.
+     */
+    private FrameLayout relayout(FrameSlot slot, FrameSlotKind kind) {
+        if (slot.getIndex() >= descriptor.getSize()) {
+            throw new IllegalArgumentException(String.format("The frame slot '%s' is not known by the frame descriptor.", slot));
         }
-        return false;
+        FrameLayout newLayout = descriptor.ensureStorage(slot, kind);
+        assert layout.isCompatibleWith(newLayout) : "incompatible frame layouts " + layout + " and " + newLayout;
+        int oldObjectCount = locals.length;
+        int newObjectCount = newLayout.getObjectCount();
+        if (newObjectCount > oldObjectCount) {
+            locals = Arrays.copyOf(locals, newObjectCount);
+            Arrays.fill(locals, oldObjectCount, newObjectCount, descriptor.getDefaultValue());
+        }
+        int newPrimitiveCount = newLayout.getPrimitiveCount();
+        if (newPrimitiveCount > primitiveLocals.length) {
+            primitiveLocals = Arrays.copyOf(primitiveLocals, newPrimitiveCount);
+            tags = Arrays.copyOf(tags, newPrimitiveCount);
+        }
+        layout = newLayout;
+        return newLayout;
     }
 
+    /**
+     * Slots without primitive storage can only hold objects, so they need no tag.
+     */
     private byte getTag(FrameSlot slot) {
-        int slotIndex = slot.getIndex();
-        if (slotIndex >= getTags().length) {
-            CompilerDirectives.transferToInterpreter();
-            resize();
+        int primitiveIndex = getLayout().getPrimitiveIndex(slot.getIndex());
+        if (primitiveIndex < 0) {
+            return (byte) FrameSlotKind.Object.ordinal();
         }
-        return getTags()[slotIndex];
+        return getTags()[primitiveIndex];
     }
 
     @Override
@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.truffle;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.oracle.graal.api.meta.*;
+import com.oracle.graal.compiler.common.*;
+import com.oracle.graal.debug.*;
+import com.oracle.graal.graph.*;
+import com.oracle.graal.nodes.*;
+import com.oracle.graal.nodes.util.*;
+import com.oracle.graal.nodes.util.GraphSerializer.ByteBufferInputStream;
+
+/**
+ * Keeps the graphs of a {@link TruffleCacheImpl} in a file so that they can be reused by later
+ * runs. The file is memory mapped when it is opened and graphs are only
+ * {@linkplain GraphSerializer#read read} when they are looked up.
+ * <p>
+ * The file is ignored if it was written by a different VM or compiler build, or if the
+ * {@linkplain GraphSerializer#nodeClassLayoutHash layout} of one of the node classes used by its
+ * graphs changed. Each entry records the classes whose bytecodes the graph was built from together
+ * with a {@linkplain GraphSerializer#classFileHash hash} of their class files. An entry is rejected
+ * if any of these class files changed in the meantime. Graphs recorded during a run are appended to
+ * a journal file right away and are written back to the cache file when the VM shuts down, together
+ * with the entries of the old file that are still valid.
+ */
+public final class PersistentTruffleCache {
+
+    private static final int MAGIC = 0x54524743;
+    private static final int VERSION = 2;
+
+    /**
+     * The cache most recently opened for each file. Only this cache is saved at shutdown.
+     */
+    private static final Map<Path, PersistentTruffleCache> openCaches = new HashMap<>();
+
+    private final Path path;
+    private final MetaAccessProvider metaAccess;
+    private final ClassLoader loader;
+
+    /**
+     * Entries read from the file that have not been rejected yet, as slices of the mapped file.
+     */
+    private final Map<String, ByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    /**
+     * Maps the keys of the entries recorded in this run to the position of their latest entry in
+     * the {@link #journal}.
+     */
+    private final Map<String, Long> recorded = new ConcurrentHashMap<>();
+
+    /**
+     * Temporary file the recorded entries are appended to, created on first use. Guarded by
+     * {@code this}.
+     */
+    private Path journalPath;
+    private DataOutputStream journal;
+    private long journalSize;
+
+    /**
+     * The layout hashes of the node classes used by the persisted and recorded graphs.
+     */
+    private final Map<String, Long> nodeLayouts = new ConcurrentHashMap<>();
+
+    /**
+     * Set when entries of the file were dropped, so that it needs to be rewritten even if no graph
+     * was recorded.
+     */
+    private volatile boolean stale;
+
+    private final Map<String, Long> classHashes = new ConcurrentHashMap<>();
+
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong notSerializable = new AtomicLong();
+
+    PersistentTruffleCache(String fileName, MetaAccessProvider metaAccess) {
+        this(fileName, metaAccess, ClassLoader.getSystemClassLoader());
+    }
+
+    /**
+     * Opens a cache file. The recorded graphs are {@linkplain #save() saved} at shutdown. If the
+     * file is already open, the other cache is saved first and is no longer saved at shutdown.
+     *
+     * @param loader used to find the class files of the classes graphs were built from and to look
+     *            up the classes referenced by graphs
+     */
+    public PersistentTruffleCache(String fileName, MetaAccessProvider metaAccess, ClassLoader loader) {
+        this.path = Paths.get(fileName).toAbsolutePath().normalize();
+        this.metaAccess = metaAccess;
+        this.loader = loader;
+        register(this);
+        if (Files.exists(path)) {
+            try {
+                map();
+            } catch (IOException | BufferUnderflowException e) {
+                mapped.clear();
+                stale = true;
+                TTY.println("[truffle] ignoring graph cache file " + path + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Makes a cache the one saved at shutdown for its file, registering one shutdown hook per file.
+     */
+    private static void register(PersistentTruffleCache cache) {
+        final Path path = cache.path;
+        PersistentTruffleCache previous;
+        synchronized (openCaches) {
+            previous = openCaches.put(path, cache);
+            if (previous == null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    PersistentTruffleCache current;
+                    synchronized (openCaches) {
+                        current = openCaches.get(path);
+                    }
+                    current.save();
+                }));
+            }
+        }
+        if (previous != null) {
+            previous.save();
+        }
+    }
+
+    private void map() throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            ignoreFile("unknown format");
+            return;
+        }
+        String fileBuildStamp = in.readUTF();
+        if (!fileBuildStamp.equals(buildStamp())) {
+            ignoreFile("written by " + fileBuildStamp + ", expected " + buildStamp());
+            return;
+        }
+        int nodeClassCount = in.readInt();
+        Map<String, Long> layouts = new HashMap<>(nodeClassCount);
+        for (int i = 0; i < nodeClassCount; i++) {
+            String className = in.readUTF();
+            long hash = in.readLong();
+            if (hash != nodeLayoutHash(className)) {
+                ignoreFile("node class " + className + " changed");
+                return;
+            }
+            layouts.put(className, hash);
+        }
+        nodeLayouts.putAll(layouts);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            int length = in.readInt();
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(buffer.position() + length);
+            payload = payload.slice();
+            buffer.position(buffer.position() + length);
+            mapped.put(key, payload);
+        }
+    }
+
+    private void ignoreFile(String reason) {
+        stale = true;
+        TTY.println("[truffle] ignoring graph cache file " + path + ": " + reason);
+    }
+
+    /**
+     * Identifies the VM and the compiler build the graphs in the file were written by.
+     */
+    private static String buildStamp() {
+        return System.getProperty("java.vm.version") + GraphSerializer.jarStamp(GraphSerializer.class) + GraphSerializer.jarStamp(PersistentTruffleCache.class);
+    }
+
+    /**
+     * Gets the layout hash of a node class or 0 if the class cannot be found.
+     */
+    private long nodeLayoutHash(String className) {
+        try {
+            Class<?> c = Class.forName(className, false, loader);
+            if (Node.class.isAssignableFrom(c)) {
+                return GraphSerializer.nodeClassLayoutHash(c.asSubclass(Node.class));
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            // the node class was removed
+        }
+        return 0;
+    }
+
+    /**
+     * Computes the key under which the graph for a given key of the {@link TruffleCacheImpl} is
+     * persisted.
+     */
+    static String persistentKey(List<Object> key) {
+        StringBuilder sb = new StringBuilder();
+        ResolvedJavaMethod method = (ResolvedJavaMethod) key.get(0);
+        sb.append(method.getDeclaringClass().toClassName()).append('.').append(method.getName()).append(method.getSignature().toMethodDescriptor());
+        for (int i = 1; i < key.size(); i++) {
+            sb.append('|').append(key.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Looks up a persisted graph.
+     *
+     * @param dependencies the names of the classes the graph was built from are added to this set
+     * @return the graph or {@code null} if there is no valid graph for {@code key}
+     */
+    public StructuredGraph lookup(String key, Set<String> dependencies) {
+        ByteBuffer payload = mapped.get(key);
+        if (payload == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(payload.duplicate()));
+            Set<String> classes = new HashSet<>();
+            String changed = readDependencies(in, classes);
+            if (changed != null) {
+                return reject(key, changed + " changed");
+            }
+            StructuredGraph graph = GraphSerializer.read(in, metaAccess, loader);
+            dependencies.addAll(classes);
+            loaded.incrementAndGet();
+            if (TruffleCompilerOptions.TraceTruffleCacheDetails.getValue()) {
+                TTY.println(String.format("[truffle] loaded persisted graph %s with %d nodes. %s", key, graph.getNodeCount(), getStatistics()));
+            }
+            return graph;
+        } catch (IOException | RuntimeException e) {
+            return reject(key, e.toString());
+        }
+    }
+
+    /**
+     * Reads the dependencies of an entry.
+     *
+     * @param classes the names of the classes the graph was built from are added to this set
+     * @return the name of the first class whose class file changed or {@code null} if none changed
+     */
+    private String readDependencies(DataInputStream in, Set<String> classes) throws IOException {
+        int dependencyCount = in.readInt();
+        for (int i = 0; i < dependencyCount; i++) {
+            String className = in.readUTF();
+            long hash = in.readLong();
+            if (hash != classHash(className)) {
+                return className;
+            }
+            classes.add(className);
+        }
+        return null;
+    }
+
+    private boolean isStale(ByteBuffer payload) {
+        try {
+            return readDependencies(new DataInputStream(new ByteBufferInputStream(payload.duplicate())), new HashSet<String>()) != null;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private StructuredGraph reject(String key, String reason) {
+        mapped.remove(key);
+        stale = true;
+        rejected.incrementAndGet();
+        if (TruffleCompilerOptions.TraceTruffleCacheDetails.getValue()) {
+            TTY.println(String.format("[truffle] rejected persisted graph %s: %s. %s", key, reason, getStatistics()));
+        }
+        return null;
+    }
+
+    /**
+     * Records a graph so that it is written to the file at shutdown. Graphs that cannot be
+     * serialized are silently skipped.
+     *
+     * @param dependencies the names of the classes the graph was built from
+     */
+    public void record(String key, StructuredGraph graph, Set<String> dependencies) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(dependencies.size());
+            for (String className : dependencies) {
+                long hash = classHash(className);
+                if (hash == 0) {
+                    // class file not available
+                    return;
+                }
+                out.writeUTF(className);
+                out.writeLong(hash);
+            }
+            GraphSerializer.write(graph, out);
+            out.flush();
+            for (Node node : graph.getNodes()) {
+                String className = node.getClass().getName();
+                if (!nodeLayouts.containsKey(className)) {
+                    nodeLayouts.put(className, GraphSerializer.nodeClassLayoutHash(node.getClass()));
+                }
+            }
+            appendToJournal(key, bytes.toByteArray());
+        } catch (NotSerializableException e) {
+            notSerializable.incrementAndGet();
+        } catch (IOException e) {
+            throw new GraalInternalError(e);
+        }
+    }
+
+    private synchronized void appendToJournal(String key, byte[] payload) {
+        try {
+            if (journal == null) {
+                journalPath = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".journal");
+                journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalPath)));
+                journalSize = 0;
+            }
+            byte[] header = entryHeader(key, payload.length);
+            journal.write(header);
+            journal.write(payload);
+            recorded.put(key, journalSize);
+            journalSize += header.length + payload.length;
+        } catch (IOException e) {
+            TTY.println("[truffle] could not record graph " + key + " in " + journalPath + ": " + e);
+            discardJournal();
+        }
+    }
+
+    /**
+     * Deletes the journal and forgets the entries recorded in it. Must be called with {@code this}
+     * locked.
+     */
+    private void discardJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                // the journal is deleted anyway
+            }
+        }
+        if (journalPath != null) {
+            try {
+                Files.deleteIfExists(journalPath);
+            } catch (IOException e) {
+                // only a temporary file
+            }
+        }
+        journal = null;
+        journalPath = null;
+        recorded.clear();
+    }
+
+    /**
+     * Encodes the key and payload length that precede the payload of an entry.
+     */
+    private static byte[] entryHeader(String key, int length) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.writeInt(length);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets a hash of the class file of a class or 0 if the class file cannot be found.
+     */
+    private long classHash(String className) {
+        Long hash = classHashes.get(className);
+        if (hash == null) {
+            hash = GraphSerializer.classFileHash(className, loader);
+            classHashes.put(className, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the recorded entries and the entries of the old file that are still valid and were not
+     * recorded again to a temporary file which then atomically replaces the old file. Nothing is
+     * written if no graph was recorded and no entry was dropped. This is done at shutdown but may
+     * also be called explicitly.
+     */
+    public synchronized void save() {
+        Map<String, ByteBuffer> kept = new LinkedHashMap<>(mapped);
+        kept.keySet().removeAll(recorded.keySet());
+        for (Iterator<Map.Entry<String, ByteBuffer>> iterator = kept.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<String, ByteBuffer> entry = iterator.next();
+            if (isStale(entry.getValue())) {
+                iterator.remove();
+                reject(entry.getKey(), "a class it was built from changed");
+            }
+        }
+        if (journal == null && !stale) {
+            return;
+        }
+        int count = kept.size() + recorded.size();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            Path dir = path.toAbsolutePath().getParent();
+            Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(buildStamp());
+                Map<String, Long> layouts = new TreeMap<>(nodeLayouts);
+                out.writeInt(layouts.size());
+                for (Map.Entry<String, Long> entry : layouts.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+                out.writeInt(count);
+                for (Map.Entry<String, ByteBuffer> entry : kept.entrySet()) {
+                    ByteBuffer payload = entry.getValue().duplicate();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(payload.remaining());
+                    byte[] bytes = new byte[payload.remaining()];
+                    payload.get(bytes);
+                    out.write(bytes);
+                }
+                if (journal != null) {
+                    copyJournal(out);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            mapped.clear();
+            stale = false;
+            map();
+            if (TruffleCompilerOptions.TraceTruffleCacheDetails.getValue()) {
+                TTY.println(String.format("[truffle] wrote %d graphs to %s. %s", count, path, getStatistics()));
+            }
+        } catch (IOException e) {
+            TTY.println("[truffle] could not write graph cache file " + path + ": " + e);
+        } finally {
+            discardJournal();
+        }
+    }
+
+    /**
+     * Copies the latest journal entry of each recorded key.
+     */
+    private void copyJournal(DataOutputStream out) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+            long position = 0;
+            while (position < journalSize) {
+                String key = in.readUTF();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                byte[] header = entryHeader(key, payload.length);
+                Long latest = recorded.get(key);
+                if (latest != null && latest == position) {
+                    out.write(header);
+                    out.write(payload);
+                }
+                position += header.length + payload.length;
+            }
+        }
+    }
+
+    String getStatistics() {
+        return String.format("(persisted: %d, loaded: %d, rejected: %d, recorded: %d, not serializable: %d)", mapped.size(), loaded.get(), rejected.get(), recorded.size(), notSerializable.get());
+    }
+}
@@ -23,7 +23,8 @@
 package com.oracle.graal.truffle;
 
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import com.oracle.graal.api.code.*;
 import com.oracle.graal.api.meta.*;
@@ -52,18 +53,65 @@ import com.oracle.truffle.api.nodes.*;
 
 /**
  * Implementation of a cache for Truffle graphs for improving partial evaluation time.
+ * <p>
+ * The cache can be shared by multiple compiler threads. Lookups of cached graphs do not lock.
+ * Entries are weighed by the node count of their graph and evicted with a CLOCK (second chance)
+ * policy once the total weight exceeds {@link TruffleCompilerOptions#TruffleMaxCompilationCacheNodes}.
+ * <p>
+ * If {@link TruffleCompilerOptions#TruffleCompilationCacheFile} is set, processed graphs are also
+ * kept in a {@link PersistentTruffleCache} so that later runs can skip processing them.
  */
 public class TruffleCacheImpl implements TruffleCache {
 
+    /**
+     * The default node limit divided by the default method limit of the old entry-count based
+     * cache.
+     */
+    private static final int AVERAGE_NODES_PER_METHOD = TruffleCompilerOptions.DEFAULT_MAX_COMPILATION_CACHE_NODES / TruffleCompilerOptions.OLD_DEFAULT_MAX_COMPILATION_CACHE_SIZE;
+
     private final Providers providers;
     private final GraphBuilderConfiguration config;
     private final GraphBuilderConfiguration configForRoot;
     private final OptimisticOptimizations optimisticOptimizations;
 
-    private final HashMap<List<Object>, StructuredGraph> cache = new HashMap<>();
-    private final HashMap<List<Object>, Long> lastUsed = new HashMap<>();
+    private final ConcurrentHashMap<List<Object>, CacheEntry> cache = new ConcurrentHashMap<>();
     private final StructuredGraph markerGraph = new StructuredGraph();
 
+    /**
+     * The entries of {@link #cache} in insertion order, used as the clock of the eviction policy.
+     */
+    private final ConcurrentLinkedQueue<CacheEntry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong totalWeight = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    /**
+     * Keys of the graphs that are currently being processed by the current thread. A lookup of such
+     * a key indicates a recursive call.
+     */
+    private final ThreadLocal<Set<List<Object>>> inProgress = new ThreadLocal<Set<List<Object>>>() {
+        @Override
+        protected Set<List<Object>> initialValue() {
+            return new HashSet<>();
+        }
+    };
+
+    /**
+     * For each graph that is currently being processed by the current thread, the names of the
+     * classes whose bytecodes were inlined into it so far.
+     */
+    private final ThreadLocal<Deque<Set<String>>> dependencyStack = new ThreadLocal<Deque<Set<String>>>() {
+        @Override
+        protected Deque<Set<String>> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+
+    private final PersistentTruffleCache persistentCache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
     private final ResolvedJavaType stringBuilderClass;
     private final ResolvedJavaType runtimeExceptionClass;
     private final ResolvedJavaType errorClass;
@@ -72,7 +120,29 @@ public class TruffleCacheImpl implements TruffleCache {
     private final ResolvedJavaMethod callRootMethod;
     private final ResolvedJavaMethod callInlinedMethod;
 
-    private long counter;
+    private static final class CacheEntry {
+
+        final List<Object> key;
+        final StructuredGraph graph;
+        final int weight;
+
+        /**
+         * The names of the classes whose bytecodes {@link #graph} was built from.
+         */
+        final Set<String> dependencies;
+
+        /**
+         * Set on every hit and cleared when the clock hand passes this entry.
+         */
+        volatile boolean referenced;
+
+        CacheEntry(List<Object> key, StructuredGraph graph, int weight, Set<String> dependencies) {
+            this.key = key;
+            this.graph = graph;
+            this.weight = weight;
+            this.dependencies = dependencies;
+        }
+    }
 
     public TruffleCacheImpl(Providers providers, GraphBuilderConfiguration config, GraphBuilderConfiguration configForRoot, OptimisticOptimizations optimisticOptimizations) {
         this.providers = providers;
@@ -91,6 +161,9 @@ public class TruffleCacheImpl implements TruffleCache {
             throw new RuntimeException(ex);
         }
         this.callInlinedMethod = providers.getMetaAccess().lookupJavaMethod(OptimizedCallTarget.getCallInlinedMethod());
+
+        String cacheFile = TruffleCompilerOptions.TruffleCompilationCacheFile.getValue();
+        this.persistentCache = cacheFile == null ? null : new PersistentTruffleCache(cacheFile, providers.getMetaAccess());
     }
 
     public StructuredGraph createInlineGraph(String name) {
@@ -118,8 +191,8 @@ public class TruffleCacheImpl implements TruffleCache {
 
     public StructuredGraph lookup(ResolvedJavaMethod method, NodeInputList<ValueNode> arguments, CanonicalizerPhase canonicalizer) {
         List<Object> key = computeCacheKey(method, arguments);
-        StructuredGraph resultGraph = cache.get(key);
-        if (resultGraph == markerGraph) {
+        CacheEntry entry = cache.get(key);
+        if (entry != null && entry.graph == markerGraph) {
             // compilation failed previously, don't try again
             return null;
         }
@@ -134,14 +207,26 @@ public class TruffleCacheImpl implements TruffleCache {
         }
 
         List<Object> key = computeCacheKey(method, arguments);
-        StructuredGraph resultGraph = cache.get(key);
-        if (resultGraph != null) {
-            lastUsed.put(key, counter++);
-            return resultGraph;
+        CacheEntry entry = cache.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.incrementAndGet();
+            addDependencies(entry.dependencies);
+            return entry.graph;
         }
-
-        if (lastUsed.values().size() >= TruffleCompilerOptions.TruffleMaxCompilationCacheSize.getValue()) {
-            lookupExceedsMaxSize();
+        Set<List<Object>> keysInProgress = inProgress.get();
+        if (keysInProgress.contains(key)) {
+            return markerGraph;
+        }
+        misses.incrementAndGet();
+
+        if (persistentCache != null) {
+            Set<String> dependencies = new HashSet<>();
+            StructuredGraph persistedGraph = persistentCache.lookup(PersistentTruffleCache.persistentKey(key), dependencies);
+            if (persistedGraph != null) {
+                addDependencies(dependencies);
+                return insert(key, persistedGraph, persistedGraph.getNodeCount(), dependencies);
+            }
         }
 
         StructuredGraph graph;
@@ -156,11 +241,13 @@ public class TruffleCacheImpl implements TruffleCache {
             throw Debug.handle(e);
         }
 
+        boolean success = false;
+        keysInProgress.add(key);
+        Set<String> dependencies = new HashSet<>();
+        dependencies.add(method.getDeclaringClass().toClassName());
+        dependencyStack.get().push(dependencies);
         try (Scope s = Debug.scope("TruffleCache", providers.getMetaAccess(), method, graph)) {
 
-            lastUsed.put(key, counter++);
-            cache.put(key, markerGraph);
-
             for (ParameterNode param : graph.getNodes(ParameterNode.class)) {
                 if (param.getKind() == Kind.Object) {
                     ValueNode actualArgument = arguments.get(param.index());
@@ -219,37 +306,98 @@ public class TruffleCacheImpl implements TruffleCache {
                 }
             }
 
-            cache.put(key, graph);
+            StructuredGraph cachedGraph = insert(key, graph, graph.getNodeCount(), dependencies);
+            if (persistentCache != null && cachedGraph == graph) {
+                persistentCache.record(PersistentTruffleCache.persistentKey(key), graph, dependencies);
+            }
+            success = true;
             if (TruffleCompilerOptions.TraceTruffleCacheDetails.getValue()) {
-                TTY.println(String.format("[truffle] added to graph cache method %s with %d nodes.", method, graph.getNodeCount()));
+                TTY.println(String.format("[truffle] added to graph cache method %s with %d nodes. %s", method, graph.getNodeCount(), getStatistics()));
             }
-            return graph;
+            return cachedGraph;
         } catch (Throwable e) {
             throw Debug.handle(e);
+        } finally {
+            keysInProgress.remove(key);
+            dependencyStack.get().pop();
+            addDependencies(dependencies);
+            if (!success) {
+                // remember the failure so that the method is not processed again
+                insert(key, markerGraph, 1, Collections.emptySet());
+            }
         }
     }
 
-    private void lookupExceedsMaxSize() {
-        List<Long> lastUsedList = new ArrayList<>();
-        for (long l : lastUsed.values()) {
-            lastUsedList.add(l);
+    /**
+     * Records that the graph currently being processed by this thread (if any) was built from the
+     * bytecodes of some classes.
+     */
+    private void addDependencies(Set<String> dependencies) {
+        Set<String> current = dependencyStack.get().peek();
+        if (current != null) {
+            current.addAll(dependencies);
         }
-        Collections.sort(lastUsedList);
-        long mid = lastUsedList.get(lastUsedList.size() / 2);
+    }
 
-        List<List<Object>> toRemoveList = new ArrayList<>();
-        for (Entry<List<Object>, Long> entry : lastUsed.entrySet()) {
-            if (entry.getValue() < mid) {
-                toRemoveList.add(entry.getKey());
-            }
+    /**
+     * Publishes a graph in the cache. If another thread published a graph for the same key in the
+     * meantime, that graph is kept and returned instead.
+     */
+    private StructuredGraph insert(List<Object> key, StructuredGraph graph, int weight, Set<String> dependencies) {
+        CacheEntry entry = new CacheEntry(key, graph, weight, dependencies);
+        CacheEntry existing = cache.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing.graph;
+        }
+        clock.add(entry);
+        if (totalWeight.addAndGet(weight) > maxNodes()) {
+            evict();
+        }
+        return graph;
+    }
+
+    /**
+     * Gets the limit for the total weight of the cache. The deprecated
+     * {@link TruffleCompilerOptions#TruffleMaxCompilationCacheSize} counted methods, so it is
+     * converted assuming the average graph size of a full cache with the default limits.
+     */
+    private static int maxNodes() {
+        int maxMethods = TruffleCompilerOptions.TruffleMaxCompilationCacheSize.getValue();
+        if (maxMethods > 0) {
+            return (int) Math.min((long) maxMethods * AVERAGE_NODES_PER_METHOD, Integer.MAX_VALUE);
         }
+        return TruffleCompilerOptions.TruffleMaxCompilationCacheNodes.getValue();
+    }
 
-        for (List<Object> entry : toRemoveList) {
-            cache.remove(entry);
-            lastUsed.remove(entry);
+    /**
+     * Advances the clock hand until the total weight of the cache is within its limit again.
+     * Entries that were referenced since the hand last passed them get a second chance.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            int limit = maxNodes();
+            CacheEntry entry;
+            while (totalWeight.get() > limit && (entry = clock.poll()) != null) {
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.add(entry);
+                } else {
+                    cache.remove(entry.key, entry);
+                    totalWeight.addAndGet(-entry.weight);
+                    evictions.incrementAndGet();
+                    if (TruffleCompilerOptions.TraceTruffleCacheDetails.getValue() && entry.graph != markerGraph) {
+                        TTY.println(String.format("[truffle] evicted from graph cache method %s with %d nodes. %s", entry.graph.method(), entry.weight, getStatistics()));
+                    }
+                }
+            }
         }
     }
 
+    private String getStatistics() {
+        String statistics = String.format("(entries: %d, nodes: %d, hits: %d, misses: %d, evictions: %d)", cache.size(), totalWeight.get(), hits.get(), misses.get(), evictions.get());
+        return persistentCache == null ? statistics : statistics + " " + persistentCache.getStatistics();
+    }
+
     private Mark lookupProcessMacroSubstitutions(StructuredGraph graph, Mark mark) {
         // Make sure macro substitutions such as
         // CompilerDirectives.transferToInterpreter get processed first.
@@ -299,6 +447,8 @@ public class TruffleCacheImpl implements TruffleCache {
         StructuredGraph inlineGraph = providers.getReplacements().getMethodSubstitution(methodCallTargetNode.targetMethod());
         if (inlineGraph == null) {
             inlineGraph = cacheLookup(methodCallTargetNode.targetMethod(), methodCallTargetNode.arguments(), canonicalizer);
+        } else {
+            addDependencies(Collections.singleton(inlineGraph.method().getDeclaringClass().toClassName()));
         }
         if (inlineGraph == null) {
             return;
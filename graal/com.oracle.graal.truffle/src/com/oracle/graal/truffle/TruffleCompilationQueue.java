@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.truffle;
+
+import static com.oracle.graal.truffle.TruffleCompilerOptions.*;
+
+import com.oracle.graal.compiler.*;
+
+/**
+ * Work queue for the Truffle compiler threads. Priorities are derived from the
+ * {@link CompilationProfile} of the queued call target, so a target that keeps getting hotter while
+ * it waits overtakes targets that have not been executed since they were queued.
+ * <p>
+ * Tasks that were cancelled (e.g. because the call target got inlined into a caller that finished
+ * compiling first) or whose call target already has valid installed code are dropped when they are
+ * encountered and never handed out to a compiler thread.
+ */
+public final class TruffleCompilationQueue extends CompilationPriorityQueue {
+
+    /**
+     * A queued compilation of an {@link OptimizedCallTarget}.
+     */
+    public static final class Task extends CompilationPriorityQueue.Task {
+
+        private final OptimizedCallTarget target;
+
+        public Task(OptimizedCallTarget target, Runnable runnable) {
+            super(runnable);
+            this.target = target;
+        }
+
+        public OptimizedCallTarget getTarget() {
+            return target;
+        }
+
+        @Override
+        protected int getCount() {
+            return target.getCompilationProfile().getInterpreterCallAndLoopCount();
+        }
+
+        @Override
+        protected boolean isObsolete() {
+            return isCancelled() || target.isValid();
+        }
+
+        @Override
+        public String toString() {
+            return "Task[" + target + "]";
+        }
+    }
+
+    public TruffleCompilationQueue() {
+        super("TruffleCompilationQueue", TruffleCompilationQueueHalfLife.getValue(), Integer.MAX_VALUE);
+    }
+}
@@ -29,6 +29,18 @@ import com.oracle.graal.options.*;
  */
 public class TruffleCompilerOptions {
 
+    /**
+     * Default of {@link #TruffleMaxCompilationCacheNodes}.
+     */
+    static final int DEFAULT_MAX_COMPILATION_CACHE_NODES = 200000;
+
+    /**
+     * Default number of methods kept by the truffle cache before it was bounded by
+     * {@link #TruffleMaxCompilationCacheNodes}. Used to convert
+     * {@link #TruffleMaxCompilationCacheSize}.
+     */
+    static final int OLD_DEFAULT_MAX_COMPILATION_CACHE_SIZE = 512;
+
     // @formatter:off
     // configuration
     /**
@@ -81,10 +93,18 @@ public class TruffleCompilerOptions {
 
     @Option(help = "Disable call target splitting if tree size exceeds this limit")
     public static final OptionValue<Integer> TruffleSplittingMaxCalleeSize = new OptionValue<>(100);
-    @Option(help = "Number of most recently used methods in truffle cache")
-    public static final OptionValue<Integer> TruffleMaxCompilationCacheSize = new OptionValue<>(512);
+    @Option(help = "Maximum total number of Graal IR nodes of the graphs in the truffle cache")
+    public static final OptionValue<Integer> TruffleMaxCompilationCacheNodes = new OptionValue<>(DEFAULT_MAX_COMPILATION_CACHE_NODES);
+    @Option(help = "Deprecated, use TruffleMaxCompilationCacheNodes. If positive, limits the truffle cache to about this many methods")
+    public static final OptionValue<Integer> TruffleMaxCompilationCacheSize = new OptionValue<>(0);
+    @Option(help = "File in which the graphs of the truffle cache are persisted across runs")
+    public static final OptionValue<String> TruffleCompilationCacheFile = new OptionValue<>(null);
     @Option(help = "Enable asynchronous truffle compilation in background thread")
     public static final OptionValue<Boolean> TruffleBackgroundCompilation = new OptionValue<>(true);
+    @Option(help = "Number of threads used for background truffle compilation")
+    public static final OptionValue<Integer> TruffleCompilerThreads = new OptionValue<>(1);
+    @Option(help = "Time in milliseconds after which the priority of a queued truffle compilation is halved")
+    public static final OptionValue<Integer> TruffleCompilationQueueHalfLife = new OptionValue<>(1000);
     @Option(help = "")
     public static final OptionValue<Integer> TruffleCompilationDecisionTime = new OptionValue<>(100);
     @Option(help = "")
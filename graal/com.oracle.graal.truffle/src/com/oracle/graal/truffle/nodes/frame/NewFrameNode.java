@@ -156,46 +156,64 @@ public class NewFrameNode extends FixedWithNextNode implements IterableNodeType,
         }
 
         int frameSize = getFrameSize();
+        FrameDescriptor frameDescriptor = getConstantFrameDescriptor();
+        if (frameSize > 0) {
+            tool.getAssumptions().record(new AssumptionValidAssumption((OptimizedAssumption) frameDescriptor.getVersion()));
+        }
+        FrameLayout frameLayout = frameDescriptor.getLayout();
+        int objectCount = frameLayout.getObjectCount();
+        int primitiveCount = frameLayout.getPrimitiveCount();
 
         ResolvedJavaType frameType = stamp().javaType(tool.getMetaAccessProvider());
         ResolvedJavaField[] frameFields = frameType.getInstanceFields(true);
 
         ResolvedJavaField descriptorField = findField(frameFields, "descriptor");
         ResolvedJavaField argumentsField = findField(frameFields, "arguments");
+        ResolvedJavaField layoutField = findField(frameFields, "layout");
         ResolvedJavaField localsField = findField(frameFields, "locals");
         ResolvedJavaField primitiveLocalsField = findField(frameFields, "primitiveLocals");
         ResolvedJavaField tagsField = findField(frameFields, "tags");
 
         VirtualObjectNode virtualFrame = VirtualOnlyInstanceNode.create(frameType, frameFields);
-        VirtualObjectNode virtualFrameObjectArray = VirtualArrayNode.create((ResolvedJavaType) localsField.getType().getComponentType(), frameSize);
-        VirtualObjectNode virtualFramePrimitiveArray = VirtualArrayNode.create((ResolvedJavaType) primitiveLocalsField.getType().getComponentType(), frameSize);
-        VirtualObjectNode virtualFrameTagArray = VirtualArrayNode.create((ResolvedJavaType) tagsField.getType().getComponentType(), frameSize);
+        VirtualObjectNode virtualFrameObjectArray = VirtualArrayNode.create((ResolvedJavaType) localsField.getType().getComponentType(), objectCount);
+        VirtualObjectNode virtualFramePrimitiveArray = VirtualArrayNode.create((ResolvedJavaType) primitiveLocalsField.getType().getComponentType(), primitiveCount);
+        VirtualObjectNode virtualFrameTagArray = VirtualArrayNode.create((ResolvedJavaType) tagsField.getType().getComponentType(), primitiveCount);
 
-        ValueNode[] objectArrayEntryState = new ValueNode[frameSize];
-        ValueNode[] primitiveArrayEntryState = new ValueNode[frameSize];
-        ValueNode[] tagArrayEntryState = new ValueNode[frameSize];
+        ValueNode[] objectArrayEntryState = new ValueNode[objectCount];
+        ValueNode[] primitiveArrayEntryState = new ValueNode[primitiveCount];
+        ValueNode[] tagArrayEntryState = new ValueNode[primitiveCount];
 
-        if (frameSize > 0) {
-            FrameDescriptor frameDescriptor = getConstantFrameDescriptor();
+        if (objectCount > 0) {
             ConstantNode objectDefault = ConstantNode.forConstant(getSnippetReflection().forObject(frameDescriptor.getDefaultValue()), tool.getMetaAccessProvider(), graph());
-            ConstantNode tagDefault = ConstantNode.forByte((byte) 0, graph());
             Arrays.fill(objectArrayEntryState, objectDefault);
+        }
+        if (primitiveCount > 0) {
+            ConstantNode tagDefault = ConstantNode.forByte((byte) 0, graph());
             Arrays.fill(tagArrayEntryState, tagDefault);
-            for (int i = 0; i < frameSize; i++) {
-                primitiveArrayEntryState[i] = initialPrimitiveValue(frameDescriptor.getSlots().get(i).getKind());
+            for (FrameSlot slot : frameDescriptor.getSlots()) {
+                int primitiveIndex = frameLayout.getPrimitiveIndex(slot.getIndex());
+                if (primitiveIndex >= 0) {
+                    primitiveArrayEntryState[primitiveIndex] = initialPrimitiveValue(slot.getKind());
+                }
+            }
+            for (int i = 0; i < primitiveCount; i++) {
+                if (primitiveArrayEntryState[i] == null) {
+                    // storage of a removed slot
+                    primitiveArrayEntryState[i] = initialPrimitiveValue(FrameSlotKind.Illegal);
+                }
             }
-            tool.getAssumptions().record(new AssumptionValidAssumption((OptimizedAssumption) frameDescriptor.getVersion()));
         }
 
         tool.createVirtualObject(virtualFrameObjectArray, objectArrayEntryState, Collections.<MonitorIdNode> emptyList());
         tool.createVirtualObject(virtualFramePrimitiveArray, primitiveArrayEntryState, Collections.<MonitorIdNode> emptyList());
         tool.createVirtualObject(virtualFrameTagArray, tagArrayEntryState, Collections.<MonitorIdNode> emptyList());
 
-        assert frameFields.length == 5;
+        assert frameFields.length == 6;
         ValueNode[] frameEntryState = new ValueNode[frameFields.length];
         List<ResolvedJavaField> frameFieldList = Arrays.asList(frameFields);
         frameEntryState[frameFieldList.indexOf(descriptorField)] = getDescriptor();
         frameEntryState[frameFieldList.indexOf(argumentsField)] = getArguments();
+        frameEntryState[frameFieldList.indexOf(layoutField)] = ConstantNode.forConstant(getSnippetReflection().forObject(frameLayout), tool.getMetaAccessProvider(), graph());
         frameEntryState[frameFieldList.indexOf(localsField)] = virtualFrameObjectArray;
         frameEntryState[frameFieldList.indexOf(primitiveLocalsField)] = virtualFramePrimitiveArray;
         frameEntryState[frameFieldList.indexOf(tagsField)] = virtualFrameTagArray;
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.api.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import com.oracle.truffle.api.*;
+import com.oracle.truffle.api.frame.*;
+
+public class FrameDescriptorTest {
+
+    @Test
+    public void testFindFrameSlot() {
+        FrameDescriptor descriptor = new FrameDescriptor();
+        FrameSlot a = descriptor.addFrameSlot("a");
+        FrameSlot b = descriptor.addFrameSlot("b");
+        assertSame(a, descriptor.findFrameSlot("a"));
+        assertSame(b, descriptor.findFrameSlot("b"));
+        assertNull(descriptor.findFrameSlot("c"));
+        assertSame(a, descriptor.findOrAddFrameSlot("a"));
+        assertEquals(2, descriptor.getSize());
+    }
+
+    @Test
+    public void testGrowth() {
+        FrameDescriptor descriptor = new FrameDescriptor();
+        for (int i = 0; i < 1000; i++) {
+            descriptor.addFrameSlot(i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            FrameSlot slot = descriptor.findFrameSlot(i);
+            assertNotNull(slot);
+            assertEquals(i, slot.getIndex());
+        }
+        assertNull(descriptor.findFrameSlot(1000));
+        assertEquals(1000, descriptor.getIdentifiers().size());
+    }
+
+    @Test
+    public void testRemove() {
+        FrameDescriptor descriptor = new FrameDescriptor();
+        for (int i = 0; i < 20; i++) {
+            descriptor.addFrameSlot(i);
+        }
+        for (int i = 0; i < 20; i += 2) {
+            descriptor.removeFrameSlot(i);
+        }
+        for (int i = 0; i < 20; i++) {
+            if (i % 2 == 0) {
+                assertNull(descriptor.findFrameSlot(i));
+            } else {
+                assertNotNull(descriptor.findFrameSlot(i));
+            }
+        }
+        assertEquals(10, descriptor.getSize());
+        assertFalse(descriptor.getIdentifiers().contains(0));
+        assertTrue(descriptor.getIdentifiers().contains(1));
+    }
+
+    @Test
+    public void testNullIdentifier() {
+        FrameDescriptor descriptor = new FrameDescriptor();
+        descriptor.addFrameSlot("a");
+        FrameSlot slot = descriptor.addFrameSlot(null);
+        assertSame(slot, descriptor.findFrameSlot(null));
+        descriptor.removeFrameSlot(null);
+        assertNull(descriptor.findFrameSlot(null));
+        assertNotNull(descriptor.findFrameSlot("a"));
+        assertEquals(1, descriptor.getSize());
+        descriptor.addFrameSlot(null);
+        assertNotNull(descriptor.findFrameSlot(null));
+    }
+
+    @Test
+    public void testAddAfterShallowCopy() {
+        FrameDescriptor original = new FrameDescriptor();
+        FrameSlot a = original.addFrameSlot("a");
+        FrameDescriptor copy = original.shallowCopy();
+        assertSame(a, copy.findFrameSlot("a"));
+
+        FrameSlot b = original.addFrameSlot("b");
+        assertSame(b, original.findFrameSlot("b"));
+        assertNull(copy.findFrameSlot("b"));
+
+        FrameSlot c = copy.addFrameSlot("c");
+        assertSame(c, copy.findFrameSlot("c"));
+        assertNull(original.findFrameSlot("c"));
+        assertSame(a, original.findFrameSlot("a"));
+        assertSame(a, copy.findFrameSlot("a"));
+    }
+
+    @Test
+    public void testRemoveAfterShallowCopy() {
+        FrameDescriptor original = new FrameDescriptor();
+        original.addFrameSlot("a");
+        original.addFrameSlot("b");
+        FrameDescriptor copy = original.shallowCopy();
+        copy.removeFrameSlot("a");
+        assertNull(copy.findFrameSlot("a"));
+        assertNotNull(original.findFrameSlot("a"));
+        original.removeFrameSlot("b");
+        assertNull(original.findFrameSlot("b"));
+        assertNotNull(copy.findFrameSlot("b"));
+    }
+
+    @Test
+    public void testGrowthAfterShallowCopy() {
+        FrameDescriptor original = new FrameDescriptor();
+        original.addFrameSlot(-1);
+        FrameDescriptor copy = original.shallowCopy();
+        for (int i = 0; i < 100; i++) {
+            copy.addFrameSlot(i);
+        }
+        assertEquals(1, original.getSize());
+        assertNull(original.findFrameSlot(50));
+        assertNotNull(copy.findFrameSlot(50));
+        assertSame(original.findFrameSlot(-1), copy.findFrameSlot(-1));
+    }
+
+    @Test
+    public void testCopy() {
+        FrameDescriptor original = new FrameDescriptor();
+        FrameSlot a = original.addFrameSlot("a");
+        FrameDescriptor copy = original.copy();
+        FrameSlot copied = copy.findFrameSlot("a");
+        assertNotNull(copied);
+        assertNotSame(a, copied);
+        copy.addFrameSlot("b");
+        assertNull(original.findFrameSlot("b"));
+    }
+
+    @Test
+    public void testNotInFrameAssumption() {
+        FrameDescriptor descriptor = new FrameDescriptor();
+        Assumption assumption = descriptor.getNotInFrameAssumption("a");
+        assertSame(assumption, descriptor.getNotInFrameAssumption("a"));
+        assertTrue(assumption.isValid());
+        descriptor.addFrameSlot("a");
+        assertFalse(assumption.isValid());
+        descriptor.removeFrameSlot("a");
+        Assumption newAssumption = descriptor.getNotInFrameAssumption("a");
+        assertNotSame(assumption, newAssumption);
+        assertTrue(newAssumption.isValid());
+    }
+}
@@ -36,9 +36,10 @@ public final class FrameDescriptor implements Cloneable {
 
     private final Object defaultValue;
     private final ArrayList<FrameSlot> slots;
-    private final HashMap<Object, FrameSlot> identifierToSlotMap;
+    private SlotTable identifierToSlotMap;
     private Assumption version;
-    private HashMap<Object, Assumption> identifierToNotInFrameAssumptionMap;
+    private FrameLayout layout;
+    private NotInFrameAssumptionTable identifierToNotInFrameAssumptionMap;
 
     public FrameDescriptor() {
         this(null);
@@ -47,8 +48,9 @@ public final class FrameDescriptor implements Cloneable {
     public FrameDescriptor(Object defaultValue) {
         this.defaultValue = defaultValue;
         slots = new ArrayList<>();
-        identifierToSlotMap = new HashMap<>();
+        identifierToSlotMap = new SlotTable(0);
         version = createVersion();
+        layout = FrameLayout.EMPTY;
     }
 
     public static FrameDescriptor create() {
@@ -72,7 +74,8 @@ public final class FrameDescriptor implements Cloneable {
         assert !identifierToSlotMap.containsKey(identifier);
         FrameSlot slot = new FrameSlot(this, identifier, info, slots.size(), kind);
         slots.add(slot);
-        identifierToSlotMap.put(identifier, slot);
+        identifierToSlotMap.add(slot);
+        extendLayout(slot, kind);
         updateVersion();
         invalidateNotInFrameAssumption(identifier);
         return slot;
@@ -129,11 +132,16 @@ public final class FrameDescriptor implements Cloneable {
      * @return the list of all the identifiers in this frame descriptor
      */
     public Set<Object> getIdentifiers() {
-        return Collections.unmodifiableSet(identifierToSlotMap.keySet());
+        Set<Object> identifiers = new LinkedHashSet<>(slots.size());
+        for (FrameSlot slot : slots) {
+            identifiers.add(slot.getIdentifier());
+        }
+        return Collections.unmodifiableSet(identifiers);
     }
 
     public FrameDescriptor copy() {
         FrameDescriptor clonedFrameDescriptor = new FrameDescriptor(this.defaultValue);
+        clonedFrameDescriptor.identifierToSlotMap = new SlotTable(slots.size());
         for (int i = 0; i < this.getSlots().size(); i++) {
             Object identifier = this.getSlots().get(i).getIdentifier();
             clonedFrameDescriptor.addFrameSlot(identifier);
@@ -144,7 +152,8 @@ public final class FrameDescriptor implements Cloneable {
     public FrameDescriptor shallowCopy() {
         FrameDescriptor clonedFrameDescriptor = new FrameDescriptor(this.defaultValue);
         clonedFrameDescriptor.slots.addAll(slots);
-        clonedFrameDescriptor.identifierToSlotMap.putAll(identifierToSlotMap);
+        clonedFrameDescriptor.identifierToSlotMap = new SlotTable(identifierToSlotMap);
+        clonedFrameDescriptor.layout = layout;
         return clonedFrameDescriptor;
     }
 
@@ -157,6 +166,37 @@ public final class FrameDescriptor implements Cloneable {
         return version;
     }
 
+    /**
+     * Returns the storage layout of frames created for the current version of this descriptor.
+     */
+    public FrameLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Makes sure that frames of this descriptor have storage for values of the given kind in the
+     * slot, creating a new version if the layout needs to grow. Frame implementations call this
+     * before storing a value for which their layout has no storage.
+     *
+     * @return the current layout
+     */
+    public FrameLayout ensureStorage(FrameSlot slot, FrameSlotKind kind) {
+        CompilerAsserts.neverPartOfCompilation("interpreter-only.");
+        if (extendLayout(slot, kind)) {
+            updateVersion();
+        }
+        return layout;
+    }
+
+    boolean extendLayout(FrameSlot slot, FrameSlotKind kind) {
+        FrameLayout newLayout = layout.withStorageFor(slot.getIndex(), kind);
+        if (newLayout != layout) {
+            layout = newLayout;
+            return true;
+        }
+        return false;
+    }
+
     private static Assumption createVersion() {
         return Truffle.getRuntime().createAssumption("frame version");
     }
@@ -171,25 +211,61 @@ public final class FrameDescriptor implements Cloneable {
         }
 
         if (identifierToNotInFrameAssumptionMap == null) {
-            identifierToNotInFrameAssumptionMap = new HashMap<>();
+            identifierToNotInFrameAssumptionMap = new NotInFrameAssumptionTable();
         } else {
-            Assumption assumption = identifierToNotInFrameAssumptionMap.get(identifier);
-            if (assumption != null) {
-                return assumption;
+            NotInFrameAssumption entry = identifierToNotInFrameAssumptionMap.get(identifier);
+            if (entry != null) {
+                return entry.assumption;
             }
         }
         Assumption assumption = Truffle.getRuntime().createAssumption("not in frame: " + identifier);
-        identifierToNotInFrameAssumptionMap.put(identifier, assumption);
+        identifierToNotInFrameAssumptionMap.add(new NotInFrameAssumption(identifier, assumption));
         return assumption;
     }
 
     private void invalidateNotInFrameAssumption(Object identifier) {
         if (identifierToNotInFrameAssumptionMap != null) {
-            Assumption assumption = identifierToNotInFrameAssumptionMap.get(identifier);
-            if (assumption != null) {
-                assumption.invalidate();
+            NotInFrameAssumption entry = identifierToNotInFrameAssumptionMap.get(identifier);
+            if (entry != null) {
+                entry.assumption.invalidate();
                 identifierToNotInFrameAssumptionMap.remove(identifier);
             }
         }
     }
+
+    private static final class SlotTable extends IdentifierTable<FrameSlot> {
+        SlotTable(int expectedSize) {
+            super(expectedSize);
+        }
+
+        SlotTable(SlotTable original) {
+            super(original);
+        }
+
+        @Override
+        protected Object keyOf(FrameSlot slot) {
+            return slot.getIdentifier();
+        }
+    }
+
+    private static final class NotInFrameAssumption {
+        final Object identifier;
+        final Assumption assumption;
+
+        NotInFrameAssumption(Object identifier, Assumption assumption) {
+            this.identifier = identifier;
+            this.assumption = assumption;
+        }
+    }
+
+    private static final class NotInFrameAssumptionTable extends IdentifierTable<NotInFrameAssumption> {
+        NotInFrameAssumptionTable() {
+            super(0);
+        }
+
+        @Override
+        protected Object keyOf(NotInFrameAssumption entry) {
+            return entry.identifier;
+        }
+    }
 }
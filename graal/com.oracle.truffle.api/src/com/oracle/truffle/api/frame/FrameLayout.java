@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.api.frame;
+
+import java.util.*;
+
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+
+/**
+ * Packed storage layout of the frames of one {@link FrameDescriptor} version. Each slot gets an
+ * index into the object storage of a frame only if it has held an object value, and an index into
+ * the primitive storage only if it has held a primitive value. Slots that only ever hold objects
+ * need no tag, since their kind is implied.
+ *
+ * Layouts of a descriptor only ever grow: a slot keeps its storage indices in all later layouts, so
+ * frames can be migrated to a newer layout by growing their storage.
+ */
+public final class FrameLayout {
+
+    static final FrameLayout EMPTY = new FrameLayout(new int[0], new int[0], 0, 0);
+
+    @CompilationFinal private final int[] objectIndices;
+    @CompilationFinal private final int[] primitiveIndices;
+    private final int objectCount;
+    private final int primitiveCount;
+
+    private FrameLayout(int[] objectIndices, int[] primitiveIndices, int objectCount, int primitiveCount) {
+        this.objectIndices = objectIndices;
+        this.primitiveIndices = primitiveIndices;
+        this.objectCount = objectCount;
+        this.primitiveCount = primitiveCount;
+    }
+
+    /**
+     * Returns the index of the slot in the object storage, or -1 if it has none.
+     */
+    public int getObjectIndex(int slotIndex) {
+        return slotIndex < objectIndices.length ? objectIndices[slotIndex] : -1;
+    }
+
+    /**
+     * Returns the index of the slot in the primitive storage and tags, or -1 if it has none.
+     */
+    public int getPrimitiveIndex(int slotIndex) {
+        return slotIndex < primitiveIndices.length ? primitiveIndices[slotIndex] : -1;
+    }
+
+    /**
+     * Returns the length of the object storage.
+     */
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Returns the length of the primitive storage and tags.
+     */
+    public int getPrimitiveCount() {
+        return primitiveCount;
+    }
+
+    FrameLayout withStorageFor(int slotIndex, FrameSlotKind kind) {
+        if (kind == FrameSlotKind.Illegal) {
+            return this;
+        } else if (kind == FrameSlotKind.Object) {
+            if (getObjectIndex(slotIndex) >= 0) {
+                return this;
+            }
+            return new FrameLayout(assign(objectIndices, slotIndex, objectCount), primitiveIndices, objectCount + 1, primitiveCount);
+        } else {
+            if (getPrimitiveIndex(slotIndex) >= 0) {
+                return this;
+            }
+            return new FrameLayout(objectIndices, assign(primitiveIndices, slotIndex, primitiveCount), objectCount, primitiveCount + 1);
+        }
+    }
+
+    private static int[] assign(int[] indices, int slotIndex, int storageIndex) {
+        int[] newIndices;
+        if (slotIndex >= indices.length) {
+            newIndices = Arrays.copyOf(indices, slotIndex + 1);
+            Arrays.fill(newIndices, indices.length, newIndices.length, -1);
+        } else {
+            newIndices = indices.clone();
+        }
+        newIndices[slotIndex] = storageIndex;
+        return newIndices;
+    }
+
+    /**
+     * Returns whether {@code other} is a later layout of the same descriptor, i.e., whether every
+     * slot with storage in this layout has the same storage in {@code other}.
+     */
+    public boolean isCompatibleWith(FrameLayout other) {
+        for (int i = 0; i < objectIndices.length; i++) {
+            if (objectIndices[i] >= 0 && objectIndices[i] != other.getObjectIndex(i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < primitiveIndices.length; i++) {
+            if (primitiveIndices[i] >= 0 && primitiveIndices[i] != other.getPrimitiveIndex(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameLayout[objects=" + Arrays.toString(objectIndices) + ", primitives=" + Arrays.toString(primitiveIndices) + "]";
+    }
+}
@@ -66,6 +66,7 @@ public final class FrameSlot implements Cloneable {
         if (this.kind != kind) {
             CompilerDirectives.transferToInterpreter();
             this.kind = kind;
+            this.descriptor.extendLayout(this, kind);
             this.descriptor.updateVersion();
         }
     }
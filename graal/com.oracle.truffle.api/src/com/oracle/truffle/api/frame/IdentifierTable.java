@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.api.frame;
+
+import java.util.*;
+
+/**
+ * Open-addressing hash table of entries keyed by frame slot identifiers. Lookups do not allocate
+ * and may run concurrently to a single writer: entries are inserted into a free cell with a single
+ * store, and the table is replaced rather than modified when it grows or an entry is removed.
+ * Tables can be shared between copies and are copied on the first write after sharing.
+ *
+ * @param <E> the entry type; entries must be immutable with respect to their key
+ */
+abstract class IdentifierTable<E> {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private volatile Object[] table;
+    private int size;
+    private boolean shared;
+
+    protected IdentifierTable(int expectedSize) {
+        this.table = new Object[capacityFor(expectedSize)];
+    }
+
+    protected IdentifierTable(IdentifierTable<E> original) {
+        this.table = original.table;
+        this.size = original.size;
+        this.shared = true;
+        original.shared = true;
+    }
+
+    /**
+     * Returns the identifier of an entry.
+     */
+    protected abstract Object keyOf(E entry);
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean keyEquals(Object key, Object other) {
+        return key == other || (key != null && key.equals(other));
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(Object key) {
+        Object[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            Object entry = t[i];
+            if (entry == null) {
+                return null;
+            } else if (keyEquals(key, keyOf((E) entry))) {
+                return (E) entry;
+            }
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an entry whose key is not in the table yet.
+     */
+    public void add(E entry) {
+        assert get(keyOf(entry)) == null : "duplicate key";
+        Object[] t = table;
+        if ((size + 1) * 2 > t.length) {
+            t = rehash(t, t.length * 2, false, null);
+        } else if (shared) {
+            t = t.clone();
+        }
+        insert(t, entry);
+        size++;
+        shared = false;
+        table = t;
+    }
+
+    /**
+     * Removes the entry with the given key, if present.
+     */
+    public void remove(Object key) {
+        if (get(key) != null) {
+            table = rehash(table, table.length, true, key);
+            size--;
+            shared = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] rehash(Object[] t, int capacity, boolean remove, Object removedKey) {
+        Object[] newTable = new Object[capacity];
+        for (Object entry : t) {
+            if (entry != null && !(remove && keyEquals(removedKey, keyOf((E) entry)))) {
+                insert(newTable, (E) entry);
+            }
+        }
+        return newTable;
+    }
+
+    private void insert(Object[] t, E entry) {
+        int mask = t.length - 1;
+        int i = hash(keyOf(entry)) & mask;
+        while (t[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t[i] = entry;
+    }
+
+    @Override
+    public String toString() {
+        List<Object> keys = new ArrayList<>();
+        for (Object entry : table) {
+            if (entry != null) {
+                @SuppressWarnings("unchecked")
+                E e = (E) entry;
+                keys.add(keyOf(e));
+            }
+        }
+        return keys.toString();
+    }
+}
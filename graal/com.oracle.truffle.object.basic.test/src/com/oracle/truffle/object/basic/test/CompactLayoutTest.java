@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2014, 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.object.basic.test;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.truffle.api.object.*;
+import com.oracle.truffle.object.*;
+import com.oracle.truffle.object.Locations.DualLocation;
+import com.oracle.truffle.object.basic.BasicLocations.ArrayLocation;
+import com.oracle.truffle.object.basic.BasicLocations.FieldLocation;
+import com.oracle.truffle.object.basic.BasicLocations.PrimitiveLocationDecorator;
+
+public class CompactLayoutTest {
+
+    private static final int PROPERTY_COUNT = 21;
+
+    private boolean savedCompactLayout;
+    private Layout layout;
+    private final ObjectType objectType = new ObjectType();
+
+    @Before
+    public void enableCompactLayout() {
+        savedCompactLayout = ObjectStorageOptions.CompactLayout;
+        ObjectStorageOptions.CompactLayout = true;
+        layout = Layout.createLayout();
+    }
+
+    @After
+    public void restoreCompactLayout() {
+        ObjectStorageOptions.CompactLayout = savedCompactLayout;
+    }
+
+    private DynamicObject newInstance(ObjectType type) {
+        return layout.newInstance(layout.createShape(type));
+    }
+
+    private static ShapeImpl shapeOf(DynamicObject object) {
+        return (ShapeImpl) object.getShape();
+    }
+
+    /**
+     * Gets the storage slots of a location, e.g. "o@1" for the second object field or "p[0]" for
+     * the first primitive extension array element.
+     */
+    private static List<String> slotsOf(Location location) {
+        List<String> slots = new ArrayList<>();
+        if (location instanceof DualLocation) {
+            slots.addAll(slotsOf((Location) ((DualLocation) location).getPrimitiveLocation()));
+            slots.addAll(slotsOf((Location) ((DualLocation) location).getObjectLocation()));
+        } else if (location instanceof PrimitiveLocationDecorator) {
+            slots.addAll(slotsOf((Location) ((PrimitiveLocationDecorator) location).getInternalLocation()));
+        } else if (location instanceof FieldLocation) {
+            FieldLocation field = (FieldLocation) location;
+            slots.add((field.primitiveFieldCount() != 0 ? "p@" : "o@") + field.getIndex());
+        } else if (location instanceof ArrayLocation) {
+            ArrayLocation element = (ArrayLocation) location;
+            slots.add((element.primitiveArrayCount() != 0 ? "p[" : "o[") + element.getIndex());
+        }
+        return slots;
+    }
+
+    private static List<String> slotsOf(DynamicObject object, Object key) {
+        return slotsOf(object.getShape().getProperty(key).getLocation());
+    }
+
+    /**
+     * Checks that no two properties of the object share a slot and that every property still has
+     * its expected value.
+     */
+    private static void assertConsistent(DynamicObject object, Map<Object, Object> expected) {
+        Set<String> occupied = new HashSet<>();
+        for (Property property : object.getShape().getPropertyList()) {
+            for (String slot : slotsOf(property.getLocation())) {
+                assertTrue(property + " shares slot " + slot, occupied.add(slot));
+            }
+        }
+        assertEquals(expected.size(), object.getShape().getPropertyCount());
+        for (Map.Entry<Object, Object> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().toString(), entry.getValue(), object.get(entry.getKey(), null));
+        }
+    }
+
+    private static Map<Object, Object> defineAll(DynamicObject object, String prefix, int count) {
+        Map<Object, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            object.define(prefix + i, "v" + i, 0);
+            expected.put(prefix + i, "v" + i);
+        }
+        return expected;
+    }
+
+    private static Set<String> occupiedSlots(DynamicObject object) {
+        Set<String> occupied = new HashSet<>();
+        for (Property property : object.getShape().getPropertyList()) {
+            occupied.addAll(slotsOf(property.getLocation()));
+        }
+        return occupied;
+    }
+
+    @Test
+    public void testDeleteReusesSlots() {
+        DynamicObject object = newInstance(objectType);
+        Map<Object, Object> expected = defineAll(object, "p", PROPERTY_COUNT);
+        assertConsistent(object, expected);
+        Set<String> slots = occupiedSlots(object);
+        int objectArraySize = shapeOf(object).getObjectArraySize();
+        assertTrue(slotsOf(object, "p1").get(0).startsWith("o@"));
+        assertTrue(slotsOf(object, "p" + (PROPERTY_COUNT - 2)).get(0).startsWith("o["));
+
+        // deleting an in-object and an extension array property
+        assertTrue(object.delete("p1"));
+        assertTrue(object.delete("p" + (PROPERTY_COUNT - 2)));
+        expected.remove("p1");
+        expected.remove("p" + (PROPERTY_COUNT - 2));
+        assertConsistent(object, expected);
+        assertEquals(objectArraySize - 2, shapeOf(object).getObjectArraySize());
+
+        // first fit: new properties take the freed slots before the array grows
+        object.define("q0", "w0", 0);
+        object.define("q1", "w1", 0);
+        expected.put("q0", "w0");
+        expected.put("q1", "w1");
+        assertConsistent(object, expected);
+        assertEquals(slots, occupiedSlots(object));
+        assertEquals(objectArraySize, shapeOf(object).getObjectArraySize());
+
+        // deleting the last property frees its slot without moving others
+        String last = "q1";
+        List<String> lastSlots = slotsOf(object, last);
+        assertTrue(object.delete(last));
+        expected.remove(last);
+        assertConsistent(object, expected);
+        object.define("q2", "w2", 0);
+        expected.put("q2", "w2");
+        assertConsistent(object, expected);
+        assertEquals(lastSlots, slotsOf(object, "q2"));
+    }
+
+    @Test
+    public void testGeneralizationReusesSlot() {
+        DynamicObject object = newInstance(objectType);
+        object.define("i", 1, 0);
+        object.define("j", 2, 0);
+        List<String> intSlots = slotsOf(object, "i");
+        assertEquals(1, intSlots.size());
+        assertTrue(intSlots.get(0).startsWith("p"));
+
+        assertTrue(object.set("i", "string"));
+        Map<Object, Object> expected = new HashMap<>();
+        expected.put("i", "string");
+        expected.put("j", 2);
+        assertConsistent(object, expected);
+        assertFalse(slotsOf(object, "i").equals(intSlots));
+
+        object.define("k", 3, 0);
+        expected.put("k", 3);
+        assertConsistent(object, expected);
+        assertEquals(intSlots, slotsOf(object, "k"));
+    }
+
+    @Test
+    public void testRandomOperationsKeepSlotsDisjoint() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            DynamicObject object = newInstance(objectType);
+            Map<Object, Object> expected = new HashMap<>();
+            for (int step = 0; step < 200; step++) {
+                String key = "k" + random.nextInt(30);
+                Object value;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        value = random.nextInt();
+                        break;
+                    case 1:
+                        value = random.nextDouble();
+                        break;
+                    case 2:
+                        value = random.nextBoolean();
+                        break;
+                    default:
+                        value = "s" + step;
+                        break;
+                }
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.containsKey(key), object.delete(key));
+                    expected.remove(key);
+                } else {
+                    object.define(key, value, 0);
+                    expected.put(key, value);
+                }
+                assertConsistent(object, expected);
+            }
+        }
+    }
+
+    @Test
+    public void testCapacityCappedPerType() {
+        // the first object of the type establishes the largest array size
+        DynamicObject first = newInstance(objectType);
+        defineAll(first, "p", PROPERTY_COUNT);
+        int maxSize = shapeOf(first).getObjectArraySize();
+        int uncapped = ShapeImpl.capacityFromSize(maxSize);
+        assertTrue(maxSize < uncapped);
+        assertEquals(uncapped, shapeOf(first).getObjectArrayCapacity());
+
+        // later objects of the type that reach the same size stop at it
+        DynamicObject second = newInstance(objectType);
+        Map<Object, Object> expected = defineAll(second, "q", PROPERTY_COUNT);
+        assertConsistent(second, expected);
+        assertEquals(maxSize, shapeOf(second).getObjectArraySize());
+        assertEquals(maxSize, shapeOf(second).getObjectArrayCapacity());
+
+        // and can still grow past it
+        second.define("extra", "x", 0);
+        assertTrue(shapeOf(second).getObjectArrayCapacity() > maxSize);
+        expected.put("extra", "x");
+        assertConsistent(second, expected);
+
+        // the profile of another type is independent
+        DynamicObject other = newInstance(new ObjectType());
+        defineAll(other, "r", PROPERTY_COUNT);
+        assertEquals(uncapped, shapeOf(other).getObjectArrayCapacity());
+    }
+
+    @Test
+    public void testInstanceFootprint() {
+        ShapeImpl empty = (ShapeImpl) layout.createShape(objectType);
+        assertEquals(0, empty.getObjectArrayCapacity());
+        assertEquals(0, empty.getPrimitiveArrayCapacity());
+        long base = empty.getInstanceFootprint();
+        assertTrue(base > 0);
+        assertEquals(0, base % 8);
+
+        DynamicObject first = newInstance(objectType);
+        defineAll(first, "p", PROPERTY_COUNT);
+        ShapeImpl uncapped = shapeOf(first);
+        assertEquals(base + arrayFootprint(uncapped.getObjectArrayCapacity()), uncapped.getInstanceFootprint());
+
+        DynamicObject second = newInstance(objectType);
+        defineAll(second, "q", PROPERTY_COUNT);
+        ShapeImpl capped = shapeOf(second);
+        assertEquals(base + arrayFootprint(capped.getObjectArrayCapacity()), capped.getInstanceFootprint());
+        assertTrue(capped.getInstanceFootprint() < uncapped.getInstanceFootprint());
+    }
+
+    private static long arrayFootprint(int capacity) {
+        return (16 + capacity * 8L + 7) & ~7L;
+    }
+}
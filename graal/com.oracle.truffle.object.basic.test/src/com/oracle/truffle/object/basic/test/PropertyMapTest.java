@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2014, 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.object.basic.test;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.oracle.truffle.api.object.*;
+import com.oracle.truffle.object.*;
+
+public class PropertyMapTest {
+
+    private final Layout layout = Layout.createLayout();
+    private final Location location = layout.createAllocator().locationForType(Object.class);
+
+    /**
+     * Key with a configurable hash code, to force collisions.
+     */
+    private static final class Key {
+        final String name;
+        final int hash;
+
+        Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private Property property(Object key) {
+        return property(key, 0);
+    }
+
+    private Property property(Object key, int flags) {
+        return Property.create(key, location, flags);
+    }
+
+    private static PropertyMap mapOf(Property... properties) {
+        PropertyMap map = PropertyMap.empty();
+        for (Property property : properties) {
+            map = map.putCopy(property);
+        }
+        return map;
+    }
+
+    private static void assertOrder(PropertyMap map, Property... expected) {
+        assertEquals(expected.length, map.size());
+        assertEquals(Arrays.asList(expected), new ArrayList<>(map.values()));
+        List<Object> keys = new ArrayList<>();
+        for (Property property : expected) {
+            keys.add(property.getKey());
+        }
+        assertEquals(keys, new ArrayList<>(map.keySet()));
+        Collections.reverse(keys);
+        assertEquals(keys, new ArrayList<>(map.reverseOrderKeys()));
+        for (Property property : expected) {
+            assertSame(property, map.get(property.getKey()));
+        }
+        assertSame(expected.length == 0 ? null : expected[expected.length - 1], map.getLastProperty());
+    }
+
+    @Test
+    public void testPutOrder() {
+        Property a = property("a");
+        Property b = property("b");
+        Property c = property("c");
+        PropertyMap map = mapOf(a, b, c);
+        assertOrder(map, a, b, c);
+        assertNull(map.get("d"));
+        assertOrder(PropertyMap.empty());
+    }
+
+    @Test
+    public void testManyProperties() {
+        List<Property> properties = new ArrayList<>();
+        PropertyMap map = PropertyMap.empty();
+        for (int i = 0; i < 1100; i++) {
+            Property property = property("p" + i);
+            properties.add(property);
+            map = map.putCopy(property);
+        }
+        assertOrder(map, properties.toArray(new Property[0]));
+        for (int i = 0; i < properties.size(); i += 2) {
+            map = map.removeCopy(properties.get(i));
+        }
+        List<Property> remaining = new ArrayList<>();
+        for (int i = 1; i < properties.size(); i += 2) {
+            remaining.add(properties.get(i));
+        }
+        assertOrder(map, remaining.toArray(new Property[0]));
+    }
+
+    @Test
+    public void testRemove() {
+        Property a = property("a");
+        Property b = property("b");
+        Property c = property("c");
+        PropertyMap map = mapOf(a, b, c);
+        PropertyMap removedMiddle = map.removeCopy(b);
+        assertOrder(removedMiddle, a, c);
+        assertNull(removedMiddle.get("b"));
+        assertOrder(map, a, b, c);
+        assertSame(map, map.removeCopy(property("d")));
+    }
+
+    @Test
+    public void testRemoveLastProperty() {
+        Property a = property("a");
+        Property b = property("b");
+        Property c = property("c");
+        PropertyMap map = mapOf(a, b, c).removeCopy(c);
+        assertOrder(map, a, b);
+        assertSame(b, map.getLastProperty());
+        map = map.removeCopy(b).removeCopy(a);
+        assertOrder(map);
+        assertNull(map.getLastProperty());
+        assertTrue(map.isEmpty());
+
+        // adding after removing the last property keeps the insertion order
+        Property d = property("d");
+        assertOrder(mapOf(a, b, c).removeCopy(c).putCopy(d), a, b, d);
+    }
+
+    @Test
+    public void testReplace() {
+        Property a = property("a");
+        Property b = property("b");
+        Property c = property("c");
+        PropertyMap map = mapOf(a, b, c);
+
+        Property newB = property("b", 1);
+        assertOrder(map.replaceCopy(b, newB), a, newB, c);
+
+        Property newC = property("c", 1);
+        PropertyMap replacedLast = map.replaceCopy(c, newC);
+        assertOrder(replacedLast, a, b, newC);
+        assertSame(newC, replacedLast.getLastProperty());
+
+        // replacing with a property of another key keeps the position
+        Property d = property("d");
+        PropertyMap renamed = map.replaceCopy(b, d);
+        assertOrder(renamed, a, d, c);
+        assertNull(renamed.get("b"));
+    }
+
+    @Test
+    public void testCollidingHashes() {
+        Property a = property(new Key("a", 42));
+        Property b = property(new Key("b", 42));
+        Property c = property(new Key("c", 42));
+        Property d = property(new Key("d", 42 + (1 << 5)));
+        Property e = property("e");
+        PropertyMap map = mapOf(a, b, c, d, e);
+        assertOrder(map, a, b, c, d, e);
+        assertNull(map.get(new Key("x", 42)));
+
+        assertOrder(map.removeCopy(b), a, c, d, e);
+        assertOrder(map.removeCopy(a).removeCopy(c), b, d, e);
+
+        Property newB = property(new Key("b", 42), 1);
+        assertOrder(map.replaceCopy(b, newB), a, newB, c, d, e);
+        Property x = property(new Key("x", 42));
+        assertOrder(map.replaceCopy(c, x), a, b, x, d, e);
+    }
+
+    @Test
+    public void testShadowedProperty() {
+        Property a = property("a");
+        Property b = property("b");
+        Property shadowingA = property("a", 1);
+        PropertyMap map = mapOf(a, b, shadowingA);
+        assertEquals(3, map.size());
+        assertSame(shadowingA, map.get("a"));
+        assertSame(shadowingA, map.getLastProperty());
+
+        PropertyMap unshadowed = map.removeCopy(shadowingA);
+        assertOrder(unshadowed, a, b);
+    }
+
+    @Test
+    public void testGetOwningMap() {
+        Property a = property("a");
+        Property b = property("b");
+        Property c = property("c");
+        PropertyMap map = mapOf(a, b, c);
+        assertOrder(map.getOwningMap(a), a);
+        assertOrder(map.getOwningMap(b), a, b);
+        assertOrder(map.getOwningMap(c), a, b, c);
+        assertNull(map.getOwningMap(property("d")));
+
+        PropertyMap removed = map.removeCopy(a);
+        assertOrder(removed.getOwningMap(c), b, c);
+        assertNull(removed.getOwningMap(a));
+    }
+}
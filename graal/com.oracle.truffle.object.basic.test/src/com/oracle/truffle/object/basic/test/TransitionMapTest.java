@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014, 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.object.basic.test;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.oracle.truffle.api.object.*;
+import com.oracle.truffle.object.*;
+
+public class TransitionMapTest {
+
+    private static final int THRESHOLD = 4;
+
+    private final Layout layout = Layout.createLayout();
+    private final ObjectType objectType = new ObjectType();
+    private int savedThreshold;
+
+    @Before
+    public void setThreshold() {
+        savedThreshold = ObjectStorageOptions.TransitionPromotionThreshold;
+        ObjectStorageOptions.TransitionPromotionThreshold = THRESHOLD;
+    }
+
+    @After
+    public void restoreThreshold() {
+        ObjectStorageOptions.TransitionPromotionThreshold = savedThreshold;
+    }
+
+    private ShapeImpl newShape() {
+        return (ShapeImpl) layout.createShape(objectType);
+    }
+
+    private Property newProperty(Object key) {
+        return Property.create(key, layout.createShape(objectType).allocator().locationForType(Object.class), 0);
+    }
+
+    private Transition newTransition(Object key) {
+        return new Transition.AddTransition(newProperty(key));
+    }
+
+    @Test
+    public void testConcurrentPutIfAbsent() throws Exception {
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                final TransitionMap map = new TransitionMap();
+                final Transition transition = newTransition("a");
+                final CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<ShapeImpl>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    final ShapeImpl shape = newShape();
+                    results.add(executor.submit(new Callable<ShapeImpl>() {
+                        public ShapeImpl call() throws Exception {
+                            barrier.await();
+                            return map.putIfAbsent(transition, shape);
+                        }
+                    }));
+                }
+                ShapeImpl winner = results.get(0).get();
+                for (Future<ShapeImpl> result : results) {
+                    assertSame(winner, result.get());
+                }
+                assertSame(winner, map.get(transition));
+                assertEquals(1, map.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnreferencedTargetCollected() throws InterruptedException {
+        TransitionMap map = new TransitionMap();
+        Transition transition = newTransition("a");
+        map.put(transition, newShape());
+        for (int i = 0; i < 100 && !map.snapshot().isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(map.snapshot().isEmpty());
+        assertFalse(map.hasPropertyTransition("a"));
+
+        // adding a transition purges the stale entry and its key
+        ShapeImpl live = newShape();
+        Transition other = newTransition("b");
+        for (int i = 0; i < 100; i++) {
+            map.put(other, live);
+            if (map.size() == 1) {
+                break;
+            }
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, map.size());
+        assertNull(map.get(transition));
+        assertSame(live, map.get(other));
+    }
+
+    @Test
+    public void testPromotionAfterThreshold() {
+        TransitionMap map = new TransitionMap();
+        Transition transition = newTransition("a");
+        ShapeImpl shape = newShape();
+        map.put(transition, shape);
+        for (int i = 1; i < THRESHOLD; i++) {
+            assertSame(shape, map.get(transition));
+            assertEquals(0, map.strongSize());
+        }
+        assertSame(shape, map.get(transition));
+        assertEquals(1, map.strongSize());
+        assertSame(shape, map.get(transition));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testHasTransitionWithKey() {
+        ShapeImpl root = newShape();
+        Shape child = root.addProperty(newProperty("a"));
+        assertNotNull(child);
+        assertTrue(root.hasTransitionWithKey("a"));
+        assertFalse(root.hasTransitionWithKey("b"));
+    }
+}
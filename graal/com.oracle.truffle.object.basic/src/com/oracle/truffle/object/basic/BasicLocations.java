@@ -492,6 +492,27 @@ public abstract class BasicLocations {
             this.longLocation = longLocation;
         }
 
+        public final InternalLongLocation getInternalLocation() {
+            return longLocation;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = super.hashCode();
+            result = prime * result + longLocation.hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            PrimitiveLocationDecorator other = (PrimitiveLocationDecorator) obj;
+            return longLocation.equals(other.longLocation);
+        }
+
         public final long getLong(DynamicObject store, Shape shape) {
             return longLocation.getLong(store, shape);
         }
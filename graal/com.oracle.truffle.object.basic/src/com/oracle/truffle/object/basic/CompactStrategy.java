@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2014, 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.object.basic;
+
+import java.util.*;
+
+import com.oracle.truffle.api.object.*;
+import com.oracle.truffle.object.*;
+import com.oracle.truffle.object.LocationImpl.InternalLongLocation;
+import com.oracle.truffle.object.Locations.ConstantLocation;
+import com.oracle.truffle.object.Locations.DualLocation;
+import com.oracle.truffle.object.ShapeImpl.BaseAllocator;
+import com.oracle.truffle.object.basic.BasicLocations.ArrayLocation;
+import com.oracle.truffle.object.basic.BasicLocations.BooleanLocationDecorator;
+import com.oracle.truffle.object.basic.BasicLocations.DoubleLocationDecorator;
+import com.oracle.truffle.object.basic.BasicLocations.FieldLocation;
+import com.oracle.truffle.object.basic.BasicLocations.IntLocationDecorator;
+import com.oracle.truffle.object.basic.BasicLocations.LongArrayLocation;
+import com.oracle.truffle.object.basic.BasicLocations.LongFieldLocation;
+import com.oracle.truffle.object.basic.BasicLocations.ObjectArrayLocation;
+import com.oracle.truffle.object.basic.BasicLocations.PrimitiveLocationDecorator;
+
+/**
+ * Layout strategy that stores each property in a single, typed slot instead of a primitive and an
+ * object slot pair. Slots are allocated first-fit, so that slots freed by removing or relocating a
+ * property are reused before the shape grows, and the extension array capacity of each
+ * {@link ObjectType} is bounded by the largest size observed for that type.
+ *
+ * @see ObjectStorageOptions#CompactLayout
+ */
+class CompactStrategy implements LayoutStrategy {
+    /**
+     * Weakly keyed so that the profiles of object types no longer in use can be collected.
+     */
+    private final Map<ObjectType, ExtensionArrayProfile> profiles = new WeakHashMap<>();
+
+    public boolean updateShape(DynamicObject object) {
+        assert object.getShape().isValid();
+        return false;
+    }
+
+    public Shape returnCached(Shape newShape) {
+        assert newShape.isValid();
+        return newShape;
+    }
+
+    public Shape ensureSpace(Shape shape, Location location) {
+        Objects.requireNonNull(location);
+        return shape;
+    }
+
+    public boolean isAutoExtArray() {
+        return false;
+    }
+
+    public int getObjectArrayCapacity(ShapeImpl parent, ObjectType objectType, int size) {
+        int capacity = getProfile(objectType).objectArrayCapacity(size);
+        if (parent != null && size >= parent.getObjectArraySize()) {
+            capacity = Math.max(capacity, parent.getObjectArrayCapacity());
+        }
+        return capacity;
+    }
+
+    public int getPrimitiveArrayCapacity(ShapeImpl parent, ObjectType objectType, int size) {
+        int capacity = getProfile(objectType).primitiveArrayCapacity(size);
+        if (parent != null && size >= parent.getPrimitiveArraySize()) {
+            capacity = Math.max(capacity, parent.getPrimitiveArrayCapacity());
+        }
+        return capacity;
+    }
+
+    private ExtensionArrayProfile getProfile(ObjectType objectType) {
+        synchronized (profiles) {
+            ExtensionArrayProfile profile = profiles.get(objectType);
+            if (profile == null) {
+                profile = new ExtensionArrayProfile();
+                profiles.put(objectType, profile);
+            }
+            return profile;
+        }
+    }
+
+    /**
+     * The new location may reuse slots of the old location, and the shapes need not be related, so
+     * the extension arrays are resized rather than grown.
+     */
+    public Property generalizeProperty(DynamicObject object, Property oldProperty, Object value) {
+        Shape oldShape = object.getShape();
+        Location newLocation = ((CompactAllocatorImpl) oldShape.allocator()).locationForValueUpcast(value, oldProperty.getLocation());
+        Property newProperty = oldProperty.relocate(newLocation);
+        Shape newShape = oldShape.replaceProperty(oldProperty, newProperty);
+        object.setShapeAndResize(oldShape, newShape);
+        newProperty.setInternal(object, value);
+        return newProperty;
+    }
+
+    public Property generalizeProperty(DynamicObject object, Property oldProperty, Object value, Shape currentShape, Shape oldNewShape) {
+        Location newLocation = ((CompactAllocatorImpl) currentShape.allocator()).locationForValueUpcast(value, oldProperty.getLocation());
+        Property newProperty = oldProperty.relocate(newLocation);
+        Shape newShape = oldNewShape.replaceProperty(oldProperty, newProperty);
+        object.setShapeAndResize(currentShape, newShape);
+        newProperty.setInternal(object, value);
+        return newProperty;
+    }
+
+    public BaseAllocator createAllocator(Shape shape) {
+        return new CompactAllocatorImpl((ShapeImpl) shape);
+    }
+
+    public BaseAllocator createAllocator(Layout layout) {
+        return new CompactAllocatorImpl((LayoutImpl) layout);
+    }
+
+    /**
+     * Largest extension array sizes of the shapes created for one {@link ObjectType}. No shape of
+     * this type has needed more than that, so a new shape rounds its capacity up to at most the
+     * largest size seen before it instead of the next allocation granule. A shape that exceeds the
+     * largest size gets the usual capacity, leaving room for further growth.
+     */
+    private static final class ExtensionArrayProfile {
+        private int objectArraySize;
+        private int primitiveArraySize;
+
+        synchronized int objectArrayCapacity(int size) {
+            int capacity = capacityFromProfile(size, objectArraySize);
+            objectArraySize = Math.max(objectArraySize, size);
+            return capacity;
+        }
+
+        synchronized int primitiveArrayCapacity(int size) {
+            int capacity = capacityFromProfile(size, primitiveArraySize);
+            primitiveArraySize = Math.max(primitiveArraySize, size);
+            return capacity;
+        }
+
+        private static int capacityFromProfile(int size, int profiledSize) {
+            int capacity = ShapeImpl.capacityFromSize(size);
+            if (size != 0 && size <= profiledSize && profiledSize < capacity) {
+                return profiledSize;
+            }
+            return capacity;
+        }
+    }
+
+    public static class CompactAllocatorImpl extends BasicAllocator {
+        private BitSet objectFields;
+        private BitSet primitiveFields;
+        private BitSet objectArraySlots;
+        private BitSet primitiveArraySlots;
+
+        protected CompactAllocatorImpl(LayoutImpl layout) {
+            super(layout);
+            initSlots();
+        }
+
+        protected CompactAllocatorImpl(ShapeImpl shape) {
+            super(shape);
+            initSlots();
+            for (Property property : shape.getPropertyMap().values()) {
+                markOccupied(property.getLocation());
+            }
+        }
+
+        private void initSlots() {
+            this.objectFields = new BitSet();
+            this.primitiveFields = new BitSet();
+            this.objectArraySlots = new BitSet();
+            this.primitiveArraySlots = new BitSet();
+        }
+
+        private BasicLayout getLayout() {
+            return (BasicLayout) layout;
+        }
+
+        @Override
+        public Location declaredLocation(Object value) {
+            return super.newDeclaredDualLocation(value);
+        }
+
+        @Override
+        public Location newObjectLocation(boolean useFinal, boolean nonNull) {
+            if (ObjectStorageOptions.InObjectFields) {
+                int index = objectFields.nextClearBit(0);
+                if (index < getLayout().getObjectFieldCount()) {
+                    return advance((Location) getLayout().getObjectFieldLocation(index));
+                }
+            }
+            return advance(new ObjectArrayLocation(objectArraySlots.nextClearBit(0), getLayout().getObjectArrayLocation()));
+        }
+
+        @Override
+        public Location newIntLocation(boolean useFinal) {
+            if (ObjectStorageOptions.PrimitiveLocations && ObjectStorageOptions.IntegerLocations) {
+                InternalLongLocation slot = newPrimitiveSlot();
+                if (slot != null) {
+                    return advance(new IntLocationDecorator(slot));
+                }
+            }
+            return newObjectLocation(useFinal, true);
+        }
+
+        @Override
+        public Location newDoubleLocation(boolean useFinal) {
+            if (ObjectStorageOptions.PrimitiveLocations && ObjectStorageOptions.DoubleLocations) {
+                InternalLongLocation slot = newPrimitiveSlot();
+                if (slot != null) {
+                    return advance(new DoubleLocationDecorator(slot, getLayout().isAllowedIntToDouble()));
+                }
+            }
+            return newObjectLocation(useFinal, true);
+        }
+
+        @Override
+        public Location newLongLocation(boolean useFinal) {
+            if (ObjectStorageOptions.PrimitiveLocations && ObjectStorageOptions.LongLocations) {
+                int index = primitiveFields.nextClearBit(0);
+                if (ObjectStorageOptions.InObjectFields && index < getLayout().getPrimitiveFieldCount()) {
+                    return advance((Location) LongFieldLocation.create(getLayout().getPrimitiveFieldLocation(index), getLayout().isAllowedIntToLong()));
+                } else if (getLayout().hasPrimitiveExtensionArray() && hasPrimitiveArray) {
+                    return advance(new LongArrayLocation(primitiveArraySlots.nextClearBit(0), getLayout().getPrimitiveArrayLocation(), getLayout().isAllowedIntToLong()));
+                }
+            }
+            return newObjectLocation(useFinal, true);
+        }
+
+        @Override
+        public Location newBooleanLocation(boolean useFinal) {
+            if (ObjectStorageOptions.PrimitiveLocations && ObjectStorageOptions.BooleanLocations) {
+                InternalLongLocation slot = newPrimitiveSlot();
+                if (slot != null) {
+                    return advance(new BooleanLocationDecorator(slot));
+                }
+            }
+            return newObjectLocation(useFinal, true);
+        }
+
+        /**
+         * Returns the lowest free primitive slot, preferring in-object fields, or {@code null} if
+         * there is none.
+         */
+        private InternalLongLocation newPrimitiveSlot() {
+            int index = primitiveFields.nextClearBit(0);
+            if (ObjectStorageOptions.InObjectFields && index < getLayout().getPrimitiveFieldCount()) {
+                return getLayout().getPrimitiveFieldLocation(index);
+            } else if (getLayout().hasPrimitiveExtensionArray() && hasPrimitiveArray) {
+                return new LongArrayLocation(primitiveArraySlots.nextClearBit(0), getLayout().getPrimitiveArrayLocation());
+            }
+            return null;
+        }
+
+        @Override
+        protected Location locationForValueUpcast(Object value, Location oldLocation) {
+            if (oldLocation instanceof DualLocation || oldLocation instanceof ConstantLocation) {
+                return super.locationForValueUpcast(value, oldLocation);
+            } else if (oldLocation instanceof IntLocation && value instanceof Long && getLayout().isAllowedIntToLong()) {
+                return newLongLocation(false);
+            } else if (oldLocation instanceof IntLocation && value instanceof Double && getLayout().isAllowedIntToDouble()) {
+                return newDoubleLocation(false);
+            }
+            return newObjectLocation(false, false);
+        }
+
+        /**
+         * Unlike the bump allocation of {@link BasicAllocator}, slots may be allocated out of order,
+         * so the sizes are the highest occupied slot index plus one.
+         */
+        @Override
+        protected <T extends Location> T advance(T location) {
+            if (location == getLayout().getPrimitiveArrayLocation()) {
+                hasPrimitiveArray = true;
+            } else {
+                markOccupied(location);
+            }
+            depth++;
+            return location;
+        }
+
+        private void markOccupied(Location location) {
+            if (location instanceof DualLocation) {
+                markOccupied((Location) ((DualLocation) location).getPrimitiveLocation());
+                markOccupied((Location) ((DualLocation) location).getObjectLocation());
+            } else if (location instanceof PrimitiveLocationDecorator) {
+                markOccupied((Location) ((PrimitiveLocationDecorator) location).getInternalLocation());
+            } else if (location instanceof FieldLocation) {
+                FieldLocation field = (FieldLocation) location;
+                int index = field.getIndex();
+                if (field.primitiveFieldCount() != 0) {
+                    primitiveFields.set(index, index + field.primitiveFieldCount());
+                    primitiveFieldSize = Math.max(primitiveFieldSize, index + field.primitiveFieldCount());
+                } else if (field.objectFieldCount() != 0) {
+                    objectFields.set(index, index + field.objectFieldCount());
+                    objectFieldSize = Math.max(objectFieldSize, index + field.objectFieldCount());
+                }
+            } else if (location instanceof ArrayLocation) {
+                ArrayLocation element = (ArrayLocation) location;
+                int index = element.getIndex();
+                if (element.primitiveArrayCount() != 0) {
+                    primitiveArraySlots.set(index, index + element.primitiveArrayCount());
+                    primitiveArraySize = Math.max(primitiveArraySize, index + element.primitiveArrayCount());
+                    hasPrimitiveArray = true;
+                } else if (element.objectArrayCount() != 0) {
+                    objectArraySlots.set(index, index + element.objectArrayCount());
+                    objectArraySize = Math.max(objectArraySize, index + element.objectArrayCount());
+                }
+            }
+        }
+    }
+}
@@ -27,7 +27,8 @@ import com.oracle.truffle.object.*;
 
 public class DefaultLayoutFactory implements LayoutFactory {
     public Layout createLayout(LayoutBuilder layoutBuilder) {
-        return BasicLayout.createLayoutImpl(layoutBuilder.getAllowedImplicitCasts(), new DefaultStrategy());
+        LayoutStrategy strategy = ObjectStorageOptions.CompactLayout ? new CompactStrategy() : new DefaultStrategy();
+        return BasicLayout.createLayoutImpl(layoutBuilder.getAllowedImplicitCasts(), strategy);
     }
 
     public Property createProperty(Object id, Location location, int flags) {
@@ -56,6 +56,14 @@ class DefaultStrategy implements LayoutStrategy {
         return false;
     }
 
+    public int getObjectArrayCapacity(ShapeImpl parent, ObjectType objectType, int size) {
+        return ShapeImpl.capacityFromSize(size);
+    }
+
+    public int getPrimitiveArrayCapacity(ShapeImpl parent, ObjectType objectType, int size) {
+        return ShapeImpl.capacityFromSize(size);
+    }
+
     public Property generalizeProperty(DynamicObject object, Property oldProperty, Object value) {
         Shape oldShape = object.getShape();
         Location oldLocation = oldProperty.getLocation();
@@ -34,6 +34,22 @@ public interface LayoutStrategy {
 
     boolean isAutoExtArray();
 
+    /**
+     * Returns the capacity of the object extension array of a new shape with the given object
+     * array size. Must not be smaller than the parent's capacity if the size did not shrink.
+     *
+     * @param parent the parent of the new shape, or {@code null} for a root shape
+     */
+    int getObjectArrayCapacity(ShapeImpl parent, ObjectType objectType, int size);
+
+    /**
+     * Returns the capacity of the primitive extension array of a new shape with the given primitive
+     * array size.
+     *
+     * @see #getObjectArrayCapacity(ShapeImpl, ObjectType, int)
+     */
+    int getPrimitiveArrayCapacity(ShapeImpl parent, ObjectType objectType, int size);
+
     Property generalizeProperty(DynamicObject object, Property oldProperty, Object value);
 
     Property generalizeProperty(DynamicObject object, Property oldProperty, Object value, Shape oldShape, Shape newShape);
@@ -231,6 +231,10 @@ public abstract class Locations {
             return objectLocation;
         }
 
+        public InternalLongLocation getPrimitiveLocation() {
+            return primitiveLocation;
+        }
+
         public DualLocation changeType(Class<?> newType) {
             return new DualLocation(primitiveLocation, objectLocation, layout, newType);
         }
@@ -37,12 +37,26 @@ public class ObjectStorageOptions {
     /** Allocation of in-object fields. */
     public static boolean InObjectFields = booleanOption(OPTION_PREFIX + "InObjectFields", true);
 
+    /**
+     * Use single typed locations with first-fit slot reuse and per-type profiled extension arrays
+     * instead of dual locations.
+     */
+    public static boolean CompactLayout = booleanOption(OPTION_PREFIX + "CompactLayout", false);
+
+    /**
+     * Number of lookups after which a shape transition holds its target strongly. Until then, the
+     * target may be reclaimed if it is not used otherwise. 0 holds all transitions strongly.
+     */
+    public static int TransitionPromotionThreshold = Integer.getInteger(OPTION_PREFIX + "TransitionPromotionThreshold", 4);
+
     // Debug options (should be final)
     public static final boolean TraceReshape = booleanOption(OPTION_PREFIX + "TraceReshape", false);
     public static final boolean DumpShapes = booleanOption(OPTION_PREFIX + "DumpShapes", false);
 
     public static final boolean Profile = booleanOption(OPTION_PREFIX + "Profile", false);
     public static final int ProfileTopResults = Integer.getInteger(OPTION_PREFIX + "ProfileTopResults", -1);
+    /** Count rare events such as shape transitions being promoted or collected. */
+    public static final boolean DebugCounters = booleanOption(OPTION_PREFIX + "DebugCounters", Profile);
 
     public static boolean booleanOption(String name, boolean defaultValue) {
         String value = System.getProperty(name);
@@ -26,23 +26,126 @@ import java.util.*;
 
 import com.oracle.truffle.api.object.*;
 
+/**
+ * Immutable map of the properties of a shape that remembers the order in which properties were
+ * added.
+ *
+ * <p>
+ * Two persistent tries share structure with the map they were derived from:
+ * <ul>
+ * <li>a hash array mapped trie from property key to the most recently added property with that key
+ * (earlier properties with the same key, e.g. shadowed ones, are chained behind it), and</li>
+ * <li>a sparse radix trie from insertion ordinal to property, which yields the insertion order.</li>
+ * </ul>
+ * Lookups as well as {@link #putCopy}, {@link #removeCopy} and {@link #replaceCopy} thus take time
+ * logarithmic in the number of properties.
+ * </p>
+ */
 public final class PropertyMap implements Map<Object, Property> {
-    private final PropertyMap car;
-    private final Property cdr;
-    private final int size;
 
-    private static final PropertyMap EMPTY = new PropertyMap();
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * Trie node with a slot for each bit set in {@link #bitmap}, in ascending order of bit index.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        boolean has(int bit) {
+            return (bitmap & bit) != 0;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object get(int bit) {
+            return slots[index(bit)];
+        }
+
+        Node with(int bit, Object slot) {
+            int index = index(bit);
+            if (has(bit)) {
+                Object[] newSlots = slots.clone();
+                newSlots[index] = slot;
+                return new Node(bitmap, newSlots);
+            }
+            Object[] newSlots = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            newSlots[index] = slot;
+            System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+            return new Node(bitmap | bit, newSlots);
+        }
+
+        Node without(int bit) {
+            int index = index(bit);
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+            return new Node(bitmap & ~bit, newSlots);
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(0, new Object[0]);
+
+    /**
+     * Leaf of the key trie: a property together with its insertion ordinal and the next older
+     * property with the same key, if any.
+     */
+    private static final class Entry {
+        final Property property;
+        final int ordinal;
+        final int hash;
+        final Entry shadowed;
+
+        Entry(Property property, int ordinal, Entry shadowed) {
+            this.property = property;
+            this.ordinal = ordinal;
+            this.hash = hash(property.getKey());
+            this.shadowed = shadowed;
+        }
 
-    private PropertyMap() {
-        this.car = null;
-        this.cdr = null;
-        this.size = 0;
+        Object getKey() {
+            return property.getKey();
+        }
     }
 
-    private PropertyMap(PropertyMap parent, Property added) {
-        this.car = Objects.requireNonNull(parent);
-        this.cdr = added;
-        this.size = parent.size + 1;
+    /**
+     * Leaf of the key trie for distinct keys with the same hash.
+     */
+    private static final class Collision {
+        final int hash;
+        final Entry[] entries;
+
+        Collision(int hash, Entry[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+    }
+
+    private final Node keys;
+    private final Node order;
+    private final int orderShift;
+    private final int nextOrdinal;
+    private final int size;
+    private final Property lastProperty;
+
+    private static final PropertyMap EMPTY = new PropertyMap(EMPTY_NODE, EMPTY_NODE, 0, 0, 0, null);
+
+    private PropertyMap(Node keys, Node order, int orderShift, int nextOrdinal, int size, Property lastProperty) {
+        this.keys = keys;
+        this.order = order;
+        this.orderShift = orderShift;
+        this.nextOrdinal = nextOrdinal;
+        this.size = size;
+        this.lastProperty = lastProperty;
     }
 
     public static PropertyMap empty() {
@@ -58,30 +161,19 @@ public final class PropertyMap implements Map<Object, Property> {
     }
 
     public boolean containsKey(Object key) {
-        for (Map.Entry<Object, Property> entry : reverseOrderEntrySet()) {
-            if (entry.getKey().equals(key)) {
-                return true;
-            }
-        }
-        return false;
+        return findEntry(key) != null;
     }
 
     public boolean containsValue(Object value) {
-        for (Map.Entry<Object, Property> entry : reverseOrderEntrySet()) {
-            if (entry.getValue().equals(value)) {
-                return true;
-            }
+        if (value instanceof Property) {
+            return findEntry((Property) value) != null;
         }
         return false;
     }
 
     public Property get(Object key) {
-        for (Map.Entry<Object, Property> entry : reverseOrderEntrySet()) {
-            if (entry.getKey().equals(key)) {
-                return entry.getValue();
-            }
-        }
-        return null;
+        Entry entry = findEntry(key);
+        return entry == null ? null : entry.property;
     }
 
     public Property put(Object key, Property value) {
@@ -104,12 +196,12 @@ public final class PropertyMap implements Map<Object, Property> {
         return new AbstractSet<Object>() {
             @Override
             public Iterator<Object> iterator() {
-                Object[] keys = new Object[size()];
-                Iterator<Map.Entry<Object, Property>> iterator = reverseOrderEntrySet().iterator();
-                for (int pos = size() - 1; pos >= 0; pos--) {
-                    keys[pos] = iterator.next().getKey();
+                Property[] properties = propertiesInOrder();
+                Object[] keyArray = new Object[properties.length];
+                for (int pos = 0; pos < properties.length; pos++) {
+                    keyArray[pos] = properties[pos].getKey();
                 }
-                return Arrays.asList(keys).iterator();
+                return Arrays.asList(keyArray).iterator();
             }
 
             @Override
@@ -123,12 +215,7 @@ public final class PropertyMap implements Map<Object, Property> {
         return new AbstractSet<Property>() {
             @Override
             public Iterator<Property> iterator() {
-                Property[] values = new Property[size()];
-                Iterator<Map.Entry<Object, Property>> iterator = reverseOrderEntrySet().iterator();
-                for (int pos = size() - 1; pos >= 0; pos--) {
-                    values[pos] = iterator.next().getValue();
-                }
-                return Arrays.asList(values).iterator();
+                return Arrays.asList(propertiesInOrder()).iterator();
             }
 
             @Override
@@ -142,11 +229,11 @@ public final class PropertyMap implements Map<Object, Property> {
         return new AbstractSet<Map.Entry<Object, Property>>() {
             @Override
             public Iterator<Map.Entry<Object, Property>> iterator() {
+                Property[] properties = propertiesInOrder();
                 @SuppressWarnings("unchecked")
-                Map.Entry<Object, Property>[] entries = (Map.Entry<Object, Property>[]) new Map.Entry<?, ?>[size()];
-                Iterator<Map.Entry<Object, Property>> iterator = reverseOrderEntrySet().iterator();
-                for (int pos = size() - 1; pos >= 0; pos--) {
-                    entries[pos] = iterator.next();
+                Map.Entry<Object, Property>[] entries = (Map.Entry<Object, Property>[]) new Map.Entry<?, ?>[properties.length];
+                for (int pos = 0; pos < properties.length; pos++) {
+                    entries[pos] = new MapEntryImpl(properties[pos]);
                 }
                 return Arrays.asList(entries).iterator();
             }
@@ -162,27 +249,10 @@ public final class PropertyMap implements Map<Object, Property> {
         return new AbstractSet<Map.Entry<Object, Property>>() {
             @Override
             public Iterator<Map.Entry<Object, Property>> iterator() {
-                return new Iterator<Map.Entry<Object, Property>>() {
-                    PropertyMap current = PropertyMap.this;
-
-                    public Entry<Object, Property> next() {
-                        if (hasNext()) {
-                            try {
-                                return new MapEntryImpl(current.cdr);
-                            } finally {
-                                current = current.car;
-                            }
-                        } else {
-                            throw new NoSuchElementException();
-                        }
-                    }
-
-                    public boolean hasNext() {
-                        return current != empty();
-                    }
-
-                    public void remove() {
-                        throw new UnsupportedOperationException();
+                return new ReverseOrderIterator<Map.Entry<Object, Property>>(propertiesInOrder()) {
+                    @Override
+                    Map.Entry<Object, Property> get(Property property) {
+                        return new MapEntryImpl(property);
                     }
                 };
             }
@@ -198,27 +268,10 @@ public final class PropertyMap implements Map<Object, Property> {
         return new AbstractSet<Object>() {
             @Override
             public Iterator<Object> iterator() {
-                return new Iterator<Object>() {
-                    PropertyMap current = PropertyMap.this;
-
-                    public Object next() {
-                        if (hasNext()) {
-                            try {
-                                return current.cdr.getKey();
-                            } finally {
-                                current = current.car;
-                            }
-                        } else {
-                            throw new NoSuchElementException();
-                        }
-                    }
-
-                    public boolean hasNext() {
-                        return current != empty();
-                    }
-
-                    public void remove() {
-                        throw new UnsupportedOperationException();
+                return new ReverseOrderIterator<Object>(propertiesInOrder()) {
+                    @Override
+                    Object get(Property property) {
+                        return property.getKey();
                     }
                 };
             }
@@ -234,27 +287,10 @@ public final class PropertyMap implements Map<Object, Property> {
         return new AbstractSet<Property>() {
             @Override
             public Iterator<Property> iterator() {
-                return new Iterator<Property>() {
-                    PropertyMap current = PropertyMap.this;
-
-                    public Property next() {
-                        if (hasNext()) {
-                            try {
-                                return current.cdr;
-                            } finally {
-                                current = current.car;
-                            }
-                        } else {
-                            throw new NoSuchElementException();
-                        }
-                    }
-
-                    public boolean hasNext() {
-                        return current != empty();
-                    }
-
-                    public void remove() {
-                        throw new UnsupportedOperationException();
+                return new ReverseOrderIterator<Property>(propertiesInOrder()) {
+                    @Override
+                    Property get(Property property) {
+                        return property;
                     }
                 };
             }
@@ -266,6 +302,34 @@ public final class PropertyMap implements Map<Object, Property> {
         };
     }
 
+    private abstract static class ReverseOrderIterator<T> implements Iterator<T> {
+        private final Property[] properties;
+        private int pos;
+
+        ReverseOrderIterator(Property[] properties) {
+            this.properties = properties;
+            this.pos = properties.length;
+        }
+
+        abstract T get(Property property);
+
+        public T next() {
+            if (hasNext()) {
+                return get(properties[--pos]);
+            } else {
+                throw new NoSuchElementException();
+            }
+        }
+
+        public boolean hasNext() {
+            return pos > 0;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     private static final class MapEntryImpl implements Map.Entry<Object, Property> {
         private final Property backingProperty;
 
@@ -292,62 +356,289 @@ public final class PropertyMap implements Map<Object, Property> {
 
     public PropertyMap putCopy(Property value) {
         assert !this.containsValue(value);
-        return new PropertyMap(this, value);
+        int ordinal = nextOrdinal;
+        Entry entry = insertIntoChain(findEntry(value.getKey()), value, ordinal);
+        int shift = orderShift;
+        Node newOrder = order;
+        while ((ordinal >>> shift) > MASK) {
+            // grow the order trie by one level
+            newOrder = newOrder.bitmap == 0 ? newOrder : new Node(1, new Object[]{newOrder});
+            shift += BITS;
+        }
+        newOrder = putOrdinal(newOrder, shift, ordinal, value);
+        return new PropertyMap(putEntry(keys, 0, entry), newOrder, shift, ordinal + 1, size + 1, value);
     }
 
     public PropertyMap removeCopy(Property value) {
-        LinkedList<Property> shelve = new LinkedList<>();
-        PropertyMap current = this;
-        while (!current.isEmpty()) {
-            if (current.getLastProperty().equals(value)) {
-                PropertyMap newMap = current.getParentMap();
-                for (Property property : shelve) {
-                    newMap = newMap.putCopy(property);
-                }
-                return newMap;
-            } else {
-                shelve.push(current.getLastProperty());
-                current = current.getParentMap();
-            }
+        Entry entry = findEntry(value);
+        if (entry == null) {
+            return this;
         }
-        return this;
+        Entry chain = removeFromChain(findEntry(value.getKey()), entry);
+        Node newKeys = chain == null ? (Node) removeKey(keys, 0, entry.getKey(), entry.hash) : putEntry(keys, 0, chain);
+        Node newOrder = removeOrdinal(order, orderShift, entry.ordinal);
+        Property newLastProperty = lastProperty == entry.property ? lastOrdinal(newOrder, orderShift) : lastProperty;
+        return new PropertyMap(newKeys, newOrder, orderShift, nextOrdinal, size - 1, newLastProperty);
     }
 
     public PropertyMap replaceCopy(Property oldValue, Property newValue) {
-        LinkedList<Property> shelve = new LinkedList<>();
-        PropertyMap current = this;
-        while (!current.isEmpty()) {
-            if (current.getLastProperty().equals(oldValue)) {
-                PropertyMap newMap = current.getParentMap();
-                newMap = newMap.putCopy(newValue);
-                for (Property property : shelve) {
-                    newMap = newMap.putCopy(property);
-                }
-                return newMap;
-            } else {
-                shelve.push(current.getLastProperty());
-                current = current.getParentMap();
-            }
+        Entry entry = findEntry(oldValue);
+        if (entry == null) {
+            return this;
         }
-        return this;
+        Entry chain = removeFromChain(findEntry(oldValue.getKey()), entry);
+        Node newKeys = keys;
+        if (!oldValue.getKey().equals(newValue.getKey())) {
+            newKeys = chain == null ? (Node) removeKey(keys, 0, entry.getKey(), entry.hash) : putEntry(keys, 0, chain);
+            chain = findEntry(newKeys, newValue.getKey(), hash(newValue.getKey()));
+        }
+        newKeys = putEntry(newKeys, 0, insertIntoChain(chain, newValue, entry.ordinal));
+        Node newOrder = putOrdinal(order, orderShift, entry.ordinal, newValue);
+        Property newLastProperty = lastProperty == entry.property ? newValue : lastProperty;
+        return new PropertyMap(newKeys, newOrder, orderShift, nextOrdinal, size, newLastProperty);
     }
 
+    /**
+     * Gets the map as it was right after <code>value</code> was added, i.e., the map containing
+     * <code>value</code> and all properties added before it.
+     *
+     * <p>
+     * The map is rebuilt from the properties in insertion order, which takes time O(n log n) in the
+     * number of properties up to <code>value</code>. The result is a new instance that is equal to,
+     * but not the same as, the map of the shape that added <code>value</code>.
+     * </p>
+     */
     public PropertyMap getOwningMap(Property value) {
-        PropertyMap current = this;
-        while (!current.isEmpty()) {
-            if (current.getLastProperty().equals(value)) {
-                return current;
+        Entry entry = findEntry(value);
+        if (entry == null) {
+            return null;
+        }
+        PropertyMap map = empty();
+        for (Property property : propertiesInOrder()) {
+            map = map.putCopy(property);
+            if (property == entry.property) {
+                return map;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    public Property getLastProperty() {
+        return lastProperty;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Entry findEntry(Object key) {
+        return findEntry(keys, key, hash(key));
+    }
+
+    /**
+     * Finds the entry of the given property, which may be shadowed by a newer one with the same
+     * key.
+     */
+    private Entry findEntry(Property property) {
+        for (Entry entry = findEntry(property.getKey()); entry != null; entry = entry.shadowed) {
+            if (entry.property.equals(property)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static Entry findEntry(Node root, Object key, int hash) {
+        Object slot = root;
+        for (int shift = 0; slot instanceof Node; shift += BITS) {
+            Node node = (Node) slot;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if (!node.has(bit)) {
+                return null;
+            }
+            slot = node.get(bit);
+        }
+        if (slot instanceof Entry) {
+            Entry entry = (Entry) slot;
+            return entry.getKey().equals(key) ? entry : null;
+        }
+        Collision collision = (Collision) slot;
+        if (collision.hash == hash) {
+            for (Entry entry : collision.entries) {
+                if (entry.getKey().equals(key)) {
+                    return entry;
+                }
             }
-            current = current.getParentMap();
         }
         return null;
     }
 
-    PropertyMap getParentMap() {
-        return car;
+    /**
+     * Creates an entry for <code>property</code> and links it into the chain of entries with the
+     * same key, which is kept sorted by descending ordinal.
+     */
+    private static Entry insertIntoChain(Entry chain, Property property, int ordinal) {
+        if (chain == null || chain.ordinal < ordinal) {
+            return new Entry(property, ordinal, chain);
+        }
+        return new Entry(chain.property, chain.ordinal, insertIntoChain(chain.shadowed, property, ordinal));
     }
 
-    public Property getLastProperty() {
-        return cdr;
+    private static Entry removeFromChain(Entry chain, Entry entry) {
+        if (chain == entry) {
+            return chain.shadowed;
+        }
+        return new Entry(chain.property, chain.ordinal, removeFromChain(chain.shadowed, entry));
+    }
+
+    private static int hashOf(Object leaf) {
+        return leaf instanceof Entry ? ((Entry) leaf).hash : ((Collision) leaf).hash;
+    }
+
+    /**
+     * Puts <code>entry</code> into the key trie, replacing the entry with the same key, if any.
+     */
+    private static Node putEntry(Node node, int shift, Entry entry) {
+        int bit = 1 << ((entry.hash >>> shift) & MASK);
+        if (!node.has(bit)) {
+            return node.with(bit, entry);
+        }
+        Object slot = node.get(bit);
+        if (slot instanceof Node) {
+            return node.with(bit, putEntry((Node) slot, shift + BITS, entry));
+        } else if (slot instanceof Entry && ((Entry) slot).getKey().equals(entry.getKey())) {
+            return node.with(bit, entry);
+        } else if (hashOf(slot) == entry.hash) {
+            return node.with(bit, putCollision(slot, entry));
+        } else {
+            return node.with(bit, merge(slot, entry, shift + BITS));
+        }
+    }
+
+    private static Collision putCollision(Object leaf, Entry entry) {
+        if (leaf instanceof Entry) {
+            return new Collision(entry.hash, new Entry[]{(Entry) leaf, entry});
+        }
+        Entry[] entries = ((Collision) leaf).entries;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].getKey().equals(entry.getKey())) {
+                Entry[] newEntries = entries.clone();
+                newEntries[i] = entry;
+                return new Collision(entry.hash, newEntries);
+            }
+        }
+        Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+        newEntries[entries.length] = entry;
+        return new Collision(entry.hash, newEntries);
+    }
+
+    /**
+     * Creates the subtrie for two leaves with different hashes that share the hash bits below
+     * <code>shift</code>.
+     */
+    private static Node merge(Object leaf, Entry entry, int shift) {
+        int leafBit = 1 << ((hashOf(leaf) >>> shift) & MASK);
+        int entryBit = 1 << ((entry.hash >>> shift) & MASK);
+        if (leafBit == entryBit) {
+            return new Node(leafBit, new Object[]{merge(leaf, entry, shift + BITS)});
+        }
+        return EMPTY_NODE.with(leafBit, leaf).with(entryBit, entry);
+    }
+
+    /**
+     * Removes the entry for <code>key</code> from the key trie. Subtries left with a single leaf
+     * are replaced by that leaf, except for the root.
+     */
+    private static Object removeKey(Node node, int shift, Object key, int hash) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if (!node.has(bit)) {
+            return node;
+        }
+        Object slot = node.get(bit);
+        Object newSlot;
+        if (slot instanceof Node) {
+            newSlot = removeKey((Node) slot, shift + BITS, key, hash);
+        } else if (slot instanceof Entry) {
+            newSlot = ((Entry) slot).getKey().equals(key) ? null : slot;
+        } else {
+            newSlot = removeCollision((Collision) slot, key);
+        }
+        if (newSlot == slot) {
+            return node;
+        }
+        Node newNode = newSlot == null ? node.without(bit) : node.with(bit, newSlot);
+        if (shift > 0 && newNode.slots.length == 1 && !(newNode.slots[0] instanceof Node)) {
+            return newNode.slots[0];
+        }
+        return newNode;
+    }
+
+    private static Object removeCollision(Collision collision, Object key) {
+        Entry[] entries = collision.entries;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].getKey().equals(key)) {
+                if (entries.length == 2) {
+                    return entries[1 - i];
+                }
+                Entry[] newEntries = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, newEntries, 0, i);
+                System.arraycopy(entries, i + 1, newEntries, i, newEntries.length - i);
+                return new Collision(collision.hash, newEntries);
+            }
+        }
+        return collision;
+    }
+
+    private static Node putOrdinal(Node node, int shift, int ordinal, Property property) {
+        int bit = 1 << ((ordinal >>> shift) & MASK);
+        if (shift == 0) {
+            return node.with(bit, property);
+        }
+        Node child = node.has(bit) ? (Node) node.get(bit) : EMPTY_NODE;
+        return node.with(bit, putOrdinal(child, shift - BITS, ordinal, property));
+    }
+
+    private static Node removeOrdinal(Node node, int shift, int ordinal) {
+        int bit = 1 << ((ordinal >>> shift) & MASK);
+        assert node.has(bit);
+        if (shift == 0) {
+            return node.without(bit);
+        }
+        Node child = removeOrdinal((Node) node.get(bit), shift - BITS, ordinal);
+        return child.bitmap == 0 ? node.without(bit) : node.with(bit, child);
+    }
+
+    private static Property lastOrdinal(Node root, int rootShift) {
+        if (root.bitmap == 0) {
+            return null;
+        }
+        Node node = root;
+        for (int shift = rootShift; shift > 0; shift -= BITS) {
+            node = (Node) node.slots[node.slots.length - 1];
+        }
+        return (Property) node.slots[node.slots.length - 1];
+    }
+
+    /**
+     * Gets all properties in insertion order.
+     */
+    private Property[] propertiesInOrder() {
+        Property[] properties = new Property[size];
+        int count = collect(order, orderShift, properties, 0);
+        assert count == size;
+        return properties;
+    }
+
+    private static int collect(Node node, int shift, Property[] properties, int start) {
+        int pos = start;
+        for (Object slot : node.slots) {
+            if (shift == 0) {
+                properties[pos++] = (Property) slot;
+            } else {
+                pos = collect((Node) slot, shift - BITS, properties, pos);
+            }
+        }
+        return pos;
     }
 }
@@ -23,6 +23,7 @@
 package com.oracle.truffle.object;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import com.oracle.truffle.api.*;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
@@ -82,10 +83,13 @@ public abstract class ShapeImpl extends Shape {
     /**
      * Shape transition map; lazily initialized.
      *
+     * @see #queryTransition(Transition)
      * @see #getTransitionMapForRead()
      * @see #getTransitionMapForWrite()
      */
-    private HashMap<Transition, ShapeImpl> transitionMap;
+    private volatile TransitionMap transitionMap;
+
+    private static final AtomicReferenceFieldUpdater<ShapeImpl, TransitionMap> TRANSITION_MAP_UPDATER = AtomicReferenceFieldUpdater.newUpdater(ShapeImpl.class, TransitionMap.class, "transitionMap");
 
     /**
      * Private constructor.
@@ -100,11 +104,11 @@ public abstract class ShapeImpl extends Shape {
         this.root = parent != null ? parent.getRoot() : this;
         this.parent = parent;
         this.objectArraySize = objectArraySize;
-        this.objectArrayCapacity = capacityFromSize(objectArraySize);
+        this.objectArrayCapacity = this.layout.getStrategy().getObjectArrayCapacity(parent, operations, objectArraySize);
         this.objectFieldSize = objectFieldSize;
         this.primitiveFieldSize = primitiveFieldSize;
         this.primitiveArraySize = primitiveArraySize;
-        this.primitiveArrayCapacity = capacityFromSize(primitiveArraySize);
+        this.primitiveArrayCapacity = this.layout.getStrategy().getPrimitiveArrayCapacity(parent, operations, primitiveArraySize);
         this.hasPrimitiveArray = hasPrimitiveArray;
 
         if (parent != null) {
@@ -182,7 +186,7 @@ public abstract class ShapeImpl extends Shape {
     /**
      * Calculate array size for the given number of elements.
      */
-    private static int capacityFromSize(int size) {
+    public static int capacityFromSize(int size) {
         if (size == 0) {
             return 0;
         } else if (size < 4) {
@@ -219,6 +223,36 @@ public abstract class ShapeImpl extends Shape {
         return primitiveArrayCapacity;
     }
 
+    /**
+     * Estimates the number of heap bytes occupied by an object of this shape, including its
+     * extension arrays. Assumes 16 byte object and array headers, 8 byte references and 8 byte
+     * alignment.
+     */
+    public final long getInstanceFootprint() {
+        int references = 1 + layout.getObjectFieldCount();
+        if (layout.hasObjectExtensionArray()) {
+            references++;
+        }
+        if (layout.hasPrimitiveExtensionArray()) {
+            references++;
+        }
+        long footprint = alignObjectSize(HEADER_SIZE + (long) references * WORD_SIZE + (long) layout.getPrimitiveFieldCount() * WORD_SIZE);
+        if (objectArrayCapacity != 0) {
+            footprint += alignObjectSize(HEADER_SIZE + (long) objectArrayCapacity * WORD_SIZE);
+        }
+        if (primitiveArrayCapacity != 0) {
+            footprint += alignObjectSize(HEADER_SIZE + (long) primitiveArrayCapacity * WORD_SIZE);
+        }
+        return footprint;
+    }
+
+    private static final int HEADER_SIZE = 16;
+    private static final int WORD_SIZE = 8;
+
+    private static long alignObjectSize(long size) {
+        return (size + WORD_SIZE - 1) & ~(WORD_SIZE - 1);
+    }
+
     @Override
     public final int getPrimitiveArraySize() {
         return primitiveArraySize;
@@ -268,43 +302,58 @@ public abstract class ShapeImpl extends Shape {
     @Override
     @TruffleBoundary
     public final Property getProperty(Object key) {
-        // return this.propertyMap.get(propertyName);
-        PropertyMap current = this.propertyMap;
-        while (current.getLastProperty() != null) {
-            if (current.getLastProperty().getKey().equals(key)) {
-                return current.getLastProperty();
-            }
-            current = current.getParentMap();
-        }
-
-        return null;
+        return this.propertyMap.get(key);
     }
 
-    protected final void addTransition(Transition transition, ShapeImpl next) {
+    /**
+     * Adds a transition to a child shape unless another thread has added the same transition
+     * concurrently.
+     *
+     * @return the child shape that is reached by <code>transition</code>
+     */
+    protected final ShapeImpl addTransition(Transition transition, ShapeImpl next) {
         assert next.getParent() == this;
-        addTransitionInternal(transition, next);
+        return getTransitionMapForWrite().putIfAbsent(transition, next);
     }
 
     public final void addNonlinearTransition(Transition transition, ShapeImpl next) {
         assert next.getParent() != this;
-        addTransitionInternal(transition, next);
+        getTransitionMapForWrite().put(transition, next);
     }
 
-    private void addTransitionInternal(Transition transition, ShapeImpl next) {
-        getTransitionMapForWrite().put(transition, next);
+    /**
+     * Gets the target of a transition without copying the transition map.
+     */
+    private ShapeImpl queryTransition(Transition transition) {
+        TransitionMap map = transitionMap;
+        return map != null ? map.get(transition) : null;
     }
 
+    /**
+     * Gets a snapshot of the transitions whose target shape is still alive.
+     */
     public final Map<Transition, ShapeImpl> getTransitionMapForRead() {
-        return transitionMap != null ? transitionMap : Collections.<Transition, ShapeImpl> emptyMap();
+        TransitionMap map = transitionMap;
+        return map != null ? map.snapshot() : Collections.<Transition, ShapeImpl> emptyMap();
     }
 
-    private Map<Transition, ShapeImpl> getTransitionMapForWrite() {
-        if (transitionMap != null) {
-            return transitionMap;
-        } else {
+    /**
+     * Gets the number of transitions that hold their target shape strongly.
+     */
+    public final int getStrongTransitionCount() {
+        TransitionMap map = transitionMap;
+        return map != null ? map.strongSize() : 0;
+    }
+
+    private TransitionMap getTransitionMapForWrite() {
+        TransitionMap map = transitionMap;
+        if (map != null) {
+            return map;
+        }
+        if (TRANSITION_MAP_UPDATER.compareAndSet(this, null, new TransitionMap())) {
             invalidateLeafAssumption();
-            return transitionMap = new HashMap<>();
         }
+        return transitionMap;
     }
 
     public final PropertyMap getPropertyMap() {
@@ -341,8 +390,7 @@ public abstract class ShapeImpl extends Shape {
         // invalidatePropertyAssumption(prop.getName());
 
         Transition.AddTransition key = new Transition.AddTransition(prop);
-        Map<Transition, ShapeImpl> transitionMapForRead = this.getTransitionMapForRead();
-        ShapeImpl cachedShape = transitionMapForRead.get(key);
+        ShapeImpl cachedShape = queryTransition(key);
         if (cachedShape != null) { // Shape already exists?
             shapeCacheHitCount.inc();
             return (ShapeImpl) layout.getStrategy().returnCached(cachedShape);
@@ -352,8 +400,7 @@ public abstract class ShapeImpl extends Shape {
         ShapeImpl oldShape = (ShapeImpl) layout.getStrategy().ensureSpace(this, prop.getLocation());
 
         ShapeImpl newShape = makeShapeWithAddedProperty(oldShape, key);
-        oldShape.addTransition(key, newShape);
-        return newShape;
+        return oldShape.addTransition(key, newShape);
     }
 
     protected ShapeImpl cloneRoot(ShapeImpl from, Object newSharedData) {
@@ -372,8 +419,7 @@ public abstract class ShapeImpl extends Shape {
         shapeCloneCount.inc();
 
         // (aw) need to have this transition for obsolescence
-        newParent.addTransition(getTransitionFromParent(), newShape);
-        return newShape;
+        return newParent.addTransition(getTransitionFromParent(), newShape);
     }
 
     private Transition getTransitionFromParent() {
@@ -416,7 +462,7 @@ public abstract class ShapeImpl extends Shape {
     private ShapeImpl addPrimitiveExtensionArray() {
         assert layout.hasPrimitiveExtensionArray() && !hasPrimitiveArray();
         Transition key = new Transition.ReservePrimitiveArrayTransition();
-        ShapeImpl cachedShape = this.getTransitionMapForRead().get(key);
+        ShapeImpl cachedShape = queryTransition(key);
         if (cachedShape != null) {
             shapeCacheHitCount.inc();
             return (ShapeImpl) layout.getStrategy().returnCached(cachedShape);
@@ -425,8 +471,7 @@ public abstract class ShapeImpl extends Shape {
 
         ShapeImpl oldShape = (ShapeImpl) layout.getStrategy().ensureSpace(this, layout.getPrimitiveArrayLocation());
         ShapeImpl newShape = makeShapeWithPrimitiveExtensionArray(oldShape);
-        oldShape.addTransition(key, newShape);
-        return newShape;
+        return oldShape.addTransition(key, newShape);
     }
 
     /**
@@ -612,7 +657,7 @@ public abstract class ShapeImpl extends Shape {
     @Override
     public final ShapeImpl removeProperty(Property prop) {
         RemoveTransition transition = new RemoveTransition(prop);
-        ShapeImpl cachedShape = getTransitionMapForRead().get(transition);
+        ShapeImpl cachedShape = queryTransition(transition);
         if (cachedShape != null) {
             return (ShapeImpl) layout.getStrategy().returnCached(cachedShape);
         }
@@ -783,14 +828,8 @@ public abstract class ShapeImpl extends Shape {
     @TruffleBoundary
     @Override
     public final boolean hasTransitionWithKey(Object key) {
-        for (Transition transition : getTransitionMapForRead().keySet()) {
-            if (transition instanceof PropertyTransition) {
-                if (((PropertyTransition) transition).getProperty().getKey().equals(key)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        TransitionMap map = transitionMap;
+        return map != null && map.hasPropertyTransition(key);
     }
 
     /**
@@ -810,13 +849,12 @@ public abstract class ShapeImpl extends Shape {
     @TruffleBoundary
     public final ShapeImpl changeType(ObjectType newOps) {
         OperationsTransition transition = new OperationsTransition(newOps);
-        ShapeImpl cachedShape = getTransitionMapForRead().get(transition);
+        ShapeImpl cachedShape = queryTransition(transition);
         if (cachedShape != null) {
             return cachedShape;
         } else {
             ShapeImpl newShape = createShape(layout, extraData, this, newOps, propertyMap, allocator(), id);
-            addTransition(transition, newShape);
-            return newShape;
+            return addTransition(transition, newShape);
         }
     }
 
@@ -1055,8 +1093,8 @@ public abstract class ShapeImpl extends Shape {
 
     private static final DebugCounter shapeCount = DebugCounter.create("Shapes allocated total");
     private static final DebugCounter shapeCloneCount = DebugCounter.create("Shapes allocated cloned");
-    private static final DebugCounter shapeCacheHitCount = DebugCounter.create("Shape cache hits");
-    private static final DebugCounter shapeCacheMissCount = DebugCounter.create("Shape cache misses");
+    public static final DebugCounter shapeCacheHitCount = DebugCounter.create("Shape cache hits");
+    public static final DebugCounter shapeCacheMissCount = DebugCounter.create("Shape cache misses");
 
     protected static final DebugCounter propertyListAllocCount = DebugCounter.create("Property lists allocated");
     protected static final DebugCounter propertyListShareCount = DebugCounter.create("Property lists shared");
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2014, 2014, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.object;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.oracle.truffle.api.object.*;
+
+/**
+ * Thread-safe map of the outgoing transitions of a shape. Lookups do not lock, and concurrently
+ * created transitions are resolved in favor of the first one published.
+ *
+ * <p>
+ * A new transition only holds its target shape weakly so that shapes that are no longer used by any
+ * object or cache can be reclaimed together with their subtree. Once a transition has been looked
+ * up {@link ObjectStorageOptions#TransitionPromotionThreshold} times it is considered hot and holds
+ * its target strongly. Transitions whose target has been reclaimed are purged when a transition is
+ * added.
+ * </p>
+ */
+public final class TransitionMap {
+
+    /**
+     * Only counted if {@link ObjectStorageOptions#DebugCounters} is enabled. Lookups are counted by
+     * the shape cache counters of {@link ShapeImpl}.
+     */
+    public static final DebugCounter transitionCollectedCount = DebugCounter.create("Shape transitions collected");
+    public static final DebugCounter transitionPromotedCount = DebugCounter.create("Shape transitions promoted");
+
+    /**
+     * Weakly held transition target, along with the number of times it has been looked up.
+     */
+    private static final class WeakTransition extends WeakReference<ShapeImpl> {
+        final Transition transition;
+        volatile int hits;
+
+        WeakTransition(Transition transition, ShapeImpl shape, ReferenceQueue<ShapeImpl> queue) {
+            super(shape, queue);
+            this.transition = transition;
+        }
+    }
+
+    /**
+     * Maps each transition to either a {@link ShapeImpl} or a {@link WeakTransition}.
+     */
+    private final ConcurrentMap<Transition, Object> map = new ConcurrentHashMap<>(4, 0.75f, 1);
+    private final ReferenceQueue<ShapeImpl> queue = new ReferenceQueue<>();
+
+    private Object wrap(Transition transition, ShapeImpl shape) {
+        return ObjectStorageOptions.TransitionPromotionThreshold > 0 ? new WeakTransition(transition, shape, queue) : shape;
+    }
+
+    private static ShapeImpl unwrap(Object value) {
+        return value instanceof ShapeImpl ? (ShapeImpl) value : ((WeakTransition) value).get();
+    }
+
+    /**
+     * Removes the transitions whose target has been reclaimed, releasing their keys.
+     */
+    private void expungeStaleTransitions() {
+        Reference<? extends ShapeImpl> ref;
+        while ((ref = queue.poll()) != null) {
+            WeakTransition weak = (WeakTransition) ref;
+            if (map.remove(weak.transition, weak) && ObjectStorageOptions.DebugCounters) {
+                transitionCollectedCount.inc();
+            }
+        }
+    }
+
+    /**
+     * Gets the target shape of a transition, or null if there is no such transition or its target
+     * has been reclaimed.
+     */
+    public ShapeImpl get(Transition transition) {
+        Object value = map.get(transition);
+        if (value == null) {
+            return null;
+        } else if (value instanceof ShapeImpl) {
+            return (ShapeImpl) value;
+        }
+        WeakTransition weak = (WeakTransition) value;
+        ShapeImpl shape = weak.get();
+        if (shape == null) {
+            if (map.remove(transition, weak) && ObjectStorageOptions.DebugCounters) {
+                transitionCollectedCount.inc();
+            }
+            return null;
+        }
+        // racy increment: the threshold only needs to be met approximately
+        if (++weak.hits >= ObjectStorageOptions.TransitionPromotionThreshold && map.replace(transition, weak, shape) && ObjectStorageOptions.DebugCounters) {
+            transitionPromotedCount.inc();
+        }
+        return shape;
+    }
+
+    /**
+     * Adds a transition unless another thread has added a live one for the same key first.
+     *
+     * @return the target shape that is now associated with <code>transition</code>
+     */
+    public ShapeImpl putIfAbsent(Transition transition, ShapeImpl shape) {
+        expungeStaleTransitions();
+        Object newValue = wrap(transition, shape);
+        for (;;) {
+            Object value = map.putIfAbsent(transition, newValue);
+            if (value == null) {
+                return shape;
+            }
+            ShapeImpl existing = unwrap(value);
+            if (existing != null) {
+                return existing;
+            }
+            if (map.replace(transition, value, newValue)) {
+                if (ObjectStorageOptions.DebugCounters) {
+                    transitionCollectedCount.inc();
+                }
+                return shape;
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces a transition.
+     */
+    public void put(Transition transition, ShapeImpl shape) {
+        expungeStaleTransitions();
+        map.put(transition, wrap(transition, shape));
+    }
+
+    /**
+     * Gets a snapshot of all transitions whose target is still alive.
+     */
+    public Map<Transition, ShapeImpl> snapshot() {
+        Map<Transition, ShapeImpl> result = new HashMap<>();
+        for (Map.Entry<Transition, Object> entry : map.entrySet()) {
+            ShapeImpl shape = unwrap(entry.getValue());
+            if (shape != null) {
+                result.put(entry.getKey(), shape);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if there is a {@link Transition.PropertyTransition} for a property with the given
+     * key whose target is still alive, without copying the map.
+     */
+    public boolean hasPropertyTransition(Object key) {
+        for (Map.Entry<Transition, Object> entry : map.entrySet()) {
+            Transition transition = entry.getKey();
+            if (transition instanceof Transition.PropertyTransition && ((Transition.PropertyTransition) transition).getProperty().getKey().equals(key) && unwrap(entry.getValue()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of transitions in this map, including those whose target has been reclaimed
+     * but that have not been purged yet.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Gets the number of transitions that hold their target strongly.
+     */
+    public int strongSize() {
+        int count = 0;
+        for (Object value : map.values()) {
+            if (value instanceof ShapeImpl) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -52,6 +52,61 @@ public class ShapeProfiler {
         }
 
         globalStats.dump(out);
+        dumpTransitionStats(out);
+    }
+
+    /**
+     * Dumps the size of the transition trees of all tracked objects' shapes and the hit statistics
+     * of the shape transition caches.
+     */
+    public void dumpTransitionStats(PrintWriter out) {
+        Set<Shape> roots = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+        for (DynamicObject obj : queue) {
+            roots.add(obj.getShape().getRoot());
+        }
+
+        long shapes = 0;
+        long transitions = 0;
+        long strongTransitions = 0;
+        int maxDepth = 0;
+        ArrayDeque<ShapeImpl> worklist = new ArrayDeque<>();
+        for (Shape root : roots) {
+            worklist.add((ShapeImpl) root);
+        }
+        Set<ShapeImpl> visited = Collections.newSetFromMap(new IdentityHashMap<ShapeImpl, Boolean>());
+        while (!worklist.isEmpty()) {
+            ShapeImpl shape = worklist.poll();
+            if (!visited.add(shape)) {
+                continue;
+            }
+            shapes++;
+            maxDepth = Math.max(maxDepth, shape.getDepth());
+            Map<Transition, ShapeImpl> transitionMap = shape.getTransitionMapForRead();
+            transitions += transitionMap.size();
+            strongTransitions += shape.getStrongTransitionCount();
+            worklist.addAll(transitionMap.values());
+        }
+
+        long hits = ShapeImpl.shapeCacheHitCount.get();
+        long misses = ShapeImpl.shapeCacheMissCount.get();
+        DecimalFormat format = new DecimalFormat("###.####");
+        out.println(LINE_SEPARATOR);
+        out.println(BULLET + "Shape transition trees");
+        out.println(LINE_SEPARATOR);
+        out.println(BULLET + "Root shapes:\t" + roots.size());
+        out.println(BULLET + "Reachable shapes:\t" + shapes);
+        out.println(BULLET + "Maximum shape depth:\t" + maxDepth);
+        out.println(BULLET + "Live transitions:\t" + transitions);
+        out.println(BULLET + "Strongly held transitions:\t" + strongTransitions);
+        out.println(LINE_SEPARATOR);
+        out.println(BULLET + "Transition lookups:\t" + (hits + misses));
+        out.println(BULLET + "Transition hits:\t" + hits);
+        out.println(BULLET + "Transition misses:\t" + misses);
+        out.println(BULLET + "Transition hit rate:\t" + (hits + misses == 0 ? "-" : format.format((double) hits / (hits + misses))));
+        out.println(BULLET + "Transitions promoted:\t" + TransitionMap.transitionPromotedCount.get());
+        out.println(BULLET + "Transitions collected:\t" + TransitionMap.transitionCollectedCount.get());
+        out.println(LINE_SEPARATOR + "\n");
+        out.flush();
     }
 
     public void dump(PrintWriter out, int topResults) {
@@ -101,6 +156,7 @@ public class ShapeProfiler {
         private long pac;
         private long pas;
         private long pfs;
+        private long bytes;
 
         public ShapeStats(String label) {
             this.label = label;
@@ -122,6 +178,7 @@ public class ShapeProfiler {
             pac += shape.getPrimitiveArrayCapacity();
             pas += shape.getPrimitiveArraySize();
             pfs += shape.getPrimitiveFieldSize();
+            bytes += ((ShapeImpl) shape).getInstanceFootprint();
         }
 
         public void add(ShapeStats stats) {
@@ -132,6 +189,7 @@ public class ShapeProfiler {
             oac += stats.oac;
             oas += stats.oas;
             ofs += stats.ofs;
+            bytes += stats.bytes;
         }
 
         public void dump(PrintWriter out) {
@@ -154,6 +212,9 @@ public class ShapeProfiler {
             out.println(BULLET + "Average primitive array size:\t" + avgPAS(format));
             out.println(BULLET + "Average primitive field size:\t" + avgPFS(format));
             out.println(LINE_SEPARATOR);
+            out.println(BULLET + "Total estimated footprint (bytes):\t" + bytes);
+            out.println(BULLET + "Average estimated footprint (bytes):\t" + avgBytes(format));
+            out.println(LINE_SEPARATOR);
             out.println(BULLET + toString());
             out.println(LINE_SEPARATOR + "\n");
             out.flush();
@@ -170,7 +231,8 @@ public class ShapeProfiler {
                    + avgOFS(format) + TOKEN_SEPARATOR
                    + avgPAC(format) + TOKEN_SEPARATOR
                    + avgPAS(format) + TOKEN_SEPARATOR
-                   + avgPFS(format);
+                   + avgPFS(format) + TOKEN_SEPARATOR
+                   + avgBytes(format);
             // @formatter:on
         }
 
@@ -197,6 +259,10 @@ public class ShapeProfiler {
         private String avgPFS(DecimalFormat format) {
             return format.format((double) pfs / jsObjects);
         }
+
+        private String avgBytes(DecimalFormat format) {
+            return format.format((double) bytes / jsObjects);
+        }
     }
 
     public static ShapeProfiler getInstance() {
@@ -1406,6 +1406,21 @@ def ctw(args):
         vmargs += ['-Xbootclasspath/p:' + jar]
     vm(vmargs)
 
+def snippetimage(args):
+    """build an image of the preprocessed snippet and method substitution graphs
+
+    The image is loaded by a VM started with -G:SnippetImage=<file>. It is only
+    used by VMs with the same configuration as the VM that built it, so the
+    VM options that affect the graphs (e.g. -XX:-UseCompressedOops) must be
+    passed to this command as well."""
+
+    parser = ArgumentParser(prog='mx snippetimage')
+    parser.add_argument('file', action='store', help='the image file to write', metavar='<file>')
+    parser.add_argument('vmargs', nargs=REMAINDER, metavar='VM options...')
+
+    args, vmargs = parser.parse_known_args(args)
+    vm(vmargs + ['-cp', mx.classpath('com.oracle.graal.hotspot'), 'com.oracle.graal.hotspot.SnippetImageBuilder', os.path.abspath(args.file)])
+
 def _basic_gate_body(args, tasks):
     with Task('BuildHotSpotGraal: fastdebug,product', tasks):
         buildvms(['--vms', 'graal,server', '--builds', 'fastdebug,product'])
@@ -1886,6 +1901,21 @@ def buildjmh(args):
     else:
         mx.logv('[all Mercurial controlled files in ' + jmhPath + ' are older than ' + timestamp.path + ' - skipping build]')
 
+def microbench(args):
+    """run the JMH microbenchmarks of the compiler phases
+
+    Arguments before a '--' are VM options, the others are passed to JMH.
+    For example, 'mx microbench -- -p method=java.util.HashMap.putVal Canonicalizer'
+    measures the canonicalizer on the graph of HashMap.putVal. Graphs captured
+    with com.oracle.graal.microbenchmarks.GraphCorpus are used instead of
+    parsing the corpus methods if -Dgraal.microbenchmarks.corpus=<file> is
+    given as a VM option."""
+
+    vmArgs, jmhArgs = _extract_VM_args(args, useDoubleDash=True, defaultAllVMArgs=False)
+    if '-XX:-UseGraalClassLoader' not in vmArgs:
+        vmArgs = ['-XX:-UseGraalClassLoader'] + vmArgs
+    vm(vmArgs + ['-cp', mx.classpath('com.oracle.graal.microbenchmarks'), 'org.openjdk.jmh.Main'] + jmhArgs)
+
 def jmh(args):
     """run the JMH benchmarks
 
@@ -2322,6 +2352,7 @@ def mx_init(suite):
         'checkheaders': [checkheaders, ''],
         'clean': [clean, ''],
         'ctw': [ctw, '[-vmoptions|noinline|nocomplex|full]'],
+        'snippetimage': [snippetimage, '<file> [VM options...]'],
         'findbugs': [findbugs, ''],
         'generateZshCompletion' : [generateZshCompletion, ''],
         'hsdis': [hsdis, '[att]'],
@@ -2330,6 +2361,7 @@ def mx_init(suite):
         'maven-install-truffle' : [maven_install_truffle, ''],
         'jdkhome': [print_jdkhome, ''],
         'jmh': [jmh, '[VM options] [filters|JMH-args-as-json...]'],
+        'microbench' : [microbench, '[VM options] [-- [JMH options]]'],
         'dacapo': [dacapo, '[VM options] benchmarks...|"all" [DaCapo options]'],
         'scaladacapo': [scaladacapo, '[VM options] benchmarks...|"all" [Scala DaCapo options]'],
         'specjvm2008': [specjvm2008, '[VM options] benchmarks...|"all" [SPECjvm2008 options]'],
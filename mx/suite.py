@@ -43,6 +43,60 @@ suite = {
       "sourceSha1" : "1dc37250fbc78e23a65a67fbbaf71d2e9cbc3c0b",
     },
 
+    "JMH" : {
+      "path" : "lib/jmh-core-1.1.1.jar",
+      "urls" : [
+        "https://search.maven.org/remotecontent?filepath=org/openjdk/jmh/jmh-core/1.1.1/jmh-core-1.1.1.jar",
+      ],
+      "sha1" : "09de80f9d2f387b1a10e05e623cf7119549ec57a",
+      "sourcePath" : "lib/jmh-core-1.1.1-sources.jar",
+      "sourceUrls" : [
+        "https://search.maven.org/remotecontent?filepath=org/openjdk/jmh/jmh-core/1.1.1/jmh-core-1.1.1-sources.jar",
+      ],
+      "sourceSha1" : "e425d842062d70b567be530649bc0fcd8b149422",
+      "dependencies" : ["JOPTSIMPLE", "COMMONS_MATH3"],
+    },
+
+    "JMH_GENERATOR_ANNPROCESS" : {
+      "path" : "lib/jmh-generator-annprocess-1.1.1.jar",
+      "urls" : [
+        "https://search.maven.org/remotecontent?filepath=org/openjdk/jmh/jmh-generator-annprocess/1.1.1/jmh-generator-annprocess-1.1.1.jar",
+      ],
+      "sha1" : "3a9ace79232e9d037600776f9bfd9a4211d31508",
+      "sourcePath" : "lib/jmh-generator-annprocess-1.1.1-sources.jar",
+      "sourceUrls" : [
+        "https://search.maven.org/remotecontent?filepath=org/openjdk/jmh/jmh-generator-annprocess/1.1.1/jmh-generator-annprocess-1.1.1-sources.jar",
+      ],
+      "sourceSha1" : "e0266e7bf1ae86de02f2eecc621faa99167329c8",
+      "dependencies" : ["JMH"],
+    },
+
+    "JOPTSIMPLE" : {
+      "path" : "lib/jopt-simple-4.6.jar",
+      "urls" : [
+        "https://search.maven.org/remotecontent?filepath=net/sf/jopt-simple/jopt-simple/4.6/jopt-simple-4.6.jar",
+      ],
+      "sha1" : "306816fb57cf94f108a43c95731b08934dcae15c",
+      "sourcePath" : "lib/jopt-simple-4.6-sources.jar",
+      "sourceUrls" : [
+        "https://search.maven.org/remotecontent?filepath=net/sf/jopt-simple/jopt-simple/4.6/jopt-simple-4.6-sources.jar",
+      ],
+      "sourceSha1" : "9cd14a61d7aa7d554f251ef285a6f2c65caf7b65",
+    },
+
+    "COMMONS_MATH3" : {
+      "path" : "lib/commons-math3-3.2.jar",
+      "urls" : [
+        "https://search.maven.org/remotecontent?filepath=org/apache/commons/commons-math3/3.2/commons-math3-3.2.jar",
+      ],
+      "sha1" : "ec2544ab27e110d2d431bdad7d538ed509b21e62",
+      "sourcePath" : "lib/commons-math3-3.2-sources.jar",
+      "sourceUrls" : [
+        "https://search.maven.org/remotecontent?filepath=org/apache/commons/commons-math3/3.2/commons-math3-3.2-sources.jar",
+      ],
+      "sourceSha1" : "cd098e055bf192a60c81d81893893e6e31a6482f",
+    },
+
     "HCFDIS" : {
       "path" : "lib/hcfdis-2.jar",
       "urls" : ["http://lafo.ssw.uni-linz.ac.at/hcfdis-2.jar"],
@@ -431,7 +485,7 @@ suite = {
       "sourceDirs" : ["src"],
       "dependencies" : [
         "com.oracle.graal.replacements.test",
-        "com.oracle.graal.hotspot",
+        "com.oracle.graal.hotspot.server",
       ],
       "checkstyle" : "com.oracle.graal.graph",
       "javaCompliance" : "1.8",
@@ -766,6 +820,7 @@ suite = {
       "dependencies" : [
         "com.oracle.graal.amd64",
         "com.oracle.graal.compiler.test",
+        "com.oracle.graal.lir.amd64",
       ],
       "checkstyle" : "com.oracle.graal.graph",
       "javaCompliance" : "1.8",
@@ -930,6 +985,21 @@ suite = {
       "workingSets" : "Graal,Test",
     },
 
+    "com.oracle.graal.microbenchmarks" : {
+      "subDir" : "graal",
+      "sourceDirs" : ["src"],
+      "dependencies" : [
+        "com.oracle.graal.runtime",
+        "com.oracle.graal.virtual",
+        "com.oracle.truffle.object",
+        "JMH",
+      ],
+      "annotationProcessors" : ["JMH_GENERATOR_ANNPROCESS"],
+      "checkstyle" : "com.oracle.graal.graph",
+      "javaCompliance" : "1.8",
+      "workingSets" : "Graal,Bench",
+    },
+
     "com.oracle.graal.jtt" : {
       "subDir" : "graal",
       "sourceDirs" : ["src"],
@@ -1161,6 +1231,18 @@ suite = {
       "workingSets" : "Truffle",
     },
 
+    "com.oracle.truffle.object.basic.test" : {
+      "subDir" : "graal",
+      "sourceDirs" : ["src"],
+      "dependencies" : [
+        "com.oracle.truffle.object.basic",
+        "JUNIT",
+      ],
+      "checkstyle" : "com.oracle.graal.graph",
+      "javaCompliance" : "1.7",
+      "workingSets" : "Truffle,Test",
+    },
+
     "com.oracle.truffle.sl" : {
       "subDir" : "graal",
       "sourceDirs" : ["src"],
@@ -477,9 +477,9 @@ class Project(Dependency):
         return self._imported_java_packages
 
     """
-    Gets the list of projects defining the annotation processors that will be applied
-    when compiling this project. This includes the projects declared by the annotationProcessors property
-    of this project and any of its project dependencies. It also includes
+    Gets the list of projects and libraries defining the annotation processors that will be applied
+    when compiling this project. This includes the projects and libraries declared by the annotationProcessors
+    property of this project and any of its project dependencies. It also includes
     any project dependencies that define an annotation processors.
     """
     def annotation_processors(self):
@@ -488,6 +488,9 @@ class Project(Dependency):
             if hasattr(self, '_declaredAnnotationProcessors'):
                 aps = set(self._declaredAnnotationProcessors)
                 for ap in aps:
+                    if library(ap, fatalIfMissing=False):
+                        # a library is assumed to declare its processors in META-INF/services
+                        continue
                     if project(ap).definedAnnotationProcessorsDist is None:
                         config = join(project(ap).source_dirs()[0], 'META-INF', 'services', 'javax.annotation.processing.Processor')
                         if not exists(config):
@@ -512,9 +515,16 @@ class Project(Dependency):
     annotation processors that will be applied when compiling this project.
     """
     def annotation_processors_path(self):
-        aps = [project(ap) for ap in self.annotation_processors()]
+        aps = [dependency(ap) for ap in self.annotation_processors()]
         if len(aps):
-            return os.pathsep.join([ap.definedAnnotationProcessorsDist.path for ap in aps if ap.definedAnnotationProcessorsDist])
+            entries = []
+            for ap in aps:
+                if ap.isLibrary():
+                    for lib in ap.all_deps([], includeLibs=True):
+                        lib.append_to_classpath(entries, resolve=True)
+                elif ap.definedAnnotationProcessorsDist:
+                    entries.append(ap.definedAnnotationProcessorsDist.path)
+            return os.pathsep.join(entries)
         return None
 
     def update_current_annotation_processors_file(self):
@@ -245,6 +245,11 @@ CompileTaskWrapper::CompileTaskWrapper(CompileTask* task) {
 CompileTaskWrapper::~CompileTaskWrapper() {
   CompilerThread* thread = CompilerThread::current();
   CompileTask* task = thread->task();
+#ifdef COMPILERGRAAL
+  if (task->comp_level() == CompLevel_full_optimization) {
+    GraalCompiler::instance()->task_done();
+  }
+#endif
   CompileLog*  log  = thread->log();
   if (log != NULL)  task->log_task_done(log);
   thread->set_task(NULL);
@@ -704,6 +709,12 @@ CompileTask* CompileQueue::get() {
 void CompileQueue::remove(CompileTask* task)
 {
    assert(lock()->owned_by_self(), "must own lock");
+#ifdef COMPILERGRAAL
+  // Every removed task is completed by a CompileTaskWrapper
+  if (task->comp_level() == CompLevel_full_optimization) {
+    GraalCompiler::instance()->task_dequeued();
+  }
+#endif
   if (task->prev() != NULL) {
     task->prev()->set_next(task->next());
   } else {
@@ -22,7 +22,10 @@
  */
 
 #include "precompiled.hpp"
+#include "classfile/symbolTable.hpp"
 #include "memory/oopFactory.hpp"
+#include "runtime/atomic.hpp"
+#include "runtime/mutexLocker.hpp"
 #include "runtime/javaCalls.hpp"
 #include "graal/graalCompiler.hpp"
 #include "graal/graalEnv.hpp"
@@ -37,6 +40,11 @@ GraalCompiler::GraalCompiler() : AbstractCompiler(graal) {
 #ifdef COMPILERGRAAL
   _bootstrapping = false;
   _methodsCompiled = 0;
+  _bootstrapLock = NULL;
+  _activeCompilations = 0;
+  _peakActiveCompilations = 0;
+  _bootstrapCompileNanos = 0;
+  _bootstrapMethods = NULL;
 #endif
   assert(_instance == NULL, "only one instance allowed");
   _instance = this;
@@ -64,6 +72,7 @@ void GraalCompiler::initialize() {
 #ifdef COMPILERGRAAL
 void GraalCompiler::bootstrap() {
   JavaThread* THREAD = JavaThread::current();
+  _bootstrapLock = new Monitor(Mutex::leaf, "GraalBootstrap_lock", true);
   _bootstrapping = true;
   ResourceMark rm;
   HandleMark hm;
@@ -72,39 +81,169 @@ void GraalCompiler::bootstrap() {
   }
   jlong start = os::javaTimeMillis();
 
-  Array<Method*>* objectMethods = InstanceKlass::cast(SystemDictionary::Object_klass())->methods();
-  // Initialize compile queue with a selected set of methods.
-  int len = objectMethods->length();
-  for (int i = 0; i < len; i++) {
-    methodHandle mh = objectMethods->at(i);
-    if (!mh->is_native() && !mh->is_static() && !mh->is_initializer()) {
-      ResourceMark rm;
-      int hot_count = 10; // TODO: what's the appropriate value?
-      CompileBroker::compile_method(mh, InvocationEntryBci, CompLevel_full_optimization, mh, hot_count, "bootstrap", THREAD);
+  // Initialize compile queue with the recorded hot methods of the compiler if available
+  int seeded = 0;
+  if (GraalBootstrapMethods != NULL) {
+    seeded = seed_bootstrap_methods(GraalBootstrapMethods, THREAD);
+    if (seeded < 0) {
+      // record the methods compiled during this bootstrap for the next one
+      _bootstrapMethods = new (ResourceObj::C_HEAP, mtCompiler) GrowableArray<Method*>(1024, true, mtCompiler);
+      seeded = 0;
+    }
+  }
+  if (seeded == 0) {
+    // Otherwise start with the methods of Object and let the compiler get hot compiling them
+    Array<Method*>* objectMethods = InstanceKlass::cast(SystemDictionary::Object_klass())->methods();
+    int len = objectMethods->length();
+    for (int i = 0; i < len; i++) {
+      methodHandle mh = objectMethods->at(i);
+      if (!mh->is_native() && !mh->is_static() && !mh->is_initializer()) {
+        ResourceMark rm;
+        int hot_count = 10; // TODO: what's the appropriate value?
+        CompileBroker::compile_method(mh, InvocationEntryBci, CompLevel_full_optimization, mh, hot_count, "bootstrap", THREAD);
+        seeded++;
+      }
     }
   }
 
-  int qsize;
-  jlong sleep_time = 1000;
+  // The compiler threads notify _bootstrapLock when the last active
+  // compilation completes. The timeout covers a notification that arrives
+  // between the check and the wait, and is used to print progress.
   int z = 0;
-  do {
-    os::sleep(THREAD, sleep_time, true);
-    sleep_time = 100;
-    qsize = CompileBroker::queue_size(CompLevel_full_optimization);
+  while (!is_bootstrap_complete()) {
+    {
+      MonitorLockerEx ml(_bootstrapLock);
+      ml.wait(!Mutex::_no_safepoint_check_flag, 100);
+    }
     if (PrintBootstrap) {
       while (z < (_methodsCompiled / 100)) {
         ++z;
         tty->print_raw(".");
       }
     }
-  } while (qsize != 0);
+  }
 
   if (PrintBootstrap) {
-    tty->print_cr(" in " JLONG_FORMAT " ms (compiled %d methods)", os::javaTimeMillis() - start, _methodsCompiled);
+    jlong elapsed = os::javaTimeMillis() - start;
+    double parallelism = elapsed == 0 ? 0.0 : (_bootstrapCompileNanos / 1000000.0) / elapsed;
+    // The first line is parsed by mx/sanitycheck.py, keep its format.
+    tty->print_cr(" in " JLONG_FORMAT " ms (compiled %d methods)", elapsed, _methodsCompiled);
+    tty->print_cr("Bootstrap seeded %d methods, parallelism %.1f average, %d peak",
+                  seeded, parallelism, _peakActiveCompilations);
+  }
+
+  GrowableArray<Method*>* methods;
+  {
+    MutexLockerEx ml(_bootstrapLock);
+    methods = _bootstrapMethods;
+    _bootstrapMethods = NULL;
+  }
+  if (methods != NULL) {
+    write_bootstrap_methods(GraalBootstrapMethods, methods);
+    delete methods;
   }
   _bootstrapping = false;
 }
 
+// A task counts as active from the moment it is taken off the compile queue
+// (see task_dequeued), so checking both under the queue lock cannot miss a
+// task that is in transit to a compiler thread.
+bool GraalCompiler::is_bootstrap_complete() {
+  MutexLocker locker(MethodCompileQueue_lock);
+  return CompileBroker::queue_size(CompLevel_full_optimization) == 0 && _activeCompilations == 0;
+}
+
+void GraalCompiler::task_dequeued() {
+  jint active = Atomic::add(1, &_activeCompilations);
+  if (_bootstrapping) {
+    jint peak;
+    while (active > (peak = _peakActiveCompilations) && Atomic::cmpxchg(active, &_peakActiveCompilations, peak) != peak) {
+      // retry
+    }
+  }
+}
+
+void GraalCompiler::task_done() {
+  if (Atomic::add(-1, &_activeCompilations) == 0 && _bootstrapping) {
+    MonitorLockerEx ml(_bootstrapLock);
+    ml.notify_all();
+  }
+}
+
+// Seeds the compile queue with the methods listed in a file written by
+// write_bootstrap_methods. Methods whose holder is not initialized yet are
+// skipped. Returns the number of methods queued or -1 if the file cannot
+// be opened.
+int GraalCompiler::seed_bootstrap_methods(const char* file, TRAPS) {
+  FILE* stream = fopen(file, "rt");
+  if (stream == NULL) {
+    return -1;
+  }
+  Handle loader(THREAD, SystemDictionary::graal_loader());
+  int seeded = 0;
+  char line[4096];
+  char holder[1024];
+  char name[1024];
+  char signature[2048];
+  int hot_count;
+  while (fgets(line, sizeof(line), stream) != NULL) {
+    if (sscanf(line, "%1023s %1023s %2047s %d", holder, name, signature, &hot_count) != 4) {
+      continue;
+    }
+    // A symbol that does not exist yet cannot be part of a loaded method
+    Symbol* holder_name = SymbolTable::probe(holder, (int) strlen(holder));
+    Symbol* method_name = SymbolTable::probe(name, (int) strlen(name));
+    Symbol* method_signature = SymbolTable::probe(signature, (int) strlen(signature));
+    if (holder_name == NULL || method_name == NULL || method_signature == NULL) {
+      continue;
+    }
+    ResourceMark rm(THREAD);
+    HandleMark hm(THREAD);
+    Klass* k = SystemDictionary::resolve_or_null(holder_name, loader, Handle(), THREAD);
+    if (HAS_PENDING_EXCEPTION) {
+      CLEAR_PENDING_EXCEPTION;
+      continue;
+    }
+    if (k == NULL || !k->oop_is_instance() || !InstanceKlass::cast(k)->is_initialized()) {
+      continue;
+    }
+    Method* m = InstanceKlass::cast(k)->find_method(method_name, method_signature);
+    if (m == NULL || m->is_native() || m->is_abstract()) {
+      continue;
+    }
+    methodHandle mh(THREAD, m);
+    CompileBroker::compile_method(mh, InvocationEntryBci, CompLevel_full_optimization, mh, hot_count, "bootstrap", THREAD);
+    if (HAS_PENDING_EXCEPTION) {
+      CLEAR_PENDING_EXCEPTION;
+      continue;
+    }
+    seeded++;
+  }
+  fclose(stream);
+  return seeded;
+}
+
+static int compare_invocation_counts(Method** m1, Method** m2) {
+  return (*m2)->invocation_count() - (*m1)->invocation_count();
+}
+
+// Writes the methods compiled during bootstrap, hottest first, one per line
+// as holder, name, signature and invocation count.
+void GraalCompiler::write_bootstrap_methods(const char* file, GrowableArray<Method*>* methods) {
+  fileStream stream(file, "wt");
+  if (!stream.is_open()) {
+    warning("could not write bootstrap methods to %s", file);
+    return;
+  }
+  methods->sort(compare_invocation_counts);
+  for (int i = 0; i < methods->length(); i++) {
+    ResourceMark rm;
+    Method* m = methods->at(i);
+    stream.print_cr("%s %s %s %d", m->method_holder()->name()->as_C_string(), m->name()->as_C_string(),
+                    m->signature()->as_C_string(), m->invocation_count());
+  }
+}
+
 void GraalCompiler::compile_method(methodHandle method, int entry_bci, CompileTask* task) {
   GRAAL_EXCEPTION_CONTEXT
 
@@ -115,6 +254,12 @@ void GraalCompiler::compile_method(methodHandle method, int entry_bci, CompileTa
       return;
   }
 
+  bool bootstrap_compile = _bootstrapping;
+  jlong compile_start = 0;
+  if (bootstrap_compile) {
+    compile_start = os::javaTimeNanos();
+  }
+
   HandleMark hm;
   ResourceMark rm;
   JavaValue result(T_VOID);
@@ -126,6 +271,14 @@ void GraalCompiler::compile_method(methodHandle method, int entry_bci, CompileTa
   JavaCalls::call_static(&result, SystemDictionary::CompilationTask_klass(), vmSymbols::compileMetaspaceMethod_name(), vmSymbols::compileMetaspaceMethod_signature(), &args, CHECK_ABORT);
 
   _methodsCompiled++;
+
+  if (bootstrap_compile) {
+    Atomic::add(os::javaTimeNanos() - compile_start, &_bootstrapCompileNanos);
+    MutexLockerEx ml(_bootstrapLock);
+    if (_bootstrapMethods != NULL) {
+      _bootstrapMethods->append_if_missing(method());
+    }
+  }
 }
 
 
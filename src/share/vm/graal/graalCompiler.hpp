@@ -25,6 +25,8 @@
 #define SHARE_VM_GRAAL_GRAAL_COMPILER_HPP
 
 #include "compiler/abstractCompiler.hpp"
+#include "runtime/mutex.hpp"
+#include "utilities/growableArray.hpp"
 
 class GraalCompiler : public AbstractCompiler {
 
@@ -39,6 +41,30 @@ private:
    */
   volatile int  _methodsCompiled;
 
+  /**
+   * Notified by the compiler threads when the compile queue drains during bootstrap.
+   */
+  Monitor* _bootstrapLock;
+
+  /**
+   * Number of Graal tasks taken off the compile queue and not done yet, the
+   * maximum of that number and the accumulated compilation time during
+   * bootstrap. Used to detect the end of bootstrap and to report the
+   * achieved parallelism.
+   */
+  volatile jint _activeCompilations;
+  volatile jint _peakActiveCompilations;
+  volatile jlong _bootstrapCompileNanos;
+
+  /**
+   * Methods compiled during bootstrap if they are to be recorded
+   * in the GraalBootstrapMethods file. Guarded by _bootstrapLock.
+   */
+  GrowableArray<Method*>* _bootstrapMethods;
+
+  bool is_bootstrap_complete();
+  int seed_bootstrap_methods(const char* file, TRAPS);
+  void write_bootstrap_methods(const char* file, GrowableArray<Method*>* methods);
 #endif
 
   static GraalCompiler* _instance;
@@ -74,6 +100,11 @@ public:
 
   void compile_method(methodHandle target, int entry_bci, CompileTask* task);
 
+  // Called by the compile broker when a task for Graal is taken off the
+  // compile queue (with the queue lock held) and when the task is done.
+  void task_dequeued();
+  void task_done();
+
   // Print compilation timers and statistics
   virtual void print_timers();
 
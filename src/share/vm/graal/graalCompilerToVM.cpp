@@ -446,6 +446,15 @@ C2V_VMENTRY(void, doNotInlineOrCompile,(JNIEnv *, jobject,  jlong metaspace_meth
   method->set_dont_inline(true);
 C2V_END
 
+C2V_VMENTRY(void, setNotCompilable,(JNIEnv *, jobject,  jlong metaspace_method, jboolean osr))
+  methodHandle method = asMethod(metaspace_method);
+  if (osr) {
+    method->set_not_osr_compilable(CompLevel_full_optimization, true, "Graal compilation budget exceeded");
+  } else {
+    method->set_not_compilable(CompLevel_full_optimization, true, "Graal compilation budget exceeded");
+  }
+C2V_END
+
 C2V_VMENTRY(jint, installCode0, (JNIEnv *jniEnv, jobject, jobject compiled_code, jobject installed_code, jobject speculation_log))
   ResourceMark rm;
   HandleMark hm;
@@ -1043,6 +1052,7 @@ JNINativeMethod CompilerToVM_methods[] = {
   {CC"getStackTraceElement",                         CC"("METASPACE_METHOD"I)"STACK_TRACE_ELEMENT,                             FN_PTR(getStackTraceElement)},
   {CC"methodIsIgnoredBySecurityStackWalk",           CC"("METASPACE_METHOD")Z",                                                FN_PTR(methodIsIgnoredBySecurityStackWalk)},
   {CC"doNotInlineOrCompile",                         CC"("METASPACE_METHOD")V",                                                FN_PTR(doNotInlineOrCompile)},
+  {CC"setNotCompilable",                             CC"("METASPACE_METHOD"Z)V",                                               FN_PTR(setNotCompilable)},
   {CC"canInlineMethod",                              CC"("METASPACE_METHOD")Z",                                                FN_PTR(canInlineMethod)},
   {CC"shouldInlineMethod",                           CC"("METASPACE_METHOD")Z",                                                FN_PTR(shouldInlineMethod)},
   {CC"lookupType",                                   CC"("STRING CLASS"Z)"METASPACE_KLASS,                                     FN_PTR(lookupType)},
@@ -61,6 +61,11 @@
   COMPILERGRAAL_PRESENT(product(intx, GraalThreads, 1,                      \
           "Force number of Graal compiler threads to use"))                 \
                                                                             \
+  COMPILERGRAAL_PRESENT(product(ccstr, GraalBootstrapMethods, NULL,         \
+          "File listing the methods to seed the bootstrap compile queue "   \
+          "with. If the file does not exist, it is written with the "       \
+          "methods compiled during bootstrap"))                             \
+                                                                            \
   GRAAL_ONLY(product(bool, CodeInstallSafepointChecks, true,                \
           "Perform explicit safepoint checks while installing code"))       \
                                                                             \
@@ -26,6 +26,7 @@
 #define SHARE_VM_GRAAL_VMSTRUCTS_GRAAL_HPP
 
 #include "compiler/abstractCompiler.hpp"
+#include "compiler/compileBroker.hpp"
 #include "graal/graalCodeInstaller.hpp"
 #include "graal/graalCompilerToVM.hpp"
 #include "graal/graalEnv.hpp"
@@ -36,6 +37,9 @@
   nonstatic_field(ThreadShadow,  _pending_failed_speculation, oop)            \
   nonstatic_field(ThreadShadow,  _pending_transfer_to_interpreter, bool)      \
   nonstatic_field(MethodData,    _graal_node_count, int)                      \
+  nonstatic_field(MethodData,    _invocation_counter, InvocationCounter)      \
+  nonstatic_field(MethodData,    _backedge_counter, InvocationCounter)        \
+  nonstatic_field(CompileTask,   _is_blocking, bool)                          \
 
 #define VM_TYPES_GRAAL(declare_type, declare_toplevel_type)                   \
 
@@ -76,5 +80,7 @@
   declare_constant(CodeInstaller::INVOKE_INVALID)                                                 \
                                                                                                   \
   declare_constant(Method::invalid_vtable_index)                                                  \
+                                                                                                  \
+  declare_constant(InvocationCounter::count_shift)                                                \
 
 #endif // SHARE_VM_GRAAL_VMSTRUCTS_GRAAL_HPP